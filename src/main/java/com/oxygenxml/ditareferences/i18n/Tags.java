@@ -99,5 +99,25 @@ public class Tags {
    * Text if the incoming references are not found.
    */
   public static final String NO_INCOMING_REFERENCES_FOUND = "No_incoming_references_found";
+  
+  /**
+   * Label of the node that shows more incoming references.
+   */
+  public static final String SHOW_MORE_REFERENCES = "Show_more_references";
+  
+  /**
+   * Label for showing the references to the current document, direct and indirect, in PopUpMenu.
+   */
+  public static final String SHOW_TRANSITIVE_REFERENCES = "Show_transitive_references";
+  
+  /**
+   * Shown after an indirect reference, before the referenced document through which the current one is referenced.
+   */
+  public static final String VIA = "Via";
+  
+  /**
+   * Label of the node shown after the references to the current document when the indirect ones were not all searched.
+   */
+  public static final String TRANSITIVE_REFERENCES_TRUNCATED = "Transitive_references_truncated";
 	
 }
@@ -0,0 +1,148 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import javax.swing.text.BadLocationException;
+
+import org.apache.log4j.Logger;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferenceCategory;
+import com.oxygenxml.ditareferences.workspace.DITAConstants;
+
+import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
+import ro.sync.exml.workspace.api.editor.page.text.WSTextEditorPage;
+
+/**
+ * A reference element read from a file which is not open, with the attributes
+ * that describe the reference and the position of its start tag.
+ * @author mircea_badoi
+ *
+ */
+public final class ExtractedNodeRange extends NodeRange {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(ExtractedNodeRange.class.getName());
+
+  /**
+   * The attributes read by the reference descriptor
+   */
+  private static final String[] REFERENCE_ATTRIBUTES = { DITAConstants.CLASS, DITAConstants.SCOPE,
+      DITAConstants.FORMAT, DITAConstants.KEYREF, DITAConstants.DATAKEYREF, DITAConstants.CONKEYREF,
+      DITAConstants.HREF, DITAConstants.CONREF, DITAConstants.DATA };
+
+  /**
+   * The element name
+   */
+  private final String nodeName;
+
+  /**
+   * The reference attributes of the element, by name
+   */
+  private final Map<String, String> attributes = new HashMap<>(4);
+
+  /**
+   * The line of the end of the start tag
+   */
+  private final int line;
+
+  /**
+   * The column of the end of the start tag
+   */
+  private final int column;
+
+  /**
+   * The location of the file
+   */
+  private final URL fileLocation;
+
+  /**
+   * Constructor
+   * @param nodeName The element name
+   * @param attributes Gives the attribute values of the element, read once
+   * @param line The line of the end of the start tag
+   * @param column The column of the end of the start tag
+   * @param fileLocation The location of the file
+   */
+  ExtractedNodeRange(String nodeName, UnaryOperator<String> attributes, int line, int column, URL fileLocation) {
+    this.nodeName = nodeName;
+    for (String attributeName : REFERENCE_ATTRIBUTES) {
+      String value = attributes.apply(attributeName);
+      if (value != null) {
+        this.attributes.put(attributeName, value);
+      }
+    }
+    this.line = line;
+    this.column = column;
+    this.fileLocation = fileLocation;
+  }
+
+  /**
+   * The class is defaulted like for the other elements read without the DTDs.
+   */
+  @Override
+  public String getAttributeValue(String attributeName) {
+    String value = attributes.get(attributeName);
+    return DITAConstants.CLASS.equals(attributeName) ? ReferenceCategory.getClassOrDefault(value, nodeName) : value;
+  }
+
+  /**
+   * The offset of the end of the start tag, if the file is open in the Text
+   * Page.
+   * @return The offsets or <code>null</code> for the other pages.
+   */
+  @Override
+  public int[] getNodeOffsets(WSEditorPage editorPage) {
+    int[] offsets = null;
+    if (editorPage instanceof WSTextEditorPage && line > 0) {
+      try {
+        int offset = ((WSTextEditorPage) editorPage).getOffsetOfLineStart(line) + Math.max(0, column - 1);
+        offsets = new int[] { offset, offset };
+      } catch (BadLocationException e) {
+        logger.debug(e, e);
+      }
+    }
+    return offsets;
+  }
+
+  @Override
+  public String getNodeName() {
+    return nodeName;
+  }
+
+  @Override
+  public URL getEditorLocation() {
+    return fileLocation;
+  }
+
+  /**
+   * @return The line of the end of the start tag, 1 based.
+   */
+  public int getLine() {
+    return line;
+  }
+
+  /**
+   * @return The column after the end of the start tag, 1 based.
+   */
+  public int getColumn() {
+    return column;
+  }
+
+  @Override
+  public String toString() {
+    return nodeName + " [" + line + ":" + column + "] " + getDescriptor().getDisplayText();
+  }
+}
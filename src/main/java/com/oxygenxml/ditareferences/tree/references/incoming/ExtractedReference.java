@@ -0,0 +1,140 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferenceCategory;
+
+import ro.sync.document.DocumentPositionedInfo;
+
+/**
+ * An outgoing reference read from the content of a file: the reference
+ * attribute, where it is in the file and which document it targets.
+ * @author mircea_badoi
+ *
+ */
+public final class ExtractedReference {
+
+  /**
+   * The system id of the file with the reference
+   */
+  private final String systemId;
+
+  /**
+   * The name of the reference attribute
+   */
+  private final String attributeName;
+
+  /**
+   * The value of the reference attribute
+   */
+  private final String attributeValue;
+
+  /**
+   * The line of the referencing element
+   */
+  private final int line;
+
+  /**
+   * The column of the referencing element
+   */
+  private final int column;
+
+  /**
+   * The location of the target document, without anchor
+   */
+  private final String targetLocation;
+
+  /**
+   * The category of the reference
+   */
+  private final ReferenceCategory category;
+
+  /**
+   * Constructor
+   * @param systemId The system id of the file with the reference
+   * @param attributeName The name of the reference attribute
+   * @param attributeValue The value of the reference attribute
+   * @param line The line of the referencing element
+   * @param column The column of the referencing element
+   * @param targetLocation The location of the target document, without anchor
+   * @param category The category of the reference
+   */
+  public ExtractedReference(String systemId, String attributeName, String attributeValue, int line, int column,
+      String targetLocation, ReferenceCategory category) {
+    this.systemId = systemId;
+    this.attributeName = attributeName;
+    this.attributeValue = attributeValue;
+    this.line = line;
+    this.column = column;
+    this.targetLocation = targetLocation;
+    this.category = category;
+  }
+
+  /**
+   * @return The system id of the file with the reference
+   */
+  public String getSystemId() {
+    return systemId;
+  }
+
+  /**
+   * @return The name of the reference attribute
+   */
+  public String getAttributeName() {
+    return attributeName;
+  }
+
+  /**
+   * @return The value of the reference attribute
+   */
+  public String getAttributeValue() {
+    return attributeValue;
+  }
+
+  /**
+   * @return The line of the referencing element
+   */
+  public int getLine() {
+    return line;
+  }
+
+  /**
+   * @return The column of the referencing element
+   */
+  public int getColumn() {
+    return column;
+  }
+
+  /**
+   * @return The location of the target document, without anchor
+   */
+  public String getTargetLocation() {
+    return targetLocation;
+  }
+
+  /**
+   * @return The category of the reference
+   */
+  public ReferenceCategory getCategory() {
+    return category;
+  }
+
+  /**
+   * @return The reference as an incoming reference of its target
+   */
+  public DocumentPositionedInfo toDPI() {
+    return new DocumentPositionedInfo(DocumentPositionedInfo.SEVERITY_INFO,
+        attributeName + "=\"" + attributeValue + "\"", systemId, line, column);
+  }
+
+  @Override
+  public String toString() {
+    return systemId + " [" + line + ":" + column + "] " + attributeName + "=\"" + attributeValue + "\" -> "
+        + targetLocation;
+  }
+}
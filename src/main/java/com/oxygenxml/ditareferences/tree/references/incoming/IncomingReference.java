@@ -16,11 +16,12 @@ import ro.sync.document.DocumentPositionedInfo;
 import ro.sync.util.URLUtil;
 
 /**
- * Holds the data for an incoming reference
+ * Holds the data for an incoming reference, immutable so that it can be shared
+ * between the searches
  * @author mircea_badoi
  *
  */
-public class IncomingReference implements Comparable<IncomingReference> {
+public final class IncomingReference implements Comparable<IncomingReference> {
   
   /**
    * For translation
@@ -30,42 +31,76 @@ public class IncomingReference implements Comparable<IncomingReference> {
   /**
    * The document position info
    */
-  private DocumentPositionedInfo dpi;
+  private final DocumentPositionedInfo dpi;
   
   /**
    * The file name of the reference
    */
-  private String fileName;
+  private final String fileName;
   
   /**
    * Additional line number information
    */
-  private String additionalInformation;
+  private final String additionalInformation;
+  
+  /**
+   * The file name of the referenced document for an indirect reference, null for a direct one
+   */
+  private final String via;
   
   /**
    * Parametrized constructor
    * @param dpi The DocumentPositionedInfo
    */
   public IncomingReference(DocumentPositionedInfo dpi) {
+    this(dpi, false);
+  }
+  
+  /**
+   * Parametrized constructor
+   * @param dpi The DocumentPositionedInfo
+   * @param showExtraLineNumberInformation <code>true</code> to show the line
+   *                                       and column in the label
+   */
+  public IncomingReference(DocumentPositionedInfo dpi, boolean showExtraLineNumberInformation) {
     this.dpi = dpi;
-    this.fileName = URLUtil.extractFileName(dpi.getSystemID());
-    if(fileName == null) {
-    	fileName = "";
+    String name = URLUtil.extractFileName(dpi.getSystemID());
+    this.fileName = name != null ? name : "";
+    if (showExtraLineNumberInformation) {
+      StringBuilder build = new StringBuilder();
+      build.append("[");
+      build.append(dpi.getLine());
+      build.append(":");
+      build.append(dpi.getColumn());
+      build.append("]");
+      this.additionalInformation = build.toString();
+    } else {
+      this.additionalInformation = null;
     }
+    this.via = null;
   }
   
   /**
-   * Build label with column and line details
-   * @param dpi The DocumentPositionedInfo
+   * Constructor for an indirect reference
+   * @param reference The reference to the intermediate document
+   * @param via The file name of the intermediate document
+   */
+  private IncomingReference(IncomingReference reference, String via) {
+    this.dpi = reference.dpi;
+    this.fileName = reference.fileName;
+    this.additionalInformation = reference.additionalInformation;
+    this.via = via;
+  }
+  
+  /**
+   * Get this reference as an indirect one, through the document it references.
+   * @param intermediateSystemId The system id of the referenced document,
+   *                             which references the current one
+   * @return The reference labeled with the intermediate document
    */
-  public void setShowExtraLineNumberInformation() {
-    StringBuilder build = new StringBuilder();
-    build.append("[");
-    build.append(dpi.getLine());
-    build.append(":");
-    build.append(dpi.getColumn());
-    build.append("]");
-    this.additionalInformation = build.toString();
+  public IncomingReference via(String intermediateSystemId) {
+    String intermediateName = URLUtil.extractFileName(intermediateSystemId);
+    return new IncomingReference(this, intermediateName != null ? intermediateName : intermediateSystemId);
   }
   
   /**
@@ -75,16 +110,25 @@ public class IncomingReference implements Comparable<IncomingReference> {
     return dpi;
   }
   
+  /**
+   * @return The file name of the referenced document through which an indirect
+   *         reference references the current one, <code>null</code> for a
+   *         direct reference
+   */
+  public String getVia() {
+    return via;
+  }
+  
   /**
    * 
    * @return The formatted text for the label 
    */
   public String getRenderText() {
-	  if(additionalInformation == null) {
-		  return fileName;
-	  } else {
-		  return fileName + " " + additionalInformation;
+	  String text = additionalInformation == null ? fileName : fileName + " " + additionalInformation;
+	  if (via != null) {
+		  text += " (" + translator.getTranslation(Tags.VIA) + " " + via + ")";
 	  }
+	  return text;
   }
   
   /**
@@ -121,7 +165,7 @@ public class IncomingReference implements Comparable<IncomingReference> {
   
   @Override
   public int hashCode() {
-    return Objects.hash(additionalInformation, dpi, fileName);
+    return Objects.hash(additionalInformation, dpi, fileName, via);
   }
 
   @Override
@@ -137,7 +181,7 @@ public class IncomingReference implements Comparable<IncomingReference> {
     }
     IncomingReference other = (IncomingReference) obj;
     return Objects.equals(additionalInformation, other.additionalInformation) && Objects.equals(dpi, other.dpi)
-        && Objects.equals(fileName, other.fileName);
+        && Objects.equals(fileName, other.fileName) && Objects.equals(via, other.via);
   }
   
   @Override
@@ -0,0 +1,97 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The incoming references found for the most recently searched documents. The
+ * references of a document are reused while the references graph is not
+ * changed, see {@link IncomingReferencesGraph#getModificationCount()}.
+ * @author mircea_badoi
+ *
+ */
+public final class IncomingReferencesCache {
+
+  /**
+   * The references found for a document.
+   */
+  private static final class CachedReferences {
+    /**
+     * The modification count of the graph when the references were found
+     */
+    private final long graphModificationCount;
+
+    /**
+     * The references, not modifiable
+     */
+    private final List<IncomingReference> references;
+
+    CachedReferences(long graphModificationCount, List<IncomingReference> references) {
+      this.graphModificationCount = graphModificationCount;
+      this.references = references;
+    }
+  }
+
+  /**
+   * The entries, the least recently used first
+   */
+  private final Map<String, CachedReferences> entries;
+
+  /**
+   * Constructor
+   * @param maxSize The number of documents for which the references are kept
+   */
+  public IncomingReferencesCache(int maxSize) {
+    entries = new LinkedHashMap<String, CachedReferences>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedReferences> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Get the references found for a document.
+   * @param target The document location
+   * @param graphModificationCount The current modification count of the graph
+   * @return The references, <code>null</code> if not found for the current graph
+   */
+  public synchronized List<IncomingReference> get(URL target, long graphModificationCount) {
+    String key = ReferencesExtractor.getLocationKey(target.toExternalForm());
+    CachedReferences entry = entries.get(key);
+    if (entry != null && entry.graphModificationCount != graphModificationCount) {
+      entries.remove(key);
+      entry = null;
+    }
+    return entry != null ? entry.references : null;
+  }
+
+  /**
+   * Keep the references found for a document.
+   * @param target The document location
+   * @param graphModificationCount The modification count of the graph searched
+   * @param references The references, not modifiable
+   */
+  public synchronized void put(URL target, long graphModificationCount, List<IncomingReference> references) {
+    entries.put(ReferencesExtractor.getLocationKey(target.toExternalForm()),
+        new CachedReferences(graphModificationCount, references));
+  }
+
+  /**
+   * @return The number of documents with references kept
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+}
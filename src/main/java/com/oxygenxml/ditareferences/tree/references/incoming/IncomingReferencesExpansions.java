@@ -0,0 +1,146 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import org.apache.log4j.Logger;
+
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReferencesQueryExecutor.Query;
+
+/**
+ * Runs the searches of the expanded nodes one at a time, on a background
+ * thread. A search is cancelled when its node is collapsed or when the tree is
+ * replaced; the running search is not interrupted, as it may be building the
+ * references graph that the other searches wait for, but its cancel flag is set
+ * and it must check it between its steps. The searches waiting to run are
+ * skipped.
+ * @author mircea_badoi
+ *
+ * @param <K> The type of the expanded nodes
+ */
+public final class IncomingReferencesExpansions<K> {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(IncomingReferencesExpansions.class.getName());
+
+  /**
+   * The search of an expanded node, <code>true</code> once cancelled.
+   */
+  private static final class Expansion implements BooleanSupplier {
+    private volatile boolean cancelled;
+
+    @Override
+    public boolean getAsBoolean() {
+      return cancelled;
+    }
+  }
+
+  /**
+   * The thread running the searches
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The searches not completed, by expanded node
+   */
+  private final Map<K, Expansion> pending = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   * @param threadName The name of the thread running the searches
+   */
+  public IncomingReferencesExpansions(String threadName) {
+    executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, threadName);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Search the references of an expanded node in the background. The search
+   * is pending until it is completed, cancelled or it fails.
+   * @param node The expanded node
+   * @param search The search, receives the cancel flag of the expansion
+   */
+  public void expand(K node, Query search) {
+    Expansion expansion = new Expansion();
+    Expansion previous = pending.put(node, expansion);
+    if (previous != null) {
+      previous.cancelled = true;
+    }
+    executor.execute(() -> {
+      if (expansion.cancelled) {
+        return;
+      }
+      try {
+        search.run(expansion);
+      } catch (CancellationException e) {
+        logger.debug(e, e);
+        pending.remove(node, expansion);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        pending.remove(node, expansion);
+      } catch (Exception e) {
+        logger.error(e, e);
+        pending.remove(node, expansion);
+      }
+    });
+  }
+
+  /**
+   * Complete the search of an expanded node, before its final results are
+   * shown.
+   * @param node The expanded node
+   * @param cancelled The cancel flag received by the search
+   * @return <code>true</code> if the search was not cancelled and its results
+   *         can be shown
+   */
+  public boolean complete(K node, BooleanSupplier cancelled) {
+    return !cancelled.getAsBoolean() && pending.remove(node, cancelled);
+  }
+
+  /**
+   * Cancel the search of a collapsed node.
+   * @param node The collapsed node
+   * @return <code>true</code> if the search was pending, its partial results
+   *         must be removed so the next expand searches again
+   */
+  public boolean cancel(K node) {
+    Expansion expansion = pending.remove(node);
+    if (expansion != null) {
+      expansion.cancelled = true;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Cancel all the searches, their results are not shown.
+   */
+  public void cancelAll() {
+    for (K node : pending.keySet()) {
+      cancel(node);
+    }
+  }
+
+  /**
+   * @return The number of searches not completed.
+   */
+  public int getPendingCount() {
+    return pending.size();
+  }
+}
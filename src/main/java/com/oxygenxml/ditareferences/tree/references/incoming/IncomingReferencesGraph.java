@@ -0,0 +1,586 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+import com.oxygenxml.ditareferences.tree.references.VersionUtil;
+
+import ro.sync.document.DocumentPositionedInfo;
+import ro.sync.ecss.dita.reference.keyref.KeyInfo;
+
+/**
+ * The references graph of the current root map, kept between the searches of
+ * incoming references. The graph is built once for a root map, by
+ * {@link ProjectReferencesCrawler} or by the application; the files saved
+ * after that are read again and their outgoing references replace the ones
+ * from the graph, so that the graph does not have to be built again for the
+ * whole project. The files saved while the graph is built patch it too, as the
+ * graph may have read them before the save. The references found are also saved in a
+ * {@link PersistentReferencesIndex}, to be shown in the next session while the
+ * graph is built.
+ * <br>
+ * The graph is built and the index is loaded without holding the lock of this
+ * object, which only guards the publication of their results, so the AWT
+ * thread checking the graph or saving the index does not wait for them. Once
+ * published, the graph, the index and the references of the saved files are
+ * read without the lock; a saved file publishes a copy of the saved files
+ * references, so the parallel searches do not wait for each other.
+ * @author mircea_badoi
+ *
+ */
+public class IncomingReferencesGraph {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(IncomingReferencesGraph.class.getName());
+
+  /**
+   * Constant used for java reflexion
+   */
+  private static final String DITA_ACCESS_CLASS_NAME = "ro.sync.ecss.dita.DITAAccess";
+
+  /**
+   * The references graph, null if not built
+   */
+  private volatile Object graph;
+
+  /**
+   * The root map of the graph, null if unknown
+   */
+  private String rootMap;
+
+  /**
+   * Incremented when the references from the graph change
+   */
+  private volatile long modificationCount;
+
+  /**
+   * Incremented when the graph is dropped, a graph built before is not kept
+   */
+  private volatile long graphGeneration;
+
+  /**
+   * The generation of the graph being built, its crawl stops when the graph is dropped
+   */
+  private volatile long buildGeneration;
+
+  /**
+   * <code>true</code> while a graph is built, the files saved meanwhile patch the graph once published
+   */
+  private volatile boolean building;
+
+  /**
+   * Only one graph is built at a time, the other searches wait for it
+   */
+  private final Object graphBuildLock = new Object();
+
+  /**
+   * The references of the files saved after the graph build started, replaced when a file is saved
+   */
+  private volatile SavedFiles savedFiles = SavedFiles.EMPTY;
+
+  /**
+   * Reads the references of the saved files
+   */
+  private final ReferencesExtractor extractor;
+
+  /**
+   * Builds the references graph of the project folder
+   */
+  private final ProjectReferencesCrawler crawler;
+
+  /**
+   * The folder of the index files, null if the references are not saved between sessions
+   */
+  private final File indexFolder;
+
+  /**
+   * The references found in the previous sessions for the root map, null if not loaded
+   */
+  private volatile PersistentReferencesIndex index;
+
+  /**
+   * The outgoing references of the files saved after the graph was built. Not
+   * modified once published, a saved file creates a copy.
+   */
+  private static final class SavedFiles {
+    /**
+     * No saved files
+     */
+    static final SavedFiles EMPTY = new SavedFiles(Collections.emptyMap(), Collections.emptyMap());
+
+    /**
+     * The outgoing references of the saved files, by file location
+     */
+    final Map<String, List<ExtractedReference>> byFile;
+
+    /**
+     * The references of the saved files, by target location and by file location
+     */
+    final Map<String, Map<String, List<ExtractedReference>>> byTarget;
+
+    SavedFiles(Map<String, List<ExtractedReference>> byFile,
+        Map<String, Map<String, List<ExtractedReference>>> byTarget) {
+      this.byFile = byFile;
+      this.byTarget = byTarget;
+    }
+
+    /**
+     * Copy the saved files, replacing the references of a file and indexing them by target.
+     * @param fileKey The location key of the file
+     * @param references The outgoing references of the file
+     * @return The copy
+     */
+    SavedFiles with(String fileKey, List<ExtractedReference> references) {
+      Map<String, List<ExtractedReference>> newByFile = new HashMap<>(byFile);
+      Map<String, Map<String, List<ExtractedReference>>> newByTarget = new HashMap<>(byTarget);
+      List<ExtractedReference> previousReferences = newByFile.put(fileKey, references);
+      if (previousReferences != null) {
+        for (ExtractedReference reference : previousReferences) {
+          Map<String, List<ExtractedReference>> targetReferences = newByTarget.get(reference.getTargetLocation());
+          if (targetReferences != null && targetReferences.containsKey(fileKey)) {
+            if (targetReferences.size() == 1) {
+              newByTarget.remove(reference.getTargetLocation());
+            } else {
+              targetReferences = new LinkedHashMap<>(targetReferences);
+              targetReferences.remove(fileKey);
+              newByTarget.put(reference.getTargetLocation(), targetReferences);
+            }
+          }
+        }
+      }
+      Map<String, List<ExtractedReference>> fileReferencesByTarget = new LinkedHashMap<>();
+      for (ExtractedReference reference : references) {
+        fileReferencesByTarget.computeIfAbsent(reference.getTargetLocation(), key -> new ArrayList<>(1)).add(reference);
+      }
+      for (Map.Entry<String, List<ExtractedReference>> entry : fileReferencesByTarget.entrySet()) {
+        Map<String, List<ExtractedReference>> targetReferences = newByTarget.get(entry.getKey());
+        targetReferences = targetReferences != null ? new LinkedHashMap<>(targetReferences) : new LinkedHashMap<>();
+        targetReferences.put(fileKey, entry.getValue());
+        newByTarget.put(entry.getKey(), targetReferences);
+      }
+      return new SavedFiles(newByFile, newByTarget);
+    }
+  }
+
+  /**
+   * Constructor
+   * @param extractor Reads the references of the saved files
+   */
+  public IncomingReferencesGraph(ReferencesExtractor extractor) {
+    this(extractor, null);
+  }
+
+  /**
+   * Constructor
+   * @param extractor Reads the references of the saved files
+   * @param indexFolder The folder of the index files, <code>null</code> if the
+   *                    references are not saved between sessions
+   */
+  public IncomingReferencesGraph(ReferencesExtractor extractor, File indexFolder) {
+    this.extractor = extractor;
+    this.indexFolder = indexFolder;
+    this.crawler = new ProjectReferencesCrawler(extractor);
+  }
+
+  /**
+   * A root map was selected, the graph is kept if the root map is the same.
+   * @param rootMapLocation The root map location
+   */
+  public void rootMapSelected(URL rootMapLocation) {
+    String newRootMap = rootMapLocation != null ? rootMapLocation.toExternalForm() : null;
+    PersistentReferencesIndex previousIndex;
+    synchronized (this) {
+      if (newRootMap == null ? rootMap == null : newRootMap.equals(rootMap)) {
+        return;
+      }
+      previousIndex = index;
+      index = null;
+      rootMap = newRootMap;
+      invalidate();
+    }
+    save(previousIndex);
+  }
+
+  /**
+   * Save the references found in this session, to be shown in the next one
+   * before the graph is built. The index has its own lock, the graph is not
+   * waited for.
+   */
+  public void saveIndex() {
+    PersistentReferencesIndex currentIndex;
+    synchronized (this) {
+      currentIndex = index;
+    }
+    save(currentIndex);
+  }
+
+  /**
+   * Save an index, if any.
+   */
+  private static void save(PersistentReferencesIndex index) {
+    if (index != null) {
+      try {
+        index.save();
+      } catch (IOException e) {
+        logger.debug(e, e);
+      }
+    }
+  }
+
+  /**
+   * Drop the graph, it is built again with the next search.
+   */
+  public synchronized void invalidate() {
+    graph = null;
+    savedFiles = SavedFiles.EMPTY;
+    modificationCount++;
+    graphGeneration++;
+  }
+
+  /**
+   * @return A number that changes when the references from the graph change,
+   *         to know if the references found before can be reused.
+   */
+  public long getModificationCount() {
+    return modificationCount;
+  }
+
+  /**
+   * @return <code>true</code> if the graph is built.
+   */
+  public boolean isBuilt() {
+    return graph != null;
+  }
+
+  /**
+   * A file was saved, its outgoing references are read again. If the graph is
+   * being built, they are kept and patch the graph once it is published.
+   * @param fileLocation The file location
+   */
+  public void fileSaved(URL fileLocation) {
+    PersistentReferencesIndex currentIndex = index;
+    if (graph != null || building || currentIndex != null) {
+      List<ExtractedReference> references = extractor.extract(fileLocation);
+      if (references != null) {
+        synchronized (this) {
+          if (graph != null || building) {
+            savedFiles = savedFiles.with(ReferencesExtractor.getLocationKey(fileLocation.toExternalForm()), references);
+            modificationCount++;
+          }
+        }
+        if (currentIndex != null) {
+          currentIndex.fileSaved(fileLocation, references);
+        }
+      } else if (logger.isDebugEnabled()) {
+        logger.debug("Cannot read the references of " + fileLocation + ", the graph references are kept");
+      }
+    }
+  }
+
+  /**
+   * Search the references to a document in the graph.
+   * @param target The document location
+   * @return The references to the document
+   * @throws ReflectiveOperationException if the application has no references graph
+   */
+  public List<DocumentPositionedInfo> searchReferences(URL target) throws ReflectiveOperationException {
+    return searchReferences(target, false);
+  }
+
+  /**
+   * Search the references to a document.
+   * @param target The document location
+   * @param useIndex <code>true</code> to return the references found in the
+   *                 previous sessions while the graph is not built; check
+   *                 {@link #isBuilt()} to know if the search must be done
+   *                 again in the graph
+   * @return The references to the document
+   * @throws ReflectiveOperationException if the application has no references graph
+   */
+  public List<DocumentPositionedInfo> searchReferences(URL target, boolean useIndex)
+      throws ReflectiveOperationException {
+    return searchReferences(target, useIndex, null);
+  }
+
+  /**
+   * Search the references to a document.
+   * @param target The document location
+   * @param useIndex <code>true</code> to return the references found in the
+   *                 previous sessions while the graph is not built; check
+   *                 {@link #isBuilt()} to know if the search must be done
+   *                 again in the graph
+   * @param partialResults If the graph is built by this search, receives the
+   *                       references to the document in batches, as the files
+   *                       are read, on the threads reading them; can be
+   *                       <code>null</code>
+   * @return All the references to the document
+   * @throws ReflectiveOperationException if the application has no references graph
+   * @throws CancellationException if the graph was dropped while it was built
+   */
+  public List<DocumentPositionedInfo> searchReferences(URL target, boolean useIndex,
+      Consumer<List<DocumentPositionedInfo>> partialResults) throws ReflectiveOperationException {
+    PersistentReferencesIndex currentIndex = getIndex();
+    if (useIndex && currentIndex != null && !isBuilt()) {
+      List<DocumentPositionedInfo> indexedReferences = currentIndex.getReferences(target);
+      if (indexedReferences != null) {
+        return indexedReferences;
+      }
+    }
+
+    Object currentGraph = getGraph(target, partialResults);
+    List<DocumentPositionedInfo> graphReferences = searchGraph(target, currentGraph);
+    List<DocumentPositionedInfo> references = patchWithSavedFiles(target, graphReferences, savedFiles);
+    if (currentIndex != null && references != null) {
+      currentIndex.setReferences(target, references);
+    }
+    return references;
+  }
+
+  /**
+   * Get the index of the current root map, loaded and revalidated without
+   * holding the lock of the graph.
+   * @return The index, <code>null</code> if the references are not saved between sessions
+   */
+  private PersistentReferencesIndex getIndex() {
+    PersistentReferencesIndex currentIndex = index;
+    if (indexFolder == null || currentIndex != null) {
+      return currentIndex;
+    }
+    String indexedRootMap;
+    synchronized (this) {
+      if (index != null) {
+        return index;
+      }
+      indexedRootMap = rootMap;
+    }
+    PersistentReferencesIndex loadedIndex = PersistentReferencesIndex.load(indexFolder, indexedRootMap, extractor);
+    synchronized (this) {
+      boolean sameRootMap = indexedRootMap == null ? rootMap == null : indexedRootMap.equals(rootMap);
+      if (!sameRootMap) {
+        // the root map was switched while loading, the index is only used by this search
+        return loadedIndex;
+      }
+      if (index == null) {
+        index = loadedIndex;
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Get the graph, built if needed without holding the lock of this object.
+   * @param target The searched document
+   * @param partialResults Receives the references to the searched document
+   *                       while the graph is built, can be <code>null</code>
+   * @return The graph
+   * @throws ReflectiveOperationException if the application has no references graph
+   */
+  private Object getGraph(URL target, Consumer<List<DocumentPositionedInfo>> partialResults)
+      throws ReflectiveOperationException {
+    Object currentGraph = graph;
+    if (currentGraph != null) {
+      return currentGraph;
+    }
+    synchronized (graphBuildLock) {
+      synchronized (this) {
+        if (graph != null) {
+          return graph;
+        }
+        buildGeneration = graphGeneration;
+        building = true;
+      }
+      Object builtGraph;
+      try {
+        builtGraph = partialResults != null ? createGraph(target, partialResults) : createGraph();
+      } finally {
+        synchronized (this) {
+          building = false;
+        }
+      }
+      synchronized (this) {
+        // a graph built before the root map was switched is not kept, the
+        // files saved while it was built are patched by the searches
+        if (buildGeneration == graphGeneration) {
+          graph = builtGraph;
+          modificationCount++;
+        }
+      }
+      return builtGraph;
+    }
+  }
+
+  /**
+   * Replace the references from the saved files in the references found in the graph.
+   */
+  private static List<DocumentPositionedInfo> patchWithSavedFiles(URL target,
+      List<DocumentPositionedInfo> graphReferences, SavedFiles saved) {
+    if (saved.byFile.isEmpty()) {
+      return graphReferences;
+    }
+
+    List<DocumentPositionedInfo> references = new ArrayList<>();
+    if (graphReferences != null) {
+      for (DocumentPositionedInfo dpi : graphReferences) {
+        // the references from the saved files are read again
+        if (dpi.getSystemID() == null
+            || !saved.byFile.containsKey(ReferencesExtractor.getLocationKey(dpi.getSystemID()))) {
+          references.add(dpi);
+        }
+      }
+    }
+    Map<String, List<ExtractedReference>> targetReferences = saved.byTarget
+        .get(ReferencesExtractor.getLocationKey(target.toExternalForm()));
+    if (targetReferences != null) {
+      for (List<ExtractedReference> fileReferences : targetReferences.values()) {
+        for (ExtractedReference reference : fileReferences) {
+          references.add(reference.toDPI());
+        }
+      }
+    }
+    return references;
+  }
+
+  /**
+   * Create the references graph for the current root map. The files of a
+   * local root map are read by the plugin, in parallel, starting from the root
+   * map; otherwise the references graph of the application is used.
+   * @return The graph
+   * @throws ReflectiveOperationException if the application has no references graph
+   * @throws CancellationException if the graph was dropped while it was built
+   */
+  protected Object createGraph() throws ReflectiveOperationException {
+    Path projectFolder = getProjectFolder();
+    if (projectFolder != null) {
+      try {
+        URL currentRootMap = getRootMap();
+        return crawler.crawl(projectFolder, currentRootMap, resolveKeys(currentRootMap), null,
+            this::isBuildAbandoned);
+      } catch (IOException e) {
+        logger.debug(e, e);
+      }
+    }
+    Class<?> ditaAccess = Class.forName(DITA_ACCESS_CLASS_NAME);
+    Method createReferencesGraph = ditaAccess.getDeclaredMethod(VersionUtil.METHOD_NAME_CREATE_REFERENCE_GRAPH);
+    return createReferencesGraph.invoke(null);
+  }
+
+  /**
+   * Create the references graph for the current root map, sending the
+   * references to a document as they are found.
+   * @param target The document location
+   * @param partialResults Receives the references to the document in batches
+   * @return The graph
+   * @throws ReflectiveOperationException if the application has no references graph
+   * @throws CancellationException if the graph was dropped while it was built
+   */
+  protected Object createGraph(URL target, Consumer<List<DocumentPositionedInfo>> partialResults)
+      throws ReflectiveOperationException {
+    Path projectFolder = getProjectFolder();
+    if (projectFolder != null) {
+      String targetKey = ReferencesExtractor.getLocationKey(target.toExternalForm());
+      try {
+        URL currentRootMap = getRootMap();
+        return crawler.crawl(projectFolder, currentRootMap, resolveKeys(currentRootMap), fileReferences -> {
+          List<DocumentPositionedInfo> batch = new ArrayList<>();
+          for (ExtractedReference reference : fileReferences) {
+            if (targetKey.equals(reference.getTargetLocation())) {
+              batch.add(reference.toDPI());
+            }
+          }
+          if (!batch.isEmpty()) {
+            partialResults.accept(batch);
+          }
+        }, this::isBuildAbandoned);
+      } catch (IOException e) {
+        logger.debug(e, e);
+      }
+    }
+    // the graph of the application is searched at once
+    return createGraph();
+  }
+
+  /**
+   * Resolve the keys of the root map for a crawl, on the AWT thread.
+   * @param currentRootMap The root map, can be <code>null</code>
+   * @return The keys, <code>null</code> if not known
+   */
+  private LinkedHashMap<String, KeyInfo> resolveKeys(URL currentRootMap) {
+    return currentRootMap != null ? extractor.resolveKeys(currentRootMap) : null;
+  }
+
+  /**
+   * @return <code>true</code> if the graph being built was dropped, by a root
+   *         map switch or a refresh, and its crawl can stop.
+   */
+  private boolean isBuildAbandoned() {
+    return buildGeneration != graphGeneration;
+  }
+
+  /**
+   * @return The current root map or <code>null</code>.
+   */
+  private URL getRootMap() {
+    String currentRootMap;
+    synchronized (this) {
+      currentRootMap = rootMap;
+    }
+    try {
+      return currentRootMap != null ? new URL(currentRootMap) : null;
+    } catch (MalformedURLException e) {
+      logger.debug(e, e);
+      return null;
+    }
+  }
+
+  /**
+   * @return The folder of the current root map, if it is a local file, or <code>null</code>.
+   */
+  private Path getProjectFolder() {
+    String currentRootMap;
+    synchronized (this) {
+      currentRootMap = rootMap;
+    }
+    return ProjectReferencesCrawler.getProjectFolder(currentRootMap);
+  }
+
+  /**
+   * Search the references to a document in the references graph.
+   * @param target The document location
+   * @param graph The graph
+   * @return The references
+   * @throws ReflectiveOperationException if the application has no references graph
+   */
+  @SuppressWarnings("unchecked")
+  protected List<DocumentPositionedInfo> searchGraph(URL target, Object graph) throws ReflectiveOperationException {
+    if (graph instanceof ReferencesGraph) {
+      return ((ReferencesGraph) graph).searchReferences(target);
+    }
+    Class<?> ditaAccess = Class.forName(DITA_ACCESS_CLASS_NAME);
+    Method searchReferences = ditaAccess.getDeclaredMethod(VersionUtil.METHOD_NAME_SEARCH_REFERENCES, URL.class,
+        Object.class);
+    return (List<DocumentPositionedInfo>) searchReferences.invoke(null, target, graph);
+  }
+}
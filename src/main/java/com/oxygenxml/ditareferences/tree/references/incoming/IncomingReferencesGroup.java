@@ -0,0 +1,69 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.util.Collections;
+import java.util.List;
+
+import ro.sync.util.URLUtil;
+
+/**
+ * The incoming references from the same file, shown as one node with the
+ * number of references
+ * @author mircea_badoi
+ *
+ */
+public final class IncomingReferencesGroup {
+
+  /**
+   * The references, from the same file
+   */
+  private final List<IncomingReference> references;
+
+  /**
+   * Constructor
+   * @param references The references, from the same file, at least one
+   */
+  public IncomingReferencesGroup(List<IncomingReference> references) {
+    this.references = Collections.unmodifiableList(references);
+  }
+
+  /**
+   * @return The references, from the same file
+   */
+  public List<IncomingReference> getReferences() {
+    return references;
+  }
+
+  /**
+   * @return The system id of the file with the references
+   */
+  public String getSystemId() {
+    return references.get(0).getSystemId();
+  }
+
+  /**
+   * @return The formatted text for the label
+   */
+  public String getRenderText() {
+    String fileName = URLUtil.extractFileName(getSystemId());
+    return (fileName != null ? fileName : "") + " (" + references.size() + ")";
+  }
+
+  /**
+   * @return The text for the tooltip
+   */
+  public String getTooltipText() {
+    return URLUtil.getDescription(getSystemId());
+  }
+
+  @Override
+  public String toString() {
+    return getRenderText();
+  }
+}
@@ -13,15 +13,17 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 import javax.swing.AbstractAction;
 import javax.swing.Icon;
@@ -47,13 +49,16 @@ import com.oxygenxml.ditareferences.i18n.DITAReferencesTranslator;
 import com.oxygenxml.ditareferences.i18n.Tags;
 import com.oxygenxml.ditareferences.tree.references.ReferenceType;
 import com.oxygenxml.ditareferences.tree.references.VersionUtil;
+import com.oxygenxml.ditareferences.workspace.KeysProvider;
 
 import ro.sync.document.DocumentPositionedInfo;
+import ro.sync.ecss.dita.DITAAccess;
 import ro.sync.exml.workspace.api.PluginWorkspace;
 import ro.sync.exml.workspace.api.editor.WSEditor;
 import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
 import ro.sync.exml.workspace.api.editor.page.WSTextBasedEditorPage;
 import ro.sync.exml.workspace.api.listeners.WSEditorChangeListener;
+import ro.sync.exml.workspace.api.listeners.WSEditorListener;
 import ro.sync.exml.workspace.api.standalone.ui.Tree;
 import ro.sync.ui.Icons;
 
@@ -68,11 +73,6 @@ public class IncomingReferencesPanel extends JPanel {
    */
   private static final DITAReferencesTranslator translator = new DITAReferencesTranslator();
   
-  /**
-   * Constant used for java reflexion
-   */
-  private static final String DITA_ACCESS_CLASS_NAME = "ro.sync.ecss.dita.DITAAccess";
-
   /**
    * Generated UID
    */
@@ -83,20 +83,15 @@ public class IncomingReferencesPanel extends JPanel {
    */
   private static final Logger logger = Logger.getLogger(IncomingReferencesPanel.class.getName());
   
-  /**
-   * List with all ongoing references
-   */
-  private transient List<IncomingReference> listOfIncomingReferences = new ArrayList<>();
-  
   /**
    * JTree with ongoing references
    */
   private JTree referenceTree;
   
   /**
-   * References graph
+   * References graph, kept while the root map is the same
    */
-  private transient Object graph;
+  private final transient IncomingReferencesGraph referencesGraph;
   
   /**
    * The plugin workspace
@@ -104,20 +99,52 @@ public class IncomingReferencesPanel extends JPanel {
   private transient PluginWorkspace workspaceAccess;
   
   /**
-   * Timer for loading panel
+   * Runs the searches, only the latest requested one is shown
    */
-  private static transient Timer loadingInProgressTimer = new Timer(false) ;
+  private static final IncomingReferencesQueryExecutor queryExecutor = 
+      new IncomingReferencesQueryExecutor("Incoming references search");
   
   /**
-   * Timer for loading panel
+   * Shows the loading panel after a delay, used on the UI thread
    */
-  private static Timer refreshTimer = new Timer(false) ;
+  private transient javax.swing.Timer loadingInProgressTimer;
   
   /**
-   * TimerTask for loading panel
+   * Searches the references of the expanded nodes, off the UI thread
    */
-  private transient TimerTask loadingInProgressTask;
+  private final transient IncomingReferencesExpansions<DefaultMutableTreeNode> expansions =
+      new IncomingReferencesExpansions<>("Incoming references expand");
   
+  /**
+   * The references found for the last searched documents
+   */
+  private final transient IncomingReferencesCache searchResults = new IncomingReferencesCache(SEARCH_RESULTS_CACHE_SIZE);
+  
+  /**
+   * Searches the documents of a level of the transitive references in parallel
+   */
+  private static final ExecutorService transitiveSearchExecutor = Executors.newFixedThreadPool(
+      Runtime.getRuntime().availableProcessors(), runnable -> {
+        Thread thread = new Thread(runnable, "Incoming references transitive search");
+        thread.setDaemon(true);
+        return thread;
+      });
+  
+  /**
+   * The maximum number of levels of transitive references.
+   */
+  private static final int MAX_TRANSITIVE_DEPTH = 16;
+  
+  /**
+   * The folder of the incoming references index files, in the preferences directory.
+   */
+  private static final String INDEX_FOLDER = "dita-references-index";
+
+  /**
+   * The number of documents for which the references found are kept.
+   */
+  private static final int SEARCH_RESULTS_CACHE_SIZE = 128;
+
   /**
    * The ID of the pending panel.
    */
@@ -142,9 +169,21 @@ public class IncomingReferencesPanel extends JPanel {
    * Constructor
    * @param workspaceAccess The pluginworkspace
    */
-  @SuppressWarnings("serial")
   public IncomingReferencesPanel(PluginWorkspace workspaceAccess) {
+    this(workspaceAccess, DITAAccess::getKeys);
+  }
+
+  /**
+   * Constructor
+   * @param workspaceAccess The pluginworkspace
+   * @param keysProvider Provider of the keys for the references read from the saved files
+   */
+  @SuppressWarnings("serial")
+  public IncomingReferencesPanel(PluginWorkspace workspaceAccess, KeysProvider keysProvider) {
     this.workspaceAccess = workspaceAccess;
+    String preferencesDirectory = workspaceAccess.getPreferencesDirectory();
+    this.referencesGraph = new IncomingReferencesGraph(new ReferencesExtractor(keysProvider),
+        preferencesDirectory != null ? new File(preferencesDirectory, INDEX_FOLDER) : null);
     cards = new CardLayout();
     this.setLayout(cards);
 
@@ -173,7 +212,9 @@ public class IncomingReferencesPanel extends JPanel {
       
       @Override
       public void actionPerformed(ActionEvent e) {
-        graph = null;
+        // the search in progress uses the old graph
+        queryExecutor.cancel();
+        queryExecutor.execute(referencesGraph::invalidate);
         refresh(workspaceAccess.getCurrentEditorAccess(PluginWorkspace.MAIN_EDITING_AREA));
       }
     };
@@ -197,7 +238,7 @@ public class IncomingReferencesPanel extends JPanel {
     if(workspaceAccess != null) {
 
       URL editorLocation = workspaceAccess.getEditorLocation();
-      refresh(editorLocation);
+      refresh(editorLocation, true);
     } else {
       resetTree();
     }
@@ -206,53 +247,190 @@ public class IncomingReferencesPanel extends JPanel {
  /**
   * Refreshes the references in the given editor
   * @param editorLocation The location of the editor to be refreshed
+  * @param useIndex <code>true</code> to show first the references saved in the
+  *                 previous sessions, while the references graph is built;
+  *                 <code>false</code> to search in the graph, without hiding
+  *                 the references already shown
   */
-  private synchronized void refresh(URL editorLocation) {
-    refreshTimer.schedule(new TimerTask() {
-      
-      @SuppressWarnings("serial")
-      @Override
-      public void run() {
-        if(isShowing()) {
-          List<IncomingReference> temp;
-          try {
-            updateInProgressStatus(true, 50);
-            temp = searchIncomingRef(editorLocation);
-            DefaultMutableTreeNode root = new DefaultMutableTreeNode(translator.getTranslation(Tags.INCOMING_REFERENCES));
-            DefaultTreeModel referencesTreeModel = new DefaultTreeModel(root) {
-              @Override
-              public boolean isLeaf(Object node) {return false;}; //NOSONAR
-            };
-            
-            if(temp != null) {
-              for (IncomingReference incomingReference : temp) {
-                DefaultMutableTreeNode ref = new DefaultMutableTreeNode(incomingReference);
-                root.add(ref);
-              }
-            } 
-            
-            SwingUtilities.invokeLater(() -> {
-              if (root.getChildCount() == 0) {
-                DefaultTreeModel noRefModel = new DefaultTreeModel(root);
-                DefaultMutableTreeNode noReferencesFound = new DefaultMutableTreeNode(translator.getTranslation(Tags.NO_INCOMING_REFERENCES_FOUND));
-                root.add(noReferencesFound);
-                referenceTree.setModel(noRefModel);
-              } else {
-                referenceTree.setModel(referencesTreeModel);
-              }
-            });
-            
-          } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-            logger.error(e, e);
-          } finally {
-            updateInProgressStatus(false, 0);
+  private synchronized void refresh(URL editorLocation, boolean useIndex) {
+    // the nodes of the current tree are replaced
+    expansions.cancelAll();
+    // a search for the same document is not repeated, a search for another one cancels it
+    queryExecutor.submit(editorLocation + (useIndex ? "" : " (graph)"), cancelled -> {
+      if(isShowing()) {
+        List<IncomingReference> temp;
+        try {
+          if (useIndex) {
+            updateInProgressStatus(true, 50, cancelled);
+          }
+          // the references are shown as they are found if the graph is built now
+          temp = searchIncomingRef(editorLocation, useIndex,
+              useIndex ? new ProgressiveResults(cancelled) : null);
+          if (cancelled.getAsBoolean()) {
+            return;
+          }
+          showReferences(temp, cancelled);
+          
+          if (useIndex && !referencesGraph.isBuilt()) {
+            // the references from the index are shown until the graph is built
+            refresh(editorLocation, false);
+          }
+        } catch (ReflectiveOperationException e) {
+          logger.error(e, e);
+        } finally {
+          if (useIndex) {
+            updateInProgressStatus(false, 0, cancelled);
           }
         }
       }
-    }, 10);
+    });
    
   }
   
+  /**
+   * Show the references found in the tree.
+   * @param references The references, sorted
+   * @param cancelled <code>true</code> if the search was cancelled and the references must not be shown
+   */
+  private void showReferences(List<IncomingReference> references, BooleanSupplier cancelled) {
+    showReferences(references, null, cancelled);
+  }
+
+  /**
+   * Show the references found in the tree.
+   * @param references The references, sorted
+   * @param note Shown after the references, can be <code>null</code>
+   * @param cancelled <code>true</code> if the search was cancelled and the references must not be shown
+   */
+  private void showReferences(List<IncomingReference> references, String note, BooleanSupplier cancelled) {
+    DefaultMutableTreeNode root = new DefaultMutableTreeNode(translator.getTranslation(Tags.INCOMING_REFERENCES));
+    IncomingReferencesTreeModel referencesTreeModel = new IncomingReferencesTreeModel(root);
+    
+    if(references != null) {
+      // grouped by file and added in pages
+      referencesTreeModel.addReferences(root, references);
+    } 
+    if (note != null && root.getChildCount() > 0) {
+      root.add(new DefaultMutableTreeNode(note));
+    }
+    
+    SwingUtilities.invokeLater(() -> {
+      if (cancelled.getAsBoolean()) {
+        return;
+      }
+      if (root.getChildCount() == 0) {
+        DefaultTreeModel noRefModel = new DefaultTreeModel(root);
+        DefaultMutableTreeNode noReferencesFound = new DefaultMutableTreeNode(translator.getTranslation(Tags.NO_INCOMING_REFERENCES_FOUND));
+        root.add(noReferencesFound);
+        referenceTree.setModel(noRefModel);
+      } else {
+        referenceTree.setModel(referencesTreeModel);
+      }
+    });
+  }
+
+  /**
+   * Show the documents that reference the document in the current editor,
+   * directly or through other documents.
+   */
+  private void showTransitiveReferences() {
+    WSEditor editorAccess = workspaceAccess.getCurrentEditorAccess(PluginWorkspace.MAIN_EDITING_AREA);
+    if (editorAccess == null) {
+      return;
+    }
+    URL editorLocation = editorAccess.getEditorLocation();
+    expansions.cancelAll();
+    queryExecutor.submit(editorLocation + " (transitive)", cancelled -> {
+      updateInProgressStatus(true, 50, cancelled);
+      try {
+        // the references already found for a document are reused
+        TransitiveIncomingReferencesQuery.Result result = new TransitiveIncomingReferencesQuery(
+            target -> searchIncomingRef(target, false), transitiveSearchExecutor, MAX_TRANSITIVE_DEPTH)
+            .run(editorLocation, (searchedDocuments, foundDocuments) -> SwingUtilities.invokeLater(
+                () -> loadingLabel.setText(translator.getTranslation(Tags.LOADING) + " " + foundDocuments + " / "
+                    + searchedDocuments)),
+                cancelled);
+        if (!cancelled.getAsBoolean()) {
+          // a closure cut at the maximum depth is shown as such
+          showReferences(result.getReferences(), result.isComplete() ? null
+              : translator.getTranslation(Tags.TRANSITIVE_REFERENCES_TRUNCATED) + " " + MAX_TRANSITIVE_DEPTH,
+              cancelled);
+        }
+      } finally {
+        updateInProgressStatus(false, 0, cancelled);
+      }
+    });
+  }
+
+  /**
+   * Shows the first references of a search as they are found, sorted, until
+   * the search ends and the tree is replaced with all the references.
+   */
+  private final class ProgressiveResults implements Consumer<List<DocumentPositionedInfo>> {
+    /**
+     * <code>true</code> if the search was cancelled
+     */
+    private final BooleanSupplier cancelled;
+
+    /**
+     * The model with the references found, null until the first ones are found. Used on the UI thread.
+     */
+    private IncomingReferencesTreeModel model;
+
+    /**
+     * Constructor
+     * @param cancelled <code>true</code> if the search was cancelled
+     */
+    ProgressiveResults(BooleanSupplier cancelled) {
+      this.cancelled = cancelled;
+    }
+
+    @Override
+    public void accept(List<DocumentPositionedInfo> batch) {
+      List<IncomingReference> references = new ArrayList<>(batch.size());
+      for (DocumentPositionedInfo documentPositionedInfo : batch) {
+        references.add(new IncomingReference(documentPositionedInfo));
+      }
+      SwingUtilities.invokeLater(() -> {
+        if (cancelled.getAsBoolean()) {
+          return;
+        }
+        if (model == null) {
+          model = new IncomingReferencesTreeModel(new DefaultMutableTreeNode(translator.getTranslation(Tags.INCOMING_REFERENCES)));
+          referenceTree.setModel(model);
+          // the first references replace the loading panel
+          updateInProgressStatus(false, 0, cancelled);
+        }
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
+        for (IncomingReference reference : references) {
+          if (root.getChildCount() >= IncomingReferencesTreeModel.PAGE_SIZE) {
+            // the others are shown, grouped, when the search ends
+            break;
+          }
+          model.insertNodeInto(new DefaultMutableTreeNode(reference), root, getInsertIndex(root, reference));
+        }
+      });
+    }
+
+    /**
+     * @return The index after the references sorted before or with the given one
+     */
+    private int getInsertIndex(DefaultMutableTreeNode root, IncomingReference reference) {
+      int low = 0;
+      int high = root.getChildCount();
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        IncomingReference child = (IncomingReference) ((DefaultMutableTreeNode) root.getChildAt(middle)).getUserObject();
+        if (child.compareTo(reference) <= 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+  
   /**
    * Resets the tree to empty model
    */
@@ -268,41 +446,62 @@ public class IncomingReferencesPanel extends JPanel {
   /**
    * Search for ongoing references and compute the label for them
    * @param editorLocation The editor to search location
-   * @return The list of found ongoing references
-   * @throws ClassNotFoundException
-   * @throws NoSuchMethodException
-   * @throws IllegalAccessException
-   * @throws InvocationTargetException
-   */
-  @SuppressWarnings("unchecked")
-  private List<IncomingReference> searchIncomingRef(URL editorLocation)
-      throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InvocationTargetException {
-
-    if(VersionUtil.isOxygenVersionNewer(23, 0)){
-      Class<?> ditaAccess = Class.forName(DITA_ACCESS_CLASS_NAME);
-      if(graph == null) {
-        Method createReferencesGraph = ditaAccess.getDeclaredMethod(VersionUtil.METHOD_NAME_CREATE_REFERENCE_GRAPH);
-        graph = createReferencesGraph.invoke(null);
-      }
-      Method searchReferences = ditaAccess.getDeclaredMethod(VersionUtil.METHOD_NAME_SEARCH_REFERENCES, URL.class, Object.class);
-      listOfIncomingReferences.clear();
-      List<DocumentPositionedInfo> result;
-      result = (List<DocumentPositionedInfo>) searchReferences.invoke(null,editorLocation, graph);
-      for (DocumentPositionedInfo documentPositionedInfo : result) {
-        listOfIncomingReferences.add(new IncomingReference(documentPositionedInfo));
-      }
-      Collections.sort(listOfIncomingReferences);
-      for (int i = 0; i < listOfIncomingReferences.size(); i++) {
-        if(i>0) {
-          IncomingReference ref1 = listOfIncomingReferences.get(i - 1);
-          IncomingReference ref2 = listOfIncomingReferences.get(i);
-          if(ref1.getSystemId().equals(ref2.getSystemId())) {
-            ref1.setShowExtraLineNumberInformation();
-            ref2.setShowExtraLineNumberInformation();
-          } 
-        } 
-      }
-    } 
+   * @param useIndex <code>true</code> to use the references saved in the
+   *                 previous sessions if the graph is not built
+   * @return The list of found ongoing references, not modifiable
+   * @throws ReflectiveOperationException
+   */
+  private List<IncomingReference> searchIncomingRef(URL editorLocation, boolean useIndex)
+      throws ReflectiveOperationException {
+    return searchIncomingRef(editorLocation, useIndex, null);
+  }
+
+  /**
+   * Search for ongoing references and compute the label for them
+   * @param editorLocation The editor to search location
+   * @param useIndex <code>true</code> to use the references saved in the
+   *                 previous sessions if the graph is not built
+   * @param partialResults If the graph is built by this search, receives the
+   *                       references in batches, as they are found; can be
+   *                       <code>null</code>
+   * @return The list of found ongoing references, not modifiable
+   * @throws ReflectiveOperationException
+   */
+  private List<IncomingReference> searchIncomingRef(URL editorLocation, boolean useIndex,
+      Consumer<List<DocumentPositionedInfo>> partialResults) throws ReflectiveOperationException {
+
+    if(!VersionUtil.isOxygenVersionNewer(23, 0)){
+      return Collections.emptyList();
+    }
+    long graphModificationCount = referencesGraph.getModificationCount();
+    List<IncomingReference> cachedReferences = searchResults.get(editorLocation, graphModificationCount);
+    if (cachedReferences != null) {
+      return cachedReferences;
+    }
+
+    List<IncomingReference> sortedReferences = new ArrayList<>();
+    List<DocumentPositionedInfo> result;
+    result = referencesGraph.searchReferences(editorLocation, useIndex, partialResults);
+    for (DocumentPositionedInfo documentPositionedInfo : result) {
+      sortedReferences.add(new IncomingReference(documentPositionedInfo));
+    }
+    Collections.sort(sortedReferences);
+    List<IncomingReference> listOfIncomingReferences = new ArrayList<>(sortedReferences.size());
+    for (int i = 0; i < sortedReferences.size(); i++) {
+      String systemId = sortedReferences.get(i).getSystemId();
+      // the references from the same file are shown with the line and column
+      boolean showExtraLineNumberInformation = 
+          (i > 0 && systemId.equals(sortedReferences.get(i - 1).getSystemId()))
+          || (i < sortedReferences.size() - 1 && systemId.equals(sortedReferences.get(i + 1).getSystemId()));
+      listOfIncomingReferences.add(showExtraLineNumberInformation
+          ? new IncomingReference(sortedReferences.get(i).getDPI(), true) : sortedReferences.get(i));
+    }
+    listOfIncomingReferences = Collections.unmodifiableList(listOfIncomingReferences);
+
+    // kept only if found in the graph, not in the index, and the graph did not change meanwhile
+    if (referencesGraph.isBuilt() && referencesGraph.getModificationCount() == graphModificationCount) {
+      searchResults.put(editorLocation, graphModificationCount, listOfIncomingReferences);
+    }
     return listOfIncomingReferences;
   }
   
@@ -330,8 +529,14 @@ public class IncomingReferencesPanel extends JPanel {
    */
   private void openFileAndSelectReference(PluginWorkspace workspaceAccess) {
     DefaultMutableTreeNode node = (DefaultMutableTreeNode) referenceTree.getLastSelectedPathComponent();
-    if (node != null) {
+    if (node instanceof IncomingReferencesTreeModel.MoreNode) {
+      ((IncomingReferencesTreeModel) referenceTree.getModel()).loadMore((IncomingReferencesTreeModel.MoreNode) node);
+    } else if (node != null) {
       Object userObject =  node.getUserObject();
+      if (userObject instanceof IncomingReferencesGroup) {
+        // the first reference from the file
+        userObject = ((IncomingReferencesGroup) userObject).getReferences().get(0);
+      }
       if(userObject instanceof IncomingReference) {
         IncomingReference referenceInfo = (IncomingReference) userObject;
         try {
@@ -340,13 +545,9 @@ public class IncomingReferencesPanel extends JPanel {
             WSEditor editorAccess = workspaceAccess.getEditorAccess(url, PluginWorkspace.MAIN_EDITING_AREA);
             if(editorAccess != null) {
               WSEditorPage currentPage = editorAccess.getCurrentPage();
-              refreshTimer.schedule(new TimerTask() {
-                
-                @Override
-                public void run() {
-                  SwingUtilities.invokeLater(() -> selectRange(currentPage, referenceInfo));
-                }
-              }, 50);
+              javax.swing.Timer selectTimer = new javax.swing.Timer(50, e -> selectRange(currentPage, referenceInfo));
+              selectTimer.setRepeats(false);
+              selectTimer.start();
             }
           }
         } catch (MalformedURLException e1) {
@@ -378,34 +579,121 @@ public class IncomingReferencesPanel extends JPanel {
       public void treeWillExpand(TreeExpansionEvent event) throws ExpandVetoException {
         DefaultMutableTreeNode source = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
         if(source != null && source.getChildCount() == 0) {
-          try {
-            IncomingReference referenceInfo = (IncomingReference)(source.getUserObject());
-            List<IncomingReference> temp;
-            URL editorLocation = new URL(referenceInfo.getSystemId());
-            temp = searchIncomingRef(editorLocation);
-            for (int i = 0; i < temp.size() ; i++) {
-              source.add(new DefaultMutableTreeNode(temp.get(i)));
-            }
-          } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException
-              | MalformedURLException e1) {
-            logger.error(e1, e1);
-          } 
+          if (source.getUserObject() instanceof IncomingReferencesGroup) {
+            // the references from the file, added before the node is expanded
+            ((IncomingReferencesTreeModel) referenceTree.getModel()).loadGroup(source);
+          } else if (source.getUserObject() instanceof IncomingReference) {
+            expandLater(source);
+          }
         }
       }
 
       @Override
       public void treeWillCollapse(TreeExpansionEvent event) throws ExpandVetoException {
-        //not needed
+        DefaultMutableTreeNode source = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
+        if (expansions.cancel(source)) {
+          // the loading node or the references from the index, searched again with the next expand
+          SwingUtilities.invokeLater(() -> {
+            source.removeAllChildren();
+            ((DefaultTreeModel) referenceTree.getModel()).nodeStructureChanged(source);
+          });
+        }
       }
     });
 
     workspaceAccess.addEditorChangeListener(new WSEditorChangeListener() {
+      @Override
+      public void editorOpened(URL editorLocation) {
+        addSaveListener(workspaceAccess.getEditorAccess(editorLocation, PluginWorkspace.DITA_MAPS_EDITING_AREA));
+      }
+
       @Override
       public void editorSelected(URL editorLocation) {
-        graph = null;
-        refresh(editorLocation);
+        // the index of the previous root map is saved off the UI thread, before the next search
+        queryExecutor.execute(() -> referencesGraph.rootMapSelected(editorLocation));
+        refresh(editorLocation, true);
       }
     }, PluginWorkspace.DITA_MAPS_EDITING_AREA);
+
+    workspaceAccess.addEditorChangeListener(new WSEditorChangeListener() {
+      @Override
+      public void editorOpened(URL editorLocation) {
+        addSaveListener(workspaceAccess.getEditorAccess(editorLocation, PluginWorkspace.MAIN_EDITING_AREA));
+      }
+    }, PluginWorkspace.MAIN_EDITING_AREA);
+  }
+
+  /**
+   * Show a loading node in the expanded node and search its references in the
+   * background, the loading node is replaced with the references found. The
+   * references from the index are searched again in the graph.
+   * @param source The expanded node
+   */
+  private void expandLater(DefaultMutableTreeNode source) {
+    IncomingReferencesTreeModel model = (IncomingReferencesTreeModel) referenceTree.getModel();
+    source.add(new DefaultMutableTreeNode(translator.getTranslation(Tags.LOADING)));
+    IncomingReference referenceInfo = (IncomingReference) source.getUserObject();
+    expansions.expand(source, cancelled -> {
+      try {
+        URL target = new URL(referenceInfo.getSystemId());
+        List<IncomingReference> temp = searchIncomingRef(target, true);
+        if (!referencesGraph.isBuilt() && !cancelled.getAsBoolean()) {
+          // the references from the index are shown until the graph is built
+          List<IncomingReference> indexed = temp;
+          SwingUtilities.invokeLater(() -> showExpansion(source, model, indexed, cancelled));
+          temp = searchIncomingRef(target, false);
+        }
+        List<IncomingReference> found = temp;
+        SwingUtilities.invokeLater(() -> {
+          // not collapsed or replaced by a refresh in the meantime
+          if (expansions.complete(source, cancelled)) {
+            showExpansion(source, model, found, cancelled);
+          }
+        });
+      } catch (ReflectiveOperationException | MalformedURLException | RuntimeException e1) {
+        if (!(e1 instanceof CancellationException)) {
+          logger.error(e1, e1);
+        }
+        SwingUtilities.invokeLater(() -> {
+          if (expansions.complete(source, cancelled)) {
+            // searched again with the next expand
+            source.removeAllChildren();
+            model.nodeStructureChanged(source);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Replace the children of an expanded node with the references found. Called on the UI thread.
+   * @param source The expanded node
+   * @param model The model of the node
+   * @param references The references, sorted
+   * @param cancelled <code>true</code> if the references must not be shown
+   */
+  private void showExpansion(DefaultMutableTreeNode source, IncomingReferencesTreeModel model,
+      List<IncomingReference> references, BooleanSupplier cancelled) {
+    if (!cancelled.getAsBoolean() && referenceTree.getModel() == model) {
+      source.removeAllChildren();
+      model.addReferences(source, references);
+    }
+  }
+
+  /**
+   * Read again the references of the files saved in the given editor.
+   * @param editorAccess The editor, can be <code>null</code>
+   */
+  private void addSaveListener(WSEditor editorAccess) {
+    if (editorAccess != null) {
+      editorAccess.addEditorListener(new WSEditorListener() {
+        @Override
+        public void editorSaved(int operationType) {
+          URL savedFile = editorAccess.getEditorLocation();
+          queryExecutor.execute(() -> referencesGraph.fileSaved(savedFile));
+        }
+      });
+    }
   }
   
   /**
@@ -460,6 +748,13 @@ public class IncomingReferencesPanel extends JPanel {
               openFileAndSelectReference(workspaceAccess);
             }
           });
+          menu.add(new AbstractAction(translator.getTranslation(Tags.SHOW_TRANSITIVE_REFERENCES)) {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+              showTransitiveReferences();
+            }
+          });
           menu.show(e1.getComponent(), e1.getX(), e1.getY());
         }
       }
@@ -472,35 +767,58 @@ public class IncomingReferencesPanel extends JPanel {
    * @param inProgress <code>true</code> if the project is starting to load,
    *                   <code>false</code> if the project was loaded.
    * @param delay after which the function to be executed
+   * @param cancelled <code>true</code> if the search was cancelled and must
+   *                  not change the panel; the panel is changed on the UI thread
    */
-  private void updateInProgressStatus(final boolean inProgress, int delay) {
-    if(loadingInProgressTask != null) {
-      loadingInProgressTask.cancel();
-      loadingInProgressTask = null;
+  private void updateInProgressStatus(final boolean inProgress, int delay, BooleanSupplier cancelled) {
+    Runnable update = () -> {
+      // a cancelled search does not change the panel of the newer one
+      if (cancelled.getAsBoolean()) {
+        return;
+      }
+      if (loadingInProgressTimer != null) {
+        loadingInProgressTimer.stop();
+        loadingInProgressTimer = null;
+      }
+      if (inProgress) {
+        loadingInProgressTimer = new javax.swing.Timer(delay, e -> {
+          if (!cancelled.getAsBoolean()) {
+            loadingLabel.setText(translator.getTranslation(Tags.LOADING));
+            // Display pending panel.
+            cards.show(IncomingReferencesPanel.this, LOADING_ID);
+          }
+        });
+        loadingInProgressTimer.setRepeats(false);
+        loadingInProgressTimer.start();
+      } else {
+        // Display the result
+        cards.show(IncomingReferencesPanel.this, ReferenceType.INCOMING.toString());
+      }
+    };
+    if (SwingUtilities.isEventDispatchThread()) {
+      update.run();
+    } else {
+      SwingUtilities.invokeLater(update);
     }
-    loadingInProgressTask = new TimerTask() {
-      @Override
-      public void run() {
-        try {
-          SwingUtilities.invokeAndWait(() -> {
-
-            if (inProgress) {
-              loadingLabel.setText(translator.getTranslation(Tags.LOADING));
-              // Display pending panel.
-              cards.show(IncomingReferencesPanel.this, LOADING_ID);
-            } else {
-              // Display the result
-              cards.show(IncomingReferencesPanel.this, ReferenceType.INCOMING.toString());
-            }
-
-          });  
-        } catch(Exception e) {
-          logger.error(e, e);
-        }
-      }};
-      loadingInProgressTimer.schedule(loadingInProgressTask, delay);
   }
   
+  /**
+   * A map of the current root map was saved. Its key definitions may have
+   * changed the targets of the key references from any file, so the references
+   * graph is built again with the next search.
+   */
+  public void rootMapHierarchySaved() {
+    queryExecutor.execute(referencesGraph::invalidate);
+  }
+
+  /**
+   * Save the references found in this session, to be shown at the next startup
+   * while the references graph is built.
+   */
+  public void saveIndex() {
+    referencesGraph.saveIndex();
+  }
+
   /**
    * Get the action for the refresh button
    */
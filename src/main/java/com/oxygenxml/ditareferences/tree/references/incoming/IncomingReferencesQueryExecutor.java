@@ -0,0 +1,288 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs the searches of incoming references one at a time, on a background
+ * thread. Only the latest search requested is kept: a new search cancels the
+ * one waiting and the one running, unless it is for the same key, in which
+ * case it is coalesced with them. A search requested by the running one, to
+ * continue it, does not cancel it. The other tasks, like reading the saved
+ * files, run in the order they are executed on their own thread, so they do
+ * not wait for a running search; a search waits for the tasks executed before
+ * it was requested.
+ * @author mircea_badoi
+ *
+ */
+public final class IncomingReferencesQueryExecutor {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(IncomingReferencesQueryExecutor.class.getName());
+
+  /**
+   * A search of incoming references.
+   */
+  @FunctionalInterface
+  public interface Query {
+    /**
+     * Run the search.
+     * @param cancelled <code>true</code> when a newer search was requested and
+     *                  the results must no longer be shown
+     * @throws Exception
+     */
+    void run(BooleanSupplier cancelled) throws Exception;
+  }
+
+  /**
+   * A requested search.
+   */
+  private static final class Request {
+    private final String key;
+    private final Query query;
+    private final long submitTime;
+    private final Future<?> tasksBefore;
+    private volatile boolean cancelled;
+
+    Request(String key, Query query, Future<?> tasksBefore) {
+      this.key = key;
+      this.query = query;
+      this.submitTime = System.nanoTime();
+      this.tasksBefore = tasksBefore;
+    }
+  }
+
+  /**
+   * The thread running the searches
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The thread running the tasks
+   */
+  private final ExecutorService taskExecutor;
+
+  /**
+   * The search waiting to run, null if none
+   */
+  private Request pending;
+
+  /**
+   * The search running, null if none
+   */
+  private Request running;
+
+  /**
+   * The thread running the searches
+   */
+  private Thread executorThread;
+
+  /**
+   * The number of searches requested
+   */
+  private long submittedCount;
+
+  /**
+   * The number of searches coalesced with a search for the same key
+   */
+  private long coalescedCount;
+
+  /**
+   * The number of searches cancelled by newer ones
+   */
+  private long cancelledCount;
+
+  /**
+   * The number of searches completed without being cancelled
+   */
+  private long completedCount;
+
+  /**
+   * The total time from request to result of the completed searches, in nanoseconds
+   */
+  private long totalTimeToResult;
+
+  /**
+   * The time from request to result of the last completed search, in nanoseconds
+   */
+  private long lastTimeToResult;
+
+  /**
+   * Constructor
+   * @param threadName The name of the thread running the searches
+   */
+  public IncomingReferencesQueryExecutor(String threadName) {
+    executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, threadName);
+      thread.setDaemon(true);
+      synchronized (this) {
+        executorThread = thread;
+      }
+      return thread;
+    });
+    taskExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, threadName + " tasks");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Request a search. The search waiting and the one running are cancelled,
+   * unless they are for the same key.
+   * @param key Identifies the searched document
+   * @param query The search
+   */
+  public synchronized void submit(String key, Query query) {
+    submittedCount++;
+    if (pending != null ? pending.key.equals(key)
+        : running != null && !running.cancelled && running.key.equals(key)) {
+      coalescedCount++;
+      return;
+    }
+
+    if (running != null && !running.cancelled && Thread.currentThread() != executorThread) {
+      running.cancelled = true;
+      cancelledCount++;
+    }
+    if (pending != null) {
+      pending.cancelled = true;
+      cancelledCount++;
+    } else {
+      executor.execute(this::runPending);
+    }
+    // the search runs after the tasks executed before it
+    pending = new Request(key, query, taskExecutor.submit(() -> {}));
+  }
+
+  /**
+   * Execute a task after the ones already executed. The searches requested
+   * after it wait for it, the running search is not waited for.
+   * @param task The task
+   */
+  public void execute(Runnable task) {
+    taskExecutor.execute(task);
+  }
+
+  /**
+   * Cancel the search waiting and the one running.
+   */
+  public synchronized void cancel() {
+    for (Request request : new Request[] { pending, running }) {
+      if (request != null && !request.cancelled) {
+        request.cancelled = true;
+        cancelledCount++;
+      }
+    }
+    pending = null;
+  }
+
+  /**
+   * Run the search waiting, if not replaced by a newer one.
+   */
+  private void runPending() {
+    Request request;
+    synchronized (this) {
+      request = pending;
+      pending = null;
+      running = request;
+    }
+    if (request != null) {
+      try {
+        request.tasksBefore.get();
+        request.query.run(() -> request.cancelled);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (CancellationException e) {
+        // the search was abandoned, its results are not needed
+        logger.debug(e, e);
+      } catch (Exception e) {
+        logger.error(e, e);
+      } finally {
+        synchronized (this) {
+          running = null;
+          if (!request.cancelled) {
+            completedCount++;
+            lastTimeToResult = System.nanoTime() - request.submitTime;
+            totalTimeToResult += lastTimeToResult;
+          }
+        }
+        if (logger.isDebugEnabled()) {
+          logger.debug((request.cancelled ? "Cancelled " : "Completed ") + request.key + ", " + getMetrics());
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The number of searches waiting or running, at most 2.
+   */
+  public synchronized int getQueueDepth() {
+    return (pending != null ? 1 : 0) + (running != null ? 1 : 0);
+  }
+
+  /**
+   * @return The number of searches requested
+   */
+  public synchronized long getSubmittedCount() {
+    return submittedCount;
+  }
+
+  /**
+   * @return The number of searches coalesced with a search for the same key
+   */
+  public synchronized long getCoalescedCount() {
+    return coalescedCount;
+  }
+
+  /**
+   * @return The number of searches cancelled by newer ones
+   */
+  public synchronized long getCancelledCount() {
+    return cancelledCount;
+  }
+
+  /**
+   * @return The number of searches completed without being cancelled
+   */
+  public synchronized long getCompletedCount() {
+    return completedCount;
+  }
+
+  /**
+   * @return The time from request to result of the last completed search, in milliseconds
+   */
+  public synchronized long getLastTimeToResult() {
+    return lastTimeToResult / 1_000_000;
+  }
+
+  /**
+   * @return The average time from request to result of the completed searches, in milliseconds
+   */
+  public synchronized long getAverageTimeToResult() {
+    return completedCount > 0 ? totalTimeToResult / completedCount / 1_000_000 : 0;
+  }
+
+  /**
+   * @return The metrics, as they are logged
+   */
+  public synchronized String getMetrics() {
+    return "queue depth: " + getQueueDepth() + ", submitted: " + submittedCount + ", coalesced: " + coalescedCount
+        + ", cancelled: " + cancelledCount + ", completed: " + completedCount + ", last time to result: "
+        + getLastTimeToResult() + " ms, average time to result: " + getAverageTimeToResult() + " ms";
+  }
+}
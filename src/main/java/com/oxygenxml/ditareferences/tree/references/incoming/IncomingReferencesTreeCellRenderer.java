@@ -66,22 +66,36 @@ public class IncomingReferencesTreeCellRenderer extends TreeCellRenderer{
         IncomingReference referenceInfo = (IncomingReference) (node.getUserObject());
         label.setText(referenceInfo.getRenderText());
         label.setToolTipText(referenceInfo.getTooltipText());
-        try {
-          Icon iconDecoration = (Icon) imageUtilities.getIconDecoration(new URL(referenceInfo.getSystemId()));
-          String fileName = URLUtil.extractFileName(referenceInfo.getSystemId());
-          if(fileName.endsWith(".dita") || fileName.endsWith(".xml")) {
-            URL resource = getClass().getResource("/images/DitaTopicRef16.png");
-            iconDecoration = (Icon) imageUtilities.loadIcon(resource);
-          } 
-          if(iconDecoration != null) {
-            label.setIcon(iconDecoration);
-          }
-        } catch (MalformedURLException e) {
-          logger.error(e, e);
-        }
+        setFileIcon(label, referenceInfo.getSystemId());
+      } else if (node.getUserObject() instanceof IncomingReferencesGroup) {
+        IncomingReferencesGroup group = (IncomingReferencesGroup) (node.getUserObject());
+        label.setText(group.getRenderText());
+        label.setToolTipText(group.getTooltipText());
+        setFileIcon(label, group.getSystemId());
       }
     }
     return label;
   }
   
+  /**
+   * Set the icon of the file with the references.
+   * @param label The label
+   * @param systemId The system id of the file
+   */
+  private void setFileIcon(JLabel label, String systemId) {
+    try {
+      Icon iconDecoration = (Icon) imageUtilities.getIconDecoration(new URL(systemId));
+      String fileName = URLUtil.extractFileName(systemId);
+      if(fileName.endsWith(".dita") || fileName.endsWith(".xml")) {
+        URL resource = getClass().getResource("/images/DitaTopicRef16.png");
+        iconDecoration = (Icon) imageUtilities.loadIcon(resource);
+      } 
+      if(iconDecoration != null) {
+        label.setIcon(iconDecoration);
+      }
+    } catch (MalformedURLException e) {
+      logger.error(e, e);
+    }
+  }
+  
 }
@@ -0,0 +1,171 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+
+import com.oxygenxml.ditareferences.i18n.DITAReferencesTranslator;
+import com.oxygenxml.ditareferences.i18n.Tags;
+import com.oxygenxml.ditareferences.i18n.Translator;
+
+/**
+ * The model of the incoming references tree. The references are grouped by
+ * the file they are in, the references of a group are added when it is
+ * expanded and the nodes are added in pages, so the size of the tree does not
+ * depend on the number of references.
+ * @author mircea_badoi
+ *
+ */
+public class IncomingReferencesTreeModel extends DefaultTreeModel {
+
+  /**
+   * Generated UID
+   */
+  private static final long serialVersionUID = -2790473226301263017L;
+
+  /**
+   * The number of nodes added at once
+   */
+  public static final int PAGE_SIZE = 200;
+
+  /**
+   * The node that adds the next page of nodes to its parent.
+   */
+  public static final class MoreNode extends DefaultMutableTreeNode {
+    /**
+     * Generated UID
+     */
+    private static final long serialVersionUID = 4950458802616398838L;
+
+    /**
+     * The groups or references not added yet
+     */
+    private final transient List<Object> remaining;
+
+    /**
+     * Constructor
+     * @param remaining The groups or references not added yet
+     * @param label The label
+     */
+    MoreNode(List<Object> remaining, String label) {
+      super(label + " (" + remaining.size() + ")");
+      this.remaining = remaining;
+    }
+
+    /**
+     * @return The number of groups or references not added yet
+     */
+    public int getRemainingCount() {
+      return remaining.size();
+    }
+  }
+
+  /**
+   * For translation
+   */
+  private final transient Translator translator;
+
+  /**
+   * Constructor
+   * @param root The root node
+   */
+  public IncomingReferencesTreeModel(DefaultMutableTreeNode root) {
+    this(root, new DITAReferencesTranslator());
+  }
+
+  /**
+   * Constructor
+   * @param root The root node
+   * @param translator For translation
+   */
+  public IncomingReferencesTreeModel(DefaultMutableTreeNode root, Translator translator) {
+    super(root);
+    this.translator = translator;
+  }
+
+  /**
+   * The references and groups can be expanded, the other nodes are leaves.
+   */
+  @Override
+  public boolean isLeaf(Object node) {
+    Object userObject = ((DefaultMutableTreeNode) node).getUserObject();
+    return !(userObject instanceof IncomingReference || userObject instanceof IncomingReferencesGroup)
+        && ((DefaultMutableTreeNode) node).getChildCount() == 0;
+  }
+
+  /**
+   * Add the references to a node, grouped by the file they are in. The first
+   * page of references and groups is added.
+   * @param parent The node
+   * @param references The references, sorted
+   */
+  public void addReferences(DefaultMutableTreeNode parent, List<IncomingReference> references) {
+    Map<String, List<IncomingReference>> referencesByFile = new LinkedHashMap<>();
+    for (IncomingReference reference : references) {
+      referencesByFile.computeIfAbsent(reference.getSystemId(), key -> new ArrayList<>(1)).add(reference);
+    }
+    List<Object> children = new ArrayList<>(referencesByFile.size());
+    for (List<IncomingReference> fileReferences : referencesByFile.values()) {
+      children.add(fileReferences.size() == 1 ? fileReferences.get(0) : new IncomingReferencesGroup(fileReferences));
+    }
+    addPage(parent, children);
+    nodeStructureChanged(parent);
+  }
+
+  /**
+   * Add the first page of references of a group to its node, if not added.
+   * Called before the node is expanded, so no event is sent.
+   * @param groupNode The node of the group
+   */
+  public void loadGroup(DefaultMutableTreeNode groupNode) {
+    if (groupNode.getChildCount() == 0 && groupNode.getUserObject() instanceof IncomingReferencesGroup) {
+      addPage(groupNode, new ArrayList<>(((IncomingReferencesGroup) groupNode.getUserObject()).getReferences()));
+    }
+  }
+
+  /**
+   * Replace a node with the next page of nodes.
+   * @param moreNode The node
+   */
+  public void loadMore(MoreNode moreNode) {
+    DefaultMutableTreeNode parent = (DefaultMutableTreeNode) moreNode.getParent();
+    if (parent != null) {
+      int index = parent.getIndex(moreNode);
+      parent.remove(moreNode);
+      addPage(parent, moreNode.remaining);
+      int[] addedIndices = new int[parent.getChildCount() - index];
+      for (int i = 0; i < addedIndices.length; i++) {
+        addedIndices[i] = index + i;
+      }
+      nodesWereRemoved(parent, new int[] { index }, new Object[] { moreNode });
+      nodesWereInserted(parent, addedIndices);
+    }
+  }
+
+  /**
+   * Add a page of nodes and a node for the remaining ones.
+   * @param parent The parent node
+   * @param items The references or the groups
+   */
+  private void addPage(DefaultMutableTreeNode parent, List<Object> items) {
+    int pageSize = Math.min(PAGE_SIZE, items.size());
+    for (int i = 0; i < pageSize; i++) {
+      parent.add(new DefaultMutableTreeNode(items.get(i)));
+    }
+    if (items.size() > pageSize) {
+      parent.add(new MoreNode(new ArrayList<>(items.subList(pageSize, items.size())),
+          translator.getTranslation(Tags.SHOW_MORE_REFERENCES)));
+    }
+  }
+}
@@ -0,0 +1,472 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import ro.sync.document.DocumentPositionedInfo;
+
+/**
+ * The incoming references found in the previous sessions, saved in a binary
+ * index file for every root map, so that they are shown at startup without
+ * waiting for the references graph of the whole project. The file keeps the
+ * last modification time and size of every referencing file; when the index
+ * is loaded, only the files changed since are read again, with the files of
+ * the root map folder changed or added since the index was loaded, which may
+ * reference the indexed documents. The files outside the root map folder which
+ * start referencing an indexed document between sessions are found only when
+ * the graph is built.
+ * <br>
+ * The index file contains a header with the format version, the root map and
+ * the time since the index is valid, the referencing files with their time
+ * stamps, then the references of every searched document.
+ * @author mircea_badoi
+ *
+ */
+public class PersistentReferencesIndex {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(PersistentReferencesIndex.class.getName());
+
+  /**
+   * The first bytes of an index file
+   */
+  private static final int MAGIC = 0x44524946;
+
+  /**
+   * The version of the index file format, changed also when the location keys
+   * of the documents change
+   */
+  static final int VERSION = 3;
+
+  /**
+   * The time stamp of a referencing file.
+   */
+  private static final class FileStamp {
+    private final String systemId;
+    private final long lastModified;
+    private final long length;
+
+    FileStamp(String systemId, long lastModified, long length) {
+      this.systemId = systemId;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+  }
+
+  /**
+   * The index file
+   */
+  private final File indexFile;
+
+  /**
+   * The root map, can be <code>null</code>
+   */
+  private final String rootMap;
+
+  /**
+   * The referencing files, by location key
+   */
+  private final Map<String, FileStamp> fileStamps = new LinkedHashMap<>();
+
+  /**
+   * The references of the searched documents, by location key
+   */
+  private final Map<String, List<DocumentPositionedInfo>> referencesByTarget = new LinkedHashMap<>();
+
+  /**
+   * The time since the references of the index are valid, the files changed
+   * after it are read again when the index is loaded
+   */
+  private long validSince;
+
+  /**
+   * <code>true</code> if the index was changed since it was loaded or saved
+   */
+  private boolean modified;
+
+  /**
+   * Constructor
+   * @param indexFile The index file
+   * @param rootMap The root map, can be <code>null</code>
+   */
+  private PersistentReferencesIndex(File indexFile, String rootMap) {
+    this.indexFile = indexFile;
+    this.rootMap = rootMap;
+  }
+
+  /**
+   * Load the index of a root map and read again the files changed since it was saved.
+   * @param indexFolder The folder of the index files
+   * @param rootMap The root map, can be <code>null</code>
+   * @param extractor Reads the references of the changed files
+   * @return The index, empty if there is no valid index file.
+   */
+  public static PersistentReferencesIndex load(File indexFolder, String rootMap, ReferencesExtractor extractor) {
+    PersistentReferencesIndex index = new PersistentReferencesIndex(getIndexFile(indexFolder, rootMap), rootMap);
+    long start = System.currentTimeMillis();
+    if (index.indexFile.isFile()) {
+      try {
+        index.read();
+        int changedFiles = index.revalidate(extractor);
+        if (logger.isDebugEnabled()) {
+          logger.debug("Loaded the incoming references of " + index.referencesByTarget.size() + " documents for "
+              + rootMap + " in " + (System.currentTimeMillis() - start) + " ms, " + changedFiles + " changed files");
+        }
+      } catch (IOException | RuntimeException e) {
+        // corrupted or from another version of the plugin
+        logger.debug(e, e);
+        index.fileStamps.clear();
+        index.referencesByTarget.clear();
+      }
+    }
+    // the files changed while loading are read again in the next session
+    index.validSince = start;
+    return index;
+  }
+
+  /**
+   * Get the index file of a root map.
+   */
+  static File getIndexFile(File indexFolder, String rootMap) {
+    String name = rootMap != null ? Integer.toHexString(rootMap.hashCode()) : "project";
+    return new File(indexFolder, "incoming-" + name + ".idx");
+  }
+
+  /**
+   * Get the references to a document found in a previous search.
+   * @param target The document location
+   * @return The references, <code>null</code> if the document was not searched.
+   */
+  public synchronized List<DocumentPositionedInfo> getReferences(URL target) {
+    List<DocumentPositionedInfo> references = referencesByTarget.get(
+        ReferencesExtractor.getLocationKey(target.toExternalForm()));
+    return references != null ? new ArrayList<>(references) : null;
+  }
+
+  /**
+   * Remember the references to a document.
+   * @param target The document location
+   * @param references The references
+   */
+  public synchronized void setReferences(URL target, List<DocumentPositionedInfo> references) {
+    List<DocumentPositionedInfo> indexed = new ArrayList<>(references.size());
+    for (DocumentPositionedInfo reference : references) {
+      String systemId = reference.getSystemID();
+      if (systemId != null) {
+        String fileKey = ReferencesExtractor.getLocationKey(systemId);
+        if (!fileStamps.containsKey(fileKey)) {
+          FileStamp stamp = getCurrentStamp(systemId);
+          if (stamp == null) {
+            // cannot be validated in the next session
+            continue;
+          }
+          fileStamps.put(fileKey, stamp);
+        }
+        indexed.add(reference);
+      }
+    }
+    referencesByTarget.put(ReferencesExtractor.getLocationKey(target.toExternalForm()), indexed);
+    modified = true;
+  }
+
+  /**
+   * A file was saved, its references replace the indexed ones.
+   * @param fileLocation The file location
+   * @param references The references read from the file
+   */
+  public synchronized void fileSaved(URL fileLocation, List<ExtractedReference> references) {
+    String systemId = fileLocation.toExternalForm();
+    String fileKey = ReferencesExtractor.getLocationKey(systemId);
+    removeReferencesFrom(fileKey);
+    addReferences(references);
+    FileStamp stamp = getCurrentStamp(systemId);
+    if (stamp != null) {
+      fileStamps.put(fileKey, stamp);
+    }
+    modified = true;
+  }
+
+  /**
+   * Save the index file, if it was changed.
+   * @throws IOException
+   */
+  public synchronized void save() throws IOException {
+    if (!modified) {
+      return;
+    }
+    File folder = indexFile.getParentFile();
+    if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Cannot create " + folder);
+    }
+    // drop the files without references
+    Map<String, Integer> fileIndices = new HashMap<>();
+    List<FileStamp> referencingFiles = new ArrayList<>();
+    for (List<DocumentPositionedInfo> references : referencesByTarget.values()) {
+      for (DocumentPositionedInfo reference : references) {
+        String fileKey = ReferencesExtractor.getLocationKey(reference.getSystemID());
+        if (!fileIndices.containsKey(fileKey) && fileStamps.containsKey(fileKey)) {
+          fileIndices.put(fileKey, referencingFiles.size());
+          referencingFiles.add(fileStamps.get(fileKey));
+        }
+      }
+    }
+
+    File tempFile = new File(indexFile.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeString(out, rootMap);
+      out.writeLong(validSince);
+      out.writeInt(referencingFiles.size());
+      for (FileStamp stamp : referencingFiles) {
+        writeString(out, stamp.systemId);
+        out.writeLong(stamp.lastModified);
+        out.writeLong(stamp.length);
+      }
+      out.writeInt(referencesByTarget.size());
+      for (Map.Entry<String, List<DocumentPositionedInfo>> entry : referencesByTarget.entrySet()) {
+        writeString(out, entry.getKey());
+        List<DocumentPositionedInfo> references = new ArrayList<>();
+        for (DocumentPositionedInfo reference : entry.getValue()) {
+          if (fileIndices.containsKey(ReferencesExtractor.getLocationKey(reference.getSystemID()))) {
+            references.add(reference);
+          }
+        }
+        out.writeInt(references.size());
+        for (DocumentPositionedInfo reference : references) {
+          out.writeInt(fileIndices.get(ReferencesExtractor.getLocationKey(reference.getSystemID())));
+          out.writeInt(reference.getLine());
+          out.writeInt(reference.getColumn());
+          writeString(out, reference.getMessage());
+        }
+      }
+    }
+    Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    modified = false;
+  }
+
+  /**
+   * @return The number of documents with indexed references.
+   */
+  public synchronized int getDocumentsCount() {
+    return referencesByTarget.size();
+  }
+
+  /**
+   * Read the index file. It is read as a stream, not memory mapped, so that it
+   * is not kept open and can be replaced when the index is saved.
+   */
+  private void read() throws IOException {
+    long fileLength = indexFile.length();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not an index file of version " + VERSION + ": " + indexFile);
+      }
+      String indexedRootMap = readString(in, fileLength);
+      if (indexedRootMap == null ? rootMap != null : !indexedRootMap.equals(rootMap)) {
+        throw new IOException("The index file " + indexFile + " is for " + indexedRootMap);
+      }
+      validSince = in.readLong();
+      FileStamp[] files = new FileStamp[readCount(in, fileLength)];
+      for (int i = 0; i < files.length; i++) {
+        files[i] = new FileStamp(readString(in, fileLength), in.readLong(), in.readLong());
+        fileStamps.put(ReferencesExtractor.getLocationKey(files[i].systemId), files[i]);
+      }
+      int targetsCount = readCount(in, fileLength);
+      for (int i = 0; i < targetsCount; i++) {
+        String target = readString(in, fileLength);
+        int referencesCount = readCount(in, fileLength);
+        List<DocumentPositionedInfo> references = new ArrayList<>(referencesCount);
+        for (int j = 0; j < referencesCount; j++) {
+          FileStamp file = files[in.readInt()];
+          int line = in.readInt();
+          int column = in.readInt();
+          references.add(new DocumentPositionedInfo(DocumentPositionedInfo.SEVERITY_INFO, readString(in, fileLength),
+              file.systemId, line, column));
+        }
+        referencesByTarget.put(target, references);
+      }
+    } catch (EOFException | IndexOutOfBoundsException e) {
+      throw new IOException("Truncated index file " + indexFile, e);
+    }
+  }
+
+  /**
+   * Read again the files changed since the index was saved and the files of
+   * the root map folder changed since the index was loaded.
+   * @return The number of changed files.
+   */
+  private int revalidate(ReferencesExtractor extractor) {
+    List<String> changedFiles = new ArrayList<>();
+    for (Map.Entry<String, FileStamp> entry : fileStamps.entrySet()) {
+      FileStamp stamp = entry.getValue();
+      FileStamp currentStamp = getCurrentStamp(stamp.systemId);
+      if (currentStamp == null || currentStamp.lastModified != stamp.lastModified
+          || currentStamp.length != stamp.length) {
+        changedFiles.add(entry.getKey());
+      }
+    }
+    int newFiles = readNewFiles(extractor);
+    for (String fileKey : changedFiles) {
+      FileStamp stamp = fileStamps.remove(fileKey);
+      removeReferencesFrom(fileKey);
+      try {
+        URL fileLocation = new URL(stamp.systemId);
+        List<ExtractedReference> references = getCurrentStamp(stamp.systemId) != null
+            ? extractor.extract(fileLocation) : null;
+        if (references != null) {
+          addReferences(references);
+          fileStamps.put(fileKey, getCurrentStamp(stamp.systemId));
+        }
+      } catch (IOException e) {
+        logger.debug(e, e);
+      }
+    }
+    modified = !changedFiles.isEmpty() || newFiles > 0;
+    return changedFiles.size() + newFiles;
+  }
+
+  /**
+   * Read the files of the root map folder which did not reference the indexed
+   * documents and were changed or added since the index was loaded.
+   * @return The number of files read.
+   */
+  private int readNewFiles(ReferencesExtractor extractor) {
+    Path projectFolder = ProjectReferencesCrawler.getProjectFolder(rootMap);
+    if (projectFolder == null) {
+      return 0;
+    }
+    int newFiles = 0;
+    try {
+      for (Path file : ProjectReferencesCrawler.listDITAFiles(projectFolder)) {
+        URL fileLocation = file.toUri().toURL();
+        String fileKey = ReferencesExtractor.getLocationKey(fileLocation.toExternalForm());
+        if (!fileStamps.containsKey(fileKey) && Files.getLastModifiedTime(file).toMillis() >= validSince) {
+          List<ExtractedReference> references = extractor.extract(fileLocation);
+          FileStamp stamp = getCurrentStamp(fileLocation.toExternalForm());
+          if (references != null && stamp != null && addReferences(references)) {
+            fileStamps.put(fileKey, stamp);
+          }
+          newFiles++;
+        }
+      }
+    } catch (IOException e) {
+      logger.debug(e, e);
+    }
+    return newFiles;
+  }
+
+  /**
+   * Remove the references from a file.
+   */
+  private void removeReferencesFrom(String fileKey) {
+    for (List<DocumentPositionedInfo> references : referencesByTarget.values()) {
+      for (Iterator<DocumentPositionedInfo> iterator = references.iterator(); iterator.hasNext();) {
+        if (fileKey.equals(ReferencesExtractor.getLocationKey(iterator.next().getSystemID()))) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Add the references to the indexed documents.
+   * @return <code>true</code> if a reference was added.
+   */
+  private boolean addReferences(List<ExtractedReference> references) {
+    boolean added = false;
+    for (ExtractedReference reference : references) {
+      // the other documents were not searched, their references are not all known
+      List<DocumentPositionedInfo> targetReferences = referencesByTarget.get(reference.getTargetLocation());
+      if (targetReferences != null) {
+        targetReferences.add(reference.toDPI());
+        added = true;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Get the current time stamp of a local file.
+   * @return The stamp, <code>null</code> if the file is missing or is not local.
+   */
+  private static FileStamp getCurrentStamp(String systemId) {
+    try {
+      URL url = new URL(systemId);
+      if ("file".equals(url.getProtocol())) {
+        File file = new File(url.toURI());
+        if (file.isFile()) {
+          return new FileStamp(systemId, file.lastModified(), file.length());
+        }
+      }
+    } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+      logger.debug(e, e);
+    }
+    return null;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static String readString(DataInputStream in, long fileLength) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > fileLength) {
+      throw new IOException("Corrupted index file, string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Read the number of the next entries, checked against the file length so
+   * that a corrupted index does not allocate large arrays.
+   */
+  private static int readCount(DataInputStream in, long fileLength) throws IOException {
+    int count = in.readInt();
+    if (count < 0 || count > fileLength) {
+      throw new IOException("Corrupted index file, count " + count);
+    }
+    return count;
+  }
+}
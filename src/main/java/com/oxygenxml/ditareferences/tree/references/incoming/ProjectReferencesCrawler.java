@@ -0,0 +1,367 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+import ro.sync.ecss.dita.reference.keyref.KeyInfo;
+
+/**
+ * Builds the references graph of a project. The crawl starts from the root map
+ * and reads the local DITA files it references, directly or through its
+ * submaps and topics, in parallel on all the processors; the files of the
+ * project folder that are not referenced are not read. Without a root map the
+ * DITA files from the project folder are read. The keys of the root map are
+ * resolved by the caller, once for the whole crawl, which can be cancelled
+ * between files.
+ *
+ * The build output and the tool folders, like <code>out</code> or
+ * <code>node_modules</code>, and the XML files of the build tools are not
+ * listed; the XML files which are not DITA documents are not read.
+ * @author mircea_badoi
+ *
+ */
+public class ProjectReferencesCrawler {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(ProjectReferencesCrawler.class.getName());
+
+  /**
+   * The extensions of the DITA topics and maps
+   */
+  private static final Set<String> DITA_EXTENSIONS = new HashSet<>(Arrays.asList("dita", "ditamap", "xml"));
+
+  /**
+   * The folders with generated or third party files, not read
+   */
+  private static final Set<String> EXCLUDED_FOLDERS = new HashSet<>(
+      Arrays.asList("out", "temp", "tmp", "target", "node_modules"));
+
+  /**
+   * The XML files of the build tools, not read
+   */
+  private static final Set<String> EXCLUDED_FILES = new HashSet<>(
+      Arrays.asList("pom.xml", "build.xml", "catalog.xml"));
+
+  /**
+   * The maximum number of files read by a task without splitting it
+   */
+  private static final int FILES_PER_TASK = 8;
+
+  /**
+   * Reads the references of every file
+   */
+  private final ReferencesExtractor extractor;
+
+  /**
+   * The number of files read in parallel
+   */
+  private final int parallelism;
+
+  /**
+   * Constructor, the files are read on all the processors
+   * @param extractor Reads the references of every file
+   */
+  public ProjectReferencesCrawler(ReferencesExtractor extractor) {
+    this(extractor, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor
+   * @param extractor Reads the references of every file
+   * @param parallelism The number of files read in parallel
+   */
+  public ProjectReferencesCrawler(ReferencesExtractor extractor, int parallelism) {
+    this.extractor = extractor;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * Build the references graph of a project.
+   * @param projectFolder The project folder
+   * @return The graph
+   * @throws IOException if the project folder cannot be listed
+   */
+  public ReferencesGraph crawl(Path projectFolder) throws IOException {
+    return crawl(projectFolder, null, null, null, null);
+  }
+
+  /**
+   * Build the references graph of a project.
+   * @param projectFolder The project folder, its files are read if there is no
+   *                      root map
+   * @param rootMap The root map, the first file read, can be <code>null</code>
+   * @param keys The keys of the root map, resolved by the caller with
+   *             {@link ReferencesExtractor#resolveKeys(URL)}; can be
+   *             <code>null</code>
+   * @param fileReadListener Receives the outgoing references of every file, as
+   *                         it is read, on the threads reading the files; can
+   *                         be <code>null</code>
+   * @param cancelled Checked before reading every file, <code>true</code> to
+   *                  stop the crawl; can be <code>null</code>
+   * @return The graph
+   * @throws IOException if the project folder cannot be listed
+   * @throws CancellationException if the crawl was cancelled
+   */
+  public ReferencesGraph crawl(Path projectFolder, URL rootMap, LinkedHashMap<String, KeyInfo> keys,
+      Consumer<List<ExtractedReference>> fileReadListener, BooleanSupplier cancelled) throws IOException {
+    long start = System.currentTimeMillis();
+    List<Path> files;
+    if (rootMap != null) {
+      // the other files are found from the references of the root map
+      files = new ArrayList<>(1);
+      Path rootMapFile = toLocalDITAFile(rootMap.toExternalForm());
+      if (rootMapFile != null) {
+        files.add(rootMapFile);
+      }
+    } else {
+      files = listDITAFiles(projectFolder);
+    }
+
+    Crawl crawl = new Crawl(keys, fileReadListener, cancelled != null ? cancelled : () -> false);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(crawl.new ReadFilesTask(files.toArray(new Path[0]), 0, files.size()));
+    } finally {
+      pool.shutdown();
+    }
+    if (crawl.cancelled.getAsBoolean()) {
+      throw new CancellationException("Crawl of " + projectFolder + " cancelled");
+    }
+    // the same graph whatever the order the files were read in
+    ReferencesGraph graph = ReferencesGraph.merge(new TreeMap<>(crawl.filesReferences).values());
+
+    if (logger.isDebugEnabled()) {
+      logger.debug("Read the references of " + graph.getFilesCount() + " files from " + projectFolder + " in "
+          + (System.currentTimeMillis() - start) + " ms on " + parallelism + " threads");
+    }
+    return graph;
+  }
+
+  /**
+   * Get the project folder of a root map, the folder of the root map if it is
+   * a local file.
+   * @param rootMap The root map location, can be <code>null</code>
+   * @return The folder or <code>null</code>.
+   */
+  static Path getProjectFolder(String rootMap) {
+    if (rootMap != null && rootMap.startsWith("file:")) {
+      try {
+        Path parent = Paths.get(new URL(rootMap).toURI()).getParent();
+        if (parent != null && Files.isDirectory(parent)) {
+          return parent;
+        }
+      } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+        logger.debug(e, e);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * List the DITA files from a folder and its subfolders, except the hidden and
+   * the excluded ones.
+   * @param folder The folder
+   * @return The files
+   * @throws IOException
+   */
+  static List<Path> listDITAFiles(Path folder) throws IOException {
+    List<Path> files = new ArrayList<>();
+    Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+        Path name = dir.getFileName();
+        return !dir.equals(folder) && name != null && isExcludedFolder(name.toString()) ? FileVisitResult.SKIP_SUBTREE
+            : FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        if (attrs.isRegularFile() && isDITAFile(file)) {
+          files.add(file);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException exc) {
+        logger.debug(exc, exc);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return files;
+  }
+
+  /**
+   * @return <code>true</code> if the folder is hidden or has generated or third party files
+   */
+  private static boolean isExcludedFolder(String name) {
+    return name.startsWith(".") || EXCLUDED_FOLDERS.contains(name.toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * @return <code>true</code> if the file has the extension of a DITA topic or map
+   */
+  private static boolean isDITAFile(Path file) {
+    String name = file.getFileName().toString();
+    if (EXCLUDED_FILES.contains(name.toLowerCase(Locale.ENGLISH))) {
+      return false;
+    }
+    int extensionIndex = name.lastIndexOf('.');
+    return extensionIndex != -1
+        && DITA_EXTENSIONS.contains(name.substring(extensionIndex + 1).toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * The files read by a crawl.
+   */
+  private class Crawl {
+
+    /**
+     * The outgoing references of the files read, by file location
+     */
+    private final Map<String, List<ExtractedReference>> filesReferences = new ConcurrentHashMap<>();
+
+    /**
+     * The files read or being read, by location key
+     */
+    private final Set<String> visitedFiles = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The keys of the root map, can be null
+     */
+    private final LinkedHashMap<String, KeyInfo> keys;
+
+    /**
+     * Receives the outgoing references of every file read, can be null
+     */
+    private final Consumer<List<ExtractedReference>> fileReadListener;
+
+    /**
+     * <code>true</code> when the files left must no longer be read
+     */
+    private final BooleanSupplier cancelled;
+
+    Crawl(LinkedHashMap<String, KeyInfo> keys, Consumer<List<ExtractedReference>> fileReadListener,
+        BooleanSupplier cancelled) {
+      this.keys = keys;
+      this.fileReadListener = fileReadListener;
+      this.cancelled = cancelled;
+    }
+
+    /**
+     * Reads a range of files, splitting it on more tasks if it is large.
+     */
+    @SuppressWarnings("serial")
+    private class ReadFilesTask extends RecursiveAction {
+      private final Path[] files;
+      private final int from;
+      private final int to;
+
+      ReadFilesTask(Path[] files, int from, int to) {
+        this.files = files;
+        this.from = from;
+        this.to = to;
+      }
+
+      @Override
+      protected void compute() {
+        if (to - from > FILES_PER_TASK) {
+          int middle = (from + to) >>> 1;
+          invokeAll(new ReadFilesTask(files, from, middle), new ReadFilesTask(files, middle, to));
+        } else {
+          List<Path> foundFiles = new ArrayList<>();
+          for (int i = from; i < to && !cancelled.getAsBoolean(); i++) {
+            readFile(files[i], foundFiles);
+          }
+          if (!foundFiles.isEmpty()) {
+            // the referenced files from outside the project folder
+            invokeAll(new ReadFilesTask(foundFiles.toArray(new Path[0]), 0, foundFiles.size()));
+          }
+        }
+      }
+    }
+
+    /**
+     * Read the references of a file, if it was not read.
+     * @param file The file
+     * @param foundFiles Collects the referenced DITA files not read yet
+     */
+    private void readFile(Path file, List<Path> foundFiles) {
+      try {
+        URL fileLocation = file.toUri().toURL();
+        String fileKey = ReferencesExtractor.getLocationKey(fileLocation.toExternalForm());
+        if (visitedFiles.add(fileKey)) {
+          List<ExtractedReference> references = extractor.extract(fileLocation, keys);
+          if (references != null) {
+            filesReferences.put(fileKey, references);
+            if (fileReadListener != null) {
+              fileReadListener.accept(references);
+            }
+            for (ExtractedReference reference : references) {
+              Path referencedFile = toLocalDITAFile(reference.getTargetLocation());
+              if (referencedFile != null
+                  && !visitedFiles.contains(ReferencesExtractor.getLocationKey(reference.getTargetLocation()))) {
+                foundFiles.add(referencedFile);
+              }
+            }
+          }
+        }
+      } catch (MalformedURLException e) {
+        logger.debug(e, e);
+      }
+    }
+
+  }
+
+  /**
+   * Get the local DITA file at a location.
+   * @return The file, <code>null</code> if the location is not a local DITA file
+   */
+  private static Path toLocalDITAFile(String location) {
+    if (location.startsWith("file:")) {
+      try {
+        Path file = Paths.get(new URL(location).toURI());
+        if (isDITAFile(file) && Files.isRegularFile(file)) {
+          return file;
+        }
+      } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+        logger.debug(e, e);
+      }
+    }
+    return null;
+  }
+}
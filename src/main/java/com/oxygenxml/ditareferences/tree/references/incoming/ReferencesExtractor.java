@@ -0,0 +1,520 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import javax.swing.SwingUtilities;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.log4j.Logger;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.oxygenxml.ditareferences.tree.references.RefUtilities;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferenceCategory;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferencesCollector;
+import com.oxygenxml.ditareferences.workspace.DITAConstants;
+import com.oxygenxml.ditareferences.workspace.KeysProvider;
+
+import ro.sync.ecss.dita.reference.keyref.KeyInfo;
+
+/**
+ * Reads the outgoing references of a file with a SAX parser, without loading
+ * the DTDs or building a DOM: by reference attribute, with their targets, for
+ * the incoming references, or by reference element, with the categories of the
+ * outgoing references tree, for the files which are not open. The files with the <code>xml</code> extension are
+ * read only if they are DITA documents, by their DOCTYPE or root element.
+ * @author mircea_badoi
+ *
+ */
+public class ReferencesExtractor {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(ReferencesExtractor.class.getName());
+
+  /**
+   * The attributes with a reference to a document
+   */
+  private static final String[] LOCATION_ATTRIBUTES = { DITAConstants.HREF, DITAConstants.CONREF, DITAConstants.DATA };
+
+  /**
+   * The attributes with a reference to a key
+   */
+  private static final String[] KEY_ATTRIBUTES = { DITAConstants.KEYREF, DITAConstants.CONKEYREF,
+      DITAConstants.DATAKEYREF };
+
+  /**
+   * The namespace of the DITA architecture attributes
+   */
+  private static final String DITA_ARCHITECTURE_NAMESPACE = "http://dita.oasis-open.org/architecture/2005/";
+
+  /**
+   * The root elements of the DITA topics and maps, which have no class
+   * attribute when the DTDs are not loaded
+   */
+  private static final Set<String> DITA_ROOT_ELEMENTS = new HashSet<>(Arrays.asList(DITAConstants.FORMAT_DITA,
+      "topic", "concept", "task", "reference", "glossentry", "glossgroup", "troubleshooting", "map", "bookmap",
+      "subjectScheme"));
+
+  /**
+   * Stops the parsing of a document which is not DITA.
+   */
+  @SuppressWarnings("serial")
+  private static final class NotDITADocumentException extends SAXException {
+    NotDITADocumentException(String systemId) {
+      super("Not a DITA document: " + systemId);
+    }
+  }
+
+  /**
+   * Receives the reference elements of a file, in document order, as they are
+   * read.
+   */
+  @FunctionalInterface
+  public interface ReferenceElementHandler {
+    /**
+     * A reference element was read.
+     * @param element The element, with its reference attributes and position
+     * @param category The category of the element in the outgoing references tree
+     */
+    void referenceElement(ExtractedNodeRange element, ReferenceCategory category);
+  }
+
+  /**
+   * The parser factory
+   */
+  private final SAXParserFactory parserFactory;
+
+  /**
+   * The parser of every thread, reused for all the files it reads
+   */
+  private final ThreadLocal<SAXParser> parsers = new ThreadLocal<>();
+
+  /**
+   * Provider of the keys for the key references, can be <code>null</code>
+   */
+  private final KeysProvider keysProvider;
+
+  /**
+   * Constructor
+   * @param keysProvider Provider of the keys for the key references, can be <code>null</code>
+   */
+  public ReferencesExtractor(KeysProvider keysProvider) {
+    this.keysProvider = keysProvider;
+    this.parserFactory = SAXParserFactory.newInstance();
+    parserFactory.setNamespaceAware(true);
+    parserFactory.setValidating(false);
+  }
+
+  /**
+   * Read the outgoing references of a file.
+   * @param fileLocation The file location
+   * @return The references, in document order, <code>null</code> if the file
+   *         cannot be read or is not a DITA document
+   */
+  public List<ExtractedReference> extract(URL fileLocation) {
+    try {
+      return extract(new InputSource(fileLocation.toExternalForm()), fileLocation);
+    } catch (IOException | SAXException | ParserConfigurationException e) {
+      logger.debug(e, e);
+      return null;
+    }
+  }
+
+  /**
+   * Read the outgoing references of a file, resolving the key references with
+   * the given keys instead of asking the keys provider.
+   * @param fileLocation The file location
+   * @param keys The keys, resolved once for all the files read from the same
+   *             key space, can be <code>null</code>
+   * @return The references, in document order, <code>null</code> if the file
+   *         cannot be read or is not a DITA document
+   */
+  public List<ExtractedReference> extract(URL fileLocation, LinkedHashMap<String, KeyInfo> keys) {
+    try {
+      ReferencesHandler handler = new ReferencesHandler(fileLocation, keys);
+      return parse(new InputSource(fileLocation.toExternalForm()), handler) ? handler.references : null;
+    } catch (IOException | SAXException | ParserConfigurationException e) {
+      logger.debug(e, e);
+      return null;
+    }
+  }
+
+  /**
+   * Read the reference elements of a file which is not open, selected and
+   * categorized like the collectors of the outgoing references tree do for an
+   * open file: one entry for every reference element, the external ones and
+   * the ones with keys that are not resolved included. The elements are passed
+   * to the handler as they are read; only the attributes of the current
+   * element are kept, so the memory does not depend on the size of the file.
+   * @param fileLocation The file location
+   * @param handler Receives the reference elements, in document order
+   * @throws IOException if the file cannot be read
+   * @throws SAXException if the file is not well-formed
+   * @throws ParserConfigurationException
+   */
+  public void extractElements(URL fileLocation, ReferenceElementHandler handler)
+      throws IOException, SAXException, ParserConfigurationException {
+    extractElements(new InputSource(fileLocation.toExternalForm()), fileLocation, handler);
+  }
+
+  /**
+   * Read the reference elements from the content of a file, see
+   * {@link #extractElements(URL, ReferenceElementHandler)}.
+   * @param content The content
+   * @param fileLocation The file location, the editor location of the elements
+   * @param handler Receives the reference elements, in document order; nothing
+   *                is received for an XML file which is not a DITA document
+   * @throws IOException
+   * @throws SAXException if the content is not well-formed
+   * @throws ParserConfigurationException
+   */
+  public void extractElements(InputSource content, URL fileLocation, ReferenceElementHandler handler)
+      throws IOException, SAXException, ParserConfigurationException {
+    parse(content, new ReferenceElementsHandler(fileLocation, handler));
+  }
+
+  /**
+   * Resolve the keys of a key space with the keys provider. The application
+   * reads the maps of the key space on the AWT thread, the other threads wait
+   * for it.
+   * @param location The root map or a document of the key space
+   * @return The keys, <code>null</code> if there is no keys provider or the
+   *         thread was interrupted
+   */
+  public LinkedHashMap<String, KeyInfo> resolveKeys(URL location) {
+    if (keysProvider == null) {
+      return null;
+    }
+    if (SwingUtilities.isEventDispatchThread()) {
+      return keysProvider.getKeys(location);
+    }
+    AtomicReference<LinkedHashMap<String, KeyInfo>> keys = new AtomicReference<>();
+    try {
+      SwingUtilities.invokeAndWait(() -> keys.set(keysProvider.getKeys(location)));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (InvocationTargetException e) {
+      logger.debug(e, e);
+    }
+    return keys.get();
+  }
+
+  /**
+   * Read the outgoing references from the content of a file.
+   * @param content The content
+   * @param fileLocation The file location, the base of the relative references
+   * @return The references, in document order, <code>null</code> if the file
+   *         is not a DITA document
+   * @throws IOException
+   * @throws SAXException if the content is not well-formed
+   * @throws ParserConfigurationException
+   */
+  public List<ExtractedReference> extract(InputSource content, URL fileLocation)
+      throws IOException, SAXException, ParserConfigurationException {
+    ReferencesHandler handler = new ReferencesHandler(fileLocation);
+    return parse(content, handler) ? handler.references : null;
+  }
+
+  /**
+   * Parse a content with the parser of the current thread.
+   * @return <code>false</code> if the content is not a DITA document
+   */
+  private boolean parse(InputSource content, DefaultHandler handler)
+      throws IOException, SAXException, ParserConfigurationException {
+    SAXParser parser = parsers.get();
+    if (parser == null) {
+      synchronized (parserFactory) {
+        parser = parserFactory.newSAXParser();
+      }
+      parsers.set(parser);
+    }
+    try {
+      parser.parse(content, handler);
+    } catch (NotDITADocumentException e) {
+      if (logger.isDebugEnabled()) {
+        logger.debug(e.getMessage());
+      }
+      return false;
+    } finally {
+      parser.reset();
+    }
+    return true;
+  }
+
+  /**
+   * Get the location of a referenced document, without anchor, as it is
+   * compared with the location of the searched documents. The location is
+   * normalized, so that the different forms of the same file have the same
+   * key: "file:/path" and "file:///path", the "." and ".." segments and the
+   * encoded and not encoded characters, like the spaces.
+   * @param location The location
+   * @return The location without anchor
+   */
+  public static String getLocationKey(String location) {
+    String key = location;
+    int indexOfAnchor = key.indexOf('#');
+    if (indexOfAnchor != -1) {
+      key = key.substring(0, indexOfAnchor);
+    }
+    try {
+      URI uri = toURI(key).normalize();
+      if ("file".equalsIgnoreCase(uri.getScheme()) && uri.getRawAuthority() == null && uri.getRawPath() != null) {
+        // the same form for "file:/path" and "file:///path"
+        key = "file:" + uri.getRawPath();
+      } else {
+        key = uri.toString();
+      }
+    } catch (URISyntaxException | MalformedURLException e) {
+      // compared as it is
+      logger.debug(e, e);
+    }
+    return key;
+  }
+
+  /**
+   * Create the URI of a location, encoding the characters which are not allowed
+   * in URIs, like the spaces from the not encoded editor locations.
+   */
+  private static URI toURI(String location) throws URISyntaxException, MalformedURLException {
+    try {
+      return new URI(location);
+    } catch (URISyntaxException e) {
+      URL url = new URL(location);
+      String host = url.getHost();
+      return new URI(url.getProtocol(), url.getUserInfo(), host != null && !host.isEmpty() ? host : null,
+          url.getPort(), url.getPath(), url.getQuery(), null);
+    }
+  }
+
+  /**
+   * Reads a file without its DTDs, stopping at the root of an XML file which is
+   * not a DITA document.
+   */
+  private abstract static class DITAFileHandler extends DefaultHandler {
+
+    /**
+     * The file location
+     */
+    protected final URL fileLocation;
+
+    /**
+     * The parser locator
+     */
+    protected Locator locator;
+
+    /**
+     * <code>true</code> until the root element of a file which may not be DITA is checked
+     */
+    private boolean rootToCheck;
+
+    /**
+     * <code>true</code> if the DOCTYPE is a DITA one
+     */
+    private boolean ditaDoctype;
+
+    DITAFileHandler(URL fileLocation) {
+      this.fileLocation = fileLocation;
+      this.rootToCheck = fileLocation.getPath().toLowerCase(Locale.ENGLISH).endsWith(".xml");
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+      this.locator = locator;
+    }
+
+    @Override
+    public InputSource resolveEntity(String publicId, String systemId) {
+      if (rootToCheck && publicId != null && publicId.contains("DITA")) {
+        ditaDoctype = true;
+      }
+      // the DTDs are not needed for the reference attributes
+      return new InputSource(new StringReader(""));
+    }
+
+    /**
+     * Check the root of a file which may not be DITA, like the other XML files
+     * of the project.
+     * @throws NotDITADocumentException if the file is not a DITA document
+     */
+    protected void checkRoot(String elementName, Attributes attributes) throws NotDITADocumentException {
+      if (rootToCheck) {
+        rootToCheck = false;
+        String classValue = attributes.getValue(DITAConstants.CLASS);
+        boolean ditaRoot = ditaDoctype || attributes.getValue(DITA_ARCHITECTURE_NAMESPACE, "DITAArchVersion") != null
+            || (classValue != null
+                && (classValue.contains(DITAConstants.TOPIC_CLASS) || classValue.contains(" map/map ")))
+            || DITA_ROOT_ELEMENTS.contains(elementName);
+        if (!ditaRoot) {
+          throw new NotDITADocumentException(fileLocation.toExternalForm());
+        }
+      }
+    }
+
+    /**
+     * @return The local name of an element, or its qualified name.
+     */
+    protected static String getElementName(String localName, String qName) {
+      return localName != null && !localName.isEmpty() ? localName : qName;
+    }
+  }
+
+  /**
+   * Passes the reference elements to a handler while parsing.
+   */
+  private static class ReferenceElementsHandler extends DITAFileHandler {
+
+    /**
+     * Receives the reference elements
+     */
+    private final ReferenceElementHandler handler;
+
+    /**
+     * <code>true</code> once the root was read, it is not a reference like in the collectors
+     */
+    private boolean rootRead;
+
+    ReferenceElementsHandler(URL fileLocation, ReferenceElementHandler handler) {
+      super(fileLocation);
+      this.handler = handler;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes)
+        throws SAXException {
+      String elementName = getElementName(localName, qName);
+      checkRoot(elementName, attributes);
+      if (!rootRead) {
+        rootRead = true;
+        return;
+      }
+      // the class is defaulted because the DTDs are not loaded
+      UnaryOperator<String> values = attributeName -> DITAConstants.CLASS.equals(attributeName)
+          ? ReferenceCategory.getClassOrDefault(attributes.getValue(attributeName), elementName)
+          : attributes.getValue(attributeName);
+      if (ReferencesCollector.isReferenceElement(values)) {
+        ExtractedNodeRange element = new ExtractedNodeRange(elementName, values,
+            locator != null ? locator.getLineNumber() : 0, locator != null ? locator.getColumnNumber() : 0,
+            fileLocation);
+        ReferenceCategory category = element.getDescriptor().getCategory();
+        if (category != null) {
+          handler.referenceElement(element, category);
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the references while parsing.
+   */
+  private class ReferencesHandler extends DITAFileHandler {
+
+    /**
+     * The references found
+     */
+    private final List<ExtractedReference> references = new ArrayList<>();
+
+    /**
+     * The keys, read with the first key reference
+     */
+    private LinkedHashMap<String, KeyInfo> keys;
+    private boolean keysRead;
+
+    ReferencesHandler(URL fileLocation) {
+      super(fileLocation);
+    }
+
+    ReferencesHandler(URL fileLocation, LinkedHashMap<String, KeyInfo> keys) {
+      this(fileLocation);
+      this.keys = keys;
+      this.keysRead = true;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes)
+        throws SAXException {
+      checkRoot(getElementName(localName, qName), attributes);
+      if (DITAConstants.SCOPE_EXTERNAL.equals(attributes.getValue(DITAConstants.SCOPE))) {
+        return;
+      }
+      ReferenceCategory category = null;
+      for (String attributeName : LOCATION_ATTRIBUTES) {
+        String value = attributes.getValue(attributeName);
+        if (value != null && !value.isEmpty()) {
+          if (category == null) {
+            category = getCategory(localName, qName, attributes);
+          }
+          try {
+            addReference(attributeName, value, new URL(fileLocation, value).toExternalForm(), category);
+          } catch (MalformedURLException e) {
+            logger.debug(e, e);
+          }
+        }
+      }
+      for (String attributeName : KEY_ATTRIBUTES) {
+        String value = attributes.getValue(attributeName);
+        if (value != null && !value.isEmpty()) {
+          KeyInfo keyInfo = RefUtilities.getKeyInfoFromReference(value, getKeys());
+          if (keyInfo != null && keyInfo.getHrefLocation() != null) {
+            if (category == null) {
+              category = getCategory(localName, qName, attributes);
+            }
+            addReference(attributeName, value, keyInfo.getHrefLocation().toExternalForm(), category);
+          }
+        }
+      }
+    }
+
+    private void addReference(String attributeName, String value, String target, ReferenceCategory category) {
+      int line = locator != null ? locator.getLineNumber() : 0;
+      int column = locator != null ? locator.getColumnNumber() : 0;
+      references.add(new ExtractedReference(fileLocation.toExternalForm(), attributeName, value, line, column,
+          getLocationKey(target), category));
+    }
+
+    /**
+     * Get the category of the reference from the class attribute, defaulted
+     * because the DTDs are not loaded.
+     */
+    private ReferenceCategory getCategory(String localName, String qName, Attributes attributes) {
+      return ReferenceCategory.fromClass(ReferenceCategory.getClassOrDefault(attributes.getValue(DITAConstants.CLASS),
+          getElementName(localName, qName)));
+    }
+
+    private LinkedHashMap<String, KeyInfo> getKeys() {
+      if (!keysRead) {
+        keysRead = true;
+        keys = resolveKeys(fileLocation);
+      }
+      return keys;
+    }
+  }
+}
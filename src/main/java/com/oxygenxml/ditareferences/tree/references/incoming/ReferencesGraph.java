@@ -0,0 +1,101 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ro.sync.document.DocumentPositionedInfo;
+
+/**
+ * The references between the files of a project, built by
+ * {@link ProjectReferencesCrawler} from the outgoing references of every file.
+ * @author mircea_badoi
+ *
+ */
+public final class ReferencesGraph {
+
+  /**
+   * The references to every document, by document location key
+   */
+  private final Map<String, List<ExtractedReference>> incomingReferences;
+
+  /**
+   * The number of files read
+   */
+  private final int filesCount;
+
+  /**
+   * Constructor
+   * @param incomingReferences The references to every document
+   * @param filesCount The number of files read
+   */
+  private ReferencesGraph(Map<String, List<ExtractedReference>> incomingReferences, int filesCount) {
+    this.incomingReferences = incomingReferences;
+    this.filesCount = filesCount;
+  }
+
+  /**
+   * Merge the outgoing references of the files in a graph.
+   * @param filesReferences The outgoing references of every file
+   * @return The graph
+   */
+  static ReferencesGraph merge(Collection<List<ExtractedReference>> filesReferences) {
+    Map<String, List<ExtractedReference>> incomingReferences = new HashMap<>();
+    for (List<ExtractedReference> fileReferences : filesReferences) {
+      for (ExtractedReference reference : fileReferences) {
+        incomingReferences.computeIfAbsent(reference.getTargetLocation(), key -> new ArrayList<>(2)).add(reference);
+      }
+    }
+    return new ReferencesGraph(incomingReferences, filesReferences.size());
+  }
+
+  /**
+   * Get the references to a document.
+   * @param target The document location
+   * @return The references, in the order the files were read
+   */
+  public List<ExtractedReference> getReferences(URL target) {
+    List<ExtractedReference> references = incomingReferences.get(
+        ReferencesExtractor.getLocationKey(target.toExternalForm()));
+    return references != null ? Collections.unmodifiableList(references) : Collections.emptyList();
+  }
+
+  /**
+   * Search the references to a document.
+   * @param target The document location
+   * @return The references, as they are presented
+   */
+  public List<DocumentPositionedInfo> searchReferences(URL target) {
+    List<ExtractedReference> references = getReferences(target);
+    List<DocumentPositionedInfo> result = new ArrayList<>(references.size());
+    for (ExtractedReference reference : references) {
+      result.add(reference.toDPI());
+    }
+    return result;
+  }
+
+  /**
+   * @return The number of files read
+   */
+  public int getFilesCount() {
+    return filesCount;
+  }
+
+  /**
+   * @return The number of referenced documents
+   */
+  public int getTargetsCount() {
+    return incomingReferences.size();
+  }
+}
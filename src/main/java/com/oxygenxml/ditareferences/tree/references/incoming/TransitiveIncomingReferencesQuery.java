@@ -0,0 +1,244 @@
+/*
+* Copyright (c) 2020 Syncro Soft SRL - All Rights Reserved.
+*
+* This file contains proprietary and confidential source code.
+* Unauthorized copying of this file, via any medium, is strictly prohibited.
+*/
+
+package com.oxygenxml.ditareferences.tree.references.incoming;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Finds the documents that reference a document directly or through other
+ * documents: the references to the document, then the references to the
+ * documents found, level by level, up to a maximum depth. The documents of a
+ * level are searched in parallel and every document is searched once, so
+ * cycles end the search.
+ * @author mircea_badoi
+ *
+ */
+public final class TransitiveIncomingReferencesQuery {
+
+  /**
+   * Logger for logging.
+   */
+  private static final Logger logger = Logger.getLogger(TransitiveIncomingReferencesQuery.class.getName());
+
+  /**
+   * Searches the direct references to a document.
+   */
+  @FunctionalInterface
+  public interface Search {
+    /**
+     * Search the direct references to a document.
+     * @param target The document location
+     * @return The references
+     * @throws ReflectiveOperationException if the application has no references graph
+     */
+    List<IncomingReference> search(URL target) throws ReflectiveOperationException;
+  }
+
+  /**
+   * Receives the progress of the query, on the searching threads.
+   */
+  @FunctionalInterface
+  public interface ProgressListener {
+    /**
+     * @param searchedDocuments The number of documents searched
+     * @param foundDocuments The number of referencing documents found
+     */
+    void progress(int searchedDocuments, int foundDocuments);
+  }
+
+  /**
+   * The references found by a query.
+   */
+  public static final class Result {
+    /**
+     * The references found, the direct ones first; the indirect ones are
+     * labeled with the document they reference
+     */
+    private final List<IncomingReference> references;
+
+    /**
+     * The depth of every referencing document, by location key
+     */
+    private final Map<String, Integer> depths;
+
+    /**
+     * <code>false</code> if the query stopped at the maximum depth or was cancelled
+     */
+    private final boolean complete;
+
+    Result(List<IncomingReference> references, Map<String, Integer> depths, boolean complete) {
+      this.references = Collections.unmodifiableList(references);
+      this.depths = Collections.unmodifiableMap(depths);
+      this.complete = complete;
+    }
+
+    /**
+     * @return The references found, the direct ones first; the indirect ones
+     *         are labeled with the document they reference
+     */
+    public List<IncomingReference> getReferences() {
+      return references;
+    }
+
+    /**
+     * Get the depth of a referencing document.
+     * @param systemId The document system id
+     * @return 1 for the documents that reference the target directly, 2 for the
+     *         ones that reference those, and so on; 0 if not found
+     */
+    public int getDepth(String systemId) {
+      Integer depth = depths.get(ReferencesExtractor.getLocationKey(systemId));
+      return depth != null ? depth : 0;
+    }
+
+    /**
+     * @return The number of referencing documents found
+     */
+    public int getDocumentsCount() {
+      return depths.size();
+    }
+
+    /**
+     * @return <code>false</code> if the query stopped at the maximum depth or was cancelled
+     */
+    public boolean isComplete() {
+      return complete;
+    }
+  }
+
+  /**
+   * Searches the direct references
+   */
+  private final Search search;
+
+  /**
+   * Runs the searches of a level
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The maximum number of levels searched
+   */
+  private final int maxDepth;
+
+  /**
+   * Constructor
+   * @param search Searches the direct references, called in parallel
+   * @param executor Runs the searches of a level
+   * @param maxDepth The maximum number of levels searched
+   */
+  public TransitiveIncomingReferencesQuery(Search search, ExecutorService executor, int maxDepth) {
+    this.search = search;
+    this.executor = executor;
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Find the documents that reference a document, directly or not.
+   * @param target The document location
+   * @param listener Receives the progress, can be <code>null</code>
+   * @param cancelled <code>true</code> to stop the query
+   * @return The references found
+   * @throws ReflectiveOperationException if the application has no references graph
+   * @throws InterruptedException if interrupted while waiting for the searches
+   */
+  public Result run(URL target, ProgressListener listener, BooleanSupplier cancelled)
+      throws ReflectiveOperationException, InterruptedException {
+    List<IncomingReference> references = new ArrayList<>();
+    Map<String, Integer> depths = new LinkedHashMap<>();
+    Set<String> visited = new HashSet<>();
+    visited.add(ReferencesExtractor.getLocationKey(target.toExternalForm()));
+    AtomicInteger searchedDocuments = new AtomicInteger();
+    AtomicInteger foundDocuments = new AtomicInteger();
+
+    boolean complete = true;
+    List<URL> level = Collections.singletonList(target);
+    for (int depth = 1; !level.isEmpty(); depth++) {
+      if (depth > maxDepth || cancelled.getAsBoolean()) {
+        complete = false;
+        break;
+      }
+      List<Future<List<IncomingReference>>> searches = new ArrayList<>(level.size());
+      for (URL document : level) {
+        searches.add(executor.submit(() -> {
+          if (cancelled.getAsBoolean()) {
+            return Collections.<IncomingReference>emptyList();
+          }
+          List<IncomingReference> found = search.search(document);
+          if (listener != null) {
+            listener.progress(searchedDocuments.incrementAndGet(), foundDocuments.get());
+          }
+          return found;
+        }));
+      }
+
+      List<URL> nextLevel = new ArrayList<>();
+      for (int i = 0; i < searches.size(); i++) {
+        String intermediate = depth > 1 ? level.get(i).toExternalForm() : null;
+        for (IncomingReference reference : getResult(searches.get(i))) {
+          references.add(intermediate != null ? reference.via(intermediate) : reference);
+          String key = ReferencesExtractor.getLocationKey(reference.getSystemId());
+          if (visited.add(key)) {
+            depths.put(key, depth);
+            foundDocuments.incrementAndGet();
+            try {
+              nextLevel.add(new URL(reference.getSystemId()));
+            } catch (MalformedURLException e) {
+              logger.debug(e, e);
+            }
+          }
+        }
+      }
+      if (cancelled.getAsBoolean()) {
+        // the searches of the level may have been skipped
+        complete = false;
+        break;
+      }
+      level = nextLevel;
+    }
+
+    if (logger.isDebugEnabled()) {
+      logger.debug("Found " + depths.size() + " documents referencing " + target + " after searching "
+          + searchedDocuments.get() + (complete ? "" : ", stopped"));
+    }
+    return new Result(references, depths, complete);
+  }
+
+  /**
+   * Wait for the result of a search.
+   */
+  private static List<IncomingReference> getResult(Future<List<IncomingReference>> levelSearch)
+      throws ReflectiveOperationException, InterruptedException {
+    try {
+      return levelSearch.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof ReflectiveOperationException) {
+        throw (ReflectiveOperationException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.oxygenxml.ditareferences.tree.references.outgoing;
+
+/**
+ * The way the references are collected from the Text / Author Page.
+ * 
+ * @author Alexandra_Dinisor
+ *
+ */
+public enum CollectionMode {
+	/**
+	 * Evaluate the XPath expression with all the references.
+	 */
+	XPATH,
+
+	/**
+	 * Visit the document only once and classify every element. Falls back to the
+	 * XPath evaluation when the document cannot be visited.
+	 */
+	SINGLE_PASS,
+
+	/**
+	 * Keep an index of the document elements, updated from every edit, and take
+	 * the references from it. The index is built with a single pass.
+	 */
+	INCREMENTAL
+}
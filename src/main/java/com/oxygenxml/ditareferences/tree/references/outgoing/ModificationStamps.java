@@ -0,0 +1,51 @@
+package com.oxygenxml.ditareferences.tree.references.outgoing;
+
+import javax.swing.text.Document;
+
+import com.oxygenxml.ditareferences.workspace.authorpage.AuthorReferencesIndex;
+import com.oxygenxml.ditareferences.workspace.textpage.TextReferencesIndex;
+
+import ro.sync.ecss.extensions.api.AuthorDocumentController;
+import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
+import ro.sync.exml.workspace.api.editor.page.author.WSAuthorEditorPage;
+import ro.sync.exml.workspace.api.editor.page.text.xml.WSXMLTextEditorPage;
+
+/**
+ * The modification stamps of the Text / Author Page documents. A stamp changes
+ * on every change of the document and the stamps are unique across documents,
+ * so a document opened again does not reuse the stamps of the old one.
+ *
+ * The stamps are kept by the references indexes of the documents, which
+ * already listen for their changes, so no other listener is added.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+final class ModificationStamps {
+
+	private ModificationStamps() {
+		// private constructor
+	}
+
+	/**
+	 * Get the modification stamp of the page document. The document is tracked
+	 * from the first call.
+	 *
+	 * @param page The Text / Author Page
+	 * @return The stamp or -1 if the changes of the page cannot be tracked.
+	 */
+	static long getStamp(WSEditorPage page) {
+		if (page instanceof WSXMLTextEditorPage) {
+			Document document = ((WSXMLTextEditorPage) page).getDocument();
+			if (document != null) {
+				return TextReferencesIndex.getIndex(document, ReferencesCollector::isReferenceElement).getModificationStamp();
+			}
+		} else if (page instanceof WSAuthorEditorPage) {
+			AuthorDocumentController controller = ((WSAuthorEditorPage) page).getDocumentController();
+			if (controller != null) {
+				return AuthorReferencesIndex.getIndex(controller).getModificationStamp();
+			}
+		}
+		return -1;
+	}
+}
@@ -1,13 +1,9 @@
 package com.oxygenxml.ditareferences.tree.references.outgoing;
 
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.LinkedHashMap;
 
-import org.apache.log4j.Logger;
-
-import com.oxygenxml.ditareferences.tree.references.RefUtilities;
-import com.oxygenxml.ditareferences.workspace.DITAConstants;
+import javax.swing.text.Position;
 
 import ro.sync.ecss.dita.reference.keyref.KeyInfo;
 import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
@@ -21,9 +17,9 @@ import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
 public abstract class NodeRange {
 	
 	/**
-	 * The Logger.
+	 * The description of the reference, read once.
 	 */
-	private static final Logger LOGGER = Logger.getLogger(NodeRange.class);
+	private volatile ReferenceDescriptor descriptor;
 	
 	/**
 	 * Get the attribute value, returns <code>null</code> if there is no such
@@ -44,6 +40,18 @@ public abstract class NodeRange {
 	 */
 	public abstract int[] getNodeOffsets(WSEditorPage editorPage);
 
+	/**
+	 * Get the positions of the start and end of the element, which follow the
+	 * edits of the page. Used by the indexes which read the offsets many times.
+	 * 
+	 * @param editorPage The EditorPage: Text/Author
+	 * @return The start and end positions or <code>null</code> if the offsets are
+	 *         not tracked.
+	 */
+	public Position[] getNodePositions(WSEditorPage editorPage) {
+		return null;
+	}
+
 	/**
 	 * Get the nodeName.
 	 * 
@@ -51,6 +59,21 @@ public abstract class NodeRange {
 	 */
 	public abstract String getNodeName();
 
+	/**
+	 * Get the description of the reference, read from the attributes when first
+	 * needed, usually when the references are collected.
+	 * 
+	 * @return the immutable description.
+	 */
+	public ReferenceDescriptor getDescriptor() {
+	  ReferenceDescriptor currentDescriptor = descriptor;
+	  if (currentDescriptor == null) {
+	    currentDescriptor = new ReferenceDescriptor(this);
+	    descriptor = currentDescriptor;
+	  }
+	  return currentDescriptor;
+	}
+
 	/**
 	 * Get the displayed text for the node.
 	 * 
@@ -58,15 +81,18 @@ public abstract class NodeRange {
 	 *         found.
 	 */
 	String getDisplayText() {
-	  String[] ditaConstants = {DITAConstants.KEYREF, DITAConstants.DATAKEYREF,
-	      DITAConstants.CONKEYREF, DITAConstants.HREF, DITAConstants.CONREF, DITAConstants.DATA};
-	  for (int i = 0; i < ditaConstants.length; i++) {
-	    String attributeValue = this.getAttributeValue(ditaConstants[i]);
-	    if(attributeValue != null) {
-	      return attributeValue;
-	    }
-	  }
-	  return null;
+	  return getDescriptor().getDisplayText();
+	}
+
+	/**
+	 * Check if the node is displayed the same as another node, in the same tree
+	 * category, with the same text, icon and toolTip.
+	 * 
+	 * @param other The other node
+	 * @return <code>true</code> if the nodes are displayed the same.
+	 */
+	boolean hasSameDisplay(NodeRange other) {
+	  return other != null && other.getClass() == this.getClass() && getDescriptor().equals(other.getDescriptor());
 	}
 
 	/**
@@ -77,42 +103,7 @@ public abstract class NodeRange {
 	 *         found.
 	 */
 	String getTooltipText(LinkedHashMap<String, KeyInfo> referencesKeys) {
-	  String formatAttr = this.getAttributeValue(DITAConstants.FORMAT);
-	  String attribute = this.getAttributeValue(DITAConstants.KEYREF);
-	  String toReturn = null;
-
-	  if (attribute != null) {
-	    KeyInfo value = RefUtilities.getKeyInfoFromReference(attribute, referencesKeys);
-	    if (value != null) {
-	      try {
-	        toReturn = RefUtilities.getURLForHTTPHost(formatAttr, value.getHrefValue(), value.getHrefLocation()).toString();
-	      } catch (MalformedURLException e) {
-	        LOGGER.debug(e, e);
-	      }
-	    }
-	  } else if((attribute = this.getAttributeValue(DITAConstants.DATAKEYREF)) != null) {
-	    KeyInfo value = RefUtilities.getKeyInfoFromReference(attribute, referencesKeys);
-	    if (value != null) {
-	      try {
-	        toReturn =  RefUtilities.getURLForHTTPHost(formatAttr, value.getHrefValue(), value.getHrefLocation()).toString();
-	      } catch (MalformedURLException e) {
-	        LOGGER.debug(e, e);
-	      }
-	    }
-	  } else if((attribute = this.getAttributeValue(DITAConstants.CONKEYREF)) != null) {
-	    KeyInfo value = RefUtilities.getKeyInfoFromReference(attribute, referencesKeys);
-	    if (value != null) {
-	      toReturn =  value.getHrefLocation().toString();
-	    }
-	  } else if((attribute = this.getAttributeValue(DITAConstants.HREF)) != null) {
-	    toReturn =  attribute;
-	  } else if((attribute = this.getAttributeValue(DITAConstants.CONREF)) != null) {
-	    toReturn =  attribute;
-	  } else if((attribute = this.getAttributeValue(DITAConstants.DATA)) != null){
-	    toReturn =  attribute;
-	  }
-
-	  return toReturn;
+	  return getDescriptor().getTooltipText(referencesKeys);
 	}
 
 	/**
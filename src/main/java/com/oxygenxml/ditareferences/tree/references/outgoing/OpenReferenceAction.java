@@ -74,15 +74,16 @@ public class OpenReferenceAction extends AbstractAction {
 	 */
 	@Override
 	public void actionPerformed(ActionEvent e) {
-		// attributes of the leaf nodes
-		String hrefAttrValue = nodeRange.getAttributeValue(DITAConstants.HREF);
-		String keyrefAttrValue = nodeRange.getAttributeValue(DITAConstants.KEYREF);
-		String conrefAttrValue = nodeRange.getAttributeValue(DITAConstants.CONREF);
-		String conkeyrefAttrValue = nodeRange.getAttributeValue(DITAConstants.CONKEYREF);
-		String dataAttrValue = nodeRange.getAttributeValue(DITAConstants.DATA);
-		String datakeyrefAttrValue = nodeRange.getAttributeValue(DITAConstants.DATAKEYREF);
-		String formatAttrValue = nodeRange.getAttributeValue(DITAConstants.FORMAT);
-		String classAttrValue = nodeRange.getAttributeValue(DITAConstants.CLASS);
+		// attributes of the leaf nodes, read when collected
+		ReferenceDescriptor descriptor = nodeRange.getDescriptor();
+		String hrefAttrValue = descriptor.getHref();
+		String keyrefAttrValue = descriptor.getKeyref();
+		String conrefAttrValue = descriptor.getConref();
+		String conkeyrefAttrValue = descriptor.getConkeyref();
+		String dataAttrValue = descriptor.getData();
+		String datakeyrefAttrValue = descriptor.getDatakeyref();
+		String formatAttrValue = descriptor.getFormat();
+		String classAttrValue = descriptor.getClassValue();
 
 		URL editorLocation = editorAccess.getEditorLocation();
 		LinkedHashMap<String, KeyInfo> referencesKeys = keysProvider != null ? keysProvider.getKeys(editorLocation) : null;
@@ -1,10 +1,21 @@
 package com.oxygenxml.ditareferences.tree.references.outgoing;
 
 import java.awt.event.HierarchyEvent;
-
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
 import javax.swing.ToolTipManager;
+import javax.swing.text.Document;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreeSelectionModel;
 
 import org.apache.log4j.Logger;
@@ -50,6 +61,54 @@ public class OutgoingReferencesTree extends Tree { //NOSONAR parent
 	private transient TextPageReferencesTreeCaretListener textPageCaretListener;
 	private transient AuthorPageReferencesTreeCaretListener authorPageCaretListener;
 
+	/**
+	 * The way the references are collected from the editor page.
+	 */
+	private CollectionMode collectionMode = CollectionMode.SINGLE_PASS;
+
+	/**
+	 * True if the references are collected on a background thread.
+	 */
+	private boolean backgroundRefresh = false;
+
+	/**
+	 * Incremented on every refresh and on every cancel. A background refresh
+	 * publishes its results only if the generation did not change meanwhile.
+	 */
+	private final AtomicInteger refreshGeneration = new AtomicInteger();
+
+	/**
+	 * The background refresh in progress, if any.
+	 */
+	private transient Future<?> pendingRefresh;
+
+	/**
+	 * The executor for background refreshes.
+	 */
+	private transient ExecutorService refreshExecutor;
+
+	/**
+	 * The references collected for the last shown editors.
+	 */
+	private final transient ReferencesCache referencesCache = new ReferencesCache();
+
+	/**
+	 * The delays before refreshing the references after an edit, adapted to the
+	 * collection times.
+	 */
+	private final transient RefreshDelays refreshDelays = new RefreshDelays();
+
+	/**
+	 * The editor whose references are shown, <code>null</code> if the tree shows
+	 * a message.
+	 */
+	private transient WSEditor shownEditorAccess;
+
+	/**
+	 * Incremented every time the shown references change.
+	 */
+	private int referencesRevision = 0;
+
 	/**
 	 * True if the tree is showing.
 	 */
@@ -64,6 +123,55 @@ public class OutgoingReferencesTree extends Tree { //NOSONAR parent
 		this.isShowing = isShowing;
 	}
 
+	/**
+	 * Set the way the references are collected from the editor page.
+	 * 
+	 * @param collectionMode The collection mode
+	 */
+	public void setCollectionMode(CollectionMode collectionMode) {
+		this.collectionMode = collectionMode;
+	}
+
+	/**
+	 * Collect the references on a background thread. The editor page is accessed
+	 * only on the AWT thread, to take a snapshot, and the tree model is set on the
+	 * AWT thread, when ready. For the TextPage the snapshot is only the DOM of
+	 * the root element and the document is read and scanned on the background
+	 * thread. For the AuthorPage the nodes are traversed and their attributes are
+	 * read in the snapshot, the background thread only gets immutable
+	 * descriptors to classify and the links from the relationship tables.
+	 * 
+	 * @param backgroundRefresh <code>true</code> to collect the references on a
+	 *                          background thread
+	 */
+	public void setBackgroundRefresh(boolean backgroundRefresh) {
+		this.backgroundRefresh = backgroundRefresh;
+	}
+
+	/**
+	 * Drop the results of the background refresh in progress, if any. Called when
+	 * the content of the editor changes, because the results are stale.
+	 */
+	public void cancelRefresh() {
+		refreshGeneration.incrementAndGet();
+		if (pendingRefresh != null) {
+			pendingRefresh.cancel(false);
+			pendingRefresh = null;
+		}
+	}
+
+	/**
+	 * Cancel the refresh in progress and stop the thread of the background
+	 * refreshes, when the view is disposed.
+	 */
+	public void dispose() {
+		cancelRefresh();
+		if (refreshExecutor != null) {
+			refreshExecutor.shutdownNow();
+			refreshExecutor = null;
+		}
+	}
+
 	/**
 	 * Construct the ReferencesTree.
 	 * 
@@ -167,6 +275,9 @@ public class OutgoingReferencesTree extends Tree { //NOSONAR parent
 	 * @param editorAccess The current editorAccess
 	 */
 	private void refreshReferenceTreeInternal(WSEditor editorAccess) {
+		// the results of a previous refresh are no longer needed
+		cancelRefresh();
+
 		this.refMouseAdapter.setEditorAccess(editorAccess);
 		this.enterKeyAdapter.setEditorAccess(editorAccess);
 
@@ -177,8 +288,14 @@ public class OutgoingReferencesTree extends Tree { //NOSONAR parent
 
 						|| EditorPageConstants.PAGE_AUTHOR.equals(editorAccess.getCurrentPageID())
 								&& editorAccess.getCurrentPage() instanceof WSAuthorEditorPage) {
-					// Preliminary refresh
-					this.setPreliminaryTree(editorAccess);
+					// Preliminary refresh, unless the document did not change since it was last shown
+					if (!setCachedTree(editorAccess)) {
+						if (backgroundRefresh) {
+							this.setPreliminaryTreeInBackground(editorAccess);
+						} else {
+							this.setPreliminaryTree(editorAccess);
+						}
+					}
 				} else {
 					// Other content type, like CSS, or an XML opened in Grid mode.
 					this.setNoRefsAvailableTree();
@@ -203,9 +320,9 @@ public class OutgoingReferencesTree extends Tree { //NOSONAR parent
 	 */
 	private ReferencesCollector buildCollector(String currentPageID) {
 		if (currentPageID.equals(EditorPageConstants.PAGE_TEXT)) {
-			return new TextReferencesCollector();
+			return new TextReferencesCollector(collectionMode);
 		} else {
-			return new AuthorReferencesCollector();
+			return new AuthorReferencesCollector(collectionMode);
 		}
 	}
 
@@ -220,6 +337,58 @@ public class OutgoingReferencesTree extends Tree { //NOSONAR parent
 		root.add(noReferencesAvailable);
 		DefaultTreeModel referencesTreeModel = new DefaultTreeModel(root);
 		this.setModel(referencesTreeModel);
+		this.shownEditorAccess = null;
+		this.referencesRevision++;
+	}
+
+	/**
+	 * Show the references cached for the editor, if its document did not change
+	 * since they were collected.
+	 * 
+	 * @param editorAccess The editorAccess
+	 * @return <code>true</code> if the cached references are shown.
+	 */
+	private boolean setCachedTree(WSEditor editorAccess) {
+		WSEditorPage editorPage = editorAccess.getCurrentPage();
+		List<NodeRange> ranges = referencesCache.get(editorAccess.getEditorLocation(), editorAccess.getCurrentPageID(),
+				ModificationStamps.getStamp(editorPage));
+		if (ranges != null) {
+			DefaultMutableTreeNode root = new DefaultMutableTreeNode(Tags.ROOT_REFERENCES);
+			buildCollector(editorAccess.getCurrentPageID()).collectReferences(ranges,
+					ReferencesCollector.getEditorLocation(editorPage), root);
+			setReferencesTree(root, editorAccess);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Get the delays before refreshing the references after an edit, with the
+	 * measured collection times.
+	 * 
+	 * @return The refresh delays.
+	 */
+	public RefreshDelays getRefreshDelays() {
+		return refreshDelays;
+	}
+
+	/**
+	 * Get the milliseconds elapsed since a time.
+	 * 
+	 * @param startNanos The start time, from {@link System#nanoTime()}
+	 * @return The elapsed milliseconds.
+	 */
+	private static long getMillisSince(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Drop the references cached for an editor.
+	 * 
+	 * @param editorLocation The editor location
+	 */
+	public void clearCachedReferences(URL editorLocation) {
+		referencesCache.remove(editorLocation);
 	}
 
 	/**
@@ -232,23 +401,183 @@ public class OutgoingReferencesTree extends Tree { //NOSONAR parent
 
 		// set root for ReferencesTree
 		DefaultMutableTreeNode root = new DefaultMutableTreeNode(Tags.ROOT_REFERENCES);
-		DefaultTreeModel referencesTreeModel = new DefaultTreeModel(root);
 
 		WSEditorPage editorPage = editorAccess.getCurrentPage();
+		long modificationStamp = ModificationStamps.getStamp(editorPage);
 
 		// install collector of nodeRanges where the XPath expression is evaluated on
+		long collectionStart = System.nanoTime();
 		ReferencesCollector referencesCollector = buildCollector(editorAccess.getCurrentPageID());
-		referencesCollector.collectReferences(editorPage, root);
+		List<NodeRange> ranges = referencesCollector.collect(editorPage);
+		referencesCache.put(editorAccess.getEditorLocation(), editorAccess.getCurrentPageID(), modificationStamp, ranges);
+		referencesCollector.collectReferences(ranges, ReferencesCollector.getEditorLocation(editorPage), root);
+		refreshDelays.collectionFinished(editorAccess.getEditorLocation(), getMillisSince(collectionStart));
 
-		referencesTreeModel.setRoot(root);
-		this.setModel(referencesTreeModel);
+		setReferencesTree(root, editorAccess);
+	}
+
+	/**
+	 * Find out all the outgoing references on a background thread and show them
+	 * in ReferencesTree when ready.
+	 * 
+	 * @param editorAccess The editorAccess
+	 * @throws XPathException
+	 */
+	private void setPreliminaryTreeInBackground(WSEditor editorAccess) throws XPathException {
+		WSEditorPage editorPage = editorAccess.getCurrentPage();
+		URL editorLocation = ReferencesCollector.getEditorLocation(editorPage);
+		long modificationStamp = ModificationStamps.getStamp(editorPage);
+		Document snapshotDocument = getDocument(editorPage);
+
+		// take the snapshot of the page on the current thread
+		long snapshotStart = System.nanoTime();
+		ReferencesCollector referencesCollector = buildCollector(editorAccess.getCurrentPageID());
+		Supplier<List<NodeRange>> collectionTask = referencesCollector.snapshot(editorPage);
+		long snapshotTime = getMillisSince(snapshotStart);
+		URL documentLocation = editorAccess.getEditorLocation();
+
+		int generation = refreshGeneration.incrementAndGet();
+		pendingRefresh = getRefreshExecutor().submit(() -> {
+			if (generation != refreshGeneration.get()) {
+				// already stale
+				return;
+			}
+			long collectionStart = System.nanoTime();
+			DefaultMutableTreeNode root = new DefaultMutableTreeNode(Tags.ROOT_REFERENCES);
+			List<NodeRange> ranges = null;
+			try {
+				ranges = collectionTask.get();
+				if (ranges != null) {
+					referencesCollector.collectReferences(ranges, editorLocation, root);
+					refreshDelays.collectionFinished(documentLocation, snapshotTime + getMillisSince(collectionStart));
+				}
+			} catch (Exception e) {
+				LOGGER.debug(e, e);
+				root = null;
+			}
+
+			List<NodeRange> collectedRanges = root != null ? ranges : null;
+			boolean collected = ranges != null;
+			DefaultMutableTreeNode collectedRoot = root;
+			SwingUtilities.invokeLater(() -> {
+				if (generation == refreshGeneration.get() && getDocument(editorPage) == snapshotDocument
+						&& isEditedSince(editorPage, modificationStamp)) {
+					// the text was edited while collecting, by an edit which did not cancel the refresh, so the offsets are stale
+					refreshReferenceTreeInternal(editorAccess);
+				} else if (generation == refreshGeneration.get()) {
+					referencesCache.put(editorAccess.getEditorLocation(), editorAccess.getCurrentPageID(), modificationStamp,
+							collectedRanges);
+					publishPreliminaryTree(editorAccess, collected ? collectedRoot : null, collected);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Get the document of a TextPage.
+	 * 
+	 * @param editorPage The Text / Author Page
+	 * @return The document or <code>null</code> for an AuthorPage.
+	 */
+	private static Document getDocument(WSEditorPage editorPage) {
+		return editorPage instanceof WSXMLTextEditorPage ? ((WSXMLTextEditorPage) editorPage).getDocument() : null;
+	}
+
+	/**
+	 * Check if the text of a TextPage was edited since a modification stamp was
+	 * taken.
+	 * 
+	 * @param editorPage        The Text / Author Page, with the same document as
+	 *                          when the stamp was taken
+	 * @param modificationStamp The modification stamp of the document
+	 * @return <code>true</code> if the page is a TextPage and its document changed.
+	 */
+	private static boolean isEditedSince(WSEditorPage editorPage, long modificationStamp) {
+		return editorPage instanceof WSXMLTextEditorPage && modificationStamp != -1
+				&& modificationStamp != ModificationStamps.getStamp(editorPage);
+	}
+
+	/**
+	 * Show the references collected on a background thread.
+	 * 
+	 * @param editorAccess The editorAccess
+	 * @param root         The root of the references, <code>null</code> if the
+	 *                     collection failed
+	 * @param collected    <code>false</code> if the references could not be
+	 *                     collected from the snapshot and must be collected from
+	 *                     the editor page
+	 */
+	private void publishPreliminaryTree(WSEditor editorAccess, DefaultMutableTreeNode root, boolean collected) {
+		pendingRefresh = null;
+		try {
+			if (!collected) {
+				this.setPreliminaryTree(editorAccess);
+			} else if (root != null) {
+				setReferencesTree(root, editorAccess);
+			} else {
+				this.setNoRefsAvailableTree();
+			}
+		} catch (Exception e) {
+			if(LOGGER.isDebugEnabled()) {
+				LOGGER.debug(e, e);
+			}
+			this.setNoRefsAvailableTree();
+		}
+	}
+
+	/**
+	 * Show the collected references in ReferencesTree. When the tree already shows
+	 * the references of the same editor only the changed nodes are updated, so
+	 * that the selection, the expanded categories and the scroll position are
+	 * kept.
+	 * 
+	 * @param root         The root with the reference categories
+	 * @param editorAccess The editorAccess
+	 */
+	private void setReferencesTree(DefaultMutableTreeNode root, WSEditor editorAccess) {
+		TreeModel currentModel = this.getModel();
+		if (editorAccess == shownEditorAccess && currentModel instanceof DefaultTreeModel
+				&& currentModel.getRoot() instanceof DefaultMutableTreeNode
+				&& root.getUserObject().equals(((DefaultMutableTreeNode) currentModel.getRoot()).getUserObject())) {
+			ReferencesTreeModelDiff.update((DefaultTreeModel) currentModel, root, this::expandPath);
+		} else {
+			DefaultTreeModel referencesTreeModel = new DefaultTreeModel(root);
+			this.setModel(referencesTreeModel);
 
-		// expand all nodes of ReferencesTree
-		expandAllRows();
+			// expand all nodes of ReferencesTree
+			expandAllRows();
+		}
+		this.shownEditorAccess = editorAccess;
+		this.referencesRevision++;
 
 		// updates for Caret and Selection Listener
-		installUpdateListeners(editorPage);
-		
+		installUpdateListeners(editorAccess.getCurrentPage());
+	}
+
+	/**
+	 * Get the revision of the shown references, changed every time the tree is
+	 * updated.
+	 * 
+	 * @return The revision.
+	 */
+	int getReferencesRevision() {
+		return referencesRevision;
+	}
+
+	/**
+	 * Get the executor for background refreshes, created when first needed.
+	 * 
+	 * @return The single thread executor.
+	 */
+	private ExecutorService getRefreshExecutor() {
+		if (refreshExecutor == null) {
+			refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "DITA Outgoing References Refresh");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return refreshExecutor;
 	}
 
 	/**
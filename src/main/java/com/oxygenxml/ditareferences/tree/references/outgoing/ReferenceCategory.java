@@ -0,0 +1,85 @@
+package com.oxygenxml.ditareferences.tree.references.outgoing;
+
+import com.oxygenxml.ditareferences.i18n.Tags;
+import com.oxygenxml.ditareferences.workspace.DITAConstants;
+
+/**
+ * The categories of the outgoing references in ReferencesTree, in the order
+ * they are shown.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public enum ReferenceCategory {
+	/**
+	 * Images and objects.
+	 */
+	MEDIA(Tags.MEDIA_REFERENCES),
+
+	/**
+	 * Cross references.
+	 */
+	CROSS(Tags.CROSS_REFERENCES),
+
+	/**
+	 * Content references and key references.
+	 */
+	CONTENT(Tags.CONTENT_REFERENCES),
+
+	/**
+	 * Related links, also from the relationship tables.
+	 */
+	RELATED_LINKS(Tags.RELATED_LINKS);
+
+	/* The tag of the category node. */
+	private final String tag;
+
+	private ReferenceCategory(String tag) {
+		this.tag = tag;
+	}
+
+	/**
+	 * Get the category of a reference from the class attribute of its element.
+	 *
+	 * @param classValue The class attribute value, can be <code>null</code>
+	 * @return The category, <code>null</code> for an element without class.
+	 */
+	public static ReferenceCategory fromClass(String classValue) {
+		ReferenceCategory category = null;
+		if (classValue != null) {
+			if (classValue.contains(DITAConstants.IMAGE_CLASS) || classValue.contains(DITAConstants.OBJECT_CLASS)) {
+				category = MEDIA;
+			} else if (classValue.contains(DITAConstants.XREF_CLASS)) {
+				category = CROSS;
+			} else if (classValue.contains(DITAConstants.LINK_CLASS)) {
+				category = RELATED_LINKS;
+			} else {
+				// conref/conkeyref or key references to values defined in the DITAMAP
+				category = CONTENT;
+			}
+		}
+		return category;
+	}
+
+	/**
+	 * Get the class attribute of an element read without its DTD, which defaults
+	 * the class attributes. For the elements without class the base element of
+	 * the same name is assumed.
+	 *
+	 * @param classValue  The class attribute value, can be <code>null</code>
+	 * @param elementName The element name
+	 * @return The class attribute value, or the class of the base element.
+	 */
+	public static String getClassOrDefault(String classValue, String elementName) {
+		return classValue != null ? classValue : "- topic/" + elementName + " ";
+	}
+
+	/**
+	 * Get the tag of the category node.
+	 *
+	 * @return The tag, the user object of the category node.
+	 */
+	public String getTag() {
+		return tag;
+	}
+}
@@ -0,0 +1,283 @@
+package com.oxygenxml.ditareferences.tree.references.outgoing;
+
+import java.net.MalformedURLException;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+import org.apache.log4j.Logger;
+
+import com.oxygenxml.ditareferences.tree.references.RefUtilities;
+import com.oxygenxml.ditareferences.workspace.DITAConstants;
+import com.oxygenxml.ditareferences.workspace.rellinks.RelLinkNodeRange;
+
+import ro.sync.ecss.dita.reference.keyref.KeyInfo;
+
+/**
+ * Immutable description of a reference, with everything needed to show and
+ * open it, read once from the attributes of the reference element when the
+ * references are collected. Painting and opening the reference do not read
+ * the attributes again.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public final class ReferenceDescriptor {
+
+	/* The Logger. */
+	private static final Logger LOGGER = Logger.getLogger(ReferenceDescriptor.class);
+
+	/**
+	 * The icon of a reference in ReferencesTree.
+	 */
+	public enum IconKind {
+		/** No icon, the reference has no class. */
+		NONE,
+		/** A reference with external scope. */
+		EXTERNAL,
+		/** An image. */
+		IMAGE,
+		/** An audio / video object. */
+		MEDIA,
+		/** A cross reference. */
+		CROSS,
+		/** A related link. */
+		LINK,
+		/** A link from a relationship table. */
+		REL_LINK,
+		/** A content or key reference. */
+		CONTENT
+	}
+
+	/* The element name. */
+	private final String nodeName;
+
+	/* The category, null for the elements without class. */
+	private final ReferenceCategory category;
+
+	/* The icon. */
+	private final IconKind iconKind;
+
+	/* The displayed text, null if there is no target attribute. */
+	private final String displayText;
+
+	/* The class, scope and format attributes. */
+	private final String classValue;
+	private final String scope;
+	private final String format;
+
+	/* The raw target attributes. */
+	private final String keyref;
+	private final String datakeyref;
+	private final String conkeyref;
+	private final String href;
+	private final String conref;
+	private final String data;
+
+	/**
+	 * Read the description of a reference.
+	 *
+	 * @param nodeRange The reference
+	 */
+	ReferenceDescriptor(NodeRange nodeRange) {
+		this.nodeName = nodeRange.getNodeName();
+		this.classValue = nodeRange.getAttributeValue(DITAConstants.CLASS);
+		this.scope = nodeRange.getAttributeValue(DITAConstants.SCOPE);
+		this.format = nodeRange.getAttributeValue(DITAConstants.FORMAT);
+		this.keyref = nodeRange.getAttributeValue(DITAConstants.KEYREF);
+		this.datakeyref = nodeRange.getAttributeValue(DITAConstants.DATAKEYREF);
+		this.conkeyref = nodeRange.getAttributeValue(DITAConstants.CONKEYREF);
+		this.href = nodeRange.getAttributeValue(DITAConstants.HREF);
+		this.conref = nodeRange.getAttributeValue(DITAConstants.CONREF);
+		this.data = nodeRange.getAttributeValue(DITAConstants.DATA);
+
+		this.category = ReferenceCategory.fromClass(classValue);
+		this.iconKind = computeIconKind(classValue, scope, nodeRange instanceof RelLinkNodeRange);
+		this.displayText = firstNonNull(keyref, datakeyref, conkeyref, href, conref, data);
+	}
+
+	/**
+	 * Get the icon from the class and scope attributes.
+	 */
+	private static IconKind computeIconKind(String classValue, String scope, boolean fromRelTable) {
+		IconKind iconKind = IconKind.NONE;
+		if (DITAConstants.SCOPE_EXTERNAL.equals(scope)) {
+			iconKind = IconKind.EXTERNAL;
+		} else if (classValue != null) {
+			if (classValue.contains(DITAConstants.IMAGE_CLASS)) {
+				iconKind = IconKind.IMAGE;
+			} else if (classValue.contains(DITAConstants.OBJECT_CLASS)) {
+				iconKind = IconKind.MEDIA;
+			} else if (classValue.contains(DITAConstants.XREF_CLASS)) {
+				iconKind = IconKind.CROSS;
+			} else if (classValue.contains(DITAConstants.LINK_CLASS)) {
+				// make difference between related links and links from relationship table
+				iconKind = fromRelTable ? IconKind.REL_LINK : IconKind.LINK;
+			} else {
+				iconKind = IconKind.CONTENT;
+			}
+		}
+		return iconKind;
+	}
+
+	private static String firstNonNull(String... values) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the toolTip text for the node. On keyref values (keyref, datakeyref),
+	 * toolTip is set on the key definition location.
+	 *
+	 * @param referencesKeys The keys of the current DITA Map, can be
+	 *                       <code>null</code>
+	 * @return the toolTip text. Can be <code>null</code> if no attribute value
+	 *         found.
+	 */
+	String getTooltipText(LinkedHashMap<String, KeyInfo> referencesKeys) {
+		String toReturn = null;
+		if (keyref != null || datakeyref != null) {
+			KeyInfo value = RefUtilities.getKeyInfoFromReference(keyref != null ? keyref : datakeyref, referencesKeys);
+			if (value != null) {
+				try {
+					toReturn = RefUtilities.getURLForHTTPHost(format, value.getHrefValue(), value.getHrefLocation())
+							.toString();
+				} catch (MalformedURLException e) {
+					LOGGER.debug(e, e);
+				}
+			}
+		} else if (conkeyref != null) {
+			KeyInfo value = RefUtilities.getKeyInfoFromReference(conkeyref, referencesKeys);
+			if (value != null) {
+				toReturn = value.getHrefLocation().toString();
+			}
+		} else {
+			toReturn = firstNonNull(href, conref, data);
+		}
+		return toReturn;
+	}
+
+	/**
+	 * @return <code>true</code> if the target is given by a key, resolved in the
+	 *         keys of the current DITA Map.
+	 */
+	public boolean isKeyReference() {
+		return keyref != null || datakeyref != null || conkeyref != null;
+	}
+
+	/**
+	 * @return The element name.
+	 */
+	public String getNodeName() {
+		return nodeName;
+	}
+
+	/**
+	 * @return The category, <code>null</code> for an element without class.
+	 */
+	public ReferenceCategory getCategory() {
+		return category;
+	}
+
+	/**
+	 * @return The icon.
+	 */
+	public IconKind getIconKind() {
+		return iconKind;
+	}
+
+	/**
+	 * @return The displayed text, <code>null</code> if there is no target.
+	 */
+	public String getDisplayText() {
+		return displayText;
+	}
+
+	/**
+	 * @return The class attribute value.
+	 */
+	public String getClassValue() {
+		return classValue;
+	}
+
+	/**
+	 * @return The scope attribute value.
+	 */
+	public String getScope() {
+		return scope;
+	}
+
+	/**
+	 * @return The format attribute value.
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return The keyref attribute value.
+	 */
+	public String getKeyref() {
+		return keyref;
+	}
+
+	/**
+	 * @return The datakeyref attribute value.
+	 */
+	public String getDatakeyref() {
+		return datakeyref;
+	}
+
+	/**
+	 * @return The conkeyref attribute value.
+	 */
+	public String getConkeyref() {
+		return conkeyref;
+	}
+
+	/**
+	 * @return The href attribute value.
+	 */
+	public String getHref() {
+		return href;
+	}
+
+	/**
+	 * @return The conref attribute value.
+	 */
+	public String getConref() {
+		return conref;
+	}
+
+	/**
+	 * @return The data attribute value.
+	 */
+	public String getData() {
+		return data;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ReferenceDescriptor)) {
+			return false;
+		}
+		ReferenceDescriptor other = (ReferenceDescriptor) obj;
+		return iconKind == other.iconKind && Objects.equals(nodeName, other.nodeName)
+				&& Objects.equals(classValue, other.classValue) && Objects.equals(scope, other.scope)
+				&& Objects.equals(format, other.format) && Objects.equals(keyref, other.keyref)
+				&& Objects.equals(datakeyref, other.datakeyref) && Objects.equals(conkeyref, other.conkeyref)
+				&& Objects.equals(href, other.href) && Objects.equals(conref, other.conref)
+				&& Objects.equals(data, other.data);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(nodeName, classValue, keyref, href, conref);
+	}
+}
@@ -0,0 +1,101 @@
+package com.oxygenxml.ditareferences.tree.references.outgoing;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache with the references collected for the last shown editors, so
+ * that switching back to an unchanged editor does not collect them again. The
+ * references are kept with the modification stamp of the document they were
+ * collected from and are valid only while the stamp is the same.
+ *
+ * The cache is used only on the AWT thread.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+final class ReferencesCache {
+
+	/**
+	 * The maximum number of cached editor pages.
+	 */
+	private static final int MAX_SIZE = 64;
+
+	/**
+	 * The references collected from a document.
+	 */
+	private static final class CachedReferences {
+		private final long modificationStamp;
+		private final List<NodeRange> ranges;
+
+		CachedReferences(long modificationStamp, List<NodeRange> ranges) {
+			this.modificationStamp = modificationStamp;
+			this.ranges = ranges;
+		}
+	}
+
+	/* The cached references in access order, by editor location and page. */
+	@SuppressWarnings("serial")
+	private final Map<String, CachedReferences> entries = new LinkedHashMap<String, CachedReferences>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedReferences> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	/**
+	 * Get the cached references of an editor page.
+	 *
+	 * @param editorLocation    The editor location
+	 * @param pageID            The Text / Author Page ID
+	 * @param modificationStamp The current modification stamp of the document
+	 * @return The NodeRanges, the root element first, or <code>null</code> if
+	 *         they are not cached or the document changed since.
+	 */
+	List<NodeRange> get(URL editorLocation, String pageID, long modificationStamp) {
+		if (editorLocation == null || modificationStamp == -1) {
+			return null;
+		}
+		CachedReferences cached = entries.get(getKey(editorLocation, pageID));
+		return cached != null && cached.modificationStamp == modificationStamp ? cached.ranges : null;
+	}
+
+	/**
+	 * Cache the references collected from an editor page.
+	 *
+	 * @param editorLocation    The editor location
+	 * @param pageID            The Text / Author Page ID
+	 * @param modificationStamp The modification stamp of the document, when the
+	 *                          references were collected
+	 * @param ranges            The NodeRanges, the root element first. Not
+	 *                          changed afterwards.
+	 */
+	void put(URL editorLocation, String pageID, long modificationStamp, List<NodeRange> ranges) {
+		if (editorLocation != null && modificationStamp != -1 && ranges != null) {
+			entries.put(getKey(editorLocation, pageID), new CachedReferences(modificationStamp, ranges));
+		}
+	}
+
+	/**
+	 * Drop the references of all the pages of an editor, for example when it is
+	 * closed.
+	 *
+	 * @param editorLocation The editor location
+	 */
+	void remove(URL editorLocation) {
+		if (editorLocation != null) {
+			String prefix = editorLocation.toExternalForm() + '\n';
+			entries.keySet().removeIf(key -> key.startsWith(prefix));
+		}
+	}
+
+	/**
+	 * The key of an editor page. URL keys are not used because their equality may
+	 * resolve the host.
+	 */
+	private static String getKey(URL editorLocation, String pageID) {
+		return editorLocation.toExternalForm() + '\n' + pageID;
+	}
+}
@@ -1,6 +1,10 @@
 package com.oxygenxml.ditareferences.tree.references.outgoing;
 
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 
@@ -34,6 +38,42 @@ public abstract class ReferencesCollector {
 			+ " | //*[contains(@class, ' topic/link ')] | //*[@conref] | //*[@conkeyref] | //*[@keyref  and not(contains(@class, ' topic/image ')) "
 			+ "and not(contains(@class, ' topic/link '))  and  not(contains(@class, ' topic/xref '))] | //*[contains(@class, ' topic/object ')]";
 
+	/**
+	 * The way the references are collected.
+	 */
+	protected final CollectionMode collectionMode;
+
+	/**
+	 * Construct the collector.
+	 * 
+	 * @param collectionMode The way the references are collected
+	 */
+	protected ReferencesCollector(CollectionMode collectionMode) {
+		this.collectionMode = collectionMode;
+	}
+
+	/**
+	 * Check if an element would be matched by the
+	 * {@link #ALL_REFS_XPATH_EXPRESSION}, except the root branch. Used by the
+	 * collectors which visit the document only once instead of evaluating the
+	 * union expression, and by the extractor which reads the reference elements
+	 * of the files which are not open.
+	 * 
+	 * @param attributes Gives the value of an element attribute or
+	 *                   <code>null</code> if there is no such attribute
+	 * @return true if the element is a reference.
+	 */
+	public static boolean isReferenceElement(UnaryOperator<String> attributes) {
+		String classAttrValue = attributes.apply(DITAConstants.CLASS);
+		if (classAttrValue != null && (classAttrValue.contains(DITAConstants.IMAGE_CLASS)
+				|| classAttrValue.contains(DITAConstants.XREF_CLASS) || classAttrValue.contains(DITAConstants.LINK_CLASS)
+				|| classAttrValue.contains(DITAConstants.OBJECT_CLASS))) {
+			return true;
+		}
+		return attributes.apply(DITAConstants.CONREF) != null || attributes.apply(DITAConstants.CONKEYREF) != null
+				|| attributes.apply(DITAConstants.KEYREF) != null;
+	}
+
 	/**
 	 * Collect the NodeRanges from the XPath evaluation.
 	 * 
@@ -43,6 +83,32 @@ public abstract class ReferencesCollector {
 	 */
 	protected abstract List<NodeRange> collect(WSEditorPage page) throws XPathException;
 
+	/**
+	 * Take a snapshot of the page, on the AWT thread, with everything needed to
+	 * collect the NodeRanges. The returned task does not access the page and can
+	 * be run on any thread.
+	 * 
+	 * By default the NodeRanges are collected from the page by this method and
+	 * their descriptors are read here too, so the task only sorts the immutable
+	 * descriptors into categories and adds the links from the relationship
+	 * tables. This is the case of the Author Page, whose nodes are not thread
+	 * safe and can be read only on the AWT thread; its incremental mode keeps the
+	 * collection itself cheap.
+	 * 
+	 * @param page Generic Page for Text / Author
+	 * @return The collection task. It gives <code>null</code> if the NodeRanges
+	 *         cannot be collected from the snapshot.
+	 * @throws XPathException
+	 */
+	public Supplier<List<NodeRange>> snapshot(WSEditorPage page) throws XPathException {
+		List<NodeRange> ranges = collect(page);
+		for (NodeRange range : ranges) {
+			// the attributes are read once, on this thread
+			range.getDescriptor();
+		}
+		return () -> ranges;
+	}
+
 	/**
 	 * Add all category nodes and references for each of them checking the "class"
 	 * values of the leaf nodes.
@@ -53,23 +119,50 @@ public abstract class ReferencesCollector {
 	 * @throws AuthorOperationException
 	 */
 	public void collectReferences(WSEditorPage editorPage, DefaultMutableTreeNode root) throws XPathException {
-		DefaultMutableTreeNode mediaReferences = new DefaultMutableTreeNode(Tags.MEDIA_REFERENCES);
-		DefaultMutableTreeNode crossReferences = new DefaultMutableTreeNode(Tags.CROSS_REFERENCES);
-		DefaultMutableTreeNode contentReferences = new DefaultMutableTreeNode(Tags.CONTENT_REFERENCES);
-		DefaultMutableTreeNode relatedLinks = new DefaultMutableTreeNode(Tags.RELATED_LINKS);
+		// get NodeRanges for TextPage / AuthorPage
+		collectReferences(collect(editorPage), getEditorLocation(editorPage), root);
+	}
+
+	/**
+	 * Get the location of the editor of a page.
+	 * 
+	 * @param editorPage The Text / Author Page
+	 * @return The location or <code>null</code>.
+	 */
+	static URL getEditorLocation(WSEditorPage editorPage) {
+		URL editorLocation = null;
+		if (editorPage != null && editorPage.getParentEditor() != null) {
+			editorLocation = editorPage.getParentEditor().getEditorLocation();
+		}
+		return editorLocation;
+	}
+
+	/**
+	 * Add all category nodes and references for each of them checking the "class"
+	 * values of the leaf nodes. Does not access the editor page.
+	 * 
+	 * @param collectedRanges The collected NodeRanges, the root element first. The
+	 *                        list is not changed.
+	 * @param editorLocation  The location of the editor, used for the links from
+	 *                        the relationship tables. Can be <code>null</code>.
+	 * @param root            The rootNode
+	 */
+	public void collectReferences(List<NodeRange> collectedRanges, URL editorLocation, DefaultMutableTreeNode root) {
+		List<NodeRange> ranges = new ArrayList<>(collectedRanges);
+		DefaultMutableTreeNode mediaReferences = new DefaultMutableTreeNode(ReferenceCategory.MEDIA.getTag());
+		DefaultMutableTreeNode crossReferences = new DefaultMutableTreeNode(ReferenceCategory.CROSS.getTag());
+		DefaultMutableTreeNode contentReferences = new DefaultMutableTreeNode(ReferenceCategory.CONTENT.getTag());
+		DefaultMutableTreeNode relatedLinks = new DefaultMutableTreeNode(ReferenceCategory.RELATED_LINKS.getTag());
 		DefaultMutableTreeNode noReferencesFound = new DefaultMutableTreeNode(Tags.NO_OUTGOING_REFERENCES_FOUND);
 		DefaultMutableTreeNode noReferencesAvailable = new DefaultMutableTreeNode(Tags.OUTGOING_REFERENCES_NOT_AVAILABLE);
 
-		// get NodeRanges for TextPage / AuthorPage
-		List<NodeRange> ranges = collect(editorPage);
-
 		// The root element is the first in the list of references
 		if (!ranges.isEmpty()) {
 
 			// DITA Topic or Composite
 			if (isDITARoot(ranges.get(0))) {
 
-				addLinksFromRelTable(editorPage, ranges);
+				addLinksFromRelTable(editorLocation, ranges);
 
 				// DITA topic but no reference found.
 				if (ranges.size() == 1) {
@@ -95,13 +188,12 @@ public abstract class ReferencesCollector {
 	/**
 	 * Add links from relationship table if any.
 	 * 
-	 * @param editorPage The TextPage/AuthorPage
-	 * @param ranges     The nodeRanges
+	 * @param editorLocation The location of the TextPage/AuthorPage editor
+	 * @param ranges         The nodeRanges
 	 */
-	private void addLinksFromRelTable(WSEditorPage editorPage, List<NodeRange> ranges) {
-		if (editorPage != null && editorPage.getParentEditor() != null) {
-			List<RelLink> relLinks = RelLinksAccessor
-					.getRelationshipTableTargetURLs(editorPage.getParentEditor().getEditorLocation());
+	private void addLinksFromRelTable(URL editorLocation, List<NodeRange> ranges) {
+		if (editorLocation != null) {
+			List<RelLink> relLinks = RelLinksAccessor.getRelationshipTableTargetURLs(editorLocation);
 			if (!relLinks.isEmpty()) {
 				for (int i = 0; i < relLinks.size(); i++) {
 					ranges.add(new RelLinkNodeRangeImpl(relLinks.get(i)));
@@ -123,27 +215,23 @@ public abstract class ReferencesCollector {
 			DefaultMutableTreeNode contentReferences, DefaultMutableTreeNode relatedLinks, List<NodeRange> ranges) {
 		for (int i = 1; i < ranges.size(); i++) {
 			NodeRange refRange = ranges.get(i);
-			String classAttrValue = refRange.getAttributeValue(DITAConstants.CLASS);
-			if (classAttrValue != null) {
-				// add image nodeRanges in "image references" category of tree
-				if (classAttrValue.contains(DITAConstants.IMAGE_CLASS) || classAttrValue.contains(DITAConstants.OBJECT_CLASS)) {
+			// read the attributes of the reference once, for painting and opening it
+			ReferenceCategory category = refRange.getDescriptor().getCategory();
+			if (category != null) {
+				switch (category) {
+				case MEDIA:
 					mediaReferences.add(new DefaultMutableTreeNode(refRange));
-				} else
-				// add xref nodeRanges in "cross references" category of tree
-				if (classAttrValue.contains(DITAConstants.XREF_CLASS)) {
+					break;
+				case CROSS:
 					crossReferences.add(new DefaultMutableTreeNode(refRange));
-				} else
-				// add link nodeRanges in "related links references" category of tree
-				if (classAttrValue.contains(DITAConstants.LINK_CLASS)) {
+					break;
+				case RELATED_LINKS:
 					relatedLinks.add(new DefaultMutableTreeNode(refRange));
-				} else
-				// add conref/conkeyref nodeRanges in "content references" category of tree
-				if (refRange.getAttributeValue(DITAConstants.CONKEYREF) != null
-						|| refRange.getAttributeValue(DITAConstants.CONREF) != null) {
-					contentReferences.add(new DefaultMutableTreeNode(refRange));
-				} else {
-					// add key references to values defined in the DITAMAP
+					break;
+				default:
+					// conref/conkeyref and key references to values defined in the DITAMAP
 					contentReferences.add(new DefaultMutableTreeNode(refRange));
+					break;
 				}
 			}
 		}
@@ -177,15 +265,17 @@ public abstract class ReferencesCollector {
 	}
 
 	/**
-	 * Check for DITA Topic or Composite.
+	 * Check for DITA Topic or Composite. The root is read through its
+	 * descriptor, which can be taken with the snapshot.
 	 * 
 	 * @param range The corresponding nodeRange
 	 * @return true if root shows DITA file
 	 */
 	private boolean isDITARoot(NodeRange range) {
-		return (range.getAttributeValue(DITAConstants.CLASS) != null
-				&& range.getAttributeValue(DITAConstants.CLASS).contains(DITAConstants.TOPIC_CLASS))
-				|| range.getNodeName().equals(DITAConstants.FORMAT_DITA);
+		ReferenceDescriptor rootDescriptor = range.getDescriptor();
+		return (rootDescriptor.getClassValue() != null
+				&& rootDescriptor.getClassValue().contains(DITAConstants.TOPIC_CLASS))
+				|| DITAConstants.FORMAT_DITA.equals(rootDescriptor.getNodeName());
 	}
 
 }
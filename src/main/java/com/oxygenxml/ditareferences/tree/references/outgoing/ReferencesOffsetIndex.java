@@ -0,0 +1,144 @@
+package com.oxygenxml.ditareferences.tree.references.outgoing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.swing.text.Position;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreePath;
+
+import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
+
+/**
+ * The offsets of the reference nodes from the ReferencesTree, sorted by their
+ * start offset, to find the node at the caret with a binary search.
+ *
+ * The reference elements are nested or disjoint, so the ones containing an
+ * offset are the last one starting before it and its enclosing elements. When
+ * more nodes contain the offset the first one in the tree is chosen.
+ *
+ * The index keeps the start and end positions of the references and reads
+ * them directly when searching. The Text Page references track them with
+ * document positions and the Author Page ones with the element offsets, so the
+ * edits move them without changing their order and the index stays valid until
+ * the references are collected again. The offsets of the other references are
+ * kept as they were when the index was built.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public final class ReferencesOffsetIndex {
+
+	/* The start and end positions of the references, by start offset. */
+	private final Position[] starts;
+	private final Position[] ends;
+
+	/* The index of the enclosing reference or -1. */
+	private final int[] enclosingIndices;
+
+	/* The order of the nodes in the tree. */
+	private final int[] treeOrder;
+
+	/* The paths of the nodes. */
+	private final TreePath[] paths;
+
+	private ReferencesOffsetIndex(int size) {
+		starts = new Position[size];
+		ends = new Position[size];
+		enclosingIndices = new int[size];
+		treeOrder = new int[size];
+		paths = new TreePath[size];
+	}
+
+	/**
+	 * Build the index of the reference nodes from the tree.
+	 *
+	 * @param root The root of the ReferencesTree
+	 * @param page The Text / Author Page, used to compute the offsets
+	 * @return The index.
+	 */
+	public static ReferencesOffsetIndex build(DefaultMutableTreeNode root, WSEditorPage page) {
+		// the reference nodes in tree order: the start and end offsets and the tree order
+		List<int[]> references = new ArrayList<>();
+		List<Position[]> referencePositions = new ArrayList<>();
+		List<TreePath> referencePaths = new ArrayList<>();
+		TreePath rootPath = new TreePath(root);
+		for (int i = 0; i < root.getChildCount(); i++) {
+			DefaultMutableTreeNode category = (DefaultMutableTreeNode) root.getChildAt(i);
+			TreePath categoryPath = rootPath.pathByAddingChild(category);
+			for (int j = 0; j < category.getChildCount(); j++) {
+				DefaultMutableTreeNode node = (DefaultMutableTreeNode) category.getChildAt(j);
+				if (node.getUserObject() instanceof NodeRange) {
+					NodeRange range = (NodeRange) node.getUserObject();
+					int[] nodeOffsets = range.getNodeOffsets(page);
+					// the related links have no offsets
+					if (nodeOffsets != null && nodeOffsets.length == 2) {
+						references.add(new int[] { nodeOffsets[0], nodeOffsets[1], references.size() });
+						Position[] positions = range.getNodePositions(page);
+						if (positions == null) {
+							int start = nodeOffsets[0];
+							int end = nodeOffsets[1];
+							positions = new Position[] { () -> start, () -> end };
+						}
+						referencePositions.add(positions);
+						referencePaths.add(categoryPath.pathByAddingChild(node));
+					}
+				}
+			}
+		}
+
+		// by start offset, the enclosing reference first
+		references.sort(Comparator.<int[]>comparingInt(reference -> reference[0])
+				.thenComparing(Comparator.<int[]>comparingInt(reference -> reference[1]).reversed()));
+
+		ReferencesOffsetIndex index = new ReferencesOffsetIndex(references.size());
+		int[] enclosingStack = new int[references.size()];
+		int stackSize = 0;
+		for (int i = 0; i < references.size(); i++) {
+			int[] reference = references.get(i);
+			index.starts[i] = referencePositions.get(reference[2])[0];
+			index.ends[i] = referencePositions.get(reference[2])[1];
+			index.treeOrder[i] = reference[2];
+			index.paths[i] = referencePaths.get(reference[2]);
+
+			while (stackSize > 0 && references.get(enclosingStack[stackSize - 1])[1] < reference[1]) {
+				stackSize--;
+			}
+			index.enclosingIndices[i] = stackSize > 0 ? enclosingStack[stackSize - 1] : -1;
+			enclosingStack[stackSize++] = i;
+		}
+		return index;
+	}
+
+	/**
+	 * Find the reference node containing an offset.
+	 *
+	 * @param offset The offset, for example of the caret
+	 * @return The path of the node or <code>null</code> if no reference contains
+	 *         the offset.
+	 */
+	public TreePath find(int offset) {
+		// the last reference starting before or at the offset
+		int low = 0;
+		int high = starts.length - 1;
+		int last = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (starts[middle].getOffset() <= offset) {
+				last = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		int found = -1;
+		for (int i = last; i != -1; i = enclosingIndices[i]) {
+			if (offset <= ends[i].getOffset() && (found == -1 || treeOrder[i] < treeOrder[found])) {
+				found = i;
+			}
+		}
+		return found != -1 ? paths[found] : null;
+	}
+}
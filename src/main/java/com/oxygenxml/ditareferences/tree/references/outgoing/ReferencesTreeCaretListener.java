@@ -2,10 +2,8 @@ package com.oxygenxml.ditareferences.tree.references.outgoing;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Enumeration;
 import java.util.function.Supplier;
 
-import javax.swing.JTree;
 import javax.swing.Timer;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.TreePath;
@@ -23,6 +21,11 @@ public abstract class ReferencesTreeCaretListener<T extends WSEditorPage> implem
 	private ActionListener timerListener = new CaretTimerListener();
 	private Timer updateCaretTimer = new Timer(TIMER_DELAY, timerListener);
 
+	/* The offsets of the reference nodes, for the page and the references version. */
+	private ReferencesOffsetIndex offsetIndex;
+	private WSEditorPage indexedPage;
+	private int indexedReferencesRevision;
+
 	/* Set the inhibiter on false by default. */
 	private boolean inhibitCaretSelectionListener = false;
 
@@ -72,9 +75,7 @@ public abstract class ReferencesTreeCaretListener<T extends WSEditorPage> implem
 		private void searchForNodeMatchingCaret() {
 			if (getCaretOffset() > 0) {
 				int caretOffset = getCaretOffset();
-				DefaultMutableTreeNode root = (DefaultMutableTreeNode) refTree.getModel().getRoot();
-				TreePath pathForSelectionInTree = visitAllNodes(refTree, new TreePath(root), caretOffset,
-						editorPage.get());
+				TreePath pathForSelectionInTree = findNodeAtCaret(caretOffset, editorPage.get());
 
 				// select the returned path matching the caret
 				if (pathForSelectionInTree != null) {
@@ -96,51 +97,26 @@ public abstract class ReferencesTreeCaretListener<T extends WSEditorPage> implem
 	protected abstract int getCaretOffset();
 
 	/**
-	 * Visit all the reference nodes recursively to find the matching one for caret.
+	 * Find the reference node matching the caret. The offsets index is built again
+	 * only when the shown references changed, the edits are followed by the
+	 * offsets of the references. The pages whose changes cannot be tracked build
+	 * it every time.
 	 * 
-	 * @param tree        The Reference Tree
-	 * @param parent      The path from parent
 	 * @param caretOffset The caretOffset
-	 * @param textPage    The XML textPage
+	 * @param page        The Text / Author Page
 	 * @return the TreePath for the selected Node
 	 */
-	@SuppressWarnings("rawtypes")
-  private TreePath visitAllNodes(JTree tree, TreePath parent, int caretOffset, final WSEditorPage page) {
-		DefaultMutableTreeNode node = (DefaultMutableTreeNode) parent.getLastPathComponent();
-
-		// it must be value node
-		if (node.getUserObject() instanceof NodeRange) {
-			NodeRange nodeRangeElem = (NodeRange) node.getUserObject();
-
-			// get node offsets corresponding the caret
-			int[] nodeOffsets = nodeRangeElem.getNodeOffsets(page);
-			if(nodeOffsets != null) {
-				int startNodeOffset = nodeOffsets[0];
-				int endNodeOffset = nodeOffsets[1];
-
-				if (startNodeOffset <= caretOffset && caretOffset <= endNodeOffset) {
-					// Found the node at the corresponding caret
-					return parent;
-				}
-			}
+	private TreePath findNodeAtCaret(int caretOffset, WSEditorPage page) {
+		int referencesRevision = refTree.getReferencesRevision();
+		if (offsetIndex == null || page != indexedPage || referencesRevision != indexedReferencesRevision
+				|| ModificationStamps.getStamp(page) == -1) {
+			offsetIndex = ReferencesOffsetIndex.build((DefaultMutableTreeNode) refTree.getModel().getRoot(), page);
+			indexedPage = page;
+			indexedReferencesRevision = referencesRevision;
 		}
-
-		// search for the matching node among current node's children
-		if (node.getChildCount() > 0) {
-			for (Enumeration e = node.children(); e.hasMoreElements();) {
-				DefaultMutableTreeNode nextNode = (DefaultMutableTreeNode) e.nextElement();
-				TreePath foundPath = visitAllNodes(tree, parent.pathByAddingChild(nextNode), caretOffset, page);
-
-				if (foundPath != null) {
-					// Found the node in the deeper recursion
-					return foundPath;
-				}
-			}
-		}
-		
-		return null;
+		return offsetIndex.find(caretOffset);
 	}
-	
+
 	/**
 	 * Set the InhibitorCaretSelectionListener.
 	 * 
@@ -14,11 +14,9 @@ import javax.swing.tree.DefaultMutableTreeNode;
 
 import com.oxygenxml.ditareferences.i18n.Tags;
 import com.oxygenxml.ditareferences.i18n.Translator;
-import com.oxygenxml.ditareferences.workspace.DITAConstants;
 import com.oxygenxml.ditareferences.workspace.Icons;
 import com.oxygenxml.ditareferences.workspace.KeysProvider;
 import com.oxygenxml.ditareferences.workspace.StringUtilities;
-import com.oxygenxml.ditareferences.workspace.rellinks.RelLinkNodeRange;
 
 import ro.sync.ecss.dita.reference.keyref.KeyInfo;
 import ro.sync.exml.workspace.api.images.ImageUtilities;
@@ -164,7 +162,9 @@ public class ReferencesTreeCellRenderer extends TreeCellRenderer {
 	 * @param nodeRange The NodeRange
 	 */
 	private void setTextAndToolTipForLeafNode(JLabel label, int width, NodeRange nodeRange) {
-		LinkedHashMap<String, KeyInfo> referencesKeys = keysProvider != null ? keysProvider.getKeys(nodeRange.getEditorLocation()) : null;
+		// only the key references need the keys of the DITA Map
+		LinkedHashMap<String, KeyInfo> referencesKeys = keysProvider != null
+				&& nodeRange.getDescriptor().isKeyReference() ? keysProvider.getKeys(nodeRange.getEditorLocation()) : null;
 		
 		String displayedText = nodeRange.getDisplayText();
 		if (displayedText != null) {
@@ -209,32 +209,31 @@ public class ReferencesTreeCellRenderer extends TreeCellRenderer {
 	 * @param nodeRange The NodeRange
 	 */
 	private void setIconForLeafNode(JLabel label, NodeRange nodeRange) {
-		String classAttrValue = nodeRange.getAttributeValue(DITAConstants.CLASS);
-		String scopeAttribute = nodeRange.getAttributeValue(DITAConstants.SCOPE);
-
-		// set icon for external reference
-		if (scopeAttribute != null && scopeAttribute.equals(DITAConstants.SCOPE_EXTERNAL)) {
+		switch (nodeRange.getDescriptor().getIconKind()) {
+		case EXTERNAL:
+			// set icon for external reference
 			label.setIcon(externalRefIcon);
-		} else if (classAttrValue != null) {
-			if (classAttrValue.contains(DITAConstants.IMAGE_CLASS)) {
-				label.setIcon(imageIcon);
-			} else if (classAttrValue.contains(DITAConstants.OBJECT_CLASS)) {
-				label.setIcon(mediaIcon);
-			} else if (classAttrValue.contains(DITAConstants.XREF_CLASS)) {
-				label.setIcon(crossIcon);
-			} else if (classAttrValue.contains(DITAConstants.LINK_CLASS)) {
-				// make difference between related links and links from relationship table
-				if (nodeRange instanceof RelLinkNodeRange) {
-					label.setIcon(relLinkIcon);
-				} else {
-					label.setIcon(linkIcon);
-				}
-			} else if (nodeRange.getAttributeValue(DITAConstants.CONKEYREF) != null
-					|| nodeRange.getAttributeValue(DITAConstants.CONREF) != null) {
-				label.setIcon(contentIcon);
-			} else {
-				label.setIcon(contentIcon);
-			}
+			break;
+		case IMAGE:
+			label.setIcon(imageIcon);
+			break;
+		case MEDIA:
+			label.setIcon(mediaIcon);
+			break;
+		case CROSS:
+			label.setIcon(crossIcon);
+			break;
+		case REL_LINK:
+			label.setIcon(relLinkIcon);
+			break;
+		case LINK:
+			label.setIcon(linkIcon);
+			break;
+		case CONTENT:
+			label.setIcon(contentIcon);
+			break;
+		default:
+			break;
 		}
 	}
 
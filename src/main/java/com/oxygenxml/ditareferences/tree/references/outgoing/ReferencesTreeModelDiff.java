@@ -0,0 +1,192 @@
+package com.oxygenxml.ditareferences.tree.references.outgoing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * Update the model of the ReferencesTree to match a new root, firing only the
+ * events for the nodes which changed. The nodes which are still there keep
+ * their identity, so the selection, the expansion and the scroll position of
+ * the tree are kept.
+ *
+ * The root has the reference categories or a message as children and the
+ * references as grandchildren. The categories are matched by their tag and
+ * the references of a category are matched by their display, after skipping
+ * the common beginning and end of the old and new lists.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+final class ReferencesTreeModelDiff {
+
+	private ReferencesTreeModelDiff() {
+		// private constructor
+	}
+
+	/**
+	 * Update the model to match the new root.
+	 *
+	 * @param model    The tree model
+	 * @param newRoot  The new root, with the same user object as the model root
+	 * @param expander Expands the path of an inserted category
+	 */
+	static void update(DefaultTreeModel model, DefaultMutableTreeNode newRoot, Consumer<TreePath> expander) {
+		DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
+
+		// remove the categories which are not in the new root
+		List<Integer> removedIndices = new ArrayList<>();
+		List<Object> removedCategories = new ArrayList<>();
+		for (int i = 0; i < root.getChildCount(); i++) {
+			DefaultMutableTreeNode category = (DefaultMutableTreeNode) root.getChildAt(i);
+			if (findCategory(newRoot, category.getUserObject()) == null) {
+				removedIndices.add(i);
+				removedCategories.add(category);
+			}
+		}
+		for (int i = removedCategories.size() - 1; i >= 0; i--) {
+			root.remove(removedIndices.get(i));
+		}
+		fireNodesRemoved(model, root, removedIndices, removedCategories);
+
+		// the categories keep their relative order, insert the new ones and update the others
+		List<DefaultMutableTreeNode> newCategories = new ArrayList<>();
+		for (int i = 0; i < newRoot.getChildCount(); i++) {
+			newCategories.add((DefaultMutableTreeNode) newRoot.getChildAt(i));
+		}
+		for (int i = 0; i < newCategories.size(); i++) {
+			DefaultMutableTreeNode newCategory = newCategories.get(i);
+			DefaultMutableTreeNode category = i < root.getChildCount() ? (DefaultMutableTreeNode) root.getChildAt(i)
+					: null;
+			if (category != null && category.getUserObject().equals(newCategory.getUserObject())) {
+				updateReferences(model, category, newCategory);
+			} else {
+				model.insertNodeInto(newCategory, root, i);
+				expander.accept(new TreePath(newCategory.getPath()));
+			}
+		}
+	}
+
+	/**
+	 * Update the references of a category.
+	 *
+	 * @param model       The tree model
+	 * @param category    The category in the model
+	 * @param newCategory The category with the new references
+	 */
+	private static void updateReferences(DefaultTreeModel model, DefaultMutableTreeNode category,
+			DefaultMutableTreeNode newCategory) {
+		int oldCount = category.getChildCount();
+		int newCount = newCategory.getChildCount();
+
+		// skip the common beginning and end
+		int start = 0;
+		while (start < oldCount && start < newCount && hasSameDisplay(category, start, newCategory, start)) {
+			start++;
+		}
+		int oldEnd = oldCount;
+		int newEnd = newCount;
+		while (oldEnd > start && newEnd > start && hasSameDisplay(category, oldEnd - 1, newCategory, newEnd - 1)) {
+			oldEnd--;
+			newEnd--;
+		}
+
+		// the matched references are displayed the same, only their offsets may differ
+		for (int i = 0; i < start; i++) {
+			takeUserObject(category, i, newCategory, i);
+		}
+		for (int i = 0; i < oldCount - oldEnd; i++) {
+			takeUserObject(category, oldEnd + i, newCategory, newEnd + i);
+		}
+
+		int oldChanged = oldEnd - start;
+		int newChanged = newEnd - start;
+		int common = Math.min(oldChanged, newChanged);
+		if (common > 0) {
+			// replaced in place, like an edited attribute
+			int[] changedIndices = new int[common];
+			for (int i = 0; i < common; i++) {
+				takeUserObject(category, start + i, newCategory, start + i);
+				changedIndices[i] = start + i;
+			}
+			model.nodesChanged(category, changedIndices);
+		}
+
+		if (oldChanged > common) {
+			List<Integer> removedIndices = new ArrayList<>();
+			List<Object> removedReferences = new ArrayList<>();
+			for (int i = start + common; i < oldEnd; i++) {
+				removedIndices.add(i);
+				removedReferences.add(category.getChildAt(i));
+			}
+			for (int i = removedIndices.size() - 1; i >= 0; i--) {
+				category.remove(removedIndices.get(i));
+			}
+			fireNodesRemoved(model, category, removedIndices, removedReferences);
+		} else if (newChanged > common) {
+			int[] insertedIndices = new int[newChanged - common];
+			for (int i = 0; i < insertedIndices.length; i++) {
+				int index = start + common + i;
+				DefaultMutableTreeNode newReference = (DefaultMutableTreeNode) newCategory.getChildAt(index);
+				category.insert(new DefaultMutableTreeNode(newReference.getUserObject()), index);
+				insertedIndices[i] = index;
+			}
+			model.nodesWereInserted(category, insertedIndices);
+		}
+	}
+
+	/**
+	 * Find the category with the given tag.
+	 *
+	 * @return the category or <code>null</code>.
+	 */
+	private static DefaultMutableTreeNode findCategory(DefaultMutableTreeNode root, Object userObject) {
+		for (int i = 0; i < root.getChildCount(); i++) {
+			DefaultMutableTreeNode category = (DefaultMutableTreeNode) root.getChildAt(i);
+			if (category.getUserObject().equals(userObject)) {
+				return category;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return <code>true</code> if the references are displayed the same.
+	 */
+	private static boolean hasSameDisplay(DefaultMutableTreeNode category, int index,
+			DefaultMutableTreeNode newCategory, int newIndex) {
+		Object reference = ((DefaultMutableTreeNode) category.getChildAt(index)).getUserObject();
+		Object newReference = ((DefaultMutableTreeNode) newCategory.getChildAt(newIndex)).getUserObject();
+		if (reference instanceof NodeRange && newReference instanceof NodeRange) {
+			return ((NodeRange) reference).hasSameDisplay((NodeRange) newReference);
+		}
+		return reference.equals(newReference);
+	}
+
+	/**
+	 * Keep the node in the model but take the user object of the new node.
+	 */
+	private static void takeUserObject(DefaultMutableTreeNode category, int index, DefaultMutableTreeNode newCategory,
+			int newIndex) {
+		((DefaultMutableTreeNode) category.getChildAt(index))
+				.setUserObject(((DefaultMutableTreeNode) newCategory.getChildAt(newIndex)).getUserObject());
+	}
+
+	/**
+	 * Notify the model about the removed children.
+	 */
+	private static void fireNodesRemoved(DefaultTreeModel model, DefaultMutableTreeNode parent,
+			List<Integer> removedIndices, List<Object> removedChildren) {
+		if (!removedIndices.isEmpty()) {
+			int[] indices = new int[removedIndices.size()];
+			for (int i = 0; i < indices.length; i++) {
+				indices[i] = removedIndices.get(i);
+			}
+			model.nodesWereRemoved(parent, indices, removedChildren.toArray());
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.oxygenxml.ditareferences.tree.references.outgoing;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The delays before refreshing the outgoing references after an edit, adapted
+ * to how long the recent collections took for every document. The references
+ * of small topics are refreshed almost immediately, while the refresh of huge
+ * documents waits longer, so that the collections do not run back-to-back
+ * while typing.
+ *
+ * The collection times are averaged with an exponentially weighted moving
+ * average.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public final class RefreshDelays {
+
+	/* The referencesTree Logger. */
+	private static final Logger LOGGER = Logger.getLogger(RefreshDelays.class);
+
+	/**
+	 * The delay for the documents never collected, in milliseconds.
+	 */
+	public static final int DEFAULT_DELAY = 500;
+
+	/**
+	 * The minimum delay, to coalesce the edits made while typing, in milliseconds.
+	 */
+	public static final int MIN_DELAY = 150;
+
+	/**
+	 * The maximum delay, in milliseconds.
+	 */
+	public static final int MAX_DELAY = 5000;
+
+	/* How many times the collection time the delay is. */
+	private static final int COLLECTION_TIME_FACTOR = 2;
+
+	/* The weight of the last collection time in the average. */
+	private static final double LAST_COLLECTION_WEIGHT = 0.3;
+
+	/* The maximum number of documents with statistics. */
+	private static final int MAX_SIZE = 64;
+
+	/**
+	 * The collection times of a document.
+	 */
+	private static final class CollectionTimes {
+		private long lastCollectionTime;
+		private double averageCollectionTime;
+		private int collections;
+	}
+
+	/* The collection times by editor location, in access order. */
+	@SuppressWarnings("serial")
+	private final Map<String, CollectionTimes> collectionTimes = new LinkedHashMap<String, CollectionTimes>(16, 0.75f,
+			true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CollectionTimes> eldest) {
+			return size() > MAX_SIZE;
+		}
+	};
+
+	/**
+	 * Record how long the collection of the references took.
+	 *
+	 * @param editorLocation The editor location, can be <code>null</code>
+	 * @param collectionTime The collection time, in milliseconds
+	 */
+	public synchronized void collectionFinished(URL editorLocation, long collectionTime) {
+		if (editorLocation != null) {
+			CollectionTimes times = collectionTimes.computeIfAbsent(editorLocation.toExternalForm(),
+					key -> new CollectionTimes());
+			times.lastCollectionTime = collectionTime;
+			times.averageCollectionTime = times.collections == 0 ? collectionTime
+					: LAST_COLLECTION_WEIGHT * collectionTime + (1 - LAST_COLLECTION_WEIGHT) * times.averageCollectionTime;
+			times.collections++;
+
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Collected the references of " + editorLocation + " in " + collectionTime
+						+ " ms, average " + Math.round(times.averageCollectionTime) + " ms, refresh delay "
+						+ getDelay(times) + " ms");
+			}
+		}
+	}
+
+	/**
+	 * Get the delay before refreshing the references of a document after an edit.
+	 *
+	 * @param editorLocation The editor location, can be <code>null</code>
+	 * @return The delay, in milliseconds.
+	 */
+	public synchronized int getDelay(URL editorLocation) {
+		CollectionTimes times = editorLocation != null ? collectionTimes.get(editorLocation.toExternalForm()) : null;
+		return times != null ? getDelay(times) : DEFAULT_DELAY;
+	}
+
+	/**
+	 * Get the last collection time of a document.
+	 *
+	 * @param editorLocation The editor location
+	 * @return The collection time in milliseconds, -1 if never collected.
+	 */
+	public synchronized long getLastCollectionTime(URL editorLocation) {
+		CollectionTimes times = collectionTimes.get(editorLocation.toExternalForm());
+		return times != null ? times.lastCollectionTime : -1;
+	}
+
+	/**
+	 * Get the average collection time of a document.
+	 *
+	 * @param editorLocation The editor location
+	 * @return The collection time in milliseconds, -1 if never collected.
+	 */
+	public synchronized long getAverageCollectionTime(URL editorLocation) {
+		CollectionTimes times = collectionTimes.get(editorLocation.toExternalForm());
+		return times != null ? Math.round(times.averageCollectionTime) : -1;
+	}
+
+	/**
+	 * Compute the delay from the collection times, longer than the slowest of the
+	 * last and the average collection time.
+	 */
+	private static int getDelay(CollectionTimes times) {
+		double collectionTime = Math.max(times.lastCollectionTime, times.averageCollectionTime);
+		return (int) Math.min(MAX_DELAY, MIN_DELAY + COLLECTION_TIME_FACTOR * Math.round(collectionTime));
+	}
+}
@@ -0,0 +1,125 @@
+package com.oxygenxml.ditareferences.workspace;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ro.sync.ecss.dita.reference.keyref.KeyInfo;
+
+/**
+ * KeysProvider which remembers the key space of the current root map, so that
+ * painting the references tree does not resolve the keys again for every
+ * visible cell. The keys are cached by root map, for all the documents it
+ * contains; while the root map is not known they are cached by editor
+ * location. Only the {@link #MAX_CACHED_KEY_SPACES} most recently used ones
+ * are kept, so switching back to a root map does not resolve its keys again.
+ *
+ * The keys are resolved again only after the notified changes of the DITA
+ * Maps, like a saved or closed map.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class CachingKeysProvider implements KeysProvider {
+
+	/**
+	 * The maximum number of cached key spaces.
+	 */
+	public static final int MAX_CACHED_KEY_SPACES = 8;
+
+	/* The provider which resolves the keys. */
+	private final KeysProvider keysProvider;
+
+	/* The resolved keys, by root map or, if it is unknown, by editor location. */
+	@SuppressWarnings("serial")
+	private final Map<String, LinkedHashMap<String, KeyInfo>> cachedKeys = new LinkedHashMap<String, LinkedHashMap<String, KeyInfo>>(
+			16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, LinkedHashMap<String, KeyInfo>> eldest) {
+			return size() > MAX_CACHED_KEY_SPACES;
+		}
+	};
+
+	/* Incremented when the cached keys are dropped. */
+	private long generation;
+
+	/* The current root map, null if unknown. */
+	private String rootMap;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param keysProvider The provider which resolves the keys
+	 */
+	public CachingKeysProvider(KeysProvider keysProvider) {
+		this.keysProvider = keysProvider;
+	}
+
+	/**
+	 * Get the keys for the editor location, from the key space of the current
+	 * root map. The keys are resolved without holding the lock of the cache, so
+	 * the AWT thread does not wait for another thread resolving them.
+	 */
+	@Override
+	public LinkedHashMap<String, KeyInfo> getKeys(URL editorLocation) {
+		String cacheKey;
+		long resolvedGeneration;
+		synchronized (this) {
+			cacheKey = rootMap != null ? rootMap
+					: editorLocation != null ? editorLocation.toExternalForm() : null;
+			LinkedHashMap<String, KeyInfo> cached = cachedKeys.get(cacheKey);
+			if (cached != null || cachedKeys.containsKey(cacheKey)) {
+				return cached;
+			}
+			resolvedGeneration = generation;
+		}
+
+		LinkedHashMap<String, KeyInfo> keys = keysProvider.getKeys(editorLocation);
+		synchronized (this) {
+			// keys resolved before an invalidation are not cached
+			if (resolvedGeneration == generation) {
+				cachedKeys.put(cacheKey, keys);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Set the root map whose key space is used.
+	 *
+	 * @param rootMapLocation The root map location, can be <code>null</code>
+	 */
+	public synchronized void setRootMap(URL rootMapLocation) {
+		rootMap = rootMapLocation != null ? rootMapLocation.toExternalForm() : null;
+	}
+
+	/**
+	 * Drop the cached keys, the key space changed.
+	 */
+	public synchronized void invalidate() {
+		cachedKeys.clear();
+		generation++;
+	}
+
+	/**
+	 * Drop the cached keys if the changed document is a DITA Map.
+	 *
+	 * @param documentLocation The location of the changed document
+	 */
+	public void documentChanged(URL documentLocation) {
+		if (isDITAMap(documentLocation)) {
+			invalidate();
+		}
+	}
+
+	/**
+	 * Check if the document at the given location is a DITA Map.
+	 *
+	 * @param documentLocation The document location, can be <code>null</code>
+	 * @return <code>true</code> for a DITA Map.
+	 */
+	public static boolean isDITAMap(URL documentLocation) {
+		return documentLocation != null
+				&& documentLocation.getPath().toLowerCase().endsWith("." + DITAConstants.FORMAT_DITAMAP);
+	}
+}
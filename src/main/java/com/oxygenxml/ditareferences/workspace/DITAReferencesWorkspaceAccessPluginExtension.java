@@ -11,8 +11,10 @@ import com.oxygenxml.ditareferences.i18n.DITAReferencesTranslator;
 import com.oxygenxml.ditareferences.i18n.Tags;
 import com.oxygenxml.ditareferences.sideview.SideViewComponent;
 import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReferencesPanel;
+import com.oxygenxml.ditareferences.tree.references.outgoing.CollectionMode;
 import com.oxygenxml.ditareferences.tree.references.outgoing.OutgoingReferencesTree;
 import com.oxygenxml.ditareferences.workspace.authorpage.AuthorPageListener;
+import com.oxygenxml.ditareferences.workspace.rellinks.RelLinksAccessor;
 import com.oxygenxml.ditareferences.workspace.textpage.TextPageListener;
 
 import ro.sync.ecss.dita.DITAAccess;
@@ -24,6 +26,7 @@ import ro.sync.exml.workspace.api.editor.page.author.WSAuthorEditorPage;
 import ro.sync.exml.workspace.api.editor.page.text.WSTextEditorPage;
 import ro.sync.exml.workspace.api.images.ImageUtilities;
 import ro.sync.exml.workspace.api.listeners.WSEditorChangeListener;
+import ro.sync.exml.workspace.api.listeners.WSEditorListener;
 import ro.sync.exml.workspace.api.standalone.StandalonePluginWorkspace;
 
 /**
@@ -39,8 +42,11 @@ public class DITAReferencesWorkspaceAccessPluginExtension implements WorkspaceAc
 	/* Workspace access. */
 	private StandalonePluginWorkspace pluginWorkspaceAccess;
 
-	/* Provider of keys for the current DITA Map. */
-	private KeysProvider keysProvider = DITAAccess::getKeys;
+	/* Provider of keys for the current DITA Map, shared by all the outgoing references. */
+	private CachingKeysProvider keysProvider = new CachingKeysProvider(DITAAccess::getKeys);
+
+	/* The maps of the current root map, whose changes drop the keys and relationship tables. */
+	private MapHierarchy mapHierarchy = new MapHierarchy();
 
 	/* The tree with the outgoing references. */
 	private OutgoingReferencesTree refTreeOut;
@@ -48,7 +54,7 @@ public class DITAReferencesWorkspaceAccessPluginExtension implements WorkspaceAc
 	/* The tree with the ongoing references. */
 	private IncomingReferencesPanel refTreeIn;
 
-	/* The timer for editor changes. */
+	/* The timer for editor changes, its delay is adapted to the collection times after edits. */
 	private static final int TIMER_DELAY = 500;
 	private ActionListener timerListener = new EditorChangesTimerListener();
 	private Timer updateTreeTimer = new Timer(TIMER_DELAY, timerListener);
@@ -56,11 +62,13 @@ public class DITAReferencesWorkspaceAccessPluginExtension implements WorkspaceAc
 	/* The DITA references translator for the side-view label. */
 	private DITAReferencesTranslator translator = new DITAReferencesTranslator();
 
-	/* Document Listener to update the ReferencesTree for TextPage. */
-	private TextPageListener textPageDocumentListener = new TextPageListener(updateTreeTimer);
+	/* Document Listener to update the ReferencesTree for TextPage, on the edits which can change the references. */
+	private TextPageListener textPageDocumentListener = new TextPageListener(updateTreeTimer, this::editorContentChanged,
+			true);
 
-	/* Author Listener to update the ReferencesTree for AuthorPage. */
-	private AuthorPageListener authorPageListener = new AuthorPageListener(updateTreeTimer);
+	/* Author Listener to update the ReferencesTree for AuthorPage, on the edits which can change the references. */
+	private AuthorPageListener authorPageListener = new AuthorPageListener(updateTreeTimer, this::editorContentChanged,
+			true);
 
 	/**
 	 * Let the application start.
@@ -69,7 +77,11 @@ public class DITAReferencesWorkspaceAccessPluginExtension implements WorkspaceAc
 	public void applicationStarted(final StandalonePluginWorkspace pluginWorkspaceAccess) {
 		this.pluginWorkspaceAccess = pluginWorkspaceAccess;
 		this.refTreeOut = new OutgoingReferencesTree(pluginWorkspaceAccess, keysProvider, translator);
-		this.refTreeIn = new IncomingReferencesPanel(pluginWorkspaceAccess);
+		// collect the outgoing references without blocking the editor
+		this.refTreeOut.setBackgroundRefresh(true);
+		// update the references from the edits
+		this.refTreeOut.setCollectionMode(CollectionMode.INCREMENTAL);
+		this.refTreeIn = new IncomingReferencesPanel(pluginWorkspaceAccess, keysProvider);
 
 		pluginWorkspaceAccess.addEditorChangeListener(new WSEditorChangeListener() {
 						
@@ -102,12 +114,14 @@ public class DITAReferencesWorkspaceAccessPluginExtension implements WorkspaceAc
 						} else {
 							updateTreeTimer.restart();
 						}
+						addMapSaveListener(editorAccess);
 					}
 			}
 
 			@Override
 			public void editorClosed(URL editorLocation) {
 				// An edited XML document has been closed.
+				refTreeOut.clearCachedReferences(editorLocation);
 			}
 
 			@Override
@@ -165,6 +179,31 @@ public class DITAReferencesWorkspaceAccessPluginExtension implements WorkspaceAc
 			}
 
 		}, PluginWorkspace.MAIN_EDITING_AREA);
+
+		// the keys and relationship tables are taken from the root map in the DITA Maps Manager
+		pluginWorkspaceAccess.addEditorChangeListener(new WSEditorChangeListener() {
+			@Override
+			public void editorOpened(URL editorLocation) {
+				addMapSaveListener(pluginWorkspaceAccess.getEditorAccess(editorLocation,
+						PluginWorkspace.DITA_MAPS_EDITING_AREA));
+			}
+
+			@Override
+			public void editorClosed(URL editorLocation) {
+				// the unsaved changes of the map are discarded
+				documentChanged(editorLocation);
+			}
+
+			@Override
+			public void editorSelected(URL editorLocation) {
+				rootMapSelected(editorLocation);
+			}
+
+			@Override
+			public void editorActivated(URL editorLocation) {
+				rootMapSelected(editorLocation);
+			}
+		}, PluginWorkspace.DITA_MAPS_EDITING_AREA);
 		
 		/**
 		 * Add Icon, Title and ScrollPane for side-view. ScrollPane should let the whole
@@ -197,6 +236,13 @@ public class DITAReferencesWorkspaceAccessPluginExtension implements WorkspaceAc
 	 */
 	@Override
 	public boolean applicationClosing() {
+		if (refTreeIn != null) {
+			// the incoming references are shown at the next startup while the graph is built
+			refTreeIn.saveIndex();
+		}
+		if (refTreeOut != null) {
+			refTreeOut.dispose();
+		}
 		return true;
 	}
 
@@ -219,6 +265,73 @@ public class DITAReferencesWorkspaceAccessPluginExtension implements WorkspaceAc
 			refTreeOut.refresh(editorAccess);
 	}
 
+	/**
+	 * Drop the cached keys and relationship tables when a DITA Map is saved in the
+	 * given editor. The incoming references graph is built again, as the keys
+	 * defined in the map may resolve to other targets.
+	 * 
+	 * @param editorAccess The editor, can be <code>null</code>
+	 */
+	private void addMapSaveListener(WSEditor editorAccess) {
+		if (editorAccess != null) {
+			editorAccess.addEditorListener(new WSEditorListener() {
+				@Override
+				public void editorSaved(int operationType) {
+					if (refTreeIn != null && mapHierarchy.contains(editorAccess.getEditorLocation())) {
+						refTreeIn.rootMapHierarchySaved();
+					}
+					documentChanged(editorAccess.getEditorLocation());
+					mapHierarchy.documentSaved(editorAccess.getEditorLocation());
+				}
+			});
+		}
+	}
+
+	/**
+	 * The keys and the relationship tables are taken from the selected root map.
+	 * 
+	 * @param rootMapLocation The root map location
+	 */
+	private void rootMapSelected(URL rootMapLocation) {
+		mapHierarchy.setRootMap(rootMapLocation);
+		keysProvider.setRootMap(rootMapLocation);
+		RelLinksAccessor.setRootMap(rootMapLocation);
+	}
+
+	/**
+	 * Drop the cached keys and relationship tables if the changed document is a
+	 * map of the current root map. The changes of the other maps and of the
+	 * topics keep them.
+	 * 
+	 * @param documentLocation The location of the changed document
+	 */
+	private void documentChanged(URL documentLocation) {
+		if (mapHierarchy.contains(documentLocation)) {
+			keysProvider.documentChanged(documentLocation);
+			RelLinksAccessor.documentChanged(documentLocation);
+		}
+	}
+
+	/**
+	 * Drop the outgoing references being collected in background, they are stale
+	 * after an editor change. The keys and relationship tables are dropped if the
+	 * edited document is a map of the current root map. The refresh is delayed according to how long the
+	 * last collections of the current editor took.
+	 */
+	private void editorContentChanged() {
+		if (refTreeOut != null) {
+			refTreeOut.cancelRefresh();
+
+			WSEditor editorAccess = pluginWorkspaceAccess.getCurrentEditorAccess(PluginWorkspace.MAIN_EDITING_AREA);
+			if (editorAccess != null) {
+				// the keys and relationship tables defined in an edited map of the root map change
+				documentChanged(editorAccess.getEditorLocation());
+			}
+			updateTreeTimer.setInitialDelay(
+					refTreeOut.getRefreshDelays().getDelay(editorAccess != null ? editorAccess.getEditorLocation() : null));
+		}
+	}
+
 	/**
 	 * Inner TimerListener for EditorChanges in ReferencesTree. Notify the tree
 	 * about change in the textPage.
@@ -0,0 +1,177 @@
+package com.oxygenxml.ditareferences.workspace;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+
+import com.oxygenxml.ditareferences.tree.references.incoming.ExtractedReference;
+import com.oxygenxml.ditareferences.tree.references.incoming.ReferencesExtractor;
+
+/**
+ * The DITA Maps of the current root map: the root map and the submaps it
+ * references directly or through other submaps. Only the changes of these maps
+ * can change the keys and the relationship tables of the root map.
+ *
+ * The maps are read in background when the root map is selected and when one
+ * of them is saved, as its submaps may have changed. While they are read every
+ * DITA Map is considered part of the hierarchy. The submaps referenced only
+ * through keys are not found.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class MapHierarchy {
+
+	/* The referencesTree Logger. */
+	private static final Logger LOGGER = Logger.getLogger(MapHierarchy.class);
+
+	/* Reads the submap references, without the keys. */
+	private final ReferencesExtractor extractor = new ReferencesExtractor(null);
+
+	/* Reads the maps. */
+	private final Executor executor;
+
+	/* The current root map, null if unknown. */
+	private URL rootMap;
+
+	/* The maps of the current root map, by location key, null while they are read. */
+	private Set<String> maps;
+
+	/* Incremented when the maps must be read again. */
+	private long generation;
+
+	/**
+	 * Constructor, the maps are read on a thread of the hierarchy.
+	 */
+	public MapHierarchy() {
+		this(Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "DITA Map hierarchy");
+			thread.setDaemon(true);
+			return thread;
+		}));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor Reads the maps
+	 */
+	public MapHierarchy(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the current root map, its maps are read again if it was switched.
+	 *
+	 * @param rootMapLocation The root map location, can be <code>null</code>
+	 */
+	public void setRootMap(URL rootMapLocation) {
+		synchronized (this) {
+			String newRootMap = rootMapLocation != null ? rootMapLocation.toExternalForm() : null;
+			String oldRootMap = rootMap != null ? rootMap.toExternalForm() : null;
+			if (newRootMap == null ? oldRootMap == null : newRootMap.equals(oldRootMap)) {
+				return;
+			}
+			rootMap = rootMapLocation;
+		}
+		readMaps();
+	}
+
+	/**
+	 * Check if a document is a map of the current root map.
+	 *
+	 * @param documentLocation The document location, can be <code>null</code>
+	 * @return <code>true</code> if the document is in the hierarchy or if it is a
+	 *         DITA Map and the hierarchy is not known yet.
+	 */
+	public boolean contains(URL documentLocation) {
+		if (documentLocation == null) {
+			return false;
+		}
+		Set<String> currentMaps;
+		synchronized (this) {
+			currentMaps = maps;
+		}
+		if (currentMaps == null) {
+			return CachingKeysProvider.isDITAMap(documentLocation);
+		}
+		return currentMaps.contains(ReferencesExtractor.getLocationKey(documentLocation.toExternalForm()));
+	}
+
+	/**
+	 * A document was saved; if it is a map of the hierarchy its submaps are read
+	 * again.
+	 *
+	 * @param documentLocation The document location, can be <code>null</code>
+	 */
+	public void documentSaved(URL documentLocation) {
+		if (contains(documentLocation)) {
+			readMaps();
+		}
+	}
+
+	/**
+	 * Read the maps of the current root map in background.
+	 */
+	private void readMaps() {
+		URL readRootMap;
+		long readGeneration;
+		synchronized (this) {
+			maps = null;
+			readRootMap = rootMap;
+			readGeneration = ++generation;
+		}
+		if (readRootMap != null) {
+			executor.execute(() -> {
+				Set<String> readMaps = Collections.unmodifiableSet(collectMaps(readRootMap));
+				synchronized (this) {
+					// the maps read before a switch or a save are dropped
+					if (readGeneration == generation) {
+						maps = readMaps;
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Collect the root map and the submaps it references.
+	 *
+	 * @param rootMapLocation The root map
+	 * @return The location keys of the maps.
+	 */
+	private Set<String> collectMaps(URL rootMapLocation) {
+		Set<String> visited = new HashSet<>();
+		Deque<URL> toRead = new ArrayDeque<>();
+		visited.add(ReferencesExtractor.getLocationKey(rootMapLocation.toExternalForm()));
+		toRead.add(rootMapLocation);
+		while (!toRead.isEmpty()) {
+			List<ExtractedReference> references = extractor.extract(toRead.poll(), null);
+			if (references != null) {
+				for (ExtractedReference reference : references) {
+					try {
+						URL target = new URL(reference.getTargetLocation());
+						if (CachingKeysProvider.isDITAMap(target) && visited.add(reference.getTargetLocation())) {
+							toRead.add(target);
+						}
+					} catch (MalformedURLException e) {
+						LOGGER.debug(e, e);
+					}
+				}
+			}
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("Read " + visited.size() + " maps of " + rootMapLocation);
+		}
+		return visited;
+	}
+}
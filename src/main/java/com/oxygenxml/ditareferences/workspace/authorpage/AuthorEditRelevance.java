@@ -0,0 +1,110 @@
+package com.oxygenxml.ditareferences.workspace.authorpage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.oxygenxml.ditareferences.workspace.DITAConstants;
+
+import ro.sync.ecss.extensions.api.AttributeChangedEvent;
+import ro.sync.ecss.extensions.api.DocumentContentDeletedEvent;
+import ro.sync.ecss.extensions.api.DocumentContentInsertedEvent;
+import ro.sync.ecss.extensions.api.node.AuthorElement;
+import ro.sync.ecss.extensions.api.node.AuthorNode;
+
+/**
+ * Decide if an edit in the AuthorPage can change the outgoing references, from
+ * the changed nodes and attribute names. Typing text and changing other
+ * attributes cannot.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public final class AuthorEditRelevance {
+
+	/* The attributes which make an element a reference or are shown for it. */
+	private static final Set<String> REFERENCE_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			DITAConstants.CLASS, DITAConstants.SCOPE, DITAConstants.FORMAT, DITAConstants.KEYREF,
+			DITAConstants.DATAKEYREF, DITAConstants.CONKEYREF, DITAConstants.HREF, DITAConstants.CONREF,
+			DITAConstants.DATA)));
+
+	private AuthorEditRelevance() {
+		// private constructor
+	}
+
+	/**
+	 * Check if an insertion can change the references.
+	 *
+	 * @param e The insertion event
+	 * @return <code>false</code> for inserted text and for inserted nodes without
+	 *         references.
+	 */
+	public static boolean isReferenceEdit(DocumentContentInsertedEvent e) {
+		switch (e.getType()) {
+		case DocumentContentInsertedEvent.INSERT_TEXT_EVENT:
+			return false;
+		case DocumentContentInsertedEvent.INSERT_NODE_EVENT:
+			return containsReferences(e.getInsertedNode());
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Check if a deletion can change the references.
+	 *
+	 * @param e The deletion event
+	 * @return <code>false</code> for deleted text and for deleted nodes without
+	 *         references.
+	 */
+	public static boolean isReferenceEdit(DocumentContentDeletedEvent e) {
+		switch (e.getType()) {
+		case DocumentContentDeletedEvent.DELETE_TEXT_EVENT:
+			return false;
+		case DocumentContentDeletedEvent.DELETE_NODE_EVENT:
+			return containsReferences(e.getDeletedNode());
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Check if an attribute change can change the references.
+	 *
+	 * @param e The attribute change event
+	 * @return <code>true</code> if the attribute is a reference attribute.
+	 */
+	public static boolean isReferenceEdit(AttributeChangedEvent e) {
+		return isReferenceAttribute(e.getAttributeName());
+	}
+
+	/**
+	 * Check if an attribute makes an element a reference or is shown for it.
+	 *
+	 * @param attributeName The attribute name
+	 * @return <code>true</code> for a reference attribute or an unknown one.
+	 */
+	public static boolean isReferenceAttribute(String attributeName) {
+		return attributeName == null || REFERENCE_ATTRIBUTES.contains(attributeName);
+	}
+
+	/**
+	 * Check if a node or its descendants are references.
+	 *
+	 * @param node The node
+	 * @return <code>true</code> if there is a reference or the node is unknown.
+	 */
+	public static boolean containsReferences(AuthorNode node) {
+		if (node == null) {
+			return true;
+		}
+		if (!(node instanceof AuthorElement)) {
+			// text, comments, processing instructions
+			return false;
+		}
+		boolean[] found = new boolean[1];
+		AuthorReferencesCollector.visitReferences((AuthorElement) node, reference -> found[0] = true);
+		return found[0];
+	}
+}
@@ -20,79 +20,133 @@ public class AuthorPageListener implements AuthorListener {
 	/* Timer for changes in AuthorPage. */
 	private Timer updateTreeTimer;
 
+	/* Notified on every change in AuthorPage, before the timer is restarted. */
+	private Runnable changeCallback;
+
+	/* True to ignore the changes which cannot change the references. */
+	private boolean onlyReferenceEdits;
+
 	/**
 	 * Construct the AuthorPage Listener.
 	 * 
 	 * @param updateTreeTimer The updateTreeTimer
 	 */
 	public AuthorPageListener(Timer updateTreeTimer) {
+		this(updateTreeTimer, () -> {});
+	}
+
+	/**
+	 * Construct the AuthorPage Listener.
+	 * 
+	 * @param updateTreeTimer The updateTreeTimer, <code>null</code> to only notify
+	 *                        the callback
+	 * @param changeCallback  Notified on every change in AuthorPage
+	 */
+	public AuthorPageListener(Timer updateTreeTimer, Runnable changeCallback) {
+		this(updateTreeTimer, changeCallback, false);
+	}
+
+	/**
+	 * Construct the AuthorPage Listener.
+	 * 
+	 * @param updateTreeTimer    The updateTreeTimer, <code>null</code> to only
+	 *                           notify the callback
+	 * @param changeCallback     Notified on every change in AuthorPage
+	 * @param onlyReferenceEdits <code>true</code> to ignore the changes which
+	 *                           cannot change the references, like typing text
+	 *                           or the notifications before a change
+	 */
+	public AuthorPageListener(Timer updateTreeTimer, Runnable changeCallback, boolean onlyReferenceEdits) {
 		super();
 		this.updateTreeTimer = updateTreeTimer;
+		this.changeCallback = changeCallback;
+		this.onlyReferenceEdits = onlyReferenceEdits;
 	}
 
 	@Override
 	public void documentChanged(AuthorDocument oldDocument, AuthorDocument newDocument) {
-		updateTreeTimer.restart();
+		documentChanged();
 	}
 
 	@Override
 	public void doctypeChanged() {
-		updateTreeTimer.restart();
+		documentChanged();
 	}
 
 	@Override
 	public void contentInserted(DocumentContentInsertedEvent e) {
-		updateTreeTimer.restart();
+		documentChanged(!onlyReferenceEdits || AuthorEditRelevance.isReferenceEdit(e));
 	}
 
 	@Override
 	public void contentDeleted(DocumentContentDeletedEvent e) {
-		updateTreeTimer.restart();
+		documentChanged(!onlyReferenceEdits || AuthorEditRelevance.isReferenceEdit(e));
 	}
 
 	@Override
 	public void beforeDoctypeChange() {
-		updateTreeTimer.restart();
+		documentChanged(!onlyReferenceEdits);
 	}
 
 	@Override
 	public void beforeContentInsert(DocumentContentInsertedEvent e) {
-		updateTreeTimer.restart();
+		documentChanged(!onlyReferenceEdits);
 	}
 
 	@Override
 	public void beforeContentDelete(DocumentContentDeletedEvent e) {
-		updateTreeTimer.restart();
+		documentChanged(!onlyReferenceEdits);
 	}
 
 	@Override
 	public void beforeAuthorNodeStructureChange(AuthorNode authorNode) {
-		updateTreeTimer.restart();
+		documentChanged(!onlyReferenceEdits);
 	}
 
 	@Override
 	public void beforeAuthorNodeNameChange(AuthorNode authorNode) {
-		updateTreeTimer.restart();
+		documentChanged(!onlyReferenceEdits);
 	}
 
 	@Override
 	public void beforeAttributeChange(AttributeChangedEvent e) {
-		updateTreeTimer.restart();
+		documentChanged(!onlyReferenceEdits);
 	}
 
 	@Override
 	public void authorNodeStructureChanged(AuthorNode node) {
-		updateTreeTimer.restart();
+		documentChanged();
 	}
 
 	@Override
 	public void authorNodeNameChanged(AuthorNode node) {
-		updateTreeTimer.restart();
+		documentChanged();
 	}
 
 	@Override
 	public void attributeChanged(AttributeChangedEvent e) {
-		updateTreeTimer.restart();
+		documentChanged(!onlyReferenceEdits || AuthorEditRelevance.isReferenceEdit(e));
+	}
+
+	/**
+	 * Notify the callback and restart the timer.
+	 */
+	private void documentChanged() {
+		documentChanged(true);
+	}
+
+	/**
+	 * Notify the callback and restart the timer, if the change is relevant.
+	 * 
+	 * @param relevant <code>false</code> to ignore the change
+	 */
+	private void documentChanged(boolean relevant) {
+		if (relevant) {
+			changeCallback.run();
+			if (updateTreeTimer != null) {
+				updateTreeTimer.restart();
+			}
+		}
 	}
 
 }
@@ -2,6 +2,8 @@ package com.oxygenxml.ditareferences.workspace.authorpage;
 
 import java.net.URL;
 
+import javax.swing.text.Position;
+
 import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
 
 import ro.sync.ecss.extensions.api.node.AttrValue;
@@ -39,6 +41,14 @@ public class AuthorPageNodeRange extends NodeRange {
 		return new int[] { element.getStartOffset(), element.getEndOffset() };
 	}
 
+	/**
+	 * The element offsets follow the edits of the document.
+	 */
+	@Override
+	public Position[] getNodePositions(WSEditorPage editorPage) {
+		return new Position[] { element::getStartOffset, element::getEndOffset };
+	}
+
 	@Override
 	public String getNodeName() {
 		return element.getDisplayName();
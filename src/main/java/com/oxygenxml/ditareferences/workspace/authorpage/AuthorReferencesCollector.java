@@ -2,11 +2,16 @@ package com.oxygenxml.ditareferences.workspace.authorpage;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+import com.oxygenxml.ditareferences.tree.references.outgoing.CollectionMode;
 import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
 import com.oxygenxml.ditareferences.tree.references.outgoing.ReferencesCollector;
 
+import ro.sync.ecss.extensions.api.AuthorDocumentController;
 import ro.sync.ecss.extensions.api.AuthorOperationException;
+import ro.sync.ecss.extensions.api.node.AttrValue;
+import ro.sync.ecss.extensions.api.node.AuthorDocument;
 import ro.sync.ecss.extensions.api.node.AuthorElement;
 import ro.sync.ecss.extensions.api.node.AuthorNode;
 import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
@@ -15,16 +20,57 @@ import ro.sync.exml.workspace.api.editor.page.text.xml.XPathException;
 
 /**
  * Evaluate the XPath expression and get the Author NodeRanges.
- * 
+ *
+ * In the single pass mode the AuthorNode tree is visited once and every
+ * element is classified, instead of scanning the whole document for each
+ * branch of the union XPath expression. In the incremental mode the references
+ * are taken from an index kept up to date by the AuthorListener events.
+ *
+ * The Author nodes are not thread safe and the Author Page gives no read lock
+ * for them, so the traversal runs on the AWT thread even for the background
+ * refresh, which only moves the classification of the references to the
+ * worker thread.
+ *
  * @author Alexandra_Dinisor
  *
  */
 public class AuthorReferencesCollector extends ReferencesCollector {
+
+	/**
+	 * Construct the collector with the single pass mode.
+	 */
+	public AuthorReferencesCollector() {
+		this(CollectionMode.SINGLE_PASS);
+	}
+
+	/**
+	 * Construct the collector.
+	 *
+	 * @param collectionMode The way the references are collected
+	 */
+	public AuthorReferencesCollector(CollectionMode collectionMode) {
+		super(collectionMode);
+	}
+
 	@Override
 	protected List<NodeRange> collect(WSEditorPage page) throws XPathException {
 		WSAuthorEditorPage authorEditorPage = (WSAuthorEditorPage) page;
-		List<NodeRange> ranges = new ArrayList<>();
 
+		if (collectionMode != CollectionMode.XPATH) {
+			AuthorDocumentController controller = authorEditorPage.getDocumentController();
+			AuthorDocument authorDocument = controller.getAuthorDocumentNode();
+			if (authorDocument != null && authorDocument.getRootElement() != null) {
+				if (collectionMode == CollectionMode.INCREMENTAL) {
+					// the index is kept up to date by the AuthorListener events
+					AuthorReferencesIndex index = AuthorReferencesIndex.getIndex(controller);
+					List<NodeRange> ranges = index.getReferences();
+					return ranges != null ? ranges : index.build(authorDocument.getRootElement());
+				}
+				return collect(authorDocument.getRootElement());
+			}
+		}
+
+		List<NodeRange> ranges = new ArrayList<>();
 		try {
 			AuthorNode[] referenceAuthorNodeRanges = authorEditorPage.getDocumentController()
 					.findNodesByXPath(ALL_REFS_XPATH_EXPRESSION, false, false, false);
@@ -40,4 +86,82 @@ public class AuthorReferencesCollector extends ReferencesCollector {
 
 		return ranges;
 	}
+
+	/**
+	 * Visit the element tree once and collect the root and the references, in
+	 * document order.
+	 *
+	 * @param rootElement The root element
+	 * @return The NodeRanges of the root and of the references.
+	 */
+	public List<NodeRange> collect(AuthorElement rootElement) {
+		List<NodeRange> ranges = new ArrayList<>();
+		ranges.add(new AuthorPageNodeRange(rootElement));
+		visitReferences(rootElement, element -> {
+			if (element != rootElement) {
+				ranges.add(new AuthorPageNodeRange(element));
+			}
+		});
+		return ranges;
+	}
+
+	/**
+	 * Visit an element and its descendants in document order and pass the
+	 * references to the visitor.
+	 *
+	 * @param element The element
+	 * @param visitor Receives the reference elements
+	 */
+	static void visitReferences(AuthorElement element, Consumer<AuthorElement> visitor) {
+		List<AuthorNode> stack = new ArrayList<>();
+		stack.add(element);
+		while (!stack.isEmpty()) {
+			AuthorElement currentElement = (AuthorElement) stack.remove(stack.size() - 1);
+			if (isReference(currentElement)) {
+				visitor.accept(currentElement);
+			}
+			pushChildren(currentElement, stack);
+		}
+	}
+
+	/**
+	 * Check if an element is a reference.
+	 *
+	 * @param element The element
+	 * @return <code>true</code> if the element is a reference.
+	 */
+	static boolean isReference(AuthorElement element) {
+		return isReferenceElement(attributeName -> getAttributeValue(element, attributeName));
+	}
+
+	/**
+	 * Push the child elements in reverse order, so that the first child is
+	 * visited first.
+	 *
+	 * @param element The parent element
+	 * @param stack   The stack of elements to visit
+	 */
+	private static void pushChildren(AuthorElement element, List<AuthorNode> stack) {
+		List<AuthorNode> contentNodes = element.getContentNodes();
+		if (contentNodes != null) {
+			for (int i = contentNodes.size() - 1; i >= 0; i--) {
+				AuthorNode child = contentNodes.get(i);
+				if (child instanceof AuthorElement) {
+					stack.add(child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the attribute value of an Author element.
+	 *
+	 * @param element       The element
+	 * @param attributeName The attribute name
+	 * @return the value or <code>null</code> if there is no such attribute.
+	 */
+	static String getAttributeValue(AuthorElement element, String attributeName) {
+		AttrValue attributeValue = element.getAttribute(attributeName);
+		return attributeValue != null ? attributeValue.getValue() : null;
+	}
 }
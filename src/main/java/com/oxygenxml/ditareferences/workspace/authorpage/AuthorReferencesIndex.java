@@ -0,0 +1,362 @@
+package com.oxygenxml.ditareferences.workspace.authorpage;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+
+import ro.sync.ecss.extensions.api.AttributeChangedEvent;
+import ro.sync.ecss.extensions.api.AuthorDocumentController;
+import ro.sync.ecss.extensions.api.AuthorListener;
+import ro.sync.ecss.extensions.api.DocumentContentDeletedEvent;
+import ro.sync.ecss.extensions.api.DocumentContentInsertedEvent;
+import ro.sync.ecss.extensions.api.node.AuthorDocument;
+import ro.sync.ecss.extensions.api.node.AuthorElement;
+import ro.sync.ecss.extensions.api.node.AuthorNode;
+
+/**
+ * The reference elements of an Author Page document, kept up to date from the
+ * AuthorListener events.
+ *
+ * The index is built once with a single traversal of the document. Every event
+ * is then applied as a delta: the inserted elements are classified and added,
+ * the deleted ones are removed and the element with a changed attribute or
+ * name is classified again. The rest of the document is not visited.
+ *
+ * The references are also kept ordered by their start offset. The edits move
+ * the offsets of the elements in the document without changing their order,
+ * so the order is only updated for the added and removed references. The
+ * deleted nodes are removed before the deletion, while their offsets are still
+ * valid; the references detached in other ways are pruned and the order is
+ * built again.
+ *
+ * When the whole document or its doctype changes the index becomes invalid and
+ * must be built again.
+ *
+ * The index also keeps the modification stamp of the document, changed on
+ * every event, even when the index is not built.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class AuthorReferencesIndex implements AuthorListener {
+
+	/* The index of every document controller, which keeps it as a listener. */
+	private static final Map<AuthorDocumentController, WeakReference<AuthorReferencesIndex>> INDEXES = Collections
+			.synchronizedMap(new WeakHashMap<>());
+
+	/* The last modification stamp given to a document. */
+	private static final AtomicLong LAST_STAMP = new AtomicLong();
+
+	/* The root element, <code>null</code> if the index is not valid. */
+	private AuthorElement rootElement;
+
+	/* The reference elements, by identity. */
+	private final Set<AuthorElement> references = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/* The NodeRanges of the references, by start offset. */
+	private final TreeMap<AuthorElement, NodeRange> sortedReferences = new TreeMap<>(
+			Comparator.comparingInt(AuthorNode::getStartOffset).thenComparingInt(System::identityHashCode));
+
+	/* <code>true</code> if some references may have been detached from the document. */
+	private boolean pruneDetached;
+
+	/* <code>true</code> if the order of the references must be built again. */
+	private boolean sortStale;
+
+	/*
+	 * Changed on every change of the document. The stamps are unique across
+	 * documents, so a document opened again does not reuse the stamps of the old
+	 * one.
+	 */
+	private volatile long modificationStamp = LAST_STAMP.incrementAndGet();
+
+	/**
+	 * Get the index of a document, creating it if needed. A new index is invalid
+	 * until it is built.
+	 *
+	 * @param controller The document controller of the Author Page
+	 * @return The index which listens for the changes of the document.
+	 */
+	public static AuthorReferencesIndex getIndex(AuthorDocumentController controller) {
+		synchronized (INDEXES) {
+			WeakReference<AuthorReferencesIndex> indexReference = INDEXES.get(controller);
+			AuthorReferencesIndex index = indexReference != null ? indexReference.get() : null;
+			if (index == null) {
+				index = new AuthorReferencesIndex();
+				controller.addAuthorListener(index);
+				INDEXES.put(controller, new WeakReference<>(index));
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the index matches the document.
+	 */
+	public boolean isValid() {
+		return rootElement != null;
+	}
+
+	/**
+	 * @return the modification stamp, changed on every change of the document.
+	 */
+	public long getModificationStamp() {
+		return modificationStamp;
+	}
+
+	/**
+	 * Build the index with a single traversal of the document.
+	 *
+	 * @param rootElement The root element
+	 * @return The NodeRanges of the root and of the references, in document
+	 *         order.
+	 */
+	public List<NodeRange> build(AuthorElement rootElement) {
+		references.clear();
+		sortedReferences.clear();
+		pruneDetached = false;
+		sortStale = false;
+		this.rootElement = rootElement;
+		addReferences(rootElement);
+		removeReference(rootElement);
+		return getReferences();
+	}
+
+	/**
+	 * @return the NodeRanges of the root and of the references, in document order,
+	 *         or <code>null</code> if the index is not valid.
+	 */
+	public List<NodeRange> getReferences() {
+		if (rootElement == null) {
+			return null;
+		}
+		if (pruneDetached) {
+			if (references.removeIf(element -> !isAttached(element))) {
+				sortStale = true;
+			}
+			pruneDetached = false;
+		}
+		if (sortStale) {
+			// the detached references may have moved, the order is built again
+			sortedReferences.clear();
+			for (AuthorElement element : references) {
+				sortedReferences.put(element, new AuthorPageNodeRange(element));
+			}
+			sortStale = false;
+		}
+
+		List<NodeRange> ranges = new ArrayList<>(sortedReferences.size() + 1);
+		ranges.add(new AuthorPageNodeRange(rootElement));
+		ranges.addAll(sortedReferences.values());
+		return ranges;
+	}
+
+	/**
+	 * Add the references from an inserted node and its descendants.
+	 *
+	 * @param node The inserted node
+	 */
+	public void nodeInserted(AuthorNode node) {
+		if (isValid() && node instanceof AuthorElement) {
+			addReferences((AuthorElement) node);
+		}
+	}
+
+	/**
+	 * Remove the references from a deleted node and its descendants.
+	 *
+	 * @param node The deleted node
+	 */
+	public void nodeDeleted(AuthorNode node) {
+		if (isValid() && node instanceof AuthorElement) {
+			AuthorReferencesCollector.visitReferences((AuthorElement) node, this::removeReference);
+		}
+	}
+
+	/**
+	 * Classify again a node whose name or attributes changed.
+	 *
+	 * @param node The changed node
+	 */
+	public void nodeChanged(AuthorNode node) {
+		if (isValid() && node instanceof AuthorElement && node != rootElement) {
+			AuthorElement element = (AuthorElement) node;
+			if (AuthorReferencesCollector.isReference(element)) {
+				addReference(element);
+			} else {
+				removeReference(element);
+			}
+		}
+	}
+
+	/**
+	 * Classify again the descendants of a node whose content changed in a way not
+	 * described by the events, like a fragment insertion or deletion.
+	 *
+	 * @param node The changed node
+	 */
+	public void subtreeChanged(AuthorNode node) {
+		if (isValid()) {
+			// the removed descendants are no longer reachable from the node
+			pruneDetached = true;
+			if (node instanceof AuthorElement) {
+				addReferences((AuthorElement) node);
+				removeReference(rootElement);
+			}
+		}
+	}
+
+	/**
+	 * Drop the index, it will be built again.
+	 */
+	public void invalidate() {
+		rootElement = null;
+		references.clear();
+		sortedReferences.clear();
+	}
+
+	/**
+	 * Add the references from an element and its descendants.
+	 */
+	private void addReferences(AuthorElement element) {
+		AuthorReferencesCollector.visitReferences(element, this::addReference);
+	}
+
+	/**
+	 * Add a reference, in order.
+	 */
+	private void addReference(AuthorElement element) {
+		if (references.add(element) && !sortStale) {
+			sortedReferences.put(element, new AuthorPageNodeRange(element));
+		}
+	}
+
+	/**
+	 * Remove a reference. If its offset changed since it was added, the order is
+	 * built again.
+	 */
+	private void removeReference(AuthorElement element) {
+		if (references.remove(element) && !sortStale && sortedReferences.remove(element) == null) {
+			sortStale = true;
+		}
+	}
+
+	/**
+	 * Change the modification stamp, on every event.
+	 */
+	private void changed() {
+		modificationStamp = LAST_STAMP.incrementAndGet();
+	}
+
+	/**
+	 * @return <code>true</code> if the element is still in the document.
+	 */
+	private boolean isAttached(AuthorNode element) {
+		for (AuthorNode node = element; node != null; node = node.getParent()) {
+			if (node == rootElement) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void documentChanged(AuthorDocument oldDocument, AuthorDocument newDocument) {
+		changed();
+		invalidate();
+	}
+
+	@Override
+	public void doctypeChanged() {
+		changed();
+		// the default attributes may have changed
+		invalidate();
+	}
+
+	@Override
+	public void contentInserted(DocumentContentInsertedEvent e) {
+		changed();
+		if (e.getType() == DocumentContentInsertedEvent.INSERT_NODE_EVENT && e.getInsertedNode() != null) {
+			nodeInserted(e.getInsertedNode());
+		} else if (e.getType() != DocumentContentInsertedEvent.INSERT_TEXT_EVENT) {
+			subtreeChanged(e.getParentNode());
+		}
+	}
+
+	@Override
+	public void contentDeleted(DocumentContentDeletedEvent e) {
+		changed();
+		if (e.getType() == DocumentContentDeletedEvent.DELETE_NODE_EVENT && e.getDeletedNode() != null) {
+			nodeDeleted(e.getDeletedNode());
+		} else if (e.getType() != DocumentContentDeletedEvent.DELETE_TEXT_EVENT) {
+			subtreeChanged(e.getParentNode());
+		}
+	}
+
+	@Override
+	public void authorNodeStructureChanged(AuthorNode node) {
+		changed();
+		subtreeChanged(node);
+	}
+
+	@Override
+	public void authorNodeNameChanged(AuthorNode node) {
+		changed();
+		nodeChanged(node);
+	}
+
+	@Override
+	public void attributeChanged(AttributeChangedEvent e) {
+		changed();
+		nodeChanged(e.getOwnerAuthorNode());
+	}
+
+	@Override
+	public void beforeDoctypeChange() {
+		changed();
+		// the index is updated after the change happens
+	}
+
+	@Override
+	public void beforeContentInsert(DocumentContentInsertedEvent e) {
+		changed();
+		// the index is updated after the change happens
+	}
+
+	@Override
+	public void beforeContentDelete(DocumentContentDeletedEvent e) {
+		changed();
+		if (e.getType() == DocumentContentDeletedEvent.DELETE_NODE_EVENT && e.getDeletedNode() != null) {
+			// removed while the offsets are valid, the rest of the index is updated after the change
+			nodeDeleted(e.getDeletedNode());
+		}
+	}
+
+	@Override
+	public void beforeAuthorNodeStructureChange(AuthorNode authorNode) {
+		changed();
+		// the index is updated after the change happens
+	}
+
+	@Override
+	public void beforeAuthorNodeNameChange(AuthorNode authorNode) {
+		changed();
+		// the index is updated after the change happens
+	}
+
+	@Override
+	public void beforeAttributeChange(AttributeChangedEvent e) {
+		changed();
+		// the index is updated after the change happens
+	}
+}
@@ -0,0 +1,110 @@
+package com.oxygenxml.ditareferences.workspace.rellinks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URL;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Typed bridge to the relationship table links returned by the oXygen
+ * DITAAccess, which are not visible at compile time. The accessors of a link
+ * class are resolved once, as method handles, and reused for all the links.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+final class RelLinkBridge {
+
+	/* The RelLinkBridge Logger. */
+	private static final Logger LOGGER = Logger.getLogger(RelLinkBridge.class);
+
+	/* The bridges by link class, resolved when first needed. */
+	private static final ClassValue<RelLinkBridge> BRIDGES = new ClassValue<RelLinkBridge>() {
+		@Override
+		protected RelLinkBridge computeValue(Class<?> type) {
+			return new RelLinkBridge(type);
+		}
+	};
+
+	/* The accessors of the link, null if they could not be resolved. */
+	private final MethodHandle getSourceURL;
+	private final MethodHandle getTargetURL;
+	private final MethodHandle getTargetFormat;
+	private final MethodHandle getTargetScope;
+	private final MethodHandle getTargetDefinitionLocation;
+
+	/**
+	 * Resolve the accessors of a link class.
+	 *
+	 * @param linkClass The link class
+	 */
+	private RelLinkBridge(Class<?> linkClass) {
+		MethodHandle source = null;
+		MethodHandle target = null;
+		MethodHandle format = null;
+		MethodHandle scope = null;
+		MethodHandle definitionLocation = null;
+		try {
+			source = findGetter(linkClass, "getSourceURL", URL.class);
+			target = findGetter(linkClass, "getTargetURL", URL.class);
+			format = findGetter(linkClass, "getTargetFormat", String.class);
+			scope = findGetter(linkClass, "getTargetScope", String.class);
+			definitionLocation = findGetter(linkClass, "getTargetDefinitionLocation", URL.class);
+		} catch (ReflectiveOperationException e) {
+			LOGGER.debug(e, e);
+			source = null;
+		}
+		this.getSourceURL = source;
+		this.getTargetURL = target;
+		this.getTargetFormat = format;
+		this.getTargetScope = scope;
+		this.getTargetDefinitionLocation = definitionLocation;
+	}
+
+	/**
+	 * Find a public getter, adapted to take any link object.
+	 */
+	private static MethodHandle findGetter(Class<?> linkClass, String name, Class<?> returnType)
+			throws ReflectiveOperationException {
+		return MethodHandles.publicLookup().findVirtual(linkClass, name, MethodType.methodType(returnType))
+				.asType(MethodType.methodType(returnType, Object.class));
+	}
+
+	/**
+	 * Get the bridge for the class of a link.
+	 *
+	 * @param link The link
+	 * @return The bridge, <code>null</code> if the link class has no accessors.
+	 */
+	static RelLinkBridge forLink(Object link) {
+		RelLinkBridge bridge = BRIDGES.get(link.getClass());
+		return bridge.getSourceURL != null ? bridge : null;
+	}
+
+	/**
+	 * Get the source URL of the link.
+	 *
+	 * @param link The link
+	 * @return The source URL.
+	 * @throws Throwable if the accessor fails.
+	 */
+	URL getSourceURL(Object link) throws Throwable {
+		return (URL) getSourceURL.invokeExact(link);
+	}
+
+	/**
+	 * Adapt the link to RelLink.
+	 *
+	 * @param link      The link
+	 * @param sourceURL The source URL, already read
+	 * @return The RelLink.
+	 * @throws Throwable if an accessor fails.
+	 */
+	RelLink toRelLink(Object link, URL sourceURL) throws Throwable {
+		return new RelLinkImpl(sourceURL, (URL) getTargetURL.invokeExact(link),
+				(String) getTargetFormat.invokeExact(link), (String) getTargetScope.invokeExact(link),
+				(URL) getTargetDefinitionLocation.invokeExact(link));
+	}
+}
@@ -1,12 +1,16 @@
 package com.oxygenxml.ditareferences.workspace.rellinks;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 
+import com.oxygenxml.ditareferences.workspace.CachingKeysProvider;
+
 import ro.sync.ecss.dita.DITAAccessForTests;
 
 public class RelLinksAccessor {
@@ -18,62 +22,187 @@ public class RelLinksAccessor {
 
 	private static boolean forTests = false;
 
+	/*
+	 * The index of the relationship tables of the current root map, null if not
+	 * built. It is kept until the root map is switched or one of its maps
+	 * changes, as notified by the plugin.
+	 */
+	private static RelTableIndex relTableIndex;
+
+	/* Incremented when the index is dropped. */
+	private static long indexGeneration;
+
+	/* The current root map, null if unknown. */
+	private static String rootMap;
+
 	/**
-	 * Get RelationshipTable Target URLs using reflection.
+	 * The handle to DITAAccess.getRelatedLinksFromReltable(URL), resolved once.
+	 */
+	private static final class DITAAccessHandle {
+		private static final MethodHandle GET_REL_LINKS = findGetRelLinks();
+
+		private DITAAccessHandle() {
+			// private constructor
+		}
+
+		private static MethodHandle findGetRelLinks() {
+			MethodHandle getRelLinks = null;
+			try {
+				Class<?> ditaAccessClass = Class.forName("ro.sync.ecss.dita.DITAAccess");
+				getRelLinks = MethodHandles.publicLookup().findStatic(ditaAccessClass, "getRelatedLinksFromReltable",
+						MethodType.methodType(List.class, URL.class));
+			} catch (ReflectiveOperationException e) {
+				LOGGER.debug(e, e);
+			}
+			return getRelLinks;
+		}
+	}
+
+	/**
+	 * Get RelationshipTable Target URLs from the index of the relationship tables
+	 * of the current root map, built when first needed.
 	 * 
 	 * @param topicURL
 	 * @return A list of Relationship Links from RelTable
 	 */
 	public static List<RelLink> getRelationshipTableTargetURLs(URL topicURL) {
-		List<RelLink> links = new ArrayList<>();
+		return getRelTableIndex(topicURL).getLinks(topicURL);
+	}
+
+	/**
+	 * Get the index of the relationship tables, built again if it was
+	 * invalidated. The links are read and indexed without holding the lock of the
+	 * index, so the AWT thread does not wait for another thread building it.
+	 * 
+	 * @param topicURL A topic URL, the context for getting the links
+	 * @return The index.
+	 */
+	public static RelTableIndex getRelTableIndex(URL topicURL) {
+		long buildGeneration;
+		synchronized (RelLinksAccessor.class) {
+			if (relTableIndex != null) {
+				return relTableIndex;
+			}
+			buildGeneration = indexGeneration;
+		}
+
+		RelTableIndex index = RelTableIndex.build(getAllRelLinks(topicURL));
+		synchronized (RelLinksAccessor.class) {
+			// an index built before an invalidation is not kept
+			if (buildGeneration == indexGeneration) {
+				relTableIndex = index;
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("Indexed the relationship tables of " + rootMap + ", " + index.getSourcesCount()
+							+ " source topics");
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Get the links from all the relationship tables, through the DITAAccess of
+	 * the application.
+	 */
+	private static List<?> getAllRelLinks(URL topicURL) {
 		List<?> allLinks = null;
 		if(forTests) {
 		  allLinks = DITAAccessForTests.getRelatedLinksFromReltable();
-		} else {
+		} else if (DITAAccessHandle.GET_REL_LINKS != null) {
 		  try {
-		    Class<?> ditaAccessClass = Class.forName("ro.sync.ecss.dita.DITAAccess");
-		    Method getRelLinks = ditaAccessClass.getDeclaredMethod("getRelatedLinksFromReltable", URL.class);
-		    allLinks = (List<?>) getRelLinks.invoke(null, topicURL);
-		  } catch (Exception e) {
+		    allLinks = (List<?>) DITAAccessHandle.GET_REL_LINKS.invokeExact(topicURL);
+		  } catch (Error e) {
+		    // not a failure of the accessor
+		    throw e;
+		  } catch (Throwable e) {
 		    LOGGER.debug(e, e);
 		  }
 		}
-		try {
-		  if (allLinks != null) {
-		    int size = allLinks.size();
-		    for (int i = 0; i < size; i++) {
-		      Object relLink = allLinks.get(i);
-		      Class<? extends Object> relLinkClass = relLink.getClass();
-		      Method getSource = relLinkClass.getMethod("getSourceURL");
-		      URL sourceURL = (URL) getSource.invoke(relLink);
-
-		      String trimmedTopicURL = getURLWithoutAnchor(topicURL.toString());
-		      String trimmedSourceURL = getURLWithoutAnchor(sourceURL.toString());
-
-		      if (trimmedTopicURL.equals(trimmedSourceURL)) {
-		        Method getTarget = relLinkClass.getMethod("getTargetURL");
-		        URL targetURL = (URL) getTarget.invoke(relLink);
-
-		        Method getTargetFormat = relLinkClass.getMethod("getTargetFormat");
-		        String targetFormat = (String) getTargetFormat.invoke(relLink);
-
-		        Method getTargetScope = relLinkClass.getMethod("getTargetScope");
-		        String targetScope = (String) getTargetScope.invoke(relLink);
-
-		        Method getTargetDefinitionLocation = relLinkClass.getMethod("getTargetDefinitionLocation");
-		        URL targetDefLocationURL = (URL) getTargetDefinitionLocation.invoke(relLink);
-
-		        RelLinkImpl relLinkImpl = new RelLinkImpl(sourceURL, targetURL, targetFormat, targetScope,
-		            targetDefLocationURL);
-		        links.add(relLinkImpl);
+		return allLinks;
+	}
+
+	/**
+	 * Set the root map whose relationship tables are indexed. The index is dropped
+	 * when the root map is switched.
+	 * 
+	 * @param rootMapLocation The root map location, can be <code>null</code>
+	 */
+	public static synchronized void setRootMap(URL rootMapLocation) {
+		String newRootMap = rootMapLocation != null ? rootMapLocation.toExternalForm() : null;
+		if (newRootMap == null ? rootMap != null : !newRootMap.equals(rootMap)) {
+			rootMap = newRootMap;
+			invalidateRelTableIndex();
+		}
+	}
+
+	/**
+	 * Drop the index if the changed document is a DITA Map.
+	 * 
+	 * @param documentLocation The location of the changed document
+	 */
+	public static void documentChanged(URL documentLocation) {
+		if (CachingKeysProvider.isDITAMap(documentLocation)) {
+			invalidateRelTableIndex();
+		}
+	}
+
+	/**
+	 * Drop the index of the relationship tables, a DITA Map changed.
+	 */
+	public static synchronized void invalidateRelTableIndex() {
+		relTableIndex = null;
+		indexGeneration++;
+	}
+
+	/**
+	 * Get the links from the relationship tables whose source is the given topic.
+	 * 
+	 * @param topicURL The topic URL
+	 * @param allLinks The links from all the relationship tables, as returned by
+	 *                 DITAAccess, can be <code>null</code>
+	 * @return The links from the topic.
+	 */
+	public static List<RelLink> getRelLinksFromSource(URL topicURL, List<?> allLinks) {
+		return allLinks != null ? getRelLinks(allLinks, getURLWithoutAnchor(topicURL.toString())) : new ArrayList<>();
+	}
+
+	/**
+	 * Adapt the links from the relationship tables to RelLink.
+	 * 
+	 * @param allLinks        The links from all the relationship tables
+	 * @param trimmedTopicURL The topic URL without anchor, to get only the links
+	 *                        from this topic, or <code>null</code> for all the
+	 *                        links
+	 * @return The links.
+	 */
+	static List<RelLink> getRelLinks(List<?> allLinks, String trimmedTopicURL) {
+		List<RelLink> links = new ArrayList<>();
+		int size = allLinks.size();
+		for (int i = 0; i < size; i++) {
+		  Object relLink = allLinks.get(i);
+		  try {
+		    if (relLink instanceof RelLink) {
+		      RelLink link = (RelLink) relLink;
+		      if (trimmedTopicURL == null
+		          || trimmedTopicURL.equals(getURLWithoutAnchor(link.getSourceURL().toString()))) {
+		        links.add(link);
+		      }
+		    } else if (relLink != null) {
+		      RelLinkBridge bridge = RelLinkBridge.forLink(relLink);
+		      if (bridge != null) {
+		        URL sourceURL = bridge.getSourceURL(relLink);
+		        if (trimmedTopicURL == null || trimmedTopicURL.equals(getURLWithoutAnchor(sourceURL.toString()))) {
+		          links.add(bridge.toRelLink(relLink, sourceURL));
+		        }
 		      }
 		    }
+		  } catch (Error e) {
+		    // not a failure of the accessors
+		    throw e;
+		  } catch (Throwable e) {
+		    LOGGER.debug(e, e);
 		  }
-		} catch (Exception e) {
-	      LOGGER.debug(e, e);
-	    }
-		
-
+		}
 		return links;
 	}
 
@@ -83,6 +212,7 @@ public class RelLinksAccessor {
 	 */
   public static void setForTests(boolean forTests) {
     RelLinksAccessor.forTests = forTests;
+    invalidateRelTableIndex();
   }
 
   /**
@@ -92,7 +222,7 @@ public class RelLinksAccessor {
 	 * @param topicURLString The created Topic URL String
 	 * @return The Topic URL without the anchor if any.
 	 */
-	private static String getURLWithoutAnchor(String topicURLString) {
+	static String getURLWithoutAnchor(String topicURLString) {
 		int indexOfAnchor = topicURLString.indexOf('#');
 		if(indexOfAnchor != -1) {
 			return topicURLString.substring(0, indexOfAnchor);
@@ -0,0 +1,75 @@
+package com.oxygenxml.ditareferences.workspace.rellinks;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The links from the relationship tables of a root map, indexed by their source
+ * topic, so that the related links of a topic are found without going through
+ * all the rows of the relationship tables.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public final class RelTableIndex {
+
+	/* The links by source topic URL, without anchor. */
+	private final Map<String, List<RelLink>> linksBySource;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param linksBySource The links by source topic
+	 */
+	private RelTableIndex(Map<String, List<RelLink>> linksBySource) {
+		this.linksBySource = linksBySource;
+	}
+
+	/**
+	 * Index the links from the relationship tables.
+	 *
+	 * @param allLinks The links from all the relationship tables, as returned by
+	 *                 DITAAccess, can be <code>null</code>
+	 * @return The index.
+	 */
+	static RelTableIndex build(List<?> allLinks) {
+		Map<String, List<RelLink>> linksBySource = new HashMap<>();
+		if (allLinks != null) {
+			List<RelLink> links = RelLinksAccessor.getRelLinks(allLinks, null);
+			for (int i = 0; i < links.size(); i++) {
+				RelLink link = links.get(i);
+				linksBySource.computeIfAbsent(getSourceKey(link.getSourceURL()), key -> new ArrayList<>(2)).add(link);
+			}
+		}
+		return new RelTableIndex(linksBySource);
+	}
+
+	/**
+	 * Get the links whose source is the given topic.
+	 *
+	 * @param topicURL The topic URL, its anchor is ignored
+	 * @return The links, in the order of the relationship tables.
+	 */
+	public List<RelLink> getLinks(URL topicURL) {
+		List<RelLink> links = linksBySource.get(getSourceKey(topicURL));
+		return links != null ? Collections.unmodifiableList(links) : Collections.emptyList();
+	}
+
+	/**
+	 * @return The number of source topics.
+	 */
+	public int getSourcesCount() {
+		return linksBySource.size();
+	}
+
+	/**
+	 * Get the key of a source topic, its URL without the anchor.
+	 */
+	static String getSourceKey(URL sourceURL) {
+		return RelLinksAccessor.getURLWithoutAnchor(sourceURL.toString());
+	}
+}
@@ -0,0 +1,175 @@
+package com.oxygenxml.ditareferences.workspace.textpage;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Decide if an edit in the TextPage can change the outgoing references, with a
+ * lexical check of the edited text and of the text around it. Typing words in
+ * the content of an element cannot, while edits inside tags or edits of markup
+ * can.
+ *
+ * The removed text is no longer in the document when the removal is notified,
+ * so the text around the last edit of every checked document is kept. A
+ * removal outside of it, like the first one at a new place, is considered
+ * relevant.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public final class TextEditRelevance {
+
+	/* The referencesTree Logger. */
+	private static final Logger LOGGER = Logger.getLogger(TextEditRelevance.class);
+
+	/* The maximum number of characters searched around an edit for the enclosing tags. */
+	private static final int MAX_CONTEXT_LENGTH = 2048;
+
+	/* The number of characters kept on each side of the last edit. */
+	private static final int WINDOW_LENGTH = 256;
+
+	/**
+	 * The text around the last edit of a document.
+	 */
+	private static final class TextWindow {
+		private final int start;
+		private final String text;
+
+		TextWindow(int start, String text) {
+			this.start = start;
+			this.text = text;
+		}
+
+		/**
+		 * @return the text of the range or <code>null</code> if it is not in the
+		 *         window.
+		 */
+		String getText(int offset, int length) {
+			if (start <= offset && offset + length <= start + text.length()) {
+				return text.substring(offset - start, offset - start + length);
+			}
+			return null;
+		}
+	}
+
+	/* The text around the last edit of every document. */
+	private final Map<Document, TextWindow> windows = new WeakHashMap<>();
+
+	/**
+	 * Check if an edit can change the references. Must be called for every edit
+	 * of a document, in order.
+	 *
+	 * @param e The insertion or removal event
+	 * @return <code>true</code> if the edit can change the references.
+	 */
+	public boolean isReferenceEdit(DocumentEvent e) {
+		Document document = e.getDocument();
+		int offset = e.getOffset();
+		int length = e.getLength();
+		try {
+			boolean referenceEdit;
+			if (e.getType() == DocumentEvent.EventType.INSERT) {
+				referenceEdit = hasMarkup(document.getText(offset, length))
+						|| !isInElementContent(document, offset, offset + length);
+				keepWindow(document, offset + length);
+			} else if (e.getType() == DocumentEvent.EventType.REMOVE) {
+				TextWindow window = windows.get(document);
+				String removedText = window != null ? window.getText(offset, length) : null;
+				// the removed text is not known if it was not around the last edit
+				referenceEdit = removedText == null || hasMarkup(removedText)
+						|| !isInElementContent(document, offset, offset);
+				keepWindow(document, offset);
+			} else {
+				// only the attributes changed
+				referenceEdit = false;
+			}
+			return referenceEdit;
+		} catch (BadLocationException ex) {
+			LOGGER.debug(ex, ex);
+			windows.remove(document);
+			return true;
+		}
+	}
+
+	/**
+	 * Keep the text around an offset of a document, for the next removal.
+	 *
+	 * @param document The document
+	 * @param offset   The offset, after the last edit
+	 * @throws BadLocationException
+	 */
+	private void keepWindow(Document document, int offset) throws BadLocationException {
+		int start = Math.max(0, offset - WINDOW_LENGTH);
+		int end = Math.min(document.getLength(), offset + WINDOW_LENGTH);
+		windows.put(document, new TextWindow(start, document.getText(start, end - start)));
+	}
+
+	/**
+	 * Check if a text has markup characters.
+	 *
+	 * @param text The inserted or removed text
+	 * @return <code>true</code> if the text has tag or entity reference
+	 *         delimiters.
+	 */
+	static boolean hasMarkup(CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if (ch == '<' || ch == '>' || ch == '&') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if a range of the document is in the text content of an element, not
+	 * inside a tag or an entity reference: the previous tag delimiter is the end
+	 * of a tag and the next one is the start of a tag. The quotes are not
+	 * checked: an attribute value cannot contain a '&lt;', so after a '&gt;' from
+	 * an attribute value the next delimiter is the end of its tag.
+	 *
+	 * @param document The document
+	 * @param start    The start offset of the range
+	 * @param end      The end offset of the range
+	 * @return <code>true</code> if the range is in the content of an element.
+	 * @throws BadLocationException
+	 */
+	static boolean isInElementContent(Document document, int start, int end) throws BadLocationException {
+		int contextStart = Math.max(0, start - MAX_CONTEXT_LENGTH);
+		String before = document.getText(contextStart, start - contextStart);
+		boolean afterTag = false;
+		boolean afterEntityReference = false;
+		for (int i = before.length() - 1; i >= 0; i--) {
+			char ch = before.charAt(i);
+			if (ch == '>') {
+				afterTag = true;
+				break;
+			} else if (ch == ';') {
+				afterEntityReference = true;
+			} else if (ch == '<' || (ch == '&' && !afterEntityReference)) {
+				// inside a tag or an entity reference
+				return false;
+			}
+		}
+		if (!afterTag) {
+			return false;
+		}
+
+		String after = document.getText(end, Math.min(MAX_CONTEXT_LENGTH, document.getLength() - end));
+		for (int i = 0; i < after.length(); i++) {
+			char ch = after.charAt(i);
+			if (ch == '<') {
+				return true;
+			} else if (ch == '>') {
+				return false;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,385 @@
+package com.oxygenxml.ditareferences.workspace.textpage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lexical scanner which walks the XML content of the Text Page once and
+ * records the offsets of every element, in document order.
+ *
+ * The scanner does not build a DOM and does not resolve entities. It only
+ * needs to match the elements of a DOM built from the same content, visited in
+ * pre-order.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class TextPageElementsScanner {
+
+	/**
+	 * The offsets of an element in the XML content.
+	 */
+	public static final class ElementOffsets {
+		/* The qualified name of the element, as written in the content. */
+		private final String name;
+
+		/* The offset of the "<" starting the element. */
+		private final int startOffset;
+
+		/* The offset after the ">" closing the start tag. */
+		private final int startTagEndOffset;
+
+		/* The offset of the "<" starting the end tag, -1 if there is no end tag. */
+		private int contentEndOffset = -1;
+
+		/* The offset after the ">" closing the element, -1 if not closed. */
+		private int endOffset = -1;
+
+		ElementOffsets(String name, int startOffset, int startTagEndOffset) {
+			this.name = name;
+			this.startOffset = startOffset;
+			this.startTagEndOffset = startTagEndOffset;
+		}
+
+		/**
+		 * @return the qualified name of the element.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the offset of the "&lt;" starting the element.
+		 */
+		public int getStartOffset() {
+			return startOffset;
+		}
+
+		/**
+		 * @return the offset after the "&gt;" closing the start tag.
+		 */
+		public int getStartTagEndOffset() {
+			return startTagEndOffset;
+		}
+
+		/**
+		 * @return the offset of the "&lt;" starting the end tag or -1 if the
+		 *         element is empty or not closed.
+		 */
+		public int getContentEndOffset() {
+			return contentEndOffset;
+		}
+
+		/**
+		 * @return the offset after the "&gt;" closing the element or -1 if the
+		 *         element is not closed.
+		 */
+		public int getEndOffset() {
+			return endOffset;
+		}
+	}
+
+	private TextPageElementsScanner() {
+		// private constructor
+	}
+
+	/**
+	 * Scan the XML content and get the offsets of all its elements in document
+	 * order.
+	 *
+	 * @param content The XML content
+	 * @return The offsets of the elements. Never <code>null</code>.
+	 */
+	public static List<ElementOffsets> scan(CharSequence content) {
+		return scan(content, 0, content.length(), false);
+	}
+
+	/**
+	 * Scan a region of the XML content, for example the content of an element,
+	 * and get the offsets of the elements inside it in document order.
+	 *
+	 * @param content The XML content
+	 * @param start   The start offset of the region
+	 * @param end     The end offset of the region, exclusive
+	 * @return The offsets of the elements or <code>null</code> if the region is
+	 *         not balanced: an element, comment, CDATA section, processing
+	 *         instruction or tag is not closed inside the region or an end tag
+	 *         closes an element started outside it.
+	 */
+	public static List<ElementOffsets> scanRegion(CharSequence content, int start, int end) {
+		return scan(content, start, end, true);
+	}
+
+	/**
+	 * Scan the XML content between the given offsets.
+	 *
+	 * @param content  The XML content
+	 * @param start    The start offset
+	 * @param end      The end offset, exclusive
+	 * @param balanced <code>true</code> to give up on unbalanced markup
+	 * @return The offsets of the elements or <code>null</code> for unbalanced
+	 *         markup, if requested.
+	 */
+	private static List<ElementOffsets> scan(CharSequence content, int start, int end, boolean balanced) {
+		List<ElementOffsets> elements = new ArrayList<>();
+		List<ElementOffsets> openElements = new ArrayList<>();
+		int i = start;
+		while (i < end) {
+			int next;
+			if (content.charAt(i) != '<') {
+				next = i + 1;
+			} else if (startsWith(content, i, end, "<!--")) {
+				next = skipAfter(content, i + 4, end, "-->");
+			} else if (startsWith(content, i, end, "<![CDATA[")) {
+				next = skipAfter(content, i + 9, end, "]]>");
+			} else if (startsWith(content, i, end, "<?")) {
+				next = skipAfter(content, i + 2, end, "?>");
+			} else if (startsWith(content, i, end, "<!")) {
+				if (balanced) {
+					// no declarations inside the content of an element
+					return null;
+				}
+				next = skipDeclaration(content, i + 2, end);
+			} else if (i + 1 < end && content.charAt(i + 1) == '/') {
+				next = skipTag(content, i + 2, end);
+				// close the last opened element
+				if (!openElements.isEmpty()) {
+					ElementOffsets closed = openElements.remove(openElements.size() - 1);
+					closed.contentEndOffset = i;
+					closed.endOffset = next != -1 ? next : end;
+				} else if (balanced) {
+					return null;
+				}
+			} else {
+				int nameEnd = skipName(content, i + 1, end);
+				next = skipTag(content, nameEnd, end);
+				int tagEnd = next != -1 ? next : end;
+				ElementOffsets element = new ElementOffsets(content.subSequence(i + 1, nameEnd).toString(), i, tagEnd);
+				elements.add(element);
+				if (tagEnd >= 2 && content.charAt(tagEnd - 2) == '/') {
+					// empty element
+					element.endOffset = tagEnd;
+				} else {
+					openElements.add(element);
+				}
+			}
+
+			if (next == -1) {
+				if (balanced) {
+					return null;
+				}
+				next = end;
+			}
+			i = next;
+		}
+		return balanced && !openElements.isEmpty() ? null : elements;
+	}
+
+	/**
+	 * Parse the attributes written in a start tag. The entity references are not
+	 * expanded, except the predefined and character references.
+	 *
+	 * @param content       The XML content
+	 * @param startOffset   The offset of the "&lt;" starting the tag
+	 * @param tagEndOffset  The offset after the "&gt;" closing the tag
+	 * @return The attribute values, by qualified name, in the order they are
+	 *         written.
+	 */
+	public static Map<String, String> parseAttributes(CharSequence content, int startOffset, int tagEndOffset) {
+		Map<String, String> attributes = new LinkedHashMap<>();
+		int i = skipName(content, startOffset + 1, tagEndOffset);
+		while (i < tagEndOffset) {
+			char ch = content.charAt(i);
+			if (Character.isWhitespace(ch) || ch == '/' || ch == '>') {
+				i++;
+				continue;
+			}
+			int nameStart = i;
+			while (i < tagEndOffset && content.charAt(i) != '=' && !Character.isWhitespace(content.charAt(i))
+					&& content.charAt(i) != '>') {
+				i++;
+			}
+			String attributeName = content.subSequence(nameStart, i).toString();
+			while (i < tagEndOffset && Character.isWhitespace(content.charAt(i))) {
+				i++;
+			}
+			if (i >= tagEndOffset || content.charAt(i) != '=') {
+				// malformed, attribute without value
+				continue;
+			}
+			i++;
+			while (i < tagEndOffset && Character.isWhitespace(content.charAt(i))) {
+				i++;
+			}
+			if (i >= tagEndOffset || (content.charAt(i) != '"' && content.charAt(i) != '\'')) {
+				continue;
+			}
+			char quote = content.charAt(i);
+			int valueStart = i + 1;
+			i = valueStart;
+			while (i < tagEndOffset && content.charAt(i) != quote) {
+				i++;
+			}
+			attributes.put(attributeName, decodeValue(content.subSequence(valueStart, Math.min(i, tagEndOffset))));
+			i++;
+		}
+		return attributes;
+	}
+
+	/**
+	 * Expand the predefined entity references and the character references.
+	 */
+	private static String decodeValue(CharSequence value) {
+		StringBuilder decoded = new StringBuilder(value.length());
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char ch = value.charAt(i);
+			int semicolon = ch == '&' ? indexOf(value, ';', i) : -1;
+			if (semicolon == -1) {
+				decoded.append(ch);
+				continue;
+			}
+			String reference = value.subSequence(i + 1, semicolon).toString();
+			String replacement = null;
+			if ("lt".equals(reference)) {
+				replacement = "<";
+			} else if ("gt".equals(reference)) {
+				replacement = ">";
+			} else if ("amp".equals(reference)) {
+				replacement = "&";
+			} else if ("quot".equals(reference)) {
+				replacement = "\"";
+			} else if ("apos".equals(reference)) {
+				replacement = "'";
+			} else if (reference.startsWith("#")) {
+				try {
+					int codePoint = reference.startsWith("#x") ? Integer.parseInt(reference.substring(2), 16)
+							: Integer.parseInt(reference.substring(1));
+					replacement = new String(Character.toChars(codePoint));
+				} catch (IllegalArgumentException e) {
+					// not a character reference, keep it
+				}
+			}
+
+			if (replacement != null) {
+				decoded.append(replacement);
+				i = semicolon;
+			} else {
+				decoded.append(ch);
+			}
+		}
+		return decoded.toString();
+	}
+
+	/**
+	 * @return the index of the character after the given offset or -1.
+	 */
+	private static int indexOf(CharSequence value, char ch, int offset) {
+		for (int i = offset; i < value.length(); i++) {
+			if (value.charAt(i) == ch) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Check if the content has the given prefix at the given offset.
+	 */
+	private static boolean startsWith(CharSequence content, int offset, int end, String prefix) {
+		if (offset + prefix.length() > end) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (content.charAt(offset + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the offset after the first occurrence of the given suffix or -1 if
+	 *         not found.
+	 */
+	private static int skipAfter(CharSequence content, int offset, int end, String suffix) {
+		for (int i = offset; i < end; i++) {
+			if (startsWith(content, i, end, suffix)) {
+				return i + suffix.length();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Skip a declaration, like DOCTYPE, including its internal subset.
+	 *
+	 * @return the offset after the declaration or -1 if not closed.
+	 */
+	private static int skipDeclaration(CharSequence content, int offset, int end) {
+		int depth = 0;
+		char quote = 0;
+		for (int i = offset; i < end; i++) {
+			char ch = content.charAt(i);
+			if (quote != 0) {
+				if (ch == quote) {
+					quote = 0;
+				}
+			} else if (ch == '"' || ch == '\'') {
+				quote = ch;
+			} else if (ch == '[') {
+				depth++;
+			} else if (ch == ']') {
+				depth--;
+			} else if (ch == '>' && depth <= 0) {
+				return i + 1;
+			} else if (depth > 0 && startsWith(content, i, end, "<!--")) {
+				int commentEnd = skipAfter(content, i + 4, end, "-->");
+				if (commentEnd == -1) {
+					return -1;
+				}
+				i = commentEnd - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the offset after the element name starting at the given offset.
+	 */
+	private static int skipName(CharSequence content, int offset, int end) {
+		int i = offset;
+		while (i < end) {
+			char ch = content.charAt(i);
+			if (Character.isWhitespace(ch) || ch == '>' || ch == '/') {
+				break;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Skip the rest of a tag, ignoring the ">" characters from attribute values.
+	 *
+	 * @return the offset after the ">" closing the tag or -1 if not closed.
+	 */
+	private static int skipTag(CharSequence content, int offset, int end) {
+		char quote = 0;
+		for (int i = offset; i < end; i++) {
+			char ch = content.charAt(i);
+			if (quote != 0) {
+				if (ch == quote) {
+					quote = 0;
+				}
+			} else if (ch == '"' || ch == '\'') {
+				quote = ch;
+			} else if (ch == '>') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+}
@@ -18,28 +18,75 @@ public class TextPageListener implements DocumentListener {
 	/* Timer for changes in TextPage. */
 	private Timer updateTreeTimer;
 
+	/* Notified on every change in TextPage, before the timer is restarted. */
+	private Runnable changeCallback;
+
+	/* Decides which changes are ignored, null to notify every change. */
+	private TextEditRelevance editRelevance;
+
 	/**
 	 * Construct the TextPage Listener.
 	 * 
 	 * @param updateTreeTimer The updateTreeTimer
 	 */
 	public TextPageListener(Timer updateTreeTimer) {
+		this(updateTreeTimer, () -> {});
+	}
+
+	/**
+	 * Construct the TextPage Listener.
+	 * 
+	 * @param updateTreeTimer The updateTreeTimer, <code>null</code> to only notify
+	 *                        the callback
+	 * @param changeCallback  Notified on every change in TextPage
+	 */
+	public TextPageListener(Timer updateTreeTimer, Runnable changeCallback) {
+		this(updateTreeTimer, changeCallback, false);
+	}
+
+	/**
+	 * Construct the TextPage Listener.
+	 * 
+	 * @param updateTreeTimer    The updateTreeTimer, <code>null</code> to only
+	 *                           notify the callback
+	 * @param changeCallback     Notified on every change in TextPage
+	 * @param onlyReferenceEdits <code>true</code> to ignore the changes which
+	 *                           cannot change the references, like typing words
+	 *                           in a paragraph
+	 */
+	public TextPageListener(Timer updateTreeTimer, Runnable changeCallback, boolean onlyReferenceEdits) {
 		this.updateTreeTimer = updateTreeTimer;
+		this.changeCallback = changeCallback;
+		this.editRelevance = onlyReferenceEdits ? new TextEditRelevance() : null;
 	}
 
 	@Override
 	public void removeUpdate(DocumentEvent e) {
-		updateTreeTimer.restart();
+		documentChanged(e);
 	}
 
 	@Override
 	public void insertUpdate(DocumentEvent e) {
-		updateTreeTimer.restart();
+		documentChanged(e);
 	}
 
 	@Override
 	public void changedUpdate(DocumentEvent e) {
-		updateTreeTimer.restart();
+		documentChanged(e);
+	}
+
+	/**
+	 * Notify the callback and restart the timer, unless the change is ignored.
+	 * 
+	 * @param e The document event
+	 */
+	private void documentChanged(DocumentEvent e) {
+		if (editRelevance == null || editRelevance.isReferenceEdit(e)) {
+			changeCallback.run();
+			if (updateTreeTimer != null) {
+				updateTreeTimer.restart();
+			}
+		}
 	}
 
 }
@@ -2,8 +2,11 @@ package com.oxygenxml.ditareferences.workspace.textpage;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Map;
 
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Position;
 
 import org.apache.log4j.Logger;
 import org.w3c.dom.Element;
@@ -32,6 +35,26 @@ public class TextPageNodeRange extends NodeRange {
 	/* The range in the XML content */
 	private WSXMLTextNodeRange range;
 
+	/* The offsets in the XML content, if already known. */
+	private int[] offsets;
+
+	/*
+	 * The start and end positions in the document, created with the range from
+	 * the document the offsets were taken from. They are moved by the edits of
+	 * the document.
+	 */
+	private Document positionsDocument;
+	private Position startPosition;
+	private Position endPosition;
+
+	/* The name, attributes and base URI, when there is no DOM element. */
+	private String nodeName;
+	private Map<String, String> attributes;
+	private String baseURI;
+
+	/* The editor location, created from the base URI when first needed. */
+	private URL editorLocation;
+
 	/**
 	 * Construct the TextPage NodeRange.
 	 * 
@@ -43,15 +66,141 @@ public class TextPageNodeRange extends NodeRange {
 		this.range = range;
 	}
 
+	/**
+	 * Construct the TextPage NodeRange from the range of the element in the Text
+	 * Page. The offsets are computed now and tracked in the page document.
+	 * 
+	 * @param node     The node
+	 * @param range    The range
+	 * @param textPage The XML textPage the range was taken from
+	 */
+	public TextPageNodeRange(Element node, WSXMLTextNodeRange range, WSXMLTextEditorPage textPage) {
+		this.element = node;
+		this.range = range;
+		this.offsets = computeNodeOffsets(textPage);
+		trackOffsets(textPage.getDocument());
+	}
+
+	/**
+	 * Construct the TextPage NodeRange when the offsets are already known.
+	 * 
+	 * @param node        The node
+	 * @param startOffset The start offset of the element
+	 * @param endOffset   The end offset of the element
+	 */
+	public TextPageNodeRange(Element node, int startOffset, int endOffset) {
+		this(node, startOffset, endOffset, null);
+	}
+
+	/**
+	 * Construct the TextPage NodeRange when the offsets are already known.
+	 * 
+	 * @param node        The node
+	 * @param startOffset The start offset of the element
+	 * @param endOffset   The end offset of the element
+	 * @param document    The document the offsets were taken from, which tracks
+	 *                    them from now on. Can be <code>null</code>.
+	 */
+	public TextPageNodeRange(Element node, int startOffset, int endOffset, Document document) {
+		this.element = node;
+		this.offsets = new int[] { startOffset, endOffset };
+		trackOffsets(document);
+	}
+
+	/**
+	 * Construct the TextPage NodeRange for an element known only from the XML
+	 * content, without a DOM element.
+	 * 
+	 * @param nodeName    The qualified name of the element
+	 * @param attributes  The attribute values, including the default ones
+	 * @param baseURI     The base URI of the element
+	 * @param startOffset The start offset of the element
+	 * @param endOffset   The end offset of the element
+	 */
+	public TextPageNodeRange(String nodeName, Map<String, String> attributes, String baseURI, int startOffset,
+			int endOffset) {
+		this(nodeName, attributes, baseURI, startOffset, endOffset, null);
+	}
+
+	/**
+	 * Construct the TextPage NodeRange for an element known only from the XML
+	 * content, without a DOM element.
+	 * 
+	 * @param nodeName    The qualified name of the element
+	 * @param attributes  The attribute values, including the default ones
+	 * @param baseURI     The base URI of the element
+	 * @param startOffset The start offset of the element
+	 * @param endOffset   The end offset of the element
+	 * @param document    The document the offsets were taken from, which tracks
+	 *                    them from now on. Can be <code>null</code>.
+	 */
+	public TextPageNodeRange(String nodeName, Map<String, String> attributes, String baseURI, int startOffset,
+			int endOffset, Document document) {
+		this.nodeName = nodeName;
+		this.attributes = attributes;
+		this.baseURI = baseURI;
+		this.offsets = new int[] { startOffset, endOffset };
+		trackOffsets(document);
+	}
+
+	/**
+	 * Create the positions of the offsets in the document they were taken from,
+	 * so that they follow its edits. Can be called on any thread.
+	 * 
+	 * @param document The document or <code>null</code>
+	 */
+	private void trackOffsets(Document document) {
+		if (document != null && offsets[1] <= document.getLength()) {
+			try {
+				startPosition = document.createPosition(offsets[0]);
+				endPosition = document.createPosition(offsets[1]);
+				positionsDocument = document;
+			} catch (BadLocationException e) {
+				LOGGER.debug(e, e);
+			}
+		}
+	}
+
 	/**
 	 * Compute the offsets of the corresponding reference node in tree for the
-	 * element in the textPage.
+	 * element in the textPage. The offsets tracked in the document stay correct
+	 * after edits until the next refresh.
 	 * 
 	 * @param editorPage The XML textPage
 	 * @return An array with start and end offsets of DOM node in XML TextPage
 	 */
 	public int[] getNodeOffsets(WSEditorPage editorPage) {
 		WSXMLTextEditorPage xmlTextPage = (WSXMLTextEditorPage) editorPage;
+		if (positionsDocument != null && xmlTextPage != null && xmlTextPage.getDocument() == positionsDocument) {
+			return new int[] { startPosition.getOffset(), endPosition.getOffset() };
+		}
+		return computeNodeOffsets(xmlTextPage);
+	}
+
+	/**
+	 * The positions tracked in the document of the page, if the offsets were
+	 * taken from it.
+	 */
+	@Override
+	public Position[] getNodePositions(WSEditorPage editorPage) {
+		WSXMLTextEditorPage xmlTextPage = (WSXMLTextEditorPage) editorPage;
+		if (positionsDocument != null && xmlTextPage != null && xmlTextPage.getDocument() == positionsDocument) {
+			return new Position[] { startPosition, endPosition };
+		}
+		return null;
+	}
+
+	/**
+	 * Compute the offsets from the known offsets or from the lines and columns of
+	 * the range.
+	 * 
+	 * @param xmlTextPage The XML textPage
+	 * @return An array with start and end offsets of DOM node in XML TextPage
+	 */
+	private int[] computeNodeOffsets(WSXMLTextEditorPage xmlTextPage) {
+		if (offsets != null) {
+			return new int[] { offsets[0], offsets[1] };
+		}
 		int[] finalOffsets = new int[2];
 		if(range != null) {
 		  try {
@@ -89,21 +238,26 @@ public class TextPageNodeRange extends NodeRange {
 					return attr.getNodeValue();
 				}
 			}
+		} else if (attributes != null) {
+			return attributes.get(attributeName);
 		}
 		return null;
 	}
 
 
 	public String getNodeName() {
-		return element.getNodeName();
+		return element != null ? element.getNodeName() : nodeName;
 	}
 
 	public URL getEditorLocation() {
-		try {
-			return new URL(element.getBaseURI());
-		} catch (MalformedURLException e) {
-			return null;
+		if (editorLocation == null) {
+			try {
+				editorLocation = new URL(element != null ? element.getBaseURI() : baseURI);
+			} catch (MalformedURLException e) {
+				return null;
+			}
 		}
+		return editorLocation;
 	}
 
 }
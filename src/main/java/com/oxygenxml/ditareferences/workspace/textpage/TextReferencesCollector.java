@@ -5,11 +5,21 @@ package com.oxygenxml.ditareferences.workspace.textpage;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+import org.apache.log4j.Logger;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
+import com.oxygenxml.ditareferences.tree.references.outgoing.CollectionMode;
 import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
 import com.oxygenxml.ditareferences.tree.references.outgoing.ReferencesCollector;
+import com.oxygenxml.ditareferences.workspace.textpage.TextPageElementsScanner.ElementOffsets;
 
 import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
 import ro.sync.exml.workspace.api.editor.page.text.xml.WSXMLTextEditorPage;
@@ -18,16 +28,264 @@ import ro.sync.exml.workspace.api.editor.page.text.xml.XPathException;
 
 /**
  * Evaluate the XPath expression and get the Nodes and its NodeRanges.
- * 
+ *
+ * The DOM of the root element is visited only once and the offsets of the
+ * references are taken from a lexical scan of the Text Page content. The union
+ * XPath expression is evaluated only when the offsets cannot be matched with
+ * the DOM, for example when the content uses external entities.
+ *
+ * In the incremental mode the references are taken from an index of the
+ * document, kept up to date from its changes, and the DOM is visited only when
+ * the index must be built again.
+ *
  * @author Alexandra_Dinisor
  *
  */
 public class TextReferencesCollector extends ReferencesCollector {
 
+	private static final Logger LOGGER = Logger.getLogger(TextReferencesCollector.class);
+
+	/**
+	 * The XPath expression for the root element.
+	 */
+	private static final String ROOT_XPATH_EXPRESSION = "/*";
+
+	/**
+	 * Construct the collector with the single pass mode.
+	 */
+	public TextReferencesCollector() {
+		this(CollectionMode.SINGLE_PASS);
+	}
+
+	/**
+	 * Construct the collector.
+	 *
+	 * @param collectionMode The way the references are collected
+	 */
+	public TextReferencesCollector(CollectionMode collectionMode) {
+		super(collectionMode);
+	}
+
 	@Override
 	protected List<NodeRange> collect(WSEditorPage page) throws XPathException {
-		
 		WSXMLTextEditorPage textPage = (WSXMLTextEditorPage) page;
+
+		List<NodeRange> ranges = null;
+		TextReferencesIndex index = getIndex(textPage);
+		if (index != null) {
+			ranges = index.getReferences(textPage.getDocument());
+		}
+
+		if (ranges == null) {
+			long modificationStamp = index != null ? index.getModificationStamp() : 0;
+			Element root = getRootElement(textPage);
+			String content = getContent(textPage);
+			Document document = textPage.getDocument();
+			if (root != null && content != null) {
+				ranges = index != null ? index.build(root, content, modificationStamp, document)
+						: collect(root, content, document);
+			}
+		}
+
+		if (ranges == null) {
+			ranges = collectWithXPath(textPage);
+		}
+		return ranges;
+	}
+
+	/**
+	 * Take a snapshot of the page. Only the DOM of the root element is taken on
+	 * the AWT thread, because the XPath evaluation of the page can be used only
+	 * there. The content is copied and scanned by the returned task, which reads
+	 * the document under its read lock and gives <code>null</code> if the
+	 * document was edited since the DOM was taken.
+	 */
+	@Override
+	public Supplier<List<NodeRange>> snapshot(WSEditorPage page) throws XPathException {
+		WSXMLTextEditorPage textPage = (WSXMLTextEditorPage) page;
+
+		TextReferencesIndex index = getIndex(textPage);
+		Document document = textPage.getDocument();
+		if (index != null) {
+			// the index is up to date with the edits, nothing left to collect
+			List<NodeRange> ranges = index.getReferences(document);
+			if (ranges != null) {
+				return () -> ranges;
+			}
+		}
+
+		Element root = getRootElement(textPage);
+		if (root != null && document instanceof AbstractDocument) {
+			// the DOM of the root element is not shared with the Text Page
+			TextReferencesIndex stamps = index != null ? index
+					: TextReferencesIndex.getIndex(document, ReferencesCollector::isReferenceElement);
+			long modificationStamp = stamps.getModificationStamp();
+			return () -> {
+				String content = getContent((AbstractDocument) document, stamps, modificationStamp);
+				if (content == null) {
+					return null;
+				}
+				return index != null ? index.build(root, content, modificationStamp, document)
+						: collect(root, content, document);
+			};
+		}
+
+		String content = getContent(textPage);
+		if (root != null && content != null) {
+			// a document which cannot be read from other threads, copy it now
+			if (index != null) {
+				long modificationStamp = index.getModificationStamp();
+				return () -> index.build(root, content, modificationStamp, document);
+			}
+			return () -> collect(root, content, document);
+		}
+		return super.snapshot(page);
+	}
+
+	/**
+	 * Copy the content of a document, under its read lock, if it was not edited
+	 * since a modification stamp was taken. Can be called on any thread.
+	 *
+	 * @param document          The document of the Text Page
+	 * @param stamps            The index keeping the modification stamp of the
+	 *                          document
+	 * @param modificationStamp The expected modification stamp
+	 * @return The content or <code>null</code> if the document was edited.
+	 */
+	private static String getContent(AbstractDocument document, TextReferencesIndex stamps, long modificationStamp) {
+		String[] content = new String[1];
+		document.render(() -> {
+			// the stamp cannot change while the read lock is held
+			if (stamps.getModificationStamp() == modificationStamp) {
+				try {
+					content[0] = document.getText(0, document.getLength());
+				} catch (BadLocationException e) {
+					LOGGER.debug(e, e);
+				}
+			}
+		});
+		return content[0];
+	}
+
+	/**
+	 * Get the index of the Text Page document, for the incremental collection.
+	 *
+	 * @param textPage The XML Text Page
+	 * @return The index or <code>null</code> if the incremental collection cannot
+	 *         be used.
+	 */
+	private TextReferencesIndex getIndex(WSXMLTextEditorPage textPage) {
+		Document document = textPage.getDocument();
+		if (collectionMode == CollectionMode.INCREMENTAL && document != null) {
+			return TextReferencesIndex.getIndex(document, ReferencesCollector::isReferenceElement);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the root element of the Text Page, for the single pass collection.
+	 *
+	 * @param textPage The XML Text Page
+	 * @return The root element or <code>null</code> if the single pass cannot be
+	 *         used.
+	 * @throws XPathException
+	 */
+	private Element getRootElement(WSXMLTextEditorPage textPage) throws XPathException {
+		if (collectionMode != CollectionMode.XPATH && textPage.getDocument() != null) {
+			Object[] rootNodes = textPage.evaluateXPath(ROOT_XPATH_EXPRESSION);
+			if (rootNodes != null && rootNodes.length == 1 && rootNodes[0] instanceof Element) {
+				return (Element) rootNodes[0];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the content of the Text Page.
+	 *
+	 * @param textPage The XML Text Page
+	 * @return The content or <code>null</code> if it is not available.
+	 */
+	private static String getContent(WSXMLTextEditorPage textPage) {
+		Document document = textPage.getDocument();
+		if (document != null) {
+			try {
+				return document.getText(0, document.getLength());
+			} catch (BadLocationException e) {
+				LOGGER.debug(e, e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Collect the references in a single pass over the DOM, taking their offsets
+	 * from the content of the Text Page.
+	 *
+	 * @param root    The root element
+	 * @param content The XML content of the Text Page
+	 * @return The root and the reference NodeRanges in document order or
+	 *         <code>null</code> if the DOM does not match the content.
+	 */
+	public List<NodeRange> collect(Element root, CharSequence content) {
+		return collect(root, content, null);
+	}
+
+	/**
+	 * Collect the references in a single pass over the DOM, taking their offsets
+	 * from the content of the Text Page.
+	 *
+	 * @param root     The root element
+	 * @param content  The XML content of the Text Page
+	 * @param document The document the content was taken from, which tracks the
+	 *                 offsets of the returned NodeRanges. Can be
+	 *                 <code>null</code>.
+	 * @return The root and the reference NodeRanges in document order or
+	 *         <code>null</code> if the DOM does not match the content.
+	 */
+	public List<NodeRange> collect(Element root, CharSequence content, Document document) {
+		List<ElementOffsets> allOffsets = TextPageElementsScanner.scan(content);
+		List<NodeRange> ranges = new ArrayList<>();
+
+		// visit the DOM in pre-order, the same order as the scanned elements
+		List<Element> stack = new ArrayList<>();
+		stack.add(root);
+		int elementIndex = 0;
+		while (!stack.isEmpty()) {
+			Element currentElement = stack.remove(stack.size() - 1);
+			if (elementIndex >= allOffsets.size()) {
+				return null;
+			}
+			ElementOffsets offsets = allOffsets.get(elementIndex);
+			if (!offsets.getName().equals(currentElement.getNodeName())) {
+				return null;
+			}
+
+			if (elementIndex == 0 || isReferenceElement(attributeName -> getAttributeValue(currentElement, attributeName))) {
+				int endOffset = offsets.getEndOffset() != -1 ? offsets.getEndOffset() : content.length();
+				ranges.add(new TextPageNodeRange(currentElement, offsets.getStartOffset(), endOffset, document));
+			}
+			elementIndex++;
+
+			// push the children in reverse order so that the first child is visited first
+			for (Node child = currentElement.getLastChild(); child != null; child = child.getPreviousSibling()) {
+				if (child.getNodeType() == Node.ELEMENT_NODE) {
+					stack.add((Element) child);
+				}
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * Collect the references by evaluating the XPath expression for the nodes and
+	 * for their ranges.
+	 *
+	 * @param textPage The XML Text Page
+	 * @return The NodeRanges.
+	 * @throws XPathException
+	 */
+	private List<NodeRange> collectWithXPath(WSXMLTextEditorPage textPage) throws XPathException {
 		List<NodeRange> ranges = new ArrayList<>();
 
 		Object[] referenceNodes = textPage.evaluateXPath(ALL_REFS_XPATH_EXPRESSION);
@@ -38,10 +296,28 @@ public class TextReferencesCollector extends ReferencesCollector {
 		if (referenceNodes != null) {
 			for (int i = 0; i < referenceNodes.length; i++) {
 				Element currentElement = (Element) referenceNodes[i];
-				NodeRange refRange = new TextPageNodeRange(currentElement, referenceTextNodeRanges[i]);
-				ranges.add(refRange);				
+				NodeRange refRange = new TextPageNodeRange(currentElement, referenceTextNodeRanges[i], textPage);
+				ranges.add(refRange);
 			}
 		}
 		return ranges;
 	}
+
+	/**
+	 * Get the attribute value of a DOM element.
+	 *
+	 * @param element       The element
+	 * @param attributeName The attribute name
+	 * @return the value or <code>null</code> if there is no such attribute.
+	 */
+	private static String getAttributeValue(Element element, String attributeName) {
+		NamedNodeMap attrs = element.getAttributes();
+		if (attrs != null) {
+			Node attr = attrs.getNamedItem(attributeName);
+			if (attr != null) {
+				return attr.getNodeValue();
+			}
+		}
+		return null;
+	}
 }
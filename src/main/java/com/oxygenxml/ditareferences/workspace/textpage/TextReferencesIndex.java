@@ -0,0 +1,442 @@
+package com.oxygenxml.ditareferences.workspace.textpage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+import org.apache.log4j.Logger;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.workspace.textpage.TextPageElementsScanner.ElementOffsets;
+
+/**
+ * The elements of a Text Page document, with their offsets and attributes,
+ * kept up to date from the document changes.
+ *
+ * The index is built once from the DOM and the content of the document. An
+ * edit only rescans the content of the innermost element enclosing it and the
+ * result is spliced into the index, so the cost of an update depends on the
+ * size of the edited element, not on the size of the document. The attributes
+ * which are not written in the content, like the DITA class attribute defaulted
+ * from the DTD, are learned per element name from the DOM.
+ *
+ * When an edit cannot be mapped to an element, for example when it changes the
+ * start tag of the root or leaves an unbalanced markup, the index becomes
+ * invalid and must be built again.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class TextReferencesIndex implements DocumentListener {
+
+	/* The referencesTree Logger. */
+	private static final Logger LOGGER = Logger.getLogger(TextReferencesIndex.class);
+
+	/* The index of every document. The index does not refer its document. */
+	private static final Map<Document, TextReferencesIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/* The last modification stamp given to a document. */
+	private static final AtomicLong LAST_STAMP = new AtomicLong();
+
+	/**
+	 * An element of the document.
+	 */
+	private static final class IndexEntry {
+		private final String name;
+		private final Map<String, String> attributes;
+		private final boolean reference;
+		private IndexEntry parent;
+		private int startOffset;
+		private int startTagEndOffset;
+		private int contentEndOffset;
+		private int endOffset;
+
+		IndexEntry(ElementOffsets offsets, int delta, Map<String, String> attributes, boolean reference) {
+			this.name = offsets.getName();
+			this.attributes = attributes;
+			this.reference = reference;
+			this.startOffset = offsets.getStartOffset() + delta;
+			this.startTagEndOffset = offsets.getStartTagEndOffset() + delta;
+			this.contentEndOffset = offsets.getContentEndOffset() != -1 ? offsets.getContentEndOffset() + delta : -1;
+			this.endOffset = offsets.getEndOffset() + delta;
+		}
+
+		/**
+		 * @return <code>true</code> if the content of the element, between its tags,
+		 *         contains the given range.
+		 */
+		boolean containsInContent(int offset, int length) {
+			return contentEndOffset != -1 && startTagEndOffset <= offset && offset + length <= contentEndOffset;
+		}
+	}
+
+	/* Classify the elements as references, by their attributes. */
+	private final Predicate<UnaryOperator<String>> referenceClassifier;
+
+	/* The elements in document order. The first one is the root. */
+	private List<IndexEntry> entries = new ArrayList<>();
+
+	/* The attributes not written in the content, by element name. */
+	private Map<String, Map<String, String>> defaultAttributes = new HashMap<>();
+
+	/* The base URI of the document. */
+	private String baseURI;
+
+	/* <code>true</code> if the index matches the document. */
+	private boolean valid;
+
+	/*
+	 * Changed on every change of the document. The stamps are unique across
+	 * documents, so a document opened again does not reuse the stamps of the old
+	 * one.
+	 */
+	private long modificationStamp = LAST_STAMP.incrementAndGet();
+
+	/**
+	 * Construct the index.
+	 *
+	 * @param referenceClassifier Classify the elements as references, by their
+	 *                            attributes.
+	 */
+	TextReferencesIndex(Predicate<UnaryOperator<String>> referenceClassifier) {
+		this.referenceClassifier = referenceClassifier;
+	}
+
+	/**
+	 * Get the index of a document, creating it if needed. A new index is invalid
+	 * until it is built.
+	 *
+	 * @param document            The document of the Text Page
+	 * @param referenceClassifier Classify the elements as references, by their
+	 *                            attributes.
+	 * @return The index which listens for the changes of the document.
+	 */
+	public static TextReferencesIndex getIndex(Document document,
+			Predicate<UnaryOperator<String>> referenceClassifier) {
+		synchronized (INDEXES) {
+			TextReferencesIndex index = INDEXES.get(document);
+			if (index == null) {
+				index = new TextReferencesIndex(referenceClassifier);
+				document.addDocumentListener(index);
+				INDEXES.put(document, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the index matches the document.
+	 */
+	public synchronized boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * @return the modification stamp, changed on every change of the document.
+	 */
+	public synchronized long getModificationStamp() {
+		return modificationStamp;
+	}
+
+	/**
+	 * Build the index from the DOM and the content of the document. The index is
+	 * replaced only if the document did not change since the given modification
+	 * stamp.
+	 *
+	 * @param root              The root element
+	 * @param content           The XML content
+	 * @param modificationStamp The modification stamp when the content was taken
+	 * @param document          The document the content was taken from, which
+	 *                          tracks the offsets of the returned NodeRanges. Can
+	 *                          be <code>null</code>.
+	 * @return The root and the reference NodeRanges in document order or
+	 *         <code>null</code> if the DOM does not match the content.
+	 */
+	public List<NodeRange> build(Element root, CharSequence content, long modificationStamp, Document document) {
+		List<ElementOffsets> allOffsets = TextPageElementsScanner.scan(content);
+		List<IndexEntry> builtEntries = new ArrayList<>(allOffsets.size());
+		Map<String, Map<String, String>> builtDefaults = new HashMap<>();
+
+		// visit the DOM in pre-order, the same order as the scanned elements
+		List<Element> stack = new ArrayList<>();
+		stack.add(root);
+		int elementIndex = 0;
+		while (!stack.isEmpty()) {
+			Element currentElement = stack.remove(stack.size() - 1);
+			if (elementIndex >= allOffsets.size()) {
+				return null;
+			}
+			ElementOffsets offsets = allOffsets.get(elementIndex);
+			if (!offsets.getName().equals(currentElement.getNodeName())) {
+				return null;
+			}
+			if (offsets.getEndOffset() == -1) {
+				// not closed, the DOM was recovered from a different content
+				return null;
+			}
+
+			Map<String, String> attributes = getAttributes(currentElement);
+			learnDefaultAttributes(builtDefaults, offsets.getName(), attributes,
+					TextPageElementsScanner.parseAttributes(content, offsets.getStartOffset(), offsets.getStartTagEndOffset()));
+			builtEntries.add(new IndexEntry(offsets, 0, attributes, referenceClassifier.test(attributes::get)));
+			elementIndex++;
+
+			// push the children in reverse order so that the first child is visited first
+			for (Node child = currentElement.getLastChild(); child != null; child = child.getPreviousSibling()) {
+				if (child.getNodeType() == Node.ELEMENT_NODE) {
+					stack.add((Element) child);
+				}
+			}
+		}
+		linkParents(builtEntries, null);
+
+		synchronized (this) {
+			if (this.modificationStamp == modificationStamp) {
+				this.entries = builtEntries;
+				this.defaultAttributes = builtDefaults;
+				this.baseURI = root.getBaseURI();
+				this.valid = true;
+			}
+		}
+		return createRanges(builtEntries, root.getBaseURI(), document);
+	}
+
+	/**
+	 * Get the references of the document.
+	 *
+	 * @param document The document of the index, which tracks the offsets of the
+	 *                 returned NodeRanges
+	 * @return the root and the reference NodeRanges in document order or
+	 *         <code>null</code> if the index is not valid.
+	 */
+	public synchronized List<NodeRange> getReferences(Document document) {
+		return valid ? createRanges(entries, baseURI, document) : null;
+	}
+
+	/**
+	 * Create the NodeRanges of the root and of the references.
+	 */
+	private static List<NodeRange> createRanges(List<IndexEntry> entries, String baseURI, Document document) {
+		List<NodeRange> ranges = new ArrayList<>();
+		for (int i = 0; i < entries.size(); i++) {
+			IndexEntry entry = entries.get(i);
+			if (i == 0 || entry.reference) {
+				ranges.add(new TextPageNodeRange(entry.name, entry.attributes, baseURI, entry.startOffset, entry.endOffset,
+						document));
+			}
+		}
+		return ranges;
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		documentChanged(e.getDocument(), e.getOffset(), 0, e.getLength());
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		documentChanged(e.getDocument(), e.getOffset(), e.getLength(), 0);
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+		// only the attributes of the text changed
+	}
+
+	/**
+	 * Update the index after the content between the given offsets was replaced.
+	 *
+	 * @param document       The changed document
+	 * @param offset         The offset of the change
+	 * @param removedLength  The length of the removed content
+	 * @param insertedLength The length of the inserted content
+	 */
+	synchronized void documentChanged(Document document, int offset, int removedLength, int insertedLength) {
+		modificationStamp = LAST_STAMP.incrementAndGet();
+		if (valid) {
+			try {
+				valid = update(document, offset, removedLength, insertedLength);
+			} catch (BadLocationException e) {
+				LOGGER.debug(e, e);
+				valid = false;
+			}
+		}
+	}
+
+	/**
+	 * Rescan the content of the innermost element enclosing the change and splice
+	 * its new children into the index.
+	 *
+	 * @return <code>true</code> if the index was updated.
+	 * @throws BadLocationException
+	 */
+	private boolean update(Document document, int offset, int removedLength, int insertedLength)
+			throws BadLocationException {
+		int parentIndex = findEnclosingElement(offset, removedLength);
+		if (parentIndex == -1) {
+			return false;
+		}
+		IndexEntry parent = entries.get(parentIndex);
+		int delta = insertedLength - removedLength;
+		int oldContentEnd = parent.contentEndOffset;
+		int regionStart = parent.startTagEndOffset;
+		String region = document.getText(regionStart, oldContentEnd + delta - regionStart);
+
+		List<ElementOffsets> allOffsets = TextPageElementsScanner.scanRegion(region, 0, region.length());
+		if (allOffsets == null || hasEntityReferences(region)) {
+			return false;
+		}
+		List<IndexEntry> children = new ArrayList<>(allOffsets.size());
+		for (ElementOffsets offsets : allOffsets) {
+			Map<String, String> defaults = defaultAttributes.get(offsets.getName());
+			if (defaults == null) {
+				// the default attributes of a new element name are not known
+				return false;
+			}
+			Map<String, String> attributes = new LinkedHashMap<>(defaults);
+			attributes.putAll(
+					TextPageElementsScanner.parseAttributes(region, offsets.getStartOffset(), offsets.getStartTagEndOffset()));
+			children.add(new IndexEntry(offsets, regionStart, attributes, referenceClassifier.test(attributes::get)));
+		}
+		linkParents(children, parent);
+
+		// replace the old descendants
+		int firstAfter = parentIndex + 1;
+		while (firstAfter < entries.size() && entries.get(firstAfter).startOffset < oldContentEnd) {
+			firstAfter++;
+		}
+		List<IndexEntry> oldChildren = entries.subList(parentIndex + 1, firstAfter);
+		oldChildren.clear();
+		oldChildren.addAll(children);
+
+		// shift the elements after the change and the end of its ancestors
+		for (int i = parentIndex + 1 + children.size(); i < entries.size(); i++) {
+			IndexEntry entry = entries.get(i);
+			entry.startOffset += delta;
+			entry.startTagEndOffset += delta;
+			if (entry.contentEndOffset != -1) {
+				entry.contentEndOffset += delta;
+			}
+			entry.endOffset += delta;
+		}
+		for (IndexEntry ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+			ancestor.contentEndOffset += delta;
+			ancestor.endOffset += delta;
+		}
+		return true;
+	}
+
+	/**
+	 * Find the innermost element whose content contains the given range.
+	 *
+	 * @return the index of the element or -1 if not found.
+	 */
+	private int findEnclosingElement(int offset, int length) {
+		// the last element starting before the offset
+		int low = 0;
+		int high = entries.size() - 1;
+		int last = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (entries.get(middle).startOffset < offset) {
+				last = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+
+		// the enclosing element is the last one or one of its ancestors
+		IndexEntry entry = last != -1 ? entries.get(last) : null;
+		while (entry != null && !entry.containsInContent(offset, length)) {
+			entry = entry.parent;
+		}
+		if (entry == null) {
+			return -1;
+		}
+		// the index of an ancestor, the start offsets are unique
+		int found = last;
+		while (entries.get(found) != entry) {
+			found--;
+		}
+		return found;
+	}
+
+	/**
+	 * Link every element to its parent.
+	 *
+	 * @param elements The elements in document order
+	 * @param parent   The parent of the top level elements
+	 */
+	private static void linkParents(List<IndexEntry> elements, IndexEntry parent) {
+		List<IndexEntry> ancestors = new ArrayList<>();
+		for (IndexEntry element : elements) {
+			while (!ancestors.isEmpty() && ancestors.get(ancestors.size() - 1).endOffset <= element.startOffset) {
+				ancestors.remove(ancestors.size() - 1);
+			}
+			element.parent = ancestors.isEmpty() ? parent : ancestors.get(ancestors.size() - 1);
+			ancestors.add(element);
+		}
+	}
+
+	/**
+	 * Remember the attributes of an element which are not written in its start
+	 * tag, like the ones defaulted from the DTD.
+	 */
+	private static void learnDefaultAttributes(Map<String, Map<String, String>> defaults, String elementName,
+			Map<String, String> attributes, Map<String, String> writtenAttributes) {
+		Map<String, String> elementDefaults = defaults.computeIfAbsent(elementName, name -> new HashMap<>());
+		for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			if (!writtenAttributes.containsKey(attribute.getKey())) {
+				elementDefaults.putIfAbsent(attribute.getKey(), attribute.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the content refers entities, which may expand
+	 *         to elements. The predefined and character references are ignored.
+	 */
+	private static boolean hasEntityReferences(String content) {
+		int ampersand = content.indexOf('&');
+		while (ampersand != -1) {
+			if (!content.startsWith("&#", ampersand) && !content.startsWith("&lt;", ampersand)
+					&& !content.startsWith("&gt;", ampersand) && !content.startsWith("&amp;", ampersand)
+					&& !content.startsWith("&quot;", ampersand) && !content.startsWith("&apos;", ampersand)) {
+				return true;
+			}
+			ampersand = content.indexOf('&', ampersand + 1);
+		}
+		return false;
+	}
+
+	/**
+	 * Get the attributes of a DOM element.
+	 */
+	private static Map<String, String> getAttributes(Element element) {
+		Map<String, String> attributes = new LinkedHashMap<>();
+		NamedNodeMap attrs = element.getAttributes();
+		if (attrs != null) {
+			for (int i = 0; i < attrs.getLength(); i++) {
+				Node attr = attrs.item(i);
+				attributes.put(attr.getNodeName(), attr.getNodeValue());
+			}
+		}
+		return attributes;
+	}
+}
@@ -0,0 +1,100 @@
+package com.oxygenxml.ditareferences.workspace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReferencesExpansions;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that the searches of the collapsed nodes are cancelled.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class IncomingReferencesExpansionsTest extends TestCase {
+
+	/**
+	 * Collapsing a node sets the cancel flag of its running search and skips its
+	 * waiting search, the results of a search are shown once.
+	 */
+	@Test
+	public void test_CollapseCancelsTheSearch() throws Exception {
+		IncomingReferencesExpansions<String> expansions = new IncomingReferencesExpansions<>("test expand");
+		List<String> shown = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch stopped = new CountDownLatch(1);
+
+		expansions.expand("first.dita", cancelled -> {
+			started.countDown();
+			// the search checks the flag between its steps
+			while (!cancelled.getAsBoolean()) {
+				release.await(10, TimeUnit.MILLISECONDS);
+			}
+			stopped.countDown();
+			if (expansions.complete("first.dita", cancelled)) {
+				shown.add("first.dita");
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		expansions.expand("second.dita", cancelled -> shown.add("second.dita"));
+		assertEquals(2, expansions.getPendingCount());
+
+		assertTrue(expansions.cancel("second.dita"));
+		assertFalse(expansions.cancel("second.dita"));
+		assertTrue(expansions.cancel("first.dita"));
+		assertTrue(stopped.await(5, TimeUnit.SECONDS));
+
+		CountDownLatch done = new CountDownLatch(1);
+		expansions.expand("third.dita", cancelled -> {
+			if (expansions.complete("third.dita", cancelled)) {
+				shown.add("third.dita");
+			}
+			assertFalse(expansions.complete("third.dita", cancelled));
+			done.countDown();
+		});
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList("third.dita"), shown);
+		assertEquals(0, expansions.getPendingCount());
+	}
+
+	/**
+	 * A failed search is not pending, all the searches are cancelled when the
+	 * tree is replaced.
+	 */
+	@Test
+	public void test_CancelAll() throws Exception {
+		IncomingReferencesExpansions<String> expansions = new IncomingReferencesExpansions<>("test expand all");
+		CountDownLatch release = new CountDownLatch(1);
+		List<Boolean> cancelledSearches = Collections.synchronizedList(new ArrayList<>());
+
+		expansions.expand("failed.dita", cancelled -> {
+			throw new IllegalStateException("Search failed");
+		});
+		expansions.expand("first.dita", cancelled -> {
+			release.await(5, TimeUnit.SECONDS);
+			cancelledSearches.add(cancelled.getAsBoolean());
+		});
+		expansions.expand("second.dita", cancelled -> cancelledSearches.add(cancelled.getAsBoolean()));
+		expansions.cancelAll();
+		assertEquals(0, expansions.getPendingCount());
+		release.countDown();
+
+		CountDownLatch done = new CountDownLatch(1);
+		expansions.expand("third.dita", cancelled -> done.countDown());
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		// the first one may have started before the cancel, the second one was skipped
+		assertTrue(cancelledSearches.size() <= 1);
+		for (Boolean cancelled : cancelledSearches) {
+			assertTrue(cancelled);
+		}
+		assertEquals(1, expansions.getPendingCount());
+	}
+}
@@ -0,0 +1,577 @@
+package com.oxygenxml.ditareferences.workspace;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.incoming.ExtractedReference;
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReference;
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReferencesCache;
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReferencesGraph;
+import com.oxygenxml.ditareferences.tree.references.incoming.ProjectReferencesCrawler;
+import com.oxygenxml.ditareferences.tree.references.incoming.ReferencesExtractor;
+import com.oxygenxml.ditareferences.tree.references.incoming.ReferencesGraph;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferenceCategory;
+
+import junit.framework.TestCase;
+import ro.sync.document.DocumentPositionedInfo;
+import ro.sync.ecss.dita.reference.keyref.KeyInfo;
+import ro.sync.util.URLUtil;
+
+/**
+ * Test that the references graph is kept and patched with the saved files.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class IncomingReferencesGraphTest extends TestCase {
+
+	/* How many times the graph was built. */
+	int builtGraphs;
+
+	/* The temporary folder. */
+	private File folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		folder = Files.createTempDirectory("incoming").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(folder);
+		super.tearDown();
+	}
+
+	/**
+	 * Delete a file or a folder with its content.
+	 */
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * The outgoing references are read without the DTD, the key references are
+	 * resolved with the keys.
+	 */
+	@Test
+	public void test_ExtractReferences() throws IOException {
+		URL topic = writeFile("topic.dita", "<!DOCTYPE topic PUBLIC \"-//OASIS//DTD DITA Topic//EN\" \"missing/topic.dtd\">\n"
+				+ "<topic id=\"t\">\n"
+				+ "  <body>\n"
+				+ "    <p><xref href=\"target.dita#target\"/> <xref keyref=\"k/p\"/></p>\n"
+				+ "    <p conref=\"other.dita#o/p\"/><xref href=\"http://www.oxygenxml.com\" scope=\"external\"/>\n"
+				+ "  </body>\n"
+				+ "</topic>");
+		URL keyTarget = new File(folder, "key.dita").toURI().toURL();
+
+		List<ExtractedReference> references = new ReferencesExtractor(editorLocation -> {
+			LinkedHashMap<String, KeyInfo> keys = new LinkedHashMap<>();
+			keys.put("k", new KeyInfo("k", "key.dita", "", keyTarget, null, "", false));
+			return keys;
+		}).extract(topic);
+
+		assertEquals(3, references.size());
+		assertEquals("href", references.get(0).getAttributeName());
+		assertEquals(4, references.get(0).getLine());
+		assertEquals(ReferencesExtractor.getLocationKey(new File(folder, "target.dita").toURI().toString()),
+				references.get(0).getTargetLocation());
+		assertEquals("keyref", references.get(1).getAttributeName());
+		assertEquals(ReferencesExtractor.getLocationKey(keyTarget.toString()), references.get(1).getTargetLocation());
+		assertEquals("conref", references.get(2).getAttributeName());
+		assertEquals(5, references.get(2).getLine());
+		// the class attributes are defaulted without the DTD
+		assertEquals(ReferenceCategory.CROSS, references.get(0).getCategory());
+		assertEquals(ReferenceCategory.CONTENT, references.get(2).getCategory());
+		assertEquals("- map/topicref ", ReferenceCategory.getClassOrDefault("- map/topicref ", "chapter"));
+	}
+
+	/**
+	 * The different forms of the location of a file have the same key.
+	 */
+	@Test
+	public void test_LocationKeys() {
+		String key = ReferencesExtractor.getLocationKey("file:/folder/my%20topic.dita");
+		assertEquals("file:/folder/my%20topic.dita", key);
+		assertEquals(key, ReferencesExtractor.getLocationKey("file:///folder/my%20topic.dita#topic/p"));
+		assertEquals(key, ReferencesExtractor.getLocationKey("file:/folder/my topic.dita"));
+		assertEquals(key, ReferencesExtractor.getLocationKey("file:/folder/maps/../my%20topic.dita"));
+		assertEquals(key, ReferencesExtractor.getLocationKey("file:/folder/./my%20topic.dita"));
+		assertEquals("http://www.example.com/topic.dita",
+				ReferencesExtractor.getLocationKey("http://www.example.com/maps/../topic.dita#t"));
+	}
+
+	/**
+	 * The graph is built once for a root map, the references of the saved files
+	 * replace the ones from the graph.
+	 */
+	@Test
+	public void test_GraphIsPatchedWithSavedFiles() throws Exception {
+		URL target = writeFile("target.dita", "<topic id=\"target\"/>");
+		URL first = writeFile("first.dita", "<topic id=\"first\"/>");
+		URL second = new File(folder, "second.dita").toURI().toURL();
+
+		IncomingReferencesGraph graph = new IncomingReferencesGraph(new ReferencesExtractor(null)) {
+			@Override
+			protected Object createGraph() {
+				builtGraphs++;
+				return new Object();
+			}
+
+			@Override
+			protected List<DocumentPositionedInfo> searchGraph(URL searched, Object graph) {
+				// the graph built when both topics referenced the target
+				List<DocumentPositionedInfo> references = new ArrayList<>();
+				references.add(new DocumentPositionedInfo(DocumentPositionedInfo.SEVERITY_INFO, "", first.toString(), 1, 1));
+				references.add(new DocumentPositionedInfo(DocumentPositionedInfo.SEVERITY_INFO, "", second.toString(), 1, 1));
+				return references;
+			}
+		};
+		URL rootMap = URLUtil.convertToURL("file:/root.ditamap");
+		graph.rootMapSelected(rootMap);
+		assertEquals(2, graph.searchReferences(target).size());
+		graph.rootMapSelected(rootMap);
+		assertEquals(2, graph.searchReferences(target).size());
+		assertEquals(1, builtGraphs);
+
+		// the first topic no longer references the target, the second one references it twice
+		graph.fileSaved(first);
+		writeFile("second.dita", "<topic id=\"second\"><body><p><xref href=\"target.dita\"/>"
+				+ "<xref href=\"target.dita#target/p\"/><xref href=\"first.dita\"/></p></body></topic>");
+		graph.fileSaved(second);
+		List<DocumentPositionedInfo> references = graph.searchReferences(target);
+		assertEquals(2, references.size());
+		assertEquals(second.toString(), references.get(0).getSystemID());
+		assertEquals(second.toString(), references.get(1).getSystemID());
+		assertEquals("href=\"target.dita#target/p\"", references.get(1).getMessage());
+		assertEquals(1, builtGraphs);
+
+		graph.rootMapSelected(URLUtil.convertToURL("file:/other.ditamap"));
+		assertEquals(2, graph.searchReferences(target).size());
+		assertEquals(2, builtGraphs);
+	}
+
+	/**
+	 * The references found in a session are shown in the next one before the
+	 * graph is built, the changed files are read again.
+	 */
+	@Test
+	public void test_IndexIsSavedBetweenSessions() throws Exception {
+		URL target = writeFile("target.dita", "<topic id=\"target\"/>");
+		URL first = writeFile("first.dita", "<topic id=\"first\"><p><xref href=\"target.dita\"/></p></topic>");
+		URL second = writeFile("second.dita", "<topic id=\"second\"><p><xref href=\"target.dita\"/></p></topic>");
+		File indexFolder = new File(folder, "index");
+		URL rootMap = new File(folder, "root.ditamap").toURI().toURL();
+
+		IncomingReferencesGraph graph = createGraph(indexFolder, first, second);
+		graph.rootMapSelected(rootMap);
+		assertEquals(2, graph.searchReferences(target, true).size());
+		assertEquals(1, builtGraphs);
+		graph.saveIndex();
+
+		// the next session
+		graph = createGraph(indexFolder, first, second);
+		graph.rootMapSelected(rootMap);
+		List<DocumentPositionedInfo> references = graph.searchReferences(target, true);
+		assertFalse(graph.isBuilt());
+		assertEquals(1, builtGraphs);
+		assertEquals(2, references.size());
+		assertEquals(first.toString(), references.get(0).getSystemID());
+		assertEquals(1, references.get(0).getLine());
+
+		// the second topic no longer references the target
+		writeFile("second.dita", "<topic id=\"second\"/>");
+		new File(second.toURI()).setLastModified(System.currentTimeMillis() + 10000);
+		graph = createGraph(indexFolder, first, second);
+		graph.rootMapSelected(rootMap);
+		references = graph.searchReferences(target, true);
+		assertEquals(1, references.size());
+		assertEquals(first.toString(), references.get(0).getSystemID());
+		assertEquals(1, builtGraphs);
+		graph.saveIndex();
+
+		// a topic of the root map folder starts referencing the target
+		URL third = writeFile("third.dita", "<topic id=\"third\"><p><xref href=\"target.dita\"/></p></topic>");
+		new File(third.toURI()).setLastModified(System.currentTimeMillis() + 10000);
+		graph = createGraph(indexFolder, first, second);
+		graph.rootMapSelected(rootMap);
+		references = graph.searchReferences(target, true);
+		assertFalse(graph.isBuilt());
+		assertEquals(2, references.size());
+		assertEquals(third.toString(), references.get(1).getSystemID());
+		// the index file is not kept open, it is replaced
+		graph.saveIndex();
+		graph = createGraph(indexFolder, first, second);
+		graph.rootMapSelected(rootMap);
+		assertEquals(2, graph.searchReferences(target, true).size());
+		assertEquals(1, builtGraphs);
+
+		// a corrupted index is ignored
+		for (File indexFile : indexFolder.listFiles()) {
+			Files.write(indexFile.toPath(), new byte[] { 1, 2, 3 });
+		}
+		graph = createGraph(indexFolder, first, second);
+		graph.rootMapSelected(rootMap);
+		assertEquals(2, graph.searchReferences(target, true).size());
+		assertTrue(graph.isBuilt());
+		assertEquals(2, builtGraphs);
+
+		for (File indexFile : indexFolder.listFiles()) {
+			indexFile.delete();
+		}
+		indexFolder.delete();
+	}
+
+	/**
+	 * Saving the index and checking the graph do not wait for the graph being
+	 * built.
+	 */
+	@Test
+	public void test_GraphIsBuiltWithoutLock() throws Exception {
+		URL target = writeFile("target.dita", "<topic id=\"target\"/>");
+		CountDownLatch building = new CountDownLatch(1);
+		CountDownLatch built = new CountDownLatch(1);
+		IncomingReferencesGraph graph = new IncomingReferencesGraph(new ReferencesExtractor(null),
+				new File(folder, "index")) {
+			@Override
+			protected Object createGraph() throws ReflectiveOperationException {
+				building.countDown();
+				try {
+					built.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new Object();
+			}
+
+			@Override
+			protected List<DocumentPositionedInfo> searchGraph(URL searched, Object graph) {
+				return new ArrayList<>();
+			}
+		};
+		graph.rootMapSelected(new File(folder, "root.ditamap").toURI().toURL());
+		Thread search = new Thread(() -> {
+			try {
+				graph.searchReferences(target);
+			} catch (ReflectiveOperationException e) {
+				fail(e.getMessage());
+			}
+		});
+		search.start();
+		assertTrue(building.await(10, TimeUnit.SECONDS));
+
+		graph.saveIndex();
+		assertFalse(graph.isBuilt());
+		long modificationCount = graph.getModificationCount();
+		built.countDown();
+		search.join(10000);
+		assertTrue(graph.isBuilt());
+		assertTrue(graph.getModificationCount() != modificationCount);
+	}
+
+	/**
+	 * A file saved while the graph is built patches the graph once published,
+	 * the graph may have read the file before the save.
+	 */
+	@Test
+	public void test_FileSavedWhileGraphIsBuilt() throws Exception {
+		URL target = writeFile("target.dita", "<topic id=\"target\"/>");
+		URL first = writeFile("first.dita", "<topic id=\"first\"/>");
+		CountDownLatch building = new CountDownLatch(1);
+		CountDownLatch built = new CountDownLatch(1);
+		IncomingReferencesGraph graph = new IncomingReferencesGraph(new ReferencesExtractor(null)) {
+			@Override
+			protected Object createGraph() throws ReflectiveOperationException {
+				building.countDown();
+				try {
+					built.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new Object();
+			}
+
+			@Override
+			protected List<DocumentPositionedInfo> searchGraph(URL searched, Object graph) {
+				// the first topic was read before it referenced the target
+				return new ArrayList<>();
+			}
+		};
+		graph.rootMapSelected(new File(folder, "root.ditamap").toURI().toURL());
+		List<List<DocumentPositionedInfo>> found = new ArrayList<>();
+		Thread search = new Thread(() -> {
+			try {
+				found.add(graph.searchReferences(target));
+			} catch (ReflectiveOperationException e) {
+				fail(e.getMessage());
+			}
+		});
+		search.start();
+		assertTrue(building.await(10, TimeUnit.SECONDS));
+
+		writeFile("first.dita", "<topic id=\"first\"><body><p><xref href=\"target.dita\"/></p></body></topic>");
+		graph.fileSaved(first);
+		built.countDown();
+		search.join(10000);
+		assertTrue(graph.isBuilt());
+		assertEquals(1, found.get(0).size());
+		assertEquals(first.toString(), found.get(0).get(0).getSystemID());
+		assertEquals(1, graph.searchReferences(target).size());
+	}
+
+	/**
+	 * The graph of a local root map is built from the files of its folder and
+	 * from the files they reference, the same on any number of threads.
+	 */
+	@Test
+	public void test_CrawlProject() throws Exception {
+		URL rootMap = writeFile("maps/root.ditamap", "<map><topicref href=\"../topics/a.dita\"/>"
+				+ "<topicref href=\"sub/c.dita\"/></map>");
+		URL a = writeFile("topics/a.dita", "<topic id=\"a\"><body><p><xref href=\"b.dita#b\"/></p></body></topic>");
+		URL b = writeFile("topics/b.dita", "<topic id=\"b\"/>");
+		URL c = writeFile("maps/sub/c.dita", "<topic id=\"c\"><body>\n<p conref=\"../../topics/a.dita#a/p\"/></body></topic>");
+		writeFile("maps/.hidden/h.dita", "<topic id=\"h\"><body><p><xref href=\"../../topics/a.dita\"/></p></body></topic>");
+
+		IncomingReferencesGraph graph = new IncomingReferencesGraph(new ReferencesExtractor(null));
+		graph.rootMapSelected(rootMap);
+		List<DocumentPositionedInfo> references = graph.searchReferences(a);
+		assertEquals(2, references.size());
+		assertEquals(rootMap.toString(), references.get(0).getSystemID());
+		assertEquals(c.toString(), references.get(1).getSystemID());
+		assertEquals(2, references.get(1).getLine());
+		assertEquals("conref=\"../../topics/a.dita#a/p\"", references.get(1).getMessage());
+
+		// the topic outside the root map folder was read
+		references = graph.searchReferences(b);
+		assertEquals(1, references.size());
+		assertEquals(a.toString(), references.get(0).getSystemID());
+		assertEquals("href=\"b.dita#b\"", references.get(0).getMessage());
+
+		ReferencesGraph sequential = new ProjectReferencesCrawler(new ReferencesExtractor(null), 1)
+				.crawl(new File(folder, "maps").toPath());
+		ReferencesGraph parallel = new ProjectReferencesCrawler(new ReferencesExtractor(null), 4)
+				.crawl(new File(folder, "maps").toPath());
+		assertEquals(4, sequential.getFilesCount());
+		assertEquals(4, parallel.getFilesCount());
+		assertEquals(ReferenceCategory.CONTENT, sequential.getReferences(a).get(0).getCategory());
+		assertEquals(ReferenceCategory.CONTENT, sequential.getReferences(a).get(1).getCategory());
+		assertEquals(ReferenceCategory.CROSS, sequential.getReferences(b).get(0).getCategory());
+		for (URL target : new URL[] { a, b, c }) {
+			assertEquals(sequential.getReferences(target).toString(), parallel.getReferences(target).toString());
+		}
+	}
+
+	/**
+	 * The crawl reads the files referenced from the root map, with the keys
+	 * given for the whole crawl; the other files of the folder and the XML files
+	 * which are not DITA are not read.
+	 */
+	@Test
+	public void test_CrawlStartsFromTheRootMap() throws Exception {
+		StringBuilder map = new StringBuilder("<map><topicref keyref=\"k\"/><topicref href=\"sub.ditamap\" format=\"ditamap\"/>");
+		for (int i = 0; i < 20; i++) {
+			map.append("<topicref href=\"topic").append(i).append(".dita\"/>");
+			writeFile("topic" + i + ".dita", "<topic id=\"t\"><body><p><xref keyref=\"k\"/></p></body></topic>");
+		}
+		URL rootMap = writeFile("root.ditamap", map.append("</map>").toString());
+		URL target = writeFile("target.dita", "<topic id=\"target\"/>");
+		writeFile("sub.ditamap", "<map><topicref href=\"sub.xml\"/><topicref href=\"notes.xml\"/></map>");
+		writeFile("sub.xml", "<!DOCTYPE learningContent PUBLIC \"-//OASIS//DTD DITA Learning Content//EN\""
+				+ " \"learningContent.dtd\"><learningContent id=\"sub\"><learningContentbody><p>"
+				+ "<xref href=\"target.dita\"/></p></learningContentbody></learningContent>");
+		writeFile("notes.xml", "<notes><note href=\"target.dita\"/></notes>");
+		writeFile("unused.dita", "<topic id=\"t\"><body><p><xref href=\"target.dita\"/></p></body></topic>");
+
+		LinkedHashMap<String, KeyInfo> keys = new LinkedHashMap<>();
+		keys.put("k", new KeyInfo("k", "target.dita", "", target, null, "", false));
+		ReferencesExtractor extractor = new ReferencesExtractor(editorLocation -> {
+			fail("The keys are given to the crawl");
+			return null;
+		});
+		ReferencesGraph graph = new ProjectReferencesCrawler(extractor, 4).crawl(folder.toPath(), rootMap, keys, null,
+				null);
+		// the maps, the topics and the DITA file with the xml extension
+		assertEquals(24, graph.getFilesCount());
+		assertEquals(22, graph.getReferences(target).size());
+	}
+
+	/**
+	 * Without a root map the files of the folder are read, except the build
+	 * output, the build tool files and the XML files which are not DITA.
+	 */
+	@Test
+	public void test_CrawlFolderSkipsExcludedFiles() throws Exception {
+		URL target = writeFile("target.dita", "<topic id=\"target\"/>");
+		writeFile("topic.xml", "<topic id=\"t\" xmlns:ditaarch=\"http://dita.oasis-open.org/architecture/2005/\""
+				+ " ditaarch:DITAArchVersion=\"1.3\"><body><p><xref href=\"target.dita\"/></p></body></topic>");
+		writeFile("out/topic.dita", "<topic id=\"t\"><body><p><xref href=\"../target.dita\"/></p></body></topic>");
+		writeFile("temp/topic.dita", "<topic id=\"t\"><body><p><xref href=\"../target.dita\"/></p></body></topic>");
+		writeFile("pom.xml", "<project><url href=\"target.dita\"/></project>");
+		writeFile("settings.xml", "<settings><link href=\"target.dita\"/></settings>");
+
+		ReferencesGraph graph = new ProjectReferencesCrawler(new ReferencesExtractor(null), 4).crawl(folder.toPath());
+		assertEquals(2, graph.getFilesCount());
+		assertEquals(1, graph.getReferences(target).size());
+	}
+
+	/**
+	 * The keys are resolved on the AWT thread.
+	 */
+	@Test
+	public void test_KeysAreResolvedOnTheUIThread() throws Exception {
+		URL rootMap = writeFile("root.ditamap", "<map/>");
+		List<Boolean> onUIThread = new ArrayList<>();
+		ReferencesExtractor extractor = new ReferencesExtractor(editorLocation -> {
+			onUIThread.add(SwingUtilities.isEventDispatchThread());
+			return new LinkedHashMap<>();
+		});
+		assertNotNull(extractor.resolveKeys(rootMap));
+		assertEquals(Collections.singletonList(true), onUIThread);
+	}
+
+	/**
+	 * The crawl stops between files when it is cancelled.
+	 */
+	@Test
+	public void test_CrawlIsCancelled() throws Exception {
+		for (int i = 0; i < 40; i++) {
+			writeFile("topic" + i + ".dita", "<topic id=\"t\"/>");
+		}
+		int[] readFiles = new int[1];
+		try {
+			new ProjectReferencesCrawler(new ReferencesExtractor(null), 1).crawl(folder.toPath(), null, null, references -> {
+				readFiles[0]++;
+			}, () -> readFiles[0] >= 5);
+			fail("The crawl was not cancelled");
+		} catch (CancellationException e) {
+			assertEquals(5, readFiles[0]);
+		}
+	}
+
+	/**
+	 * While the graph is built, the references to the searched document are sent
+	 * as the files are read.
+	 */
+	@Test
+	public void test_StreamReferencesWhileCrawling() throws Exception {
+		StringBuilder map = new StringBuilder("<map><topicref href=\"note.dita\"/>");
+		URL note = writeFile("note.dita", "<topic id=\"note\"><body><note id=\"n\">Warning</note></body></topic>");
+		for (int i = 0; i < 40; i++) {
+			map.append("<topicref href=\"topic").append(i).append(".dita\"/>");
+			writeFile("topic" + i + ".dita", "<topic id=\"t\"><body><note conref=\"note.dita#note/n\"/>"
+					+ "<p><xref href=\"root.ditamap\"/></p></body></topic>");
+		}
+		URL rootMap = writeFile("root.ditamap", map.append("</map>").toString());
+
+		IncomingReferencesGraph graph = new IncomingReferencesGraph(new ReferencesExtractor(null));
+		graph.rootMapSelected(rootMap);
+		List<DocumentPositionedInfo> streamed = Collections.synchronizedList(new ArrayList<>());
+		List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+		List<DocumentPositionedInfo> references = graph.searchReferences(note, false, batch -> {
+			batchSizes.add(batch.size());
+			streamed.addAll(batch);
+		});
+		assertEquals(41, references.size());
+		assertEquals(41, streamed.size());
+		assertEquals(41, batchSizes.size());
+		for (DocumentPositionedInfo reference : references) {
+			assertTrue(streamed.stream().anyMatch(dpi -> dpi.getSystemID().equals(reference.getSystemID())
+					&& dpi.getMessage().equals(reference.getMessage())));
+		}
+
+		// the graph is built, nothing is sent
+		streamed.clear();
+		assertEquals(40, graph.searchReferences(rootMap, false, streamed::addAll).size());
+		assertTrue(streamed.isEmpty());
+	}
+
+	/**
+	 * The references found are reused until the graph changes, the least
+	 * recently searched documents are dropped.
+	 */
+	@Test
+	public void test_SearchResultsCache() throws Exception {
+		URL target = writeFile("target.dita", "<topic id=\"target\"/>");
+		URL first = writeFile("first.dita", "<topic id=\"first\"/>");
+		URL second = writeFile("second.dita", "<topic id=\"second\"/>");
+		IncomingReferencesGraph graph = createGraph(null, first);
+		graph.rootMapSelected(URLUtil.convertToURL("file:/root.ditamap"));
+		graph.searchReferences(target);
+		long modificationCount = graph.getModificationCount();
+
+		IncomingReferencesCache cache = new IncomingReferencesCache(2);
+		List<IncomingReference> references = Collections.singletonList(new IncomingReference(
+				new DocumentPositionedInfo(DocumentPositionedInfo.SEVERITY_INFO, "", first.toString(), 1, 1), true));
+		cache.put(target, modificationCount, references);
+		assertSame(references, cache.get(target, graph.getModificationCount()));
+		assertEquals("first.dita [1:1]", cache.get(target, modificationCount).get(0).getRenderText());
+
+		// the least recently used document is dropped
+		cache.put(first, modificationCount, Collections.emptyList());
+		cache.get(target, modificationCount);
+		cache.put(second, modificationCount, Collections.emptyList());
+		assertEquals(2, cache.size());
+		assertNull(cache.get(first, modificationCount));
+		assertNotNull(cache.get(target, modificationCount));
+
+		// a saved file changes the graph
+		graph.fileSaved(second);
+		assertTrue(graph.getModificationCount() != modificationCount);
+		assertNull(cache.get(target, graph.getModificationCount()));
+		modificationCount = graph.getModificationCount();
+		graph.invalidate();
+		assertTrue(graph.getModificationCount() != modificationCount);
+	}
+
+	/**
+	 * Create a graph in which the given files reference the target.
+	 */
+	private IncomingReferencesGraph createGraph(File indexFolder, URL... referencingFiles) {
+		return new IncomingReferencesGraph(new ReferencesExtractor(null), indexFolder) {
+			@Override
+			protected Object createGraph() {
+				builtGraphs++;
+				return new Object();
+			}
+
+			@Override
+			protected List<DocumentPositionedInfo> searchGraph(URL searched, Object graph) {
+				List<DocumentPositionedInfo> references = new ArrayList<>();
+				for (URL file : referencingFiles) {
+					references.add(new DocumentPositionedInfo(DocumentPositionedInfo.SEVERITY_INFO, "", file.toString(), 1, 1));
+				}
+				return references;
+			}
+		};
+	}
+
+	/**
+	 * Write a file in the temporary folder.
+	 */
+	private URL writeFile(String name, String content) throws IOException {
+		File file = new File(folder, name);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file.toURI().toURL();
+	}
+}
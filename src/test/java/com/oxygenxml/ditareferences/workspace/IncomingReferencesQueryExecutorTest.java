@@ -0,0 +1,114 @@
+package com.oxygenxml.ditareferences.workspace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReferencesQueryExecutor;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that only the latest requested search of incoming references is shown.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class IncomingReferencesQueryExecutorTest extends TestCase {
+
+	/**
+	 * A new search cancels the waiting and the running ones, the searches for the
+	 * same document are coalesced.
+	 */
+	@Test
+	public void test_LatestSearchWins() throws Exception {
+		IncomingReferencesQueryExecutor executor = new IncomingReferencesQueryExecutor("test search");
+		List<String> shown = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		executor.submit("first.dita", cancelled -> {
+			started.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			if (!cancelled.getAsBoolean()) {
+				shown.add("first.dita");
+			}
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.submit("second.dita", cancelled -> shown.add("second.dita"));
+		executor.submit("third.dita", cancelled -> shown.add("third.dita"));
+		executor.submit("third.dita", cancelled -> shown.add("third.dita again"));
+		assertEquals(2, executor.getQueueDepth());
+		release.countDown();
+
+		awaitCompleted(executor, 1);
+		assertEquals(Collections.singletonList("third.dita"), shown);
+		assertEquals(0, executor.getQueueDepth());
+		assertEquals(4, executor.getSubmittedCount());
+		assertEquals(1, executor.getCoalescedCount());
+		assertEquals(2, executor.getCancelledCount());
+		assertEquals(1, executor.getCompletedCount());
+		assertTrue(executor.getLastTimeToResult() >= 0);
+	}
+
+	/**
+	 * The tasks do not wait for the running search, the searches wait for the
+	 * tasks executed before them.
+	 */
+	@Test
+	public void test_TasksRunBetweenSearches() throws Exception {
+		IncomingReferencesQueryExecutor executor = new IncomingReferencesQueryExecutor("test tasks");
+		List<String> done = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		executor.submit("first.dita", cancelled -> {
+			started.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			done.add("first.dita");
+		});
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		CountDownLatch saved = new CountDownLatch(1);
+		executor.execute(() -> {
+			done.add("saved");
+			saved.countDown();
+		});
+		// the file is read while the search runs
+		assertTrue(saved.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		awaitCompleted(executor, 1);
+
+		CountDownLatch releaseTask = new CountDownLatch(1);
+		executor.execute(() -> {
+			try {
+				releaseTask.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			done.add("root map selected");
+		});
+		executor.submit("second.dita", cancelled -> done.add("second.dita"));
+		Thread.sleep(100);
+		assertEquals(2, done.size());
+		releaseTask.countDown();
+		awaitCompleted(executor, 2);
+		assertEquals("[saved, first.dita, root map selected, second.dita]", done.toString());
+	}
+
+	/**
+	 * Wait for the given number of completed searches.
+	 */
+	private static void awaitCompleted(IncomingReferencesQueryExecutor executor, long completedCount)
+			throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while ((executor.getCompletedCount() < completedCount || executor.getQueueDepth() > 0)
+				&& System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertEquals(completedCount, executor.getCompletedCount());
+	}
+}
@@ -0,0 +1,78 @@
+package com.oxygenxml.ditareferences.workspace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReference;
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReferencesGroup;
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReferencesTreeModel;
+
+import junit.framework.TestCase;
+import ro.sync.document.DocumentPositionedInfo;
+
+/**
+ * Test that the incoming references are grouped by file and added in pages.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class IncomingReferencesTreeModelTest extends TestCase {
+
+	/**
+	 * A target referenced 14000 times from a few files and once from many files
+	 * gets a tree with a page of nodes.
+	 */
+	@Test
+	public void test_GroupedAndPagedReferences() {
+		List<IncomingReference> references = new ArrayList<>();
+		for (int i = 0; i < 14000; i++) {
+			references.add(reference("file:/notes/warnings.dita", i + 1));
+		}
+		references.add(reference("file:/topics/single.dita", 3));
+		for (int i = 0; i < 300; i++) {
+			references.add(reference("file:/topics/t" + i + ".dita", 1));
+		}
+
+		DefaultMutableTreeNode root = new DefaultMutableTreeNode("root");
+		IncomingReferencesTreeModel model = new IncomingReferencesTreeModel(root,
+				new DITAReferencesTranslatorForTests());
+		model.addReferences(root, references);
+
+		// 302 files, a page and the node for the others
+		assertEquals(IncomingReferencesTreeModel.PAGE_SIZE + 1, root.getChildCount());
+		DefaultMutableTreeNode groupNode = (DefaultMutableTreeNode) root.getChildAt(0);
+		IncomingReferencesGroup group = (IncomingReferencesGroup) groupNode.getUserObject();
+		assertEquals("warnings.dita (14000)", group.getRenderText());
+		assertEquals(0, groupNode.getChildCount());
+		assertFalse(model.isLeaf(groupNode));
+		assertTrue(((DefaultMutableTreeNode) root.getChildAt(1)).getUserObject() instanceof IncomingReference);
+
+		IncomingReferencesTreeModel.MoreNode moreNode = (IncomingReferencesTreeModel.MoreNode) root.getLastChild();
+		assertEquals(302 - IncomingReferencesTreeModel.PAGE_SIZE, moreNode.getRemainingCount());
+		assertEquals("Show_more_references (102)", moreNode.getUserObject());
+		assertTrue(model.isLeaf(moreNode));
+		model.loadMore(moreNode);
+		assertEquals(302, root.getChildCount());
+		assertNull(moreNode.getParent());
+
+		// the references of the group are added when it is expanded, in pages
+		model.loadGroup(groupNode);
+		assertEquals(IncomingReferencesTreeModel.PAGE_SIZE + 1, groupNode.getChildCount());
+		assertEquals(1, ((IncomingReference) ((DefaultMutableTreeNode) groupNode.getChildAt(0)).getUserObject())
+				.getDPI().getLine());
+		model.loadMore((IncomingReferencesTreeModel.MoreNode) groupNode.getLastChild());
+		assertEquals(2 * IncomingReferencesTreeModel.PAGE_SIZE + 1, groupNode.getChildCount());
+	}
+
+	/**
+	 * Create a reference from a file.
+	 */
+	private static IncomingReference reference(String systemId, int line) {
+		return new IncomingReference(
+				new DocumentPositionedInfo(DocumentPositionedInfo.SEVERITY_INFO, "conref", systemId, line, 1), true);
+	}
+}
@@ -0,0 +1,151 @@
+package com.oxygenxml.ditareferences.workspace;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oxygenxml.ditareferences.workspace.rellinks.RelLink;
+import com.oxygenxml.ditareferences.workspace.rellinks.RelLinkImpl;
+import com.oxygenxml.ditareferences.workspace.rellinks.RelLinksAccessor;
+
+import ro.sync.ecss.dita.DITAAccessForTests;
+
+/**
+ * Micro benchmark of reading the relationship table links through the cached
+ * method handles, compared with the reflective lookups made for every link.
+ * The links of DITAAccessForTests are copied in objects which, like the links
+ * of the application, are only known by their getters. Run it with the main
+ * method, it is not a unit test.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class RelLinksAccessorBenchmark {
+
+	/* The number of links in the relationship tables. */
+	private static final int LINKS = 5000;
+
+	/* The measured iterations. */
+	private static final int ITERATIONS = 200;
+
+	/**
+	 * A relationship table link of the application.
+	 */
+	public static class ApplicationRelLink {
+		private final RelLink link;
+
+		ApplicationRelLink(RelLink link) {
+			this.link = link;
+		}
+
+		public URL getSourceURL() {
+			return link.getSourceURL();
+		}
+
+		public URL getTargetURL() {
+			return link.getTargetURL();
+		}
+
+		public String getTargetFormat() {
+			return link.getTargetFormat();
+		}
+
+		public String getTargetScope() {
+			return link.getTargetScope();
+		}
+
+		public URL getTargetDefinitionLocation() {
+			return link.getTargetDefinitionLocation();
+		}
+	}
+
+	private RelLinksAccessorBenchmark() {
+		// private constructor
+	}
+
+	/**
+	 * Run the benchmark.
+	 *
+	 * @param args Not used
+	 * @throws Exception if the links cannot be read.
+	 */
+	public static void main(String[] args) throws Exception {
+		URL topicURL = new File("test/source1.dita").toURI().toURL();
+		List<Object> allLinks = createLinks();
+
+		int found = 0;
+		// warm-up
+		for (int i = 0; i < ITERATIONS; i++) {
+			found += readWithReflection(topicURL, allLinks).size();
+			found += RelLinksAccessor.getRelLinksFromSource(topicURL, allLinks).size();
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			found += readWithReflection(topicURL, allLinks).size();
+		}
+		long reflection = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			found += RelLinksAccessor.getRelLinksFromSource(topicURL, allLinks).size();
+		}
+		long handles = System.nanoTime() - start;
+
+		System.out.println("Links found: " + found);
+		System.out.println("Reflection per refresh:     " + reflection / ITERATIONS / 1000 + " us");
+		System.out.println("Method handles per refresh: " + handles / ITERATIONS / 1000 + " us");
+	}
+
+	/**
+	 * Copy the links of DITAAccessForTests, with other sources, until there are
+	 * {@link #LINKS} links.
+	 */
+	private static List<Object> createLinks() throws MalformedURLException {
+		List<RelLink> testLinks = DITAAccessForTests.getRelatedLinksFromReltable();
+		List<Object> allLinks = new ArrayList<>(LINKS);
+		for (int i = 0; i < LINKS; i++) {
+			RelLink link = testLinks.get(i % testLinks.size());
+			URL sourceURL = i < testLinks.size() ? link.getSourceURL()
+					: new File("test/other" + i + ".dita").toURI().toURL();
+			allLinks.add(new ApplicationRelLink(new RelLinkImpl(sourceURL, link.getTargetURL(), link.getTargetFormat(),
+					link.getTargetScope(), link.getTargetDefinitionLocation())));
+		}
+		return allLinks;
+	}
+
+	/**
+	 * Read the links with reflective lookups for every link, like
+	 * RelLinksAccessor did before using method handles.
+	 */
+	private static List<RelLink> readWithReflection(URL topicURL, List<?> allLinks) throws Exception {
+		List<RelLink> links = new ArrayList<>();
+		int size = allLinks.size();
+		for (int i = 0; i < size; i++) {
+			Object relLink = allLinks.get(i);
+			Class<? extends Object> relLinkClass = relLink.getClass();
+			Method getSource = relLinkClass.getMethod("getSourceURL");
+			URL sourceURL = (URL) getSource.invoke(relLink);
+
+			String trimmedTopicURL = getURLWithoutAnchor(topicURL.toString());
+			String trimmedSourceURL = getURLWithoutAnchor(sourceURL.toString());
+
+			if (trimmedTopicURL.equals(trimmedSourceURL)) {
+				URL targetURL = (URL) relLinkClass.getMethod("getTargetURL").invoke(relLink);
+				String targetFormat = (String) relLinkClass.getMethod("getTargetFormat").invoke(relLink);
+				String targetScope = (String) relLinkClass.getMethod("getTargetScope").invoke(relLink);
+				URL targetDefLocationURL = (URL) relLinkClass.getMethod("getTargetDefinitionLocation").invoke(relLink);
+				links.add(new RelLinkImpl(sourceURL, targetURL, targetFormat, targetScope, targetDefLocationURL));
+			}
+		}
+		return links;
+	}
+
+	private static String getURLWithoutAnchor(String topicURLString) {
+		int indexOfAnchor = topicURLString.indexOf('#');
+		return indexOfAnchor != -1 ? topicURLString.substring(0, indexOfAnchor) : topicURLString;
+	}
+}
@@ -2,9 +2,13 @@ package com.oxygenxml.ditareferences.workspace;
 
 import java.awt.Rectangle;
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JLabel;
 import javax.swing.tree.TreePath;
@@ -13,10 +17,13 @@ import org.apache.log4j.Logger;
 import org.junit.Test;
 
 import com.oxygenxml.ditareferences.tree.references.outgoing.OutgoingReferencesTree;
+import com.oxygenxml.ditareferences.workspace.rellinks.RelLink;
 import com.oxygenxml.ditareferences.workspace.rellinks.RelLinksAccessor;
+import com.oxygenxml.ditareferences.workspace.rellinks.RelTableIndex;
 import com.oxygenxml.ditareferences.workspace.text.WSXMLTextEditorPageForTests;
 
 import junit.framework.TestCase;
+import ro.sync.ecss.dita.DITAAccessForTests;
 import ro.sync.exml.workspace.api.editor.WSEditor;
 import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
 import ro.sync.exml.workspace.api.editor.page.text.xml.WSXMLTextNodeRange;
@@ -162,4 +169,114 @@ public class RelLinksTest extends TestCase{
 
 	}
 
+	/**
+	 * The links of the application, known only by their getters, are read
+	 * through the bridge.
+	 */
+	@Test
+	public void test_ReadApplicationRelLinks() throws MalformedURLException {
+		List<Object> allLinks = new ArrayList<>();
+		for (RelLink link : DITAAccessForTests.getRelatedLinksFromReltable()) {
+			allLinks.add(new RelLinksAccessorBenchmark.ApplicationRelLink(link));
+		}
+		allLinks.add(new Object());
+
+		List<RelLink> links = RelLinksAccessor
+				.getRelLinksFromSource(new URL(new File("test/source1.dita").toURI().toURL() + "#topic"), allLinks);
+		assertEquals(2, links.size());
+		assertTrue(links.get(0).getTargetURL().toString().endsWith("test/target1.dita"));
+		assertTrue(links.get(0).getTargetDefinitionLocation().toString().endsWith("test/defLocation1.dita"));
+		assertEquals("http://www.google.com", links.get(1).getTargetURL().toString());
+		assertEquals("html", links.get(1).getTargetFormat());
+		assertEquals("external", links.get(1).getTargetScope());
+	}
+
+	/**
+	 * The relationship tables are indexed once, until a DITA Map changes.
+	 */
+	@Test
+	public void test_RelTableIndex() throws MalformedURLException {
+		RelLinksAccessor.setForTests(true);
+		URL source1 = new File("test/source1.dita").toURI().toURL();
+		URL source2 = new File("test/source2.dita").toURI().toURL();
+
+		RelTableIndex index = RelLinksAccessor.getRelTableIndex(source1);
+		assertEquals(2, index.getSourcesCount());
+		assertEquals(2, RelLinksAccessor.getRelationshipTableTargetURLs(new URL(source1 + "#topic")).size());
+		assertEquals(1, RelLinksAccessor.getRelationshipTableTargetURLs(source2).size());
+		assertEquals(0, RelLinksAccessor.getRelationshipTableTargetURLs(new File("test/other.dita").toURI().toURL())
+				.size());
+		assertSame(index, RelLinksAccessor.getRelTableIndex(source2));
+
+		// an edited topic does not change the relationship tables
+		RelLinksAccessor.documentChanged(source1);
+		assertSame(index, RelLinksAccessor.getRelTableIndex(source1));
+
+		RelLinksAccessor.documentChanged(URLUtil.convertToURL("file:/root.ditamap"));
+		RelTableIndex newIndex = RelLinksAccessor.getRelTableIndex(source1);
+		assertNotSame(index, newIndex);
+
+		RelLinksAccessor.setRootMap(URLUtil.convertToURL("file:/other.ditamap"));
+		assertNotSame(newIndex, RelLinksAccessor.getRelTableIndex(source1));
+		RelLinksAccessor.setRootMap(null);
+	}
+
+	/**
+	 * Only the maps of the current root map change its relationship tables, the
+	 * submaps are read again when a map is saved.
+	 */
+	@Test
+	public void test_MapHierarchy() throws Exception {
+		File folder = Files.createTempDirectory("maps").toFile();
+		try {
+			File rootMap = writeFile(folder, "root.ditamap",
+					"<map><mapref href=\"sub/sub.ditamap\" format=\"ditamap\"/><topicref href=\"topic.dita\"/></map>");
+			File subMap = writeFile(folder, "sub/sub.ditamap", "<map><topicref href=\"../topic.dita\"/></map>");
+			File otherMap = writeFile(folder, "other.ditamap", "<map/>");
+			URL topic = new File(folder, "topic.dita").toURI().toURL();
+
+			List<Runnable> pendingReads = new ArrayList<>();
+			MapHierarchy hierarchy = new MapHierarchy(pendingReads::add);
+			hierarchy.setRootMap(rootMap.toURI().toURL());
+			// every map is in the hierarchy while it is read
+			assertTrue(hierarchy.contains(otherMap.toURI().toURL()));
+			assertFalse(hierarchy.contains(topic));
+
+			pendingReads.remove(0).run();
+			assertTrue(hierarchy.contains(rootMap.toURI().toURL()));
+			assertTrue(hierarchy.contains(subMap.toURI().toURL()));
+			assertFalse(hierarchy.contains(otherMap.toURI().toURL()));
+			assertFalse(hierarchy.contains(topic));
+
+			// a saved map outside the hierarchy does not read the maps again
+			hierarchy.documentSaved(otherMap.toURI().toURL());
+			assertTrue(pendingReads.isEmpty());
+
+			writeFile(folder, "sub/sub.ditamap", "<map><mapref href=\"../other.ditamap\"/></map>");
+			hierarchy.documentSaved(subMap.toURI().toURL());
+			assertEquals(1, pendingReads.size());
+			pendingReads.remove(0).run();
+			assertTrue(hierarchy.contains(otherMap.toURI().toURL()));
+
+			// the same root map is not read again
+			hierarchy.setRootMap(rootMap.toURI().toURL());
+			assertTrue(pendingReads.isEmpty());
+		} finally {
+			for (File file : new File[] { new File(folder, "sub/sub.ditamap"), new File(folder, "sub"),
+					new File(folder, "root.ditamap"), new File(folder, "other.ditamap"), folder }) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Write a file in a folder.
+	 */
+	private static File writeFile(File folder, String path, String content) throws IOException {
+		File file = new File(folder, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
 }
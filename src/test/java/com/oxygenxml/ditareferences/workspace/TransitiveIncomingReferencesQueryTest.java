@@ -0,0 +1,101 @@
+package com.oxygenxml.ditareferences.workspace;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.incoming.IncomingReference;
+import com.oxygenxml.ditareferences.tree.references.incoming.TransitiveIncomingReferencesQuery;
+
+import junit.framework.TestCase;
+import ro.sync.document.DocumentPositionedInfo;
+import ro.sync.util.URLUtil;
+
+/**
+ * Test the search of the documents that reference a document directly or
+ * through other documents.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class TransitiveIncomingReferencesQueryTest extends TestCase {
+
+	/**
+	 * Every document is searched once, the cycles end the search and the depth
+	 * is limited.
+	 */
+	@Test
+	public void test_TransitiveReferences() throws Exception {
+		// note <- a, b; a <- c; b <- c, map; c <- a (cycle); map <- root
+		Map<String, List<String>> referrers = new HashMap<>();
+		referrers.put("file:/note.dita", Arrays.asList("file:/a.dita", "file:/b.dita"));
+		referrers.put("file:/a.dita", Arrays.asList("file:/c.dita"));
+		referrers.put("file:/b.dita", Arrays.asList("file:/c.dita", "file:/map.ditamap"));
+		referrers.put("file:/c.dita", Arrays.asList("file:/a.dita"));
+		referrers.put("file:/map.ditamap", Arrays.asList("file:/root.ditamap"));
+		Map<String, AtomicInteger> searches = Collections.synchronizedMap(new HashMap<>());
+
+		TransitiveIncomingReferencesQuery.Search search = target -> {
+			searches.computeIfAbsent(target.toString(), key -> new AtomicInteger()).incrementAndGet();
+			List<IncomingReference> references = new ArrayList<>();
+			for (String referrer : referrers.getOrDefault(target.toString(), Collections.emptyList())) {
+				references.add(new IncomingReference(
+						new DocumentPositionedInfo(DocumentPositionedInfo.SEVERITY_INFO, "conref", referrer, 1, 1)));
+			}
+			return references;
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			URL note = URLUtil.convertToURL("file:/note.dita");
+			AtomicInteger progress = new AtomicInteger();
+			TransitiveIncomingReferencesQuery.Result result = new TransitiveIncomingReferencesQuery(search, executor, 10)
+					.run(note, (searched, found) -> progress.incrementAndGet(), () -> false);
+			assertTrue(result.isComplete());
+			assertEquals(5, result.getDocumentsCount());
+			assertEquals(1, result.getDepth("file:/a.dita"));
+			assertEquals(1, result.getDepth("file:/b.dita"));
+			assertEquals(2, result.getDepth("file:/c.dita"));
+			assertEquals(2, result.getDepth("file:/map.ditamap"));
+			assertEquals(3, result.getDepth("file:/root.ditamap"));
+			assertEquals(0, result.getDepth("file:/note.dita"));
+			// the direct references first
+			assertEquals("file:/a.dita", result.getReferences().get(0).getSystemId());
+			assertEquals(7, result.getReferences().size());
+			// the indirect references are labeled with the document they reference
+			assertNull(result.getReferences().get(0).getVia());
+			assertEquals("file:/c.dita", result.getReferences().get(2).getSystemId());
+			assertEquals("a.dita", result.getReferences().get(2).getVia());
+			assertEquals("file:/root.ditamap", result.getReferences().get(6).getSystemId());
+			assertEquals("map.ditamap", result.getReferences().get(6).getVia());
+			assertEquals(6, searches.size());
+			for (AtomicInteger count : searches.values()) {
+				assertEquals(1, count.get());
+			}
+			assertEquals(6, progress.get());
+
+			// limited depth
+			result = new TransitiveIncomingReferencesQuery(search, executor, 2).run(note, null, () -> false);
+			assertFalse(result.isComplete());
+			assertEquals(4, result.getDocumentsCount());
+			assertEquals(0, result.getDepth("file:/root.ditamap"));
+
+			// cancelled while the first level is searched
+			AtomicInteger checks = new AtomicInteger();
+			result = new TransitiveIncomingReferencesQuery(search, executor, 10).run(note, null,
+					() -> checks.incrementAndGet() > 1);
+			assertFalse(result.isComplete());
+			assertEquals(0, result.getDocumentsCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
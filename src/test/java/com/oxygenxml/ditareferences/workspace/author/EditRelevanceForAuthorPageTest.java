@@ -0,0 +1,60 @@
+package com.oxygenxml.ditareferences.workspace.author;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.workspace.authorpage.AuthorEditRelevance;
+
+import junit.framework.TestCase;
+import ro.sync.ecss.extensions.api.node.AuthorNode;
+
+/**
+ * Test which AuthorPage changes can change the references.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class EditRelevanceForAuthorPageTest extends TestCase {
+
+	/**
+	 * Only the nodes containing references and the reference attributes are
+	 * relevant.
+	 */
+	@Test
+	public void test_RelevantNodesAndAttributes() {
+		AuthorElementAdapter xref = new AuthorElementAdapter("xref", 5, 6, attributes("- topic/xref ", null, null));
+		AuthorElementAdapter ph = new AuthorElementAdapter("ph", 8, 9, attributes("- topic/ph ", null, null));
+		AuthorElementAdapter conrefPh = new AuthorElementAdapter("ph", 8, 9,
+				attributes("- topic/ph ", "conref", "t.dita#t/p"));
+		AuthorElementAdapter paragraph = new AuthorElementAdapter("p", 3, 10, attributes("- topic/p ", null, null)) {
+			@Override
+			public List<AuthorNode> getContentNodes() {
+				return Arrays.asList(ph, xref);
+			}
+		};
+
+		assertTrue(AuthorEditRelevance.containsReferences(xref));
+		assertTrue(AuthorEditRelevance.containsReferences(conrefPh));
+		assertTrue(AuthorEditRelevance.containsReferences(paragraph));
+		assertFalse(AuthorEditRelevance.containsReferences(ph));
+
+		assertTrue(AuthorEditRelevance.isReferenceAttribute("href"));
+		assertTrue(AuthorEditRelevance.isReferenceAttribute("keyref"));
+		assertTrue(AuthorEditRelevance.isReferenceAttribute("class"));
+		assertFalse(AuthorEditRelevance.isReferenceAttribute("outputclass"));
+		assertFalse(AuthorEditRelevance.isReferenceAttribute("id"));
+	}
+
+	private static Map<String, String> attributes(String classValue, String attributeName, String attributeValue) {
+		Map<String, String> attributes = new HashMap<>();
+		attributes.put("class", classValue);
+		if (attributeName != null) {
+			attributes.put(attributeName, attributeValue);
+		}
+		return attributes;
+	}
+}
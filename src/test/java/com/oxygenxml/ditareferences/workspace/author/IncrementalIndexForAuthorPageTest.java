@@ -0,0 +1,179 @@
+package com.oxygenxml.ditareferences.workspace.author;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.workspace.authorpage.AuthorReferencesCollector;
+import com.oxygenxml.ditareferences.workspace.authorpage.AuthorReferencesIndex;
+
+import junit.framework.TestCase;
+import ro.sync.ecss.extensions.api.node.AuthorNode;
+
+/**
+ * Check that the Author Page index, updated from the changes, finds the same
+ * references as a full traversal.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class IncrementalIndexForAuthorPageTest extends TestCase {
+
+	/**
+	 * Author element with a parent and child nodes which can be changed.
+	 */
+	private static class TreeElement extends AuthorElementAdapter {
+		private final List<AuthorNode> contentNodes = new ArrayList<>();
+		private final Map<String, String> attributes;
+		private TreeElement parent;
+		private int movedStartOffset = -1;
+
+		TreeElement(String elementName, int startOffset, Map<String, String> attributes, TreeElement... children) {
+			super(elementName, startOffset, startOffset + 1, attributes);
+			this.attributes = attributes;
+			for (TreeElement child : children) {
+				append(child);
+			}
+		}
+
+		void append(TreeElement child) {
+			child.parent = this;
+			contentNodes.add(child);
+		}
+
+		void remove(TreeElement child) {
+			child.parent = null;
+			contentNodes.remove(child);
+		}
+
+		@Override
+		public List<AuthorNode> getContentNodes() {
+			return contentNodes;
+		}
+
+		@Override
+		public AuthorNode getParent() {
+			return parent;
+		}
+
+		@Override
+		public int getStartOffset() {
+			return movedStartOffset != -1 ? movedStartOffset : super.getStartOffset();
+		}
+	}
+
+	final TreeElement xref = new TreeElement("xref", 4, attributes("- topic/xref ", "keyref", "google"));
+	final TreeElement image = new TreeElement("image", 7, attributes("- topic/image ", "href", "image.png"));
+	final TreeElement ph = new TreeElement("ph", 8, attributes("- topic/ph ", null, null));
+	final TreeElement firstParagraph = new TreeElement("p", 3, attributes("- topic/p ", null, null), xref);
+	final TreeElement secondParagraph = new TreeElement("p", 6, attributes("- topic/p ", null, null), image, ph);
+	final TreeElement root = new TreeElement("topic", 1, attributes("- topic/topic ", null, null),
+			new TreeElement("body", 2, attributes("- topic/body ", null, null), firstParagraph, secondParagraph));
+
+	final AuthorReferencesIndex index = AuthorReferencesIndex.getIndex(new AuthorDocumentControllerForTests());
+
+	/**
+	 * Every change is applied to the index, which matches a full traversal of the
+	 * changed document.
+	 */
+	@Test
+	public void test_ChangesUpdateTheIndex() {
+		assertEquals("topic\n" + "xref keyref=google\n" + "image href=image.png\n", describe(index.build(root)));
+
+		// a keyref makes the phrase a reference
+		ph.attributes.put("keyref", "product");
+		index.nodeChanged(ph);
+		assertSameAsFullTraversal();
+
+		// insert a link in the first paragraph
+		TreeElement link = new TreeElement("xref", 5, attributes("- topic/xref ", "href", "new.dita"));
+		firstParagraph.append(link);
+		index.nodeInserted(link);
+		assertSameAsFullTraversal();
+
+		// delete the second paragraph
+		secondParagraph.parent.remove(secondParagraph);
+		index.nodeDeleted(secondParagraph);
+		assertSameAsFullTraversal();
+
+		// the first paragraph content is replaced
+		firstParagraph.remove(xref);
+		index.subtreeChanged(firstParagraph);
+		assertSameAsFullTraversal();
+
+		assertEquals("topic\n" + "xref href=new.dita\n", describe(index.getReferences()));
+	}
+
+	/**
+	 * The references stay in document order; a deleted reference whose offset
+	 * moved before it was removed does not break the order.
+	 */
+	@Test
+	public void test_ReferencesStayOrdered() {
+		index.build(root);
+
+		// inserted before the existing references
+		TreeElement link = new TreeElement("xref", 3, attributes("- topic/xref ", "href", "first.dita"));
+		firstParagraph.movedStartOffset = 2;
+		link.parent = firstParagraph;
+		firstParagraph.contentNodes.add(0, link);
+		index.nodeInserted(link);
+		assertEquals("topic\n" + "xref href=first.dita\n" + "xref keyref=google\n" + "image href=image.png\n",
+				describe(index.getReferences()));
+
+		// the deleted image collapsed on the start of the first link
+		secondParagraph.parent.remove(secondParagraph);
+		image.movedStartOffset = 3;
+		index.nodeDeleted(secondParagraph);
+		assertSameAsFullTraversal();
+		assertEquals("topic\n" + "xref href=first.dita\n" + "xref keyref=google\n", describe(index.getReferences()));
+	}
+
+	/**
+	 * The index must be built again after the whole document changes.
+	 */
+	@Test
+	public void test_DocumentChangeInvalidatesTheIndex() {
+		index.build(root);
+		assertTrue(index.isValid());
+
+		index.documentChanged(null, null);
+		assertFalse(index.isValid());
+		assertNull(index.getReferences());
+	}
+
+	private void assertSameAsFullTraversal() {
+		assertEquals(describe(new AuthorReferencesCollector().collect(root)), describe(index.getReferences()));
+	}
+
+	private static Map<String, String> attributes(String classValue, String attributeName, String attributeValue) {
+		Map<String, String> attributes = new HashMap<>();
+		attributes.put("class", classValue);
+		if (attributeName != null) {
+			attributes.put(attributeName, attributeValue);
+		}
+		return attributes;
+	}
+
+	/**
+	 * Describe the references by name and target.
+	 */
+	private static String describe(List<NodeRange> ranges) {
+		StringBuilder description = new StringBuilder();
+		for (NodeRange range : ranges) {
+			description.append(range.getNodeName());
+			if (range.getAttributeValue("href") != null) {
+				description.append(" href=").append(range.getAttributeValue("href"));
+			}
+			if (range.getAttributeValue("keyref") != null) {
+				description.append(" keyref=").append(range.getAttributeValue("keyref"));
+			}
+			description.append('\n');
+		}
+		return description.toString();
+	}
+}
@@ -0,0 +1,83 @@
+package com.oxygenxml.ditareferences.workspace.author;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.workspace.TestUtil;
+import com.oxygenxml.ditareferences.workspace.authorpage.AuthorReferencesCollector;
+
+import junit.framework.TestCase;
+import ro.sync.ecss.extensions.api.node.AuthorNode;
+
+/**
+ * Check that the single traversal of the Author Page finds the same
+ * references as the XPath evaluation, for the fixtures used by
+ * {@link RefTreeRenderingForAuthorPageTest}.
+ * 
+ * @author Alexandra_Dinisor
+ *
+ */
+public class SinglePassCollectorForAuthorPageTest extends TestCase {
+
+	/**
+	 * Author element with child nodes.
+	 */
+	private static class AuthorParentElementAdapter extends AuthorElementAdapter {
+		private final List<AuthorNode> contentNodes;
+
+		AuthorParentElementAdapter(String elementName, String classValue, AuthorNode... contentNodes) {
+			super(elementName, 0, 0, Collections.singletonMap("class", classValue));
+			this.contentNodes = new ArrayList<>(Arrays.asList(contentNodes));
+		}
+
+		@Override
+		public List<AuthorNode> getContentNodes() {
+			return contentNodes;
+		}
+	}
+
+	/**
+	 * The elements matched by the XPath expression are the same as the ones
+	 * collected by the single traversal, in document order.
+	 */
+	@Test
+	public void test_SameReferencesAsXPath() {
+		AuthorElementAdapter[] elemArray = TestUtil.createAuthorElementArray();
+
+		// keyref without any of the reference classes
+		Map<String, String> phAttributeMap = new LinkedHashMap<String, String>();
+		phAttributeMap.put("keyref", "product");
+		phAttributeMap.put("class", "- topic/ph ");
+		AuthorElementAdapter phElem = new AuthorElementAdapter("ph", 60, 61, phAttributeMap);
+
+		// the fixture elements are children of the root in the order of the XPath result
+		AuthorParentElementAdapter root = new AuthorParentElementAdapter("topic", "- topic/topic ",
+				new AuthorParentElementAdapter("title", "- topic/title "),
+				new AuthorParentElementAdapter("body", "- topic/body ",
+						new AuthorParentElementAdapter("p", "- topic/p ", elemArray[1], phElem),
+						new AuthorParentElementAdapter("p", "- topic/p ", elemArray[2], elemArray[3]),
+						new AuthorParentElementAdapter("ul", "- topic/ul ", elemArray[4], elemArray[5])),
+				new AuthorParentElementAdapter("related-links", "- topic/related-links ", elemArray[6]));
+
+		List<NodeRange> ranges = new AuthorReferencesCollector().collect(root);
+
+		List<AuthorElementAdapter> expected = new ArrayList<>(Arrays.asList(elemArray));
+		expected.add(2, phElem);
+		assertEquals(expected.size(), ranges.size());
+		assertEquals("topic", ranges.get(0).getNodeName());
+		for (int i = 1; i < expected.size(); i++) {
+			AuthorElementAdapter expectedElem = expected.get(i);
+			NodeRange range = ranges.get(i);
+			assertEquals(expectedElem.getName(), range.getNodeName());
+			assertTrue(Arrays.equals(new int[] { expectedElem.getStartOffset(), expectedElem.getEndOffset() },
+					range.getNodeOffsets(null)));
+		}
+	}
+}
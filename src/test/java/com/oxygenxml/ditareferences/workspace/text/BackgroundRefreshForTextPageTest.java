@@ -0,0 +1,201 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.i18n.Tags;
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.tree.references.outgoing.OutgoingReferencesTree;
+import com.oxygenxml.ditareferences.workspace.DITAReferencesTranslatorForTests;
+import com.oxygenxml.ditareferences.workspace.StandalonePluginWorkspaceAccessForTests;
+import com.oxygenxml.ditareferences.workspace.TestUtil;
+import com.oxygenxml.ditareferences.workspace.WSEditorAdapterForTests;
+import com.oxygenxml.ditareferences.workspace.textpage.TextReferencesCollector;
+
+import junit.framework.TestCase;
+import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
+import ro.sync.exml.workspace.api.editor.page.text.xml.XPathException;
+
+/**
+ * Check the refresh of the ReferencesTree on a background thread.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class BackgroundRefreshForTextPageTest extends TestCase {
+
+	final OutgoingReferencesTree tree = new OutgoingReferencesTree(new StandalonePluginWorkspaceAccessForTests(), null,
+			new DITAReferencesTranslatorForTests());
+
+	final String ditaTopicContent = "<topic id=\"sample\" class=\"- topic/topic \">\n"
+			+ "    <title class=\"- topic/title \">sample</title>\n" + "    <body>\n"
+			+ "            <image class=\"- topic/image \" href=\"image.png\"/>\n"
+			+ "            <p>Link to external resource <xref class=\"- topic/xref \" keyref=\"google\"/> </p>\n"
+			+ "    </body>\n" + "</topic>";
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		tree.setShowing(true);
+		tree.setBackgroundRefresh(true);
+	}
+
+	/**
+	 * The references collected on the background thread are shown in the tree.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_RefreshInBackground() throws Exception {
+		tree.refresh(createWSEditorAdapterForTextPage(ditaTopicContent));
+		waitForRefresh();
+
+		assertEquals("Media_references\n" + "image.png\n" + "Cross_references\n" + "google\n",
+				TestUtil.logTreeNodes(tree));
+	}
+
+	/**
+	 * Only the results of the last refresh are shown.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_StaleRefreshIsDropped() throws Exception {
+		SwingUtilities.invokeAndWait(() -> {
+			tree.refresh(createWSEditorAdapterForTextPage(ditaTopicContent));
+			tree.refresh(createWSEditorAdapterForTextPage("<topic class=\"- topic/topic \"/>"));
+		});
+		waitForRefresh();
+		// let the first refresh finish, if it did not
+		Thread.sleep(200);
+		SwingUtilities.invokeAndWait(() -> {});
+
+		assertEquals("No_outgoing_references_found\n", TestUtil.logTreeNodes(tree));
+	}
+
+	/**
+	 * The results are not shown if the content changes before the refresh
+	 * finishes.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_CancelRefresh() throws Exception {
+		Object initialRoot = tree.getModel().getRoot();
+		// on the AWT thread, like the editor changes, so the results cannot be published in between
+		SwingUtilities.invokeAndWait(() -> {
+			tree.refresh(createWSEditorAdapterForTextPage(ditaTopicContent));
+			tree.cancelRefresh();
+		});
+		Thread.sleep(200);
+		SwingUtilities.invokeAndWait(() -> {});
+
+		assertSame(initialRoot, tree.getModel().getRoot());
+	}
+
+	/**
+	 * The snapshot of the TextPage does not copy the content, the collection task
+	 * reads it and gives nothing if the document was edited since the snapshot.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_ContentReadByTheCollectionTask() throws Exception {
+		int[] contentReads = new int[1];
+		PlainDocument document = new PlainDocument() {
+			@Override
+			public String getText(int offset, int length) throws BadLocationException {
+				contentReads[0]++;
+				return super.getText(offset, length);
+			}
+		};
+		document.insertString(0, ditaTopicContent, null);
+		WSXMLTextEditorPageForTests textPage = new WSXMLTextEditorPageForTests() {
+			@Override
+			public Document getDocument() {
+				return document;
+			}
+
+			@Override
+			public Object[] evaluateXPath(String xpathExpression) throws XPathException {
+				return new Object[] { TestUtil.evaluateAllRefsExpression(ditaTopicContent)[0] };
+			}
+		};
+		TextReferencesCollector collector = new TextReferencesCollector();
+
+		Supplier<List<NodeRange>> task = collector.snapshot(textPage);
+		assertEquals(0, contentReads[0]);
+		assertEquals(3, task.get().size());
+		assertEquals(1, contentReads[0]);
+
+		task = collector.snapshot(textPage);
+		document.insertString(0, " ", null);
+		assertNull(task.get());
+	}
+
+	/**
+	 * Wait until the tree shows the references.
+	 *
+	 * @throws Exception
+	 */
+	private void waitForRefresh() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			// the tree is updated and expanded on the AWT thread
+			Object[] root = new Object[1];
+			SwingUtilities.invokeAndWait(() -> root[0] = tree.getModel().getRoot());
+			if (root[0] instanceof DefaultMutableTreeNode
+					&& Tags.ROOT_REFERENCES.equals(((DefaultMutableTreeNode) root[0]).getUserObject())) {
+				return;
+			}
+			Thread.sleep(20);
+		}
+		fail("The tree was not refreshed");
+	}
+
+	/**
+	 * Create the WSEditor for a TextPage with a document, so that the references
+	 * are collected in a single pass.
+	 *
+	 * @param content The DITA Content
+	 * @return WSEditor in TextMode
+	 */
+	private WSEditorAdapterForTests createWSEditorAdapterForTextPage(String content) {
+		return new WSEditorAdapterForTests() {
+			@Override
+			public String getCurrentPageID() {
+				return PAGE_TEXT;
+			}
+
+			@Override
+			public WSEditorPage getCurrentPage() {
+				return new WSXMLTextEditorPageForTests() {
+					@Override
+					public Document getDocument() {
+						PlainDocument document = new PlainDocument();
+						try {
+							document.insertString(0, content, null);
+						} catch (BadLocationException e) {
+							fail(e.getMessage());
+						}
+						return document;
+					}
+
+					@Override
+					public Object[] evaluateXPath(String xpathExpression) throws XPathException {
+						// the root element is the first node in document order
+						Object[] nodes = TestUtil.evaluateAllRefsExpression(content);
+						return "/*".equals(xpathExpression) ? new Object[] { nodes[0] } : nodes;
+					}
+				};
+			}
+		};
+	}
+}
@@ -0,0 +1,114 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.util.Collections;
+
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreePath;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferencesOffsetIndex;
+import com.oxygenxml.ditareferences.workspace.textpage.TextPageNodeRange;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the reference node found for the caret offset when the references are
+ * nested.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class CaretOffsetIndexForTextPageTest extends TestCase {
+
+	/**
+	 * The reference containing the caret is found, the first one in the tree if
+	 * the references are nested.
+	 */
+	@Test
+	public void test_NestedReferences() {
+		DefaultMutableTreeNode root = new DefaultMutableTreeNode("root");
+		DefaultMutableTreeNode crossReferences = new DefaultMutableTreeNode("Cross_references");
+		DefaultMutableTreeNode firstXref = createReferenceNode("xref", 20, 40);
+		DefaultMutableTreeNode secondXref = createReferenceNode("xref", 50, 60);
+		crossReferences.add(firstXref);
+		crossReferences.add(secondXref);
+		DefaultMutableTreeNode contentReferences = new DefaultMutableTreeNode("Content_references");
+		DefaultMutableTreeNode paragraph = createReferenceNode("p", 10, 100);
+		DefaultMutableTreeNode phrase = createReferenceNode("ph", 52, 55);
+		contentReferences.add(paragraph);
+		contentReferences.add(phrase);
+		root.add(crossReferences);
+		root.add(contentReferences);
+
+		ReferencesOffsetIndex index = ReferencesOffsetIndex.build(root, new WSXMLTextEditorPageForTests());
+
+		assertNull(index.find(5));
+		assertSame(paragraph, getNode(index.find(10)));
+		assertSame(firstXref, getNode(index.find(20)));
+		assertSame(firstXref, getNode(index.find(40)));
+		assertSame(paragraph, getNode(index.find(45)));
+		// the phrase inside the second cross reference is after it in the tree
+		assertSame(secondXref, getNode(index.find(53)));
+		assertSame(paragraph, getNode(index.find(100)));
+		assertNull(index.find(101));
+
+		TreePath path = index.find(30);
+		assertSame(root, path.getPathComponent(0));
+		assertSame(crossReferences, path.getPathComponent(1));
+	}
+
+	/**
+	 * The index built before an edit finds the references at their moved
+	 * offsets, without being built again.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_EditsMoveTheOffsets() throws Exception {
+		PlainDocument document = new PlainDocument();
+		document.insertString(0, "<p>Link to <xref href=\"a.dita\"/> and <xref href=\"b.dita\"/></p>", null);
+		WSXMLTextEditorPageForTests textPage = new WSXMLTextEditorPageForTests() {
+			@Override
+			public Document getDocument() {
+				return document;
+			}
+		};
+		DefaultMutableTreeNode root = new DefaultMutableTreeNode("root");
+		DefaultMutableTreeNode crossReferences = new DefaultMutableTreeNode("Cross_references");
+		DefaultMutableTreeNode firstXref = new DefaultMutableTreeNode(
+				new TextPageNodeRange("xref", Collections.emptyMap(), null, 11, 32, document));
+		DefaultMutableTreeNode secondXref = new DefaultMutableTreeNode(
+				new TextPageNodeRange("xref", Collections.emptyMap(), null, 37, 58, document));
+		crossReferences.add(firstXref);
+		crossReferences.add(secondXref);
+		root.add(crossReferences);
+
+		ReferencesOffsetIndex index = ReferencesOffsetIndex.build(root, textPage);
+		assertSame(firstXref, getNode(index.find(20)));
+		assertNull(index.find(35));
+
+		// insert before the references
+		document.insertString(3, "Some more text. ", null);
+		assertNull(index.find(20));
+		assertSame(firstXref, getNode(index.find(36)));
+		assertSame(secondXref, getNode(index.find(60)));
+	}
+
+	/**
+	 * Create the tree node of a reference with the given offsets.
+	 */
+	private static DefaultMutableTreeNode createReferenceNode(String nodeName, int startOffset, int endOffset) {
+		return new DefaultMutableTreeNode(new TextPageNodeRange(nodeName, Collections.emptyMap(), null,
+				startOffset, endOffset));
+	}
+
+	/**
+	 * Get the node at the end of the path.
+	 */
+	private static Object getNode(TreePath path) {
+		return path != null ? path.getLastPathComponent() : null;
+	}
+}
@@ -0,0 +1,115 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import javax.swing.text.PlainDocument;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.workspace.textpage.TextPageListener;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that only the TextPage edits which can change the references are
+ * notified.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class EditRelevanceForTextPageTest extends TestCase {
+
+	final String ditaTopicContent = "<topic id=\"sample\" class=\"- topic/topic \">\n"
+			+ "    <body>\n"
+			+ "        <p>Link to <xref class=\"- topic/xref \" href=\"a.dita\"/> here.</p>\n"
+			+ "    </body>\n" + "</topic>";
+
+	/* The number of notified edits. */
+	int notifiedEdits;
+
+	/**
+	 * Typing words in a paragraph is ignored, editing a tag or markup is not.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_OnlyReferenceEditsAreNotified() throws Exception {
+		PlainDocument document = new PlainDocument();
+		document.insertString(0, ditaTopicContent, null);
+		document.addDocumentListener(new TextPageListener(null, () -> notifiedEdits++, true));
+
+		// an edit after the root element
+		document.insertString(document.getLength(), "\n", null);
+		assertEquals(1, notifiedEdits);
+
+		// type and delete words in the paragraph
+		int offset = ditaTopicContent.indexOf("Link to");
+		document.insertString(offset, "A ", null);
+		document.insertString(ditaTopicContent.indexOf(" here.") + 2, " and there", null);
+		document.remove(offset, 2);
+		assertEquals(1, notifiedEdits);
+
+		// edit the reference attribute value
+		document.insertString(document.getText(0, document.getLength()).indexOf("a.dita"), "b", null);
+		assertEquals(2, notifiedEdits);
+
+		// insert markup in the paragraph
+		document.insertString(document.getText(0, document.getLength()).indexOf("Link"), "<b>", null);
+		assertEquals(3, notifiedEdits);
+
+		// delete a tag from the paragraph
+		String text = document.getText(0, document.getLength());
+		int start = text.indexOf("to <xref") + 2;
+		document.remove(start, text.indexOf("/>", start) + 2 - start);
+		assertEquals(4, notifiedEdits);
+
+		// delete markup together with text
+		text = document.getText(0, document.getLength());
+		start = text.indexOf("<b>") - 1;
+		document.remove(start, 5);
+		assertEquals(5, notifiedEdits);
+	}
+
+	/**
+	 * Quotes typed in the content of an element are ignored. A removal far from
+	 * the last edit is notified, because the removed text is not known.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_QuotesAndRemovalsAtNewPlaces() throws Exception {
+		PlainDocument document = new PlainDocument();
+		document.insertString(0, ditaTopicContent, null);
+		document.addDocumentListener(new TextPageListener(null, () -> notifiedEdits++, true));
+
+		// type quoted words in the paragraph
+		int offset = ditaTopicContent.indexOf(" here.");
+		document.insertString(offset, " \"quoted\" and 'single'", null);
+		assertEquals(0, notifiedEdits);
+
+		// delete a quote, the text around the last edit is known
+		document.remove(offset + 1, 1);
+		assertEquals(0, notifiedEdits);
+
+		// the same removal far from the last edit
+		PlainDocument otherDocument = new PlainDocument();
+		otherDocument.insertString(0, ditaTopicContent, null);
+		otherDocument.addDocumentListener(new TextPageListener(null, () -> notifiedEdits++, true));
+		otherDocument.remove(ditaTopicContent.indexOf("Link"), 1);
+		assertEquals(1, notifiedEdits);
+	}
+
+	/**
+	 * Every edit is notified when the listener does not filter them.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_AllEditsAreNotified() throws Exception {
+		PlainDocument document = new PlainDocument();
+		document.insertString(0, ditaTopicContent, null);
+		document.addDocumentListener(new TextPageListener(null, () -> notifiedEdits++));
+
+		document.insertString(ditaTopicContent.indexOf("Link to"), "A ", null);
+		document.remove(ditaTopicContent.indexOf("Link to"), 2);
+		assertEquals(2, notifiedEdits);
+	}
+}
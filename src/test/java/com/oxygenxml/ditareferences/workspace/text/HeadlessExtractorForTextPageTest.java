@@ -0,0 +1,177 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import com.oxygenxml.ditareferences.tree.references.incoming.ExtractedNodeRange;
+import com.oxygenxml.ditareferences.tree.references.incoming.ReferencesExtractor;
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferenceCategory;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferenceDescriptor;
+import com.oxygenxml.ditareferences.workspace.textpage.TextReferencesCollector;
+
+import junit.framework.TestCase;
+import ro.sync.util.URLUtil;
+
+/**
+ * Check that the reference elements read from a file which is not open are the
+ * ones the Text Page collector finds for the open file, with the same
+ * categories.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class HeadlessExtractorForTextPageTest extends TestCase {
+
+	/**
+	 * The references of the topic with all the reference categories.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_SameReferencesAsTheCollector() throws Exception {
+		assertSameReferences(RefTreeRenderingForTextPageTest.ditaTopicAllRefsContent);
+	}
+
+	/**
+	 * The references of the topic with markup that is not a reference: comments,
+	 * CDATA, processing instructions and entities.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_SameReferencesAsTheCollectorSkippingMarkup() throws Exception {
+		assertSameReferences(SinglePassCollectorForTextPageTest.ditaContent);
+	}
+
+	/**
+	 * Every reference element is received once, the external ones and the key
+	 * references which are not resolved included.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_ExternalAndUnresolvedReferences() throws Exception {
+		List<String> references = new ArrayList<>();
+		URL fileLocation = URLUtil.convertToURL("file:/topic.dita");
+		new ReferencesExtractor(null).extractElements(
+				new InputSource(new StringReader(RefTreeRenderingForTextPageTest.ditaTopicAllRefsContent)), fileLocation,
+				(element, category) -> {
+					assertEquals(fileLocation, element.getEditorLocation());
+					ReferenceDescriptor descriptor = element.getDescriptor();
+					references.add(category + " " + element.getNodeName() + " " + element.getLine() + " "
+							+ descriptor.getDisplayText() + (descriptor.getScope() != null ? " " + descriptor.getScope() : ""));
+				});
+
+		assertEquals("[MEDIA image 4 image.png, MEDIA image 5 image, CROSS xref 6 google, "
+				+ "CONTENT p 7 sample2.dita#sample2/i1, CONTENT p 8 sample2/i1, "
+				+ "MEDIA object 10 http://www.nasa.gov/mp3/590318main_ringtone_135_launch.mp3, "
+				+ "RELATED_LINKS link 13 www.google.com external, RELATED_LINKS link 14 sample2.dita, "
+				+ "RELATED_LINKS link 15 test.pdf, RELATED_LINKS link 16 google, RELATED_LINKS link 17 sample2, "
+				+ "RELATED_LINKS link 18 myPDF]", references.toString());
+	}
+
+	/**
+	 * A large topic is read as a stream, the references are received as they
+	 * are read.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_ExtractLargeTopic() throws Exception {
+		int paragraphs = 100000;
+		byte[] paragraph = "<p><xref href=\"target.dita\"/></p>\n".getBytes(StandardCharsets.UTF_8);
+		Enumeration<InputStream> parts = new Enumeration<InputStream>() {
+			private int index = -1;
+
+			@Override
+			public boolean hasMoreElements() {
+				return index <= paragraphs;
+			}
+
+			@Override
+			public InputStream nextElement() {
+				index++;
+				String content = index == 0 ? "<topic id=\"t\"><body>\n" : index <= paragraphs ? null : "</body></topic>";
+				return new ByteArrayInputStream(content != null ? content.getBytes(StandardCharsets.UTF_8) : paragraph);
+			}
+		};
+		AtomicInteger count = new AtomicInteger();
+		int[] lastLine = new int[1];
+		new ReferencesExtractor(null).extractElements(new InputSource(new SequenceInputStream(parts)),
+				URLUtil.convertToURL("file:/large.dita"), (element, category) -> {
+					assertEquals(ReferenceCategory.CROSS, category);
+					count.incrementAndGet();
+					lastLine[0] = element.getLine();
+				});
+		assertEquals(paragraphs, count.get());
+		assertEquals(paragraphs + 1, lastLine[0]);
+	}
+
+	/**
+	 * Check that the extractor receives the references the Text Page collector
+	 * finds in the content, in the same order, with the same descriptions and
+	 * categories and with the position of their start tags.
+	 */
+	private static void assertSameReferences(String content) throws Exception {
+		Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new InputSource(new StringReader(content))).getDocumentElement();
+		List<NodeRange> collected = new TextReferencesCollector().collect(root, content);
+		assertNotNull(collected);
+		// the root is not a reference
+		collected = collected.subList(1, collected.size());
+
+		List<ExtractedNodeRange> extracted = new ArrayList<>();
+		List<ReferenceCategory> categories = new ArrayList<>();
+		new ReferencesExtractor(null).extractElements(new InputSource(new StringReader(content)),
+				URLUtil.convertToURL("file:/topic.dita"), (element, category) -> {
+					extracted.add(element);
+					categories.add(category);
+				});
+
+		List<Integer> lineStarts = new ArrayList<>();
+		lineStarts.add(0);
+		for (int i = 0; i < content.length(); i++) {
+			if (content.charAt(i) == '\n') {
+				lineStarts.add(i + 1);
+			}
+		}
+
+		assertEquals(collected.size(), extracted.size());
+		for (int i = 0; i < collected.size(); i++) {
+			NodeRange collectedRange = collected.get(i);
+			ExtractedNodeRange extractedRange = extracted.get(i);
+			ReferenceDescriptor collectedDescriptor = collectedRange.getDescriptor();
+			ReferenceDescriptor extractedDescriptor = extractedRange.getDescriptor();
+			assertEquals(collectedRange.getNodeName(), extractedRange.getNodeName());
+			assertEquals(collectedDescriptor.getDisplayText(), extractedDescriptor.getDisplayText());
+			assertEquals(collectedDescriptor.getScope(), extractedDescriptor.getScope());
+			assertEquals(collectedDescriptor.getFormat(), extractedDescriptor.getFormat());
+			// the DTD of the open file gives the class of the elements without one
+			assertEquals(ReferenceCategory.fromClass(ReferenceCategory.getClassOrDefault(
+					collectedDescriptor.getClassValue(), collectedRange.getNodeName())), categories.get(i));
+			assertEquals(extractedDescriptor.getCategory(), categories.get(i));
+
+			// the position is the end of the start tag of the collected element
+			int[] offsets = collectedRange.getNodeOffsets(null);
+			int offset = lineStarts.get(extractedRange.getLine() - 1) + extractedRange.getColumn() - 1;
+			assertTrue(offsets[0] < offset && offset <= offsets[1]);
+			assertEquals('>', content.charAt(offset - 1));
+			assertTrue(content.substring(offsets[0], offset).startsWith("<" + collectedRange.getNodeName()));
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.io.StringReader;
+import java.util.List;
+
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.CollectionMode;
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferencesCollector;
+import com.oxygenxml.ditareferences.workspace.textpage.TextReferencesCollector;
+import com.oxygenxml.ditareferences.workspace.textpage.TextReferencesIndex;
+
+import junit.framework.TestCase;
+import ro.sync.exml.workspace.api.editor.page.text.xml.XPathException;
+
+/**
+ * Check that the incremental collection of the Text Page finds the same
+ * references as a full collection after every edit.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class IncrementalIndexForTextPageTest extends TestCase {
+
+	final String ditaContent = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<!DOCTYPE topic [\n"
+			+ "  <!ATTLIST xref class CDATA \"- topic/xref \">\n"
+			+ "  <!ATTLIST image class CDATA \"- topic/image \">\n"
+			+ "]>\n"
+			+ "<topic id=\"sample\" class=\"- topic/topic \">\n"
+			+ "    <title>sample</title>\n"
+			+ "    <body>\n"
+			+ "            <image href=\"image.png\"/>\n"
+			+ "            <p>Link to external resource <xref keyref=\"google\"/> </p>\n"
+			+ "            <p>Second paragraph</p>\n"
+			+ "    </body>\n"
+			+ "</topic>";
+
+	/* The document of the Text Page. */
+	final PlainDocument document = new PlainDocument();
+
+	/* The number of times the DOM was built. */
+	int domBuilds;
+
+	/* The Text Page of the document. */
+	final WSXMLTextEditorPageForTests textPage = new WSXMLTextEditorPageForTests() {
+		@Override
+		public Document getDocument() {
+			return document;
+		}
+
+		@Override
+		public Object[] evaluateXPath(String xpathExpression) throws XPathException {
+			domBuilds++;
+			return new Object[] { parse(getText()) };
+		}
+	};
+
+	final TextReferencesCollector collector = new TextReferencesCollector(CollectionMode.INCREMENTAL);
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		document.insertString(0, ditaContent, null);
+	}
+
+	/**
+	 * The edits inside the elements are applied to the index without building
+	 * the DOM again.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_EditsUpdateTheIndex() throws Exception {
+		assertSameAsFullCollection();
+		assertEquals(1, domBuilds);
+
+		// type in a paragraph
+		insert("Second", " edited");
+		assertSameAsFullCollection();
+
+		// add a cross reference, its class comes from the DTD
+		insert("Second", "<xref href=\"new.dita\"/> ");
+		assertSameAsFullCollection();
+
+		// change the attribute of a reference
+		int hrefOffset = getText().indexOf("image.png");
+		document.remove(hrefOffset, "image".length());
+		document.insertString(hrefOffset, "picture", null);
+		assertSameAsFullCollection();
+
+		// delete a reference
+		String image = "<image href=\"picture.png\"/>";
+		document.remove(getText().indexOf(image), image.length());
+		assertSameAsFullCollection();
+
+		assertEquals(1, domBuilds);
+		assertEquals("topic\n" + "xref keyref=google\n" + "xref href=new.dita\n", describe(collect()));
+	}
+
+	/**
+	 * The index is built again when an edit cannot be applied to it.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_IndexIsBuiltAgain() throws Exception {
+		assertSameAsFullCollection();
+
+		// an element never seen before, its default attributes are not known
+		insert("Second", "<ph keyref=\"product\"/> ");
+		assertSameAsFullCollection();
+		assertEquals(2, domBuilds);
+
+		// the root start tag changes
+		document.insertString(getText().indexOf(" class=\"- topic/topic"), " xml:lang=\"en\"", null);
+		assertSameAsFullCollection();
+		assertEquals(3, domBuilds);
+	}
+
+	/**
+	 * The modification stamp of the index changes on every edit and is not reused
+	 * by the index of another document.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_ModificationStamps() throws Exception {
+		TextReferencesIndex index = TextReferencesIndex.getIndex(document, ReferencesCollector::isReferenceElement);
+		long stamp = index.getModificationStamp();
+		assertEquals(stamp, index.getModificationStamp());
+
+		insert("Second", " edited");
+		long editedStamp = index.getModificationStamp();
+		assertTrue(editedStamp != stamp);
+
+		long otherStamp = TextReferencesIndex.getIndex(new PlainDocument(), ReferencesCollector::isReferenceElement)
+				.getModificationStamp();
+		assertTrue(otherStamp != stamp && otherStamp != editedStamp);
+	}
+
+	/**
+	 * Insert text before the given marker.
+	 */
+	private void insert(String marker, String text) throws Exception {
+		document.insertString(getText().indexOf(marker), text, null);
+	}
+
+	/**
+	 * Check the references from the index against a full collection of the
+	 * current content.
+	 */
+	private void assertSameAsFullCollection() throws Exception {
+		String content = getText();
+		List<NodeRange> expected = new TextReferencesCollector().collect(parse(content), content);
+		List<NodeRange> actual = collect();
+		assertEquals(describe(expected), describe(actual));
+		for (int i = 0; i < expected.size(); i++) {
+			int[] expectedOffsets = expected.get(i).getNodeOffsets(null);
+			int[] actualOffsets = actual.get(i).getNodeOffsets(null);
+			assertEquals(content.substring(expectedOffsets[0], expectedOffsets[1]),
+					content.substring(actualOffsets[0], actualOffsets[1]));
+		}
+	}
+
+	private List<NodeRange> collect() throws Exception {
+		return collector.snapshot(textPage).get();
+	}
+
+	private String getText() {
+		try {
+			return document.getText(0, document.getLength());
+		} catch (Exception e) {
+			fail(e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Describe the references by name and target.
+	 */
+	private static String describe(List<NodeRange> ranges) {
+		StringBuilder description = new StringBuilder();
+		for (NodeRange range : ranges) {
+			description.append(range.getNodeName());
+			if (range.getAttributeValue("href") != null) {
+				description.append(" href=").append(range.getAttributeValue("href"));
+			}
+			if (range.getAttributeValue("keyref") != null) {
+				description.append(" keyref=").append(range.getAttributeValue("keyref"));
+			}
+			description.append('\n');
+		}
+		return description.toString();
+	}
+
+	private static Element parse(String content) {
+		try {
+			return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+					.parse(new InputSource(new StringReader(content))).getDocumentElement();
+		} catch (Exception e) {
+			fail(e.getMessage());
+			return null;
+		}
+	}
+}
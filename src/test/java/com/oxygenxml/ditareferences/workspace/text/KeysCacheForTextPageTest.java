@@ -0,0 +1,168 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JLabel;
+import javax.swing.JTree;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferencesTreeCellRenderer;
+import com.oxygenxml.ditareferences.workspace.CachingKeysProvider;
+import com.oxygenxml.ditareferences.workspace.DITAReferencesTranslatorForTests;
+import com.oxygenxml.ditareferences.workspace.StandalonePluginWorkspaceAccessForTests;
+import com.oxygenxml.ditareferences.workspace.textpage.TextPageNodeRange;
+import com.oxygenxml.ditareferences.workspace.textpage.TextReferencesCollector;
+
+import junit.framework.TestCase;
+import ro.sync.ecss.dita.reference.keyref.KeyInfo;
+import ro.sync.util.URLUtil;
+
+/**
+ * Test the cached keys of the current DITA Map.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class KeysCacheForTextPageTest extends TestCase {
+
+	/* How many times the keys were resolved. */
+	int resolvedKeys;
+
+	/**
+	 * The keys are resolved again only when the key space may have changed.
+	 */
+	@Test
+	public void test_KeysAreResolvedOnce() {
+		CachingKeysProvider keysProvider = createKeysProvider();
+		URL topic = URLUtil.convertToURL("file:/topic.dita");
+
+		LinkedHashMap<String, KeyInfo> keys = keysProvider.getKeys(topic);
+		assertSame(keys, keysProvider.getKeys(topic));
+		assertEquals(1, resolvedKeys);
+
+		// an edited topic does not change the keys
+		keysProvider.documentChanged(topic);
+		keysProvider.getKeys(topic);
+		assertEquals(1, resolvedKeys);
+
+		keysProvider.documentChanged(URLUtil.convertToURL("file:/root.ditamap"));
+		keysProvider.getKeys(topic);
+		assertEquals(2, resolvedKeys);
+
+		// the documents of a root map share its key space
+		keysProvider.setRootMap(URLUtil.convertToURL("file:/root.ditamap"));
+		keysProvider.getKeys(topic);
+		assertEquals(3, resolvedKeys);
+		keysProvider.getKeys(URLUtil.convertToURL("file:/other.dita"));
+		assertEquals(3, resolvedKeys);
+
+		// switching back to a root map reuses its keys
+		keysProvider.setRootMap(URLUtil.convertToURL("file:/other.ditamap"));
+		keysProvider.getKeys(topic);
+		assertEquals(4, resolvedKeys);
+		keysProvider.setRootMap(URLUtil.convertToURL("file:/root.ditamap"));
+		keysProvider.getKeys(topic);
+		assertEquals(4, resolvedKeys);
+
+		keysProvider.invalidate();
+		keysProvider.getKeys(topic);
+		assertEquals(5, resolvedKeys);
+	}
+
+	/**
+	 * Only the most recently used key spaces are kept.
+	 */
+	@Test
+	public void test_CachedKeySpacesAreBounded() {
+		CachingKeysProvider keysProvider = createKeysProvider();
+		URL topic = URLUtil.convertToURL("file:/topic.dita");
+		for (int i = 0; i <= CachingKeysProvider.MAX_CACHED_KEY_SPACES; i++) {
+			keysProvider.setRootMap(URLUtil.convertToURL("file:/root" + i + ".ditamap"));
+			keysProvider.getKeys(topic);
+		}
+		assertEquals(CachingKeysProvider.MAX_CACHED_KEY_SPACES + 1, resolvedKeys);
+
+		// the most recent root map is kept, the first one was dropped
+		keysProvider.getKeys(topic);
+		assertEquals(CachingKeysProvider.MAX_CACHED_KEY_SPACES + 1, resolvedKeys);
+		keysProvider.setRootMap(URLUtil.convertToURL("file:/root0.ditamap"));
+		keysProvider.getKeys(topic);
+		assertEquals(CachingKeysProvider.MAX_CACHED_KEY_SPACES + 2, resolvedKeys);
+	}
+
+	/**
+	 * Painting the tree resolves the keys once, and only for the key references.
+	 */
+	@Test
+	public void test_PaintingResolvesKeysOnce() {
+		List<NodeRange> ranges = new ArrayList<>();
+		ranges.add(createRange("topic", "- topic/topic ", null, null));
+		ranges.add(createRange("xref", "- topic/xref ", "keyref", "sample2"));
+		ranges.add(createRange("xref", "- topic/xref ", "keyref", "myPDF"));
+		ranges.add(createRange("p", "- topic/p ", "conkeyref", "sample2/p"));
+		ranges.add(createRange("image", "- topic/image ", "href", "image.png"));
+
+		DefaultMutableTreeNode root = new DefaultMutableTreeNode("root");
+		new TextReferencesCollector().collectReferences(ranges, null, root);
+		JTree tree = new JTree(root);
+		tree.setRootVisible(false);
+		for (int row = tree.getRowCount() - 1; row >= 0; row--) {
+			tree.expandRow(row);
+		}
+		assertEquals(7, tree.getRowCount());
+
+		ReferencesTreeCellRenderer renderer = new ReferencesTreeCellRenderer(
+				new StandalonePluginWorkspaceAccessForTests().getImageUtilities(), new DITAReferencesTranslatorForTests(),
+				createKeysProvider());
+		StringBuilder toolTips = new StringBuilder();
+		for (int repaint = 0; repaint < 3; repaint++) {
+			toolTips.setLength(0);
+			for (int row = 0; row < tree.getRowCount(); row++) {
+				DefaultMutableTreeNode node = (DefaultMutableTreeNode) tree.getPathForRow(row).getLastPathComponent();
+				JLabel label = (JLabel) renderer.getTreeCellRendererComponent(tree, node, false, true, node.isLeaf(), row,
+						false);
+				if (node.isLeaf()) {
+					toolTips.append(label.getToolTipText()).append('\n');
+				}
+			}
+		}
+		assertEquals(1, resolvedKeys);
+		assertEquals("image.png\n" + "file:/sample2.dita\n" + "file:/test.pdf\n" + "file:/sample2.dita\n",
+				toolTips.toString());
+	}
+
+	/**
+	 * Create a keys provider counting the resolved keys.
+	 */
+	private CachingKeysProvider createKeysProvider() {
+		return new CachingKeysProvider(editorLocation -> {
+			resolvedKeys++;
+			LinkedHashMap<String, KeyInfo> keyMap = new LinkedHashMap<>();
+			keyMap.put("myPDF", new KeyInfo("myPDF", "test.pdf", "", URLUtil.convertToURL("file:/test.pdf"), null, "",
+					false));
+			keyMap.put("sample2", new KeyInfo("sample2", "sample2.dita", "", URLUtil.convertToURL("file:/sample2.dita"),
+					null, "", false));
+			return keyMap;
+		});
+	}
+
+	/**
+	 * Create a reference from the topic.
+	 */
+	private NodeRange createRange(String name, String classValue, String targetAttribute, String target) {
+		Map<String, String> attributes = new HashMap<>();
+		attributes.put("class", classValue);
+		if (targetAttribute != null) {
+			attributes.put(targetAttribute, target);
+		}
+		return new TextPageNodeRange(name, attributes, "file:/topic.dita", 0, 0);
+	}
+}
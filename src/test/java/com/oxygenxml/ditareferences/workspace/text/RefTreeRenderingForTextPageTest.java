@@ -32,7 +32,7 @@ public class RefTreeRenderingForTextPageTest extends TestCase {
 	final OutgoingReferencesTree tree = new OutgoingReferencesTree(new StandalonePluginWorkspaceAccessForTests(), null,
 			new DITAReferencesTranslatorForTests());
 
-	final String ditaTopicAllRefsContent = "<topic id=\"sample\" class=\"- topic/topic \">\n"
+	static final String ditaTopicAllRefsContent = "<topic id=\"sample\" class=\"- topic/topic \">\n"
 			+ "    <title class=\"- topic/title \">sample</title>\n" + "    <body>\n"
 			+ "            <image class=\"- topic/image \" href=\"image.png\"/>\n"
 			+ "            <image class=\"- topic/image \" href=\"image\" format=\"png\"/> '\n "
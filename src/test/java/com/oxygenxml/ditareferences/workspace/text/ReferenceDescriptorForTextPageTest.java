@@ -0,0 +1,108 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JLabel;
+import javax.swing.JTree;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferenceCategory;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferenceDescriptor;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferenceDescriptor.IconKind;
+import com.oxygenxml.ditareferences.tree.references.outgoing.ReferencesTreeCellRenderer;
+import com.oxygenxml.ditareferences.workspace.DITAReferencesTranslatorForTests;
+import com.oxygenxml.ditareferences.workspace.StandalonePluginWorkspaceAccessForTests;
+import com.oxygenxml.ditareferences.workspace.textpage.TextPageNodeRange;
+import com.oxygenxml.ditareferences.workspace.textpage.TextReferencesCollector;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that the attributes of the references are read only once, when they are
+ * collected.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class ReferenceDescriptorForTextPageTest extends TestCase {
+
+	/* The number of attribute lookups. */
+	int attributeLookups;
+
+	/**
+	 * The descriptors are computed by the collection, painting does no attribute
+	 * lookups.
+	 */
+	@Test
+	public void test_AttributesAreReadOnce() {
+		List<NodeRange> ranges = new ArrayList<>();
+		ranges.add(createRange("topic", "- topic/topic ", null, null, null));
+		NodeRange image = createRange("image", "- topic/image ", "href", "image.png", null);
+		NodeRange link = createRange("xref", "- topic/xref ", "href", "www.google.com", "external");
+		NodeRange conref = createRange("p", "- topic/p ", "conref", "t.dita#t/p", null);
+		ranges.add(image);
+		ranges.add(link);
+		ranges.add(conref);
+
+		DefaultMutableTreeNode root = new DefaultMutableTreeNode("root");
+		new TextReferencesCollector().collectReferences(ranges, null, root);
+		JTree tree = new JTree(root);
+		tree.setRootVisible(false);
+		for (int row = tree.getRowCount() - 1; row >= 0; row--) {
+			tree.expandRow(row);
+		}
+		assertEquals(6, tree.getRowCount());
+
+		int lookupsAfterCollection = attributeLookups;
+		ReferencesTreeCellRenderer renderer = new ReferencesTreeCellRenderer(
+				new StandalonePluginWorkspaceAccessForTests().getImageUtilities(), new DITAReferencesTranslatorForTests(),
+				null);
+		StringBuilder labels = new StringBuilder();
+		for (int row = 0; row < tree.getRowCount(); row++) {
+			JLabel label = (JLabel) renderer.getTreeCellRendererComponent(tree,
+					tree.getPathForRow(row).getLastPathComponent(), false, true, true, row, false);
+			labels.append(label.getText()).append('\n');
+		}
+		assertEquals(lookupsAfterCollection, attributeLookups);
+		assertEquals("Media_references\n" + "image.png\n" + "Cross_references\n" + "www.google.com\n"
+				+ "Content_references\n" + "t.dita#t/p\n", labels.toString());
+
+		ReferenceDescriptor imageDescriptor = image.getDescriptor();
+		assertEquals(ReferenceCategory.MEDIA, imageDescriptor.getCategory());
+		assertEquals(IconKind.IMAGE, imageDescriptor.getIconKind());
+		assertEquals("image.png", imageDescriptor.getHref());
+
+		assertEquals(IconKind.EXTERNAL, link.getDescriptor().getIconKind());
+		assertEquals("external", link.getDescriptor().getScope());
+		assertEquals(ReferenceCategory.CONTENT, conref.getDescriptor().getCategory());
+		assertEquals("t.dita#t/p", conref.getDescriptor().getDisplayText());
+		assertEquals(lookupsAfterCollection, attributeLookups);
+	}
+
+	/**
+	 * Create a reference whose attribute lookups are counted.
+	 */
+	private NodeRange createRange(String name, String classValue, String targetAttribute, String target, String scope) {
+		Map<String, String> attributes = new HashMap<String, String>() {
+			@Override
+			public String get(Object key) {
+				attributeLookups++;
+				return super.get(key);
+			}
+		};
+		attributes.put("class", classValue);
+		if (targetAttribute != null) {
+			attributes.put(targetAttribute, target);
+		}
+		if (scope != null) {
+			attributes.put("scope", scope);
+		}
+		return new TextPageNodeRange(name, attributes, null, 0, 0);
+	}
+}
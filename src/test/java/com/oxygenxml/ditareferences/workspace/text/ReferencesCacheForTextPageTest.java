@@ -0,0 +1,121 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.net.URL;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.OutgoingReferencesTree;
+import com.oxygenxml.ditareferences.workspace.DITAReferencesTranslatorForTests;
+import com.oxygenxml.ditareferences.workspace.StandalonePluginWorkspaceAccessForTests;
+import com.oxygenxml.ditareferences.workspace.TestUtil;
+import com.oxygenxml.ditareferences.workspace.WSEditorAdapterForTests;
+
+import junit.framework.TestCase;
+import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
+import ro.sync.exml.workspace.api.editor.page.text.xml.XPathException;
+import ro.sync.util.URLUtil;
+
+/**
+ * Check that the references of an unchanged editor are not collected again.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class ReferencesCacheForTextPageTest extends TestCase {
+
+	final OutgoingReferencesTree tree = new OutgoingReferencesTree(new StandalonePluginWorkspaceAccessForTests(), null,
+			new DITAReferencesTranslatorForTests());
+
+	final String ditaTopicContent = "<topic id=\"sample\" class=\"- topic/topic \">\n"
+			+ "    <body>\n"
+			+ "            <p>Link to <xref class=\"- topic/xref \" keyref=\"google\"/> </p>\n"
+			+ "    </body>\n" + "</topic>";
+
+	/* The number of times the references were collected. */
+	int collections;
+
+	/**
+	 * Switching back to an unchanged editor uses the cached references, a change
+	 * of the document makes them stale.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_UnchangedEditorIsNotCollectedAgain() throws Exception {
+		PlainDocument document = new PlainDocument();
+		document.insertString(0, ditaTopicContent, null);
+		WSEditorAdapterForTests editor = createWSEditorAdapterForTextPage("file:/topic1.dita", document);
+		PlainDocument otherDocument = new PlainDocument();
+		otherDocument.insertString(0, "<topic class=\"- topic/topic \"/>", null);
+		WSEditorAdapterForTests otherEditor = createWSEditorAdapterForTextPage("file:/topic2.dita", otherDocument);
+
+		tree.setShowing(true);
+		tree.refresh(editor);
+		tree.refresh(otherEditor);
+		tree.refresh(editor);
+		assertEquals(2, collections);
+		assertEquals("Cross_references\n" + "google\n", TestUtil.logTreeNodes(tree));
+
+		// the document changes
+		document.insertString(document.getText(0, document.getLength()).indexOf("</p>"),
+				"<xref class=\"- topic/xref \" href=\"new.dita\"/>", null);
+		tree.refresh(editor);
+		assertEquals(3, collections);
+		assertEquals("Cross_references\n" + "google\n" + "new.dita\n", TestUtil.logTreeNodes(tree));
+
+		// a closed editor is forgotten
+		tree.clearCachedReferences(URLUtil.convertToURL("file:/topic1.dita"));
+		tree.refresh(editor);
+		assertEquals(4, collections);
+	}
+
+	/**
+	 * Create the WSEditor for a TextPage with the given document.
+	 *
+	 * @param location The editor location
+	 * @param document The document
+	 * @return WSEditor in TextMode
+	 */
+	private WSEditorAdapterForTests createWSEditorAdapterForTextPage(String location, Document document) {
+		WSXMLTextEditorPageForTests textPage = new WSXMLTextEditorPageForTests() {
+			@Override
+			public Document getDocument() {
+				return document;
+			}
+
+			@Override
+			public Object[] evaluateXPath(String xpathExpression) throws XPathException {
+				collections++;
+				String content;
+				try {
+					content = document.getText(0, document.getLength());
+				} catch (BadLocationException e) {
+					throw new XPathException(e.getMessage());
+				}
+				// the root element is the first node in document order
+				Object[] nodes = TestUtil.evaluateAllRefsExpression(content);
+				return "/*".equals(xpathExpression) ? new Object[] { nodes[0] } : nodes;
+			}
+		};
+		return new WSEditorAdapterForTests() {
+			@Override
+			public String getCurrentPageID() {
+				return PAGE_TEXT;
+			}
+
+			@Override
+			public WSEditorPage getCurrentPage() {
+				return textPage;
+			}
+
+			@Override
+			public URL getEditorLocation() {
+				return URLUtil.convertToURL(location);
+			}
+		};
+	}
+}
@@ -0,0 +1,107 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.net.URL;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.OutgoingReferencesTree;
+import com.oxygenxml.ditareferences.tree.references.outgoing.RefreshDelays;
+import com.oxygenxml.ditareferences.workspace.DITAReferencesTranslatorForTests;
+import com.oxygenxml.ditareferences.workspace.StandalonePluginWorkspaceAccessForTests;
+import com.oxygenxml.ditareferences.workspace.TestUtil;
+import com.oxygenxml.ditareferences.workspace.WSEditorAdapterForTests;
+
+import junit.framework.TestCase;
+import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
+import ro.sync.exml.workspace.api.editor.page.text.xml.XPathException;
+import ro.sync.util.URLUtil;
+
+/**
+ * Test the refresh delays adapted to the collection times.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class RefreshDelaysForTextPageTest extends TestCase {
+
+	/**
+	 * Fast collections are refreshed soon, slow ones later.
+	 */
+	@Test
+	public void test_DelayFollowsCollectionTimes() {
+		RefreshDelays refreshDelays = new RefreshDelays();
+		URL smallTopic = URLUtil.convertToURL("file:/small.dita");
+		URL hugeTopic = URLUtil.convertToURL("file:/huge.dita");
+
+		assertEquals(RefreshDelays.DEFAULT_DELAY, refreshDelays.getDelay(smallTopic));
+		assertEquals(RefreshDelays.DEFAULT_DELAY, refreshDelays.getDelay(null));
+
+		refreshDelays.collectionFinished(smallTopic, 5);
+		assertEquals(RefreshDelays.MIN_DELAY + 10, refreshDelays.getDelay(smallTopic));
+
+		refreshDelays.collectionFinished(hugeTopic, 1000);
+		assertEquals(RefreshDelays.MIN_DELAY + 2000, refreshDelays.getDelay(hugeTopic));
+		// a faster collection lowers the average slowly
+		refreshDelays.collectionFinished(hugeTopic, 100);
+		assertEquals(730, refreshDelays.getAverageCollectionTime(hugeTopic));
+		assertEquals(100, refreshDelays.getLastCollectionTime(hugeTopic));
+		assertEquals(RefreshDelays.MIN_DELAY + 1460, refreshDelays.getDelay(hugeTopic));
+
+		refreshDelays.collectionFinished(hugeTopic, 60000);
+		assertEquals(RefreshDelays.MAX_DELAY, refreshDelays.getDelay(hugeTopic));
+	}
+
+	/**
+	 * A refresh of the tree measures the collection time of the editor.
+	 */
+	@Test
+	public void test_RefreshMeasuresCollection() throws BadLocationException {
+		OutgoingReferencesTree tree = new OutgoingReferencesTree(new StandalonePluginWorkspaceAccessForTests(), null,
+				new DITAReferencesTranslatorForTests());
+		URL location = URLUtil.convertToURL("file:/topic.dita");
+		String ditaTopicContent = "<topic id=\"sample\" class=\"- topic/topic \">\n"
+				+ "    <body>\n"
+				+ "            <p>Link to <xref class=\"- topic/xref \" keyref=\"google\"/> </p>\n"
+				+ "    </body>\n" + "</topic>";
+		PlainDocument document = new PlainDocument();
+		document.insertString(0, ditaTopicContent, null);
+		WSEditorAdapterForTests editor = new WSEditorAdapterForTests() {
+			@Override
+			public String getCurrentPageID() {
+				return PAGE_TEXT;
+			}
+
+			@Override
+			public WSEditorPage getCurrentPage() {
+				return new WSXMLTextEditorPageForTests() {
+					@Override
+					public Document getDocument() {
+						return document;
+					}
+
+					@Override
+					public Object[] evaluateXPath(String xpathExpression) throws XPathException {
+						// the root element is the first node in document order
+						Object[] nodes = TestUtil.evaluateAllRefsExpression(ditaTopicContent);
+						return "/*".equals(xpathExpression) ? new Object[] { nodes[0] } : nodes;
+					}
+				};
+			}
+
+			@Override
+			public URL getEditorLocation() {
+				return location;
+			}
+		};
+
+		assertEquals(-1, tree.getRefreshDelays().getLastCollectionTime(location));
+		tree.setShowing(true);
+		tree.refresh(editor);
+		assertTrue(tree.getRefreshDelays().getLastCollectionTime(location) >= 0);
+		assertTrue(tree.getRefreshDelays().getDelay(location) >= RefreshDelays.MIN_DELAY);
+	}
+}
@@ -0,0 +1,95 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.workspace.TestUtil;
+import com.oxygenxml.ditareferences.workspace.textpage.TextReferencesCollector;
+
+import junit.framework.TestCase;
+
+/**
+ * Check that the single pass collection of the Text Page finds the same
+ * references as the XPath evaluation.
+ * 
+ * @author Alexandra_Dinisor
+ *
+ */
+public class SinglePassCollectorForTextPageTest extends TestCase {
+
+	static final String ditaContent = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<!DOCTYPE topic [\n"
+			+ "  <!ENTITY company \"Syncro <Soft>\">\n" + "]>\n"
+			+ "<topic id=\"sample\" class=\"- topic/topic \">\n"
+			+ "    <title class=\"- topic/title \">sample</title>\n" 
+			+ "    <!-- <image href=\"commented.png\"/> -->\n"
+			+ "    <body>\n"
+			+ "            <image class=\"- topic/image \" href=\"image.png\" alt=\"a > b\"/>\n"
+			+ "            <p>Link to external resource <xref keyref=\"google\"/> <![CDATA[<xref href=\"cdata\"/>]]></p>\n"
+			+ "            <p class=\"- topic/p \" conref=\"sample2.dita#sample2/i1\"/>\n"
+			+ "            <p class=\"- topic/p \" conkeyref=\"sample2/i1\"></p>\n"
+			+ "            <object data=\"http://www.nasa.gov/mp3/590318main_ringtone_135_launch.mp3\" \n"
+			+ "                                    outputclass=\"audio\" class=\"- topic/object \" />  \n"
+			+ "    </body>\n" 
+			+ "    <related-links>\n"
+			+ "            <link class=\"- topic/link \" href=\"sample2.dita\"/>\n"
+			+ "            <?pi <link class=\"- topic/link \" href=\"fake.dita\"/> ?>\n"
+			+ "            <link class=\"- topic/link \" keyref=\"myPDF\"><linktext>binary resource</linktext></link>\n"
+			+ "    </related-links>\n" 
+			+ "</topic>";
+
+	/**
+	 * The single pass finds the same elements as the XPath expression, with the
+	 * offsets of their markup.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_SameReferencesAsXPath() throws Exception {
+		Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new InputSource(new StringReader(ditaContent))).getDocumentElement();
+
+		List<NodeRange> ranges = new TextReferencesCollector().collect(root, ditaContent);
+		Object[] xpathNodes = TestUtil.evaluateAllRefsExpression(ditaContent);
+
+		assertNotNull(ranges);
+		assertEquals(xpathNodes.length, ranges.size());
+		for (int i = 0; i < xpathNodes.length; i++) {
+			Element xpathElement = (Element) xpathNodes[i];
+			NodeRange range = ranges.get(i);
+			assertEquals(xpathElement.getNodeName(), range.getNodeName());
+			String expectedHref = xpathElement.hasAttribute("href") ? xpathElement.getAttribute("href") : null;
+			assertEquals(expectedHref, range.getAttributeValue("href"));
+		}
+
+		// the offsets of the cross reference
+		int[] xrefOffsets = ranges.get(2).getNodeOffsets(null);
+		assertEquals("<xref keyref=\"google\"/>", ditaContent.substring(xrefOffsets[0], xrefOffsets[1]));
+
+		// the offsets of the last link, with content
+		int[] linkOffsets = ranges.get(ranges.size() - 1).getNodeOffsets(null);
+		assertEquals("<link class=\"- topic/link \" keyref=\"myPDF\"><linktext>binary resource</linktext></link>",
+				ditaContent.substring(linkOffsets[0], linkOffsets[1]));
+	}
+
+	/**
+	 * When the DOM does not match the content, the single pass gives up.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void test_MismatchedContent() throws Exception {
+		Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new InputSource(new StringReader("<topic class=\"- topic/topic \"><title/></topic>")))
+				.getDocumentElement();
+
+		assertNull(new TextReferencesCollector().collect(root, "<topic class=\"- topic/topic \"><shortdesc/></topic>"));
+	}
+}
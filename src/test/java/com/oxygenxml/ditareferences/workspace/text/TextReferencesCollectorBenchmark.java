@@ -0,0 +1,109 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.io.StringReader;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.NodeRange;
+import com.oxygenxml.ditareferences.workspace.textpage.TextReferencesCollector;
+
+/**
+ * Compare the collection of the Text Page references on a large generated
+ * topic: the union XPath expression evaluated twice (once for the nodes and
+ * once for their ranges) against the single pass over the DOM and content.
+ *
+ * Not a unit test. Run it with the test classpath, optionally giving the
+ * number of sections of the generated topic as the first argument.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class TextReferencesCollectorBenchmark {
+
+	/**
+	 * The XPath expression evaluated by the Text Page collector before the single
+	 * pass.
+	 */
+	private static final String ALL_REFS_XPATH_EXPRESSION = "/* | //*[contains(@class, ' topic/image ')] | //*[contains(@class, ' topic/xref ')]"
+			+ " | //*[contains(@class, ' topic/link ')] | //*[@conref] | //*[@conkeyref] | //*[@keyref  and not(contains(@class, ' topic/image ')) "
+			+ "and not(contains(@class, ' topic/link '))  and  not(contains(@class, ' topic/xref '))] | //*[contains(@class, ' topic/object ')]";
+
+	private static final int ITERATIONS = 5;
+
+	private TextReferencesCollectorBenchmark() {
+		// private constructor
+	}
+
+	public static void main(String[] args) throws Exception {
+		int sections = args.length > 0 ? Integer.parseInt(args[0]) : 6000;
+		String content = generateTopic(sections);
+		Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+				.parse(new InputSource(new StringReader(content)));
+		XPathExpression xpath = XPathFactory.newInstance().newXPath().compile(ALL_REFS_XPATH_EXPRESSION);
+		TextReferencesCollector collector = new TextReferencesCollector();
+
+		System.out.println("Topic size: " + content.length() / 1024 + " KB");
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			// the nodes and their ranges, like evaluateXPath() followed by findElementsByXPath()
+			NodeList nodes = (NodeList) xpath.evaluate(document, XPathConstants.NODESET);
+			NodeList ranges = (NodeList) xpath.evaluate(document, XPathConstants.NODESET);
+			long xpathTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			List<NodeRange> singlePass = collector.collect(document.getDocumentElement(), content);
+			long singlePassTime = System.nanoTime() - start;
+
+			if (singlePass == null || singlePass.size() != nodes.getLength() || ranges.getLength() != nodes.getLength()) {
+				throw new IllegalStateException("Different results");
+			}
+			System.out.println("Iteration " + i + ": " + nodes.getLength() + " references, XPath twice "
+					+ xpathTime / 1000000 + " ms, single pass " + singlePassTime / 1000000 + " ms");
+		}
+	}
+
+	/**
+	 * Generate a large DITA topic with all kinds of references.
+	 *
+	 * @param sections The number of sections
+	 * @return The topic content.
+	 */
+	private static String generateTopic(int sections) {
+		StringBuilder topic = new StringBuilder();
+		topic.append("<topic id=\"large\" class=\"- topic/topic \">\n");
+		topic.append("  <title class=\"- topic/title \">Large topic</title>\n");
+		topic.append("  <body class=\"- topic/body \">\n");
+		for (int i = 0; i < sections; i++) {
+			topic.append("    <section class=\"- topic/section \" id=\"s").append(i).append("\">\n");
+			topic.append("      <title class=\"- topic/title \">Section ").append(i).append("</title>\n");
+			topic.append("      <p class=\"- topic/p \">Some text with a <b class=\"+ topic/ph hi-d/b \">bold</b> word")
+					.append(" and a <xref class=\"- topic/xref \" href=\"topic").append(i).append(".dita\">link</xref>.</p>\n");
+			topic.append("      <p class=\"- topic/p \">More text, more words, even more words in this paragraph.</p>\n");
+			topic.append("      <ul class=\"- topic/ul \">\n");
+			topic.append("        <li class=\"- topic/li \">First item</li>\n");
+			topic.append("        <li class=\"- topic/li \" conref=\"shared.dita#shared/li").append(i).append("\"/>\n");
+			topic.append("      </ul>\n");
+			if (i % 4 == 0) {
+				topic.append("      <image class=\"- topic/image \" href=\"images/img").append(i).append(".png\"/>\n");
+			}
+			if (i % 10 == 0) {
+				topic.append("      <p class=\"- topic/p \">Product <ph class=\"- topic/ph \" keyref=\"product\"/>.</p>\n");
+			}
+			topic.append("    </section>\n");
+		}
+		topic.append("  </body>\n");
+		topic.append("  <related-links class=\"- topic/related-links \">\n");
+		topic.append("    <link class=\"- topic/link \" href=\"other.dita\"/>\n");
+		topic.append("  </related-links>\n");
+		topic.append("</topic>\n");
+		return topic.toString();
+	}
+}
@@ -0,0 +1,61 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.util.Collections;
+
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.workspace.textpage.TextPageNodeRange;
+
+import junit.framework.TestCase;
+
+/**
+ * Test that the offsets of a TextPage reference follow the edits of the
+ * document until the next refresh.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class TrackedOffsetsForTextPageTest extends TestCase {
+
+	/**
+	 * The offsets are moved by the insertions and deletions before and inside the
+	 * reference.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void test_OffsetsFollowEdits() throws Exception {
+		PlainDocument document = new PlainDocument();
+		document.insertString(0, "<p>Link to <xref href=\"a.dita\"/> here</p>", null);
+		WSXMLTextEditorPageForTests textPage = new WSXMLTextEditorPageForTests() {
+			@Override
+			public Document getDocument() {
+				return document;
+			}
+		};
+		TextPageNodeRange range = new TextPageNodeRange("xref", Collections.emptyMap(), null, 11, 32, document);
+
+		// insert before the reference, before the offsets are first asked
+		document.insertString(3, "A ", null);
+		assertEquals("[13, 34]", toString(range.getNodeOffsets(textPage)));
+
+		// insert inside the reference
+		document.insertString(19, " id=\"x\"", null);
+		assertEquals("[13, 41]", toString(range.getNodeOffsets(textPage)));
+
+		// delete before the reference
+		document.remove(0, 3);
+		assertEquals("[10, 38]", toString(range.getNodeOffsets(textPage)));
+
+		// the offsets were computed without a document
+		TextPageNodeRange otherRange = new TextPageNodeRange("xref", Collections.emptyMap(), null, 11, 32);
+		assertEquals("[11, 32]", toString(otherRange.getNodeOffsets(new WSXMLTextEditorPageForTests())));
+	}
+
+	private static String toString(int[] offsets) {
+		return "[" + offsets[0] + ", " + offsets[1] + "]";
+	}
+}
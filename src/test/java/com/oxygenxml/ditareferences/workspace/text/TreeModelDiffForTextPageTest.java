@@ -0,0 +1,176 @@
+package com.oxygenxml.ditareferences.workspace.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreePath;
+
+import org.junit.Test;
+
+import com.oxygenxml.ditareferences.tree.references.outgoing.OutgoingReferencesTree;
+import com.oxygenxml.ditareferences.workspace.DITAReferencesTranslatorForTests;
+import com.oxygenxml.ditareferences.workspace.StandalonePluginWorkspaceAccessForTests;
+import com.oxygenxml.ditareferences.workspace.TestUtil;
+import com.oxygenxml.ditareferences.workspace.WSEditorAdapterForTests;
+
+import junit.framework.TestCase;
+import ro.sync.exml.workspace.api.editor.page.WSEditorPage;
+import ro.sync.exml.workspace.api.editor.page.text.xml.XPathException;
+
+/**
+ * Check that a refresh of the same editor updates only the changed nodes of the
+ * ReferencesTree.
+ *
+ * @author Alexandra_Dinisor
+ *
+ */
+public class TreeModelDiffForTextPageTest extends TestCase {
+
+	final OutgoingReferencesTree tree = new OutgoingReferencesTree(new StandalonePluginWorkspaceAccessForTests(), null,
+			new DITAReferencesTranslatorForTests());
+
+	final String ditaTopicContent = "<topic id=\"sample\" class=\"- topic/topic \">\n"
+			+ "    <body>\n"
+			+ "            <image class=\"- topic/image \" href=\"image.png\"/>\n"
+			+ "            <p>Link to <xref class=\"- topic/xref \" keyref=\"google\"/> </p>\n"
+			+ "    </body>\n" + "</topic>";
+
+	/* The current content of the editor. */
+	String content = ditaTopicContent;
+
+	/* The events fired by the tree model. */
+	final List<String> modelEvents = new ArrayList<>();
+
+	/**
+	 * An added reference is inserted in the model, the other nodes and the
+	 * selection are kept.
+	 */
+	@Test
+	public void test_InsertedReference() {
+		WSEditorAdapterForTests editor = createWSEditorAdapterForTextPage();
+		tree.setShowing(true);
+		tree.refresh(editor);
+		Object root = tree.getModel().getRoot();
+		TreePath googlePath = tree.getPathForRow(3);
+		tree.setSelectionPath(googlePath);
+		listenToModel();
+
+		content = content.replace("Link to", "Link to <xref class=\"- topic/xref \" href=\"new.dita\"/>");
+		tree.refresh(editor);
+
+		assertSame(root, tree.getModel().getRoot());
+		assertEquals("[inserted 0]", modelEvents.toString());
+		assertEquals("Media_references\n" + "image.png\n" + "Cross_references\n" + "new.dita\n" + "google\n",
+				TestUtil.logTreeNodes(tree));
+		// the selected node is kept and moved down
+		assertSame(googlePath.getLastPathComponent(), tree.getSelectionPath().getLastPathComponent());
+	}
+
+	/**
+	 * A changed reference is updated in place and an emptied category is removed.
+	 */
+	@Test
+	public void test_ChangedAndRemovedReferences() {
+		WSEditorAdapterForTests editor = createWSEditorAdapterForTextPage();
+		tree.setShowing(true);
+		tree.refresh(editor);
+		listenToModel();
+
+		content = content.replace("keyref=\"google\"", "keyref=\"oxygen\"").replace(
+				"<image class=\"- topic/image \" href=\"image.png\"/>", "");
+		tree.refresh(editor);
+
+		assertEquals("[removed 0, changed 0]", modelEvents.toString());
+		assertEquals("Cross_references\n" + "oxygen\n", TestUtil.logTreeNodes(tree));
+	}
+
+	/**
+	 * A refresh with the same references only updates their offsets.
+	 */
+	@Test
+	public void test_SameReferences() {
+		WSEditorAdapterForTests editor = createWSEditorAdapterForTextPage();
+		tree.setShowing(true);
+		tree.refresh(editor);
+		DefaultMutableTreeNode image = (DefaultMutableTreeNode) tree.getPathForRow(1).getLastPathComponent();
+		Object imageRange = image.getUserObject();
+		listenToModel();
+
+		content = content.replace("<body>", "<body>\n    <p>More text</p>");
+		tree.refresh(editor);
+
+		assertTrue(modelEvents.isEmpty());
+		assertNotSame(imageRange, image.getUserObject());
+	}
+
+	/**
+	 * Record the events of the current model.
+	 */
+	private void listenToModel() {
+		tree.getModel().addTreeModelListener(new TreeModelListener() {
+			@Override
+			public void treeStructureChanged(TreeModelEvent e) {
+				modelEvents.add("structure");
+			}
+
+			@Override
+			public void treeNodesRemoved(TreeModelEvent e) {
+				modelEvents.add("removed " + e.getChildIndices()[0]);
+			}
+
+			@Override
+			public void treeNodesInserted(TreeModelEvent e) {
+				modelEvents.add("inserted " + e.getChildIndices()[0]);
+			}
+
+			@Override
+			public void treeNodesChanged(TreeModelEvent e) {
+				modelEvents.add("changed " + e.getChildIndices()[0]);
+			}
+		});
+	}
+
+	/**
+	 * Create the WSEditor for a TextPage showing the current content.
+	 *
+	 * @return WSEditor in TextMode
+	 */
+	private WSEditorAdapterForTests createWSEditorAdapterForTextPage() {
+		return new WSEditorAdapterForTests() {
+			@Override
+			public String getCurrentPageID() {
+				return PAGE_TEXT;
+			}
+
+			@Override
+			public WSEditorPage getCurrentPage() {
+				String currentContent = content;
+				return new WSXMLTextEditorPageForTests() {
+					@Override
+					public Document getDocument() {
+						PlainDocument document = new PlainDocument();
+						try {
+							document.insertString(0, currentContent, null);
+						} catch (BadLocationException e) {
+							fail(e.getMessage());
+						}
+						return document;
+					}
+
+					@Override
+					public Object[] evaluateXPath(String xpathExpression) throws XPathException {
+						// the root element is the first node in document order
+						Object[] nodes = TestUtil.evaluateAllRefsExpression(currentContent);
+						return "/*".equals(xpathExpression) ? new Object[] { nodes[0] } : nodes;
+					}
+				};
+			}
+		};
+	}
+}